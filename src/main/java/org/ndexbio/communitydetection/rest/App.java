@@ -9,11 +9,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
@@ -32,6 +35,13 @@ import org.jboss.resteasy.plugins.server.servlet.FilterDispatcher;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CustomParameter;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+import org.ndexbio.communitydetection.rest.engine.RemoteWorker;
+import org.ndexbio.communitydetection.rest.engine.TaskIndex;
+import org.ndexbio.communitydetection.rest.engine.TaskJournal;
+import org.ndexbio.communitydetection.rest.engine.util.DockerContainerReaper;
+import org.ndexbio.communitydetection.rest.engine.util.HttpCoordinatorClient;
+import org.ndexbio.communitydetection.rest.services.Coordinator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,10 +96,12 @@ public class App {
     public static final String EXAMPLE_CONF_MODE = "exampleconf";
     public static final String EXAMPLE_ALGO_MODE = "examplealgo";
     public static final String RUNSERVER_MODE = "runserver";
+    public static final String RUNWORKER_MODE = "runworker";
     
     public static final String SUPPORTED_MODES = EXAMPLE_CONF_MODE + ", " +
                                                  EXAMPLE_ALGO_MODE +
-                                                    ", " + RUNSERVER_MODE;
+                                                    ", " + RUNSERVER_MODE +
+                                                    ", " + RUNWORKER_MODE;
     
     public static void main(String[] args){
 
@@ -197,7 +209,11 @@ public class App {
  
                 server.setHandler(contexts);
                 
-                //addCustomizerToEnableDoSFilterToSeeIpAddresses(server);
+                // lets engine identify clients by their ip address when
+                // behind a trusted proxy
+                if (Configuration.getInstance().isTrustForwardedHeaders()){
+                    addCustomizerToEnableDoSFilterToSeeIpAddresses(server);
+                }
                 
                 
                 server.start();	    
@@ -205,6 +221,15 @@ public class App {
                 server.join();
                 return;
             }
+            if (mode.equals(RUNWORKER_MODE)){
+                Configuration.setAlternateConfigurationFile(optionSet.valueOf(CONF).toString());
+                Properties props = getPropertiesFromConf(optionSet.valueOf(CONF).toString());
+                ch.qos.logback.classic.Logger rootLog = 
+        		(ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+                rootLog.setLevel(Level.toLevel(props.getProperty(App.RUNSERVER_LOGLEVEL, "INFO")));
+                runWorker(Configuration.getInstance());
+                return;
+            }
             System.err.println("Invalid --mode: " + mode + " mode must be one of the "
                     + "following: " + SUPPORTED_MODES);
             System.exit(3);
@@ -382,6 +407,35 @@ public class App {
         return mappy.writerWithDefaultPrettyPrinter().writeValueAsString(algos);
     }
    
+    /**
+     * Runs a worker that claims tasks from the coordinator set in
+     * {@code config} until this process is stopped
+     * @param config configuration
+     * @throws Exception if coordinator URL is not set
+     */
+    private static void runWorker(Configuration config) throws Exception {
+        if (config.getCoordinatorURL() == null){
+            throw new CommunityDetectionException(Configuration.COORDINATOR_URL
+                    + " must be set to run a worker");
+        }
+        String workerId = config.getWorkerId();
+        if (workerId == null){
+            workerId = InetAddress.getLocalHost().getHostName() + "-"
+                    + UUID.randomUUID().toString().substring(0, 8);
+        }
+        long leaseMillis = TimeUnit.SECONDS.toMillis(config.getCoordinatorLease());
+        final RemoteWorker worker = new RemoteWorker(workerId,
+                new HttpCoordinatorClient(config.getCoordinatorURL(),
+                        config.getCoordinatorToken()),
+                config.getNumberWorkers(), config.getTaskDirectory(),
+                config.getDockerCommand(), Math.max(1000, leaseMillis / 3),
+                Coordinator.MAX_CLAIM_WAIT);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> worker.shutdown()));
+        System.out.println("Worker " + workerId + " claiming tasks from "
+                + config.getCoordinatorURL());
+        worker.run();
+    }
+    
     /**
      * Generates example Configuration file writing to standard out
      * @throws Exception 
@@ -402,6 +456,89 @@ public class App {
         sb.append("# Algorithm/ docker command timeout in seconds. Anything taking longer will be killed\n");
         sb.append(Configuration.ALGORITHM_TIMEOUT + " = 180\n\n");
         
+        sb.append("# Amount of estimated task cost (size of input in bytes multiplied by algorithm costWeight)\n");
+        sb.append("# equal to 1 millisecond of waiting. Queued tasks are run cheapest first, adjusted by\n");
+        sb.append("# time spent waiting so large tasks are not starved. Set to 0 to run tasks in order received\n");
+        sb.append(Configuration.SCHEDULER_COST_PER_MS + " = 1000\n\n");
+        
+        sb.append("# Name of HTTP header (such as an api key) used to identify clients so queued tasks\n");
+        sb.append("# are shared fairly across them. If unset or missing from a request, ip address is used\n");
+        sb.append("# " + Configuration.CLIENT_ID_HEADER + " = X-API-Key\n\n");
+        
+        sb.append("# If true, client ip address is taken from X-Forwarded-For header. Only enable\n");
+        sb.append("# behind a trusted proxy that sets this header, otherwise any caller can claim\n");
+        sb.append("# a new address on each request and bypass fair sharing of queued tasks\n");
+        sb.append(Configuration.TRUST_FORWARDED_HEADERS + " = false\n\n");
+        
+        sb.append("# Maximum number of tasks that can be queued or running at once. Requests beyond\n");
+        sb.append("# this are rejected with HTTP 429. Set to 0 for no limit. Limits for a single\n");
+        sb.append("# algorithm can be set via queueSize in settings for algorithm in json file\n");
+        sb.append(Configuration.MAX_QUEUE_SIZE + " = 0\n\n");
+        
+        sb.append("# CPUs and megabytes of memory on host. Algorithms can set cpus and memory in\n");
+        sb.append("# settings for algorithm in json file. These are passed to docker run and a task\n");
+        sb.append("# is only started if the sum of cpus and memory of running tasks fits within the\n");
+        sb.append("# values below. Default for cpus is number available to this process and 0 disables\n");
+        sb.append("# the check\n");
+        sb.append("# " + Configuration.HOST_CPUS + " = 8\n");
+        sb.append(Configuration.HOST_MEMORY + " = 0\n\n");
+        
+        sb.append("# If true, number of workers in shared pool is adjusted every interval seconds\n");
+        sb.append("# to maximize task throughput without exceeding CPUs available (including any\n");
+        sb.append("# cgroup quota). " + Configuration.NUM_WORKERS + " is the starting number of workers\n");
+        sb.append("# and max of 0 means number of CPUs available\n");
+        sb.append(Configuration.ADAPTIVE_WORKERS + " = false\n");
+        sb.append(Configuration.ADAPTIVE_MIN_WORKERS + " = 1\n");
+        sb.append(Configuration.ADAPTIVE_MAX_WORKERS + " = 0\n");
+        sb.append(Configuration.ADAPTIVE_INTERVAL + " = 30\n\n");
+        
+        sb.append("# Directory where results of completed tasks are cached so identical requests\n");
+        sb.append("# (same algorithm, docker image, custom parameters, and data) are answered\n");
+        sb.append("# without running the algorithm. Caching is disabled if unset. Least recently\n");
+        sb.append("# used entries are evicted when there are more then max entries or total size\n");
+        sb.append("# exceeds max bytes. Entries older then max age seconds are evicted. 0 means no limit\n");
+        sb.append("# " + Configuration.RESULT_CACHE_DIR + " = /tmp/resultcache\n");
+        sb.append(Configuration.RESULT_CACHE_MAX_ENTRIES + " = 1000\n");
+        sb.append(Configuration.RESULT_CACHE_MAX_BYTES + " = 0\n");
+        sb.append(Configuration.RESULT_CACHE_MAX_AGE + " = 0\n\n");
+        
+        sb.append("# If true, tasks are recorded in " + TaskJournal.JOURNAL_FILE + " in the task directory\n");
+        sb.append("# as they are submitted and finish. Tasks queued or running when the server stops\n");
+        sb.append("# are submitted again when it starts. Journal is compacted after compact records\n");
+        sb.append(Configuration.TASK_JOURNAL + " = true\n");
+        sb.append(Configuration.TASK_JOURNAL_COMPACT + " = " + TaskJournal.DEFAULT_COMPACT_THRESHOLD + "\n\n");
+        
+        sb.append("# If true, status of every task in the task directory is indexed at startup\n");
+        sb.append("# using threads threads and saved to " + TaskIndex.SNAPSHOT_FILE + " so the\n");
+        sb.append("# next startup only reads task directories created since the snapshot\n");
+        sb.append(Configuration.TASK_INDEX + " = true\n");
+        sb.append(Configuration.TASK_INDEX_THREADS + " = " + TaskIndex.DEFAULT_THREADS + "\n\n");
+        
+        sb.append("# Seconds between searches for docker containers of tasks that are no longer\n");
+        sb.append("# running, such as those left when the server stopped, which are then removed.\n");
+        sb.append("# Containers are always searched for at startup, 0 means only at startup\n");
+        sb.append(Configuration.CONTAINER_REAP_INTERVAL + " = " + DockerContainerReaper.DEFAULT_REAP_INTERVAL + "\n\n");
+        
+        sb.append("# Maximum number of communities a fan out task runs the term mapping\n");
+        sb.append("# algorithm on at once\n");
+        sb.append(Configuration.FANOUT_CONCURRENCY + " = 4\n\n");
+        
+        sb.append("# If true, this server hands tasks to workers started with --mode " + RUNWORKER_MODE + "\n");
+        sb.append("# which claim tasks from it over HTTP and renew a lease on each task every\n");
+        sb.append("# lease/3 seconds while running it. Tasks whose lease expires are given to another\n");
+        sb.append("# worker. Pipeline and fan out tasks still run on this server. Token must be\n");
+        sb.append("# set when enabled and workers must pass it in the " + Configuration.COORDINATOR_TOKEN_HEADER + " header\n");
+        sb.append(Configuration.COORDINATOR_ENABLED + " = false\n");
+        sb.append(Configuration.COORDINATOR_LEASE + " = 60\n");
+        sb.append("# " + Configuration.COORDINATOR_TOKEN + " = secret\n\n");
+        
+        sb.append("# URL of coordinator a worker claims tasks from. The worker runs up to\n");
+        sb.append("# " + Configuration.NUM_WORKERS + " tasks at once in " + Configuration.TASK_DIR + " via "
+                + Configuration.DOCKER_CMD + ". Worker id\n");
+        sb.append("# defaults to host name plus a random suffix\n");
+        sb.append("# " + Configuration.COORDINATOR_URL + " = http://localhost:8081/cd" + Configuration.APPLICATION_PATH + "\n");
+        sb.append("# " + Configuration.WORKER_ID + " = worker1\n\n");
+        
         sb.append("# Path to file containing json of algorithms\n");
         sb.append(Configuration.ALGORITHM_MAP + " = " + CD_ALGORITHMS_FILE + "\n\n");
         
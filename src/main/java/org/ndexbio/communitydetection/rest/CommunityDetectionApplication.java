@@ -10,6 +10,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jboss.resteasy.plugins.interceptors.CorsFilter;
 import org.ndexbio.communitydetection.rest.services.CommunityDetection;
+import org.ndexbio.communitydetection.rest.services.Coordinator;
 import org.ndexbio.communitydetection.rest.services.Status;
 
 public class CommunityDetectionApplication extends Application {
@@ -30,6 +31,7 @@ public class CommunityDetectionApplication extends Application {
     @Override
     public Set<Class<?>> getClasses() {
         return Stream.of(CommunityDetection.class,
+                Coordinator.class,
                 Status.class,
                 OpenApiResource.class,
                 AcceptHeaderOpenApiResource.class).collect(Collectors.toSet());
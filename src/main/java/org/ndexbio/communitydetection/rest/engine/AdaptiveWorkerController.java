@@ -0,0 +1,226 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically adjusts {@link WorkerPool#getMaxWorkers()} for a pool by
+ * hill climbing on task throughput. Each time {@link #run()} is invoked
+ * the number of tasks completed per second since the last invocation
+ * is compared to the previous value. If tasks are waiting in the pool and
+ * throughput improved, the last change is repeated, otherwise it is
+ * reversed. If the system load average exceeds the number of CPUs
+ * available, as limited by any cgroup CPU quota, the number of workers
+ * is lowered.
+ * <p>
+ * The number of workers is always kept between the minimum and maximum
+ * passed in via the constructor.
+ * <p>
+ * This class is meant to be run by a {@link java.util.concurrent.ScheduledExecutorService}
+ * @author churas
+ */
+public class AdaptiveWorkerController implements Runnable {
+
+    static Logger _logger = LoggerFactory.getLogger(AdaptiveWorkerController.class);
+
+    /**
+     * cgroup v2 file containing quota and period
+     */
+    public static final String CGROUP_V2_CPU_MAX = "cpu.max";
+
+    /**
+     * cgroup v1 file containing quota
+     */
+    public static final String CGROUP_V1_CPU_QUOTA = "cpu" + File.separator + "cpu.cfs_quota_us";
+
+    /**
+     * cgroup v1 file containing period
+     */
+    public static final String CGROUP_V1_CPU_PERIOD = "cpu" + File.separator + "cpu.cfs_period_us";
+
+    /**
+     * Default location of cgroup filesystem
+     */
+    public static final String CGROUP_ROOT = File.separator + "sys" + File.separator
+            + "fs" + File.separator + "cgroup";
+
+    private final WorkerPool _pool;
+    private final int _minWorkers;
+    private final int _maxWorkers;
+    private final File _cgroupRoot;
+    private int _direction;
+    private long _lastCompleted;
+    private long _lastTime;
+    private double _lastThroughput;
+
+    /**
+     * Constructor
+     * @param pool pool whose number of workers is adjusted
+     * @param minWorkers lowest number of workers allowed
+     * @param maxWorkers highest number of workers allowed, if 0 or less the
+     *                   number of CPUs available is used
+     */
+    public AdaptiveWorkerController(WorkerPool pool, int minWorkers,
+            int maxWorkers){
+        this(pool, minWorkers, maxWorkers, new File(CGROUP_ROOT));
+    }
+
+    /**
+     * Constructor
+     * @param pool pool whose number of workers is adjusted
+     * @param minWorkers lowest number of workers allowed
+     * @param maxWorkers highest number of workers allowed, if 0 or less the
+     *                   number of CPUs available is used
+     * @param cgroupRoot directory where cgroup filesystem is mounted
+     */
+    public AdaptiveWorkerController(WorkerPool pool, int minWorkers,
+            int maxWorkers, File cgroupRoot){
+        _pool = pool;
+        _minWorkers = Math.max(1, minWorkers);
+        _maxWorkers = maxWorkers;
+        _cgroupRoot = cgroupRoot;
+        _direction = 1;
+        _lastTime = -1;
+        _lastThroughput = -1;
+    }
+
+    /**
+     * Adjusts number of workers, any errors are logged
+     */
+    @Override
+    public void run() {
+        try {
+            adjustWorkers(System.currentTimeMillis());
+        } catch(RuntimeException re){
+            _logger.error("Error adjusting number of workers for "
+                    + _pool.getName() + " pool", re);
+        }
+    }
+
+    /**
+     * Adjusts number of workers in pool based on throughput since
+     * the last call to this method
+     * @param now current time in milliseconds since epoch
+     * @return new number of workers
+     */
+    protected int adjustWorkers(long now){
+        long completed = _pool.getCompletedTasks();
+        int current = _pool.getMaxWorkers();
+        double cpus = getCpuLimit();
+        int upper = _maxWorkers;
+        if (upper <= 0){
+            upper = (int)Math.ceil(cpus);
+        }
+        upper = Math.max(_minWorkers, upper);
+
+        if (_lastTime < 0 || now <= _lastTime){
+            _lastCompleted = completed;
+            _lastTime = now;
+            return setWorkers(current, clamp(current, upper));
+        }
+        double throughput = (double)(completed - _lastCompleted) * 1000.0
+                / (double)(now - _lastTime);
+        double load = getLoadAverage();
+        int target = current;
+        if (load >= 0 && load > cpus){
+            _logger.debug("Load " + load + " exceeds " + cpus + " CPUs");
+            _direction = -1;
+            target = current - 1;
+        } else if (_pool.getQueuedTasks() > 0){
+            if (throughput < _lastThroughput){
+                _direction = -_direction;
+            }
+            target = current + _direction;
+        }
+        _lastCompleted = completed;
+        _lastTime = now;
+        _lastThroughput = throughput;
+        return setWorkers(current, clamp(target, upper));
+    }
+
+    private int clamp(int workers, int upper){
+        return Math.max(_minWorkers, Math.min(workers, upper));
+    }
+
+    private int setWorkers(int current, int target){
+        if (target != current){
+            _logger.info("Changing number of workers in " + _pool.getName()
+                    + " pool from " + current + " to " + target);
+            _pool.setMaxWorkers(target);
+        }
+        return target;
+    }
+
+    /**
+     * Gets system load average for the last minute
+     * @return load average or negative number if not available
+     */
+    protected double getLoadAverage(){
+        return ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+    }
+
+    /**
+     * Gets number of CPUs available to this process which is the lesser of
+     * {@link java.lang.Runtime#availableProcessors()} and any cgroup CPU quota
+     * @return number of CPUs
+     */
+    protected double getCpuLimit(){
+        double cpus = Runtime.getRuntime().availableProcessors();
+        double quota = getCgroupCpuQuota();
+        if (quota > 0 && quota < cpus){
+            return quota;
+        }
+        return cpus;
+    }
+
+    /**
+     * Gets CPU quota from cgroup v2 {@value #CGROUP_V2_CPU_MAX} file or
+     * the cgroup v1 {@value #CGROUP_V1_CPU_QUOTA} and {@value #CGROUP_V1_CPU_PERIOD}
+     * files under the cgroup root passed in via the constructor
+     * @return quota as number of CPUs or -1 if there is no quota
+     */
+    protected double getCgroupCpuQuota(){
+        try {
+            File cpuMax = new File(_cgroupRoot, CGROUP_V2_CPU_MAX);
+            if (cpuMax.isFile()){
+                String[] split = readFirstLine(cpuMax).trim().split("\\s+");
+                if (split.length != 2 || split[0].equals("max")){
+                    return -1;
+                }
+                return getQuota(Double.parseDouble(split[0]),
+                        Double.parseDouble(split[1]));
+            }
+            File quotaFile = new File(_cgroupRoot, CGROUP_V1_CPU_QUOTA);
+            File periodFile = new File(_cgroupRoot, CGROUP_V1_CPU_PERIOD);
+            if (quotaFile.isFile() && periodFile.isFile()){
+                return getQuota(Double.parseDouble(readFirstLine(quotaFile).trim()),
+                        Double.parseDouble(readFirstLine(periodFile).trim()));
+            }
+        } catch(IOException | NumberFormatException ex){
+            _logger.debug("Unable to read cgroup cpu quota", ex);
+        }
+        return -1;
+    }
+
+    private double getQuota(double quota, double period){
+        if (quota <= 0 || period <= 0){
+            return -1;
+        }
+        return quota / period;
+    }
+
+    private String readFirstLine(File file) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))){
+            String line = br.readLine();
+            if (line == null){
+                return "";
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Server side settings for a single algorithm. These are read from the
+ * optional {@value #SETTINGS_KEY} object on an entry in the algorithms json
+ * file and are never returned to callers of the REST service.
+ * <p>
+ * Example:
+ * <pre>
+ * "clixo": {
+ *     "name": "clixo",
+ *     "dockerImage": "coleslawndex/clixo:1.0",
+ *     ...
+ *     "settings": {
+ *         "workers": 2,
+ *         "overflow": false,
+ *         "costWeight": 4.0,
+ *         "queueSize": 100,
+ *         "cpus": 2.0,
+ *         "memory": 4096,
+ *         "warmContainers": 2,
+ *         "tasksPerContainer": 100,
+ *         "warmArguments": ["--serve"],
+ *         "standardInput": false,
+ *         "fileBackedResult": false,
+ *         "runner": "docker",
+ *         "executable": "/usr/local/bin/clixo"
+ *     }
+ * }
+ * </pre>
+ * @author churas
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AlgorithmSettings {
+
+    /**
+     * Name of field on algorithm entry in algorithms json that holds
+     * these settings
+     */
+    public static final String SETTINGS_KEY = "settings";
+
+    /**
+     * Value of {@link #getRunner()} for algorithms run in a docker container
+     */
+    public static final String DOCKER_RUNNER = "docker";
+
+    /**
+     * Value of {@link #getRunner()} for algorithms run directly on this host
+     */
+    public static final String NATIVE_RUNNER = "native";
+
+    private int _workers = 0;
+    private boolean _overflow = false;
+    private double _costWeight = 1.0;
+    private int _queueSize = 0;
+    private double _cpus = 0;
+    private long _memory = 0;
+    private int _warmContainers = 0;
+    private int _tasksPerContainer = 100;
+    private List<String> _warmArguments = Collections.emptyList();
+    private boolean _standardInput = false;
+    private boolean _fileBackedResult = false;
+    private String _runner = DOCKER_RUNNER;
+    private String _executable;
+
+    /**
+     * Gets number of tasks for this algorithm that can run at the same time
+     * in a pool dedicated to this algorithm.
+     * @return number of workers, if 0 or less, tasks for this algorithm
+     *         are run by the shared pool
+     */
+    public int getWorkers() {
+        return _workers;
+    }
+
+    public void setWorkers(int workers) {
+        _workers = workers;
+    }
+
+    /**
+     * Denotes whether tasks for this algorithm can be run by the shared pool
+     * when all the workers dedicated to this algorithm are busy. Only used
+     * if {@link #getWorkers()} is greater then 0
+     * @return true if shared pool can be used
+     */
+    public boolean isOverflow() {
+        return _overflow;
+    }
+
+    public void setOverflow(boolean overflow) {
+        _overflow = overflow;
+    }
+
+    /**
+     * Gets weight used to estimate cost of a task for this algorithm. The
+     * estimated cost of a task is this weight multiplied by size of the
+     * input data in bytes. Slower algorithms should have larger weights.
+     * @return weight, default is 1.0
+     */
+    public double getCostWeight() {
+        return _costWeight;
+    }
+
+    public void setCostWeight(double costWeight) {
+        _costWeight = costWeight;
+    }
+
+    /**
+     * Gets maximum number of tasks for this algorithm that can be
+     * queued or running at once. Requests beyond this are rejected
+     * @return maximum number of tasks, 0 or less means there is no limit
+     */
+    public int getQueueSize() {
+        return _queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        _queueSize = queueSize;
+    }
+
+    /**
+     * Gets number of CPUs a task for this algorithm needs. This is reserved
+     * on the host while the task runs and passed to docker via --cpus
+     * @return number of CPUs, 0 or less means no limit
+     */
+    public double getCpus() {
+        return _cpus;
+    }
+
+    public void setCpus(double cpus) {
+        _cpus = cpus;
+    }
+
+    /**
+     * Gets megabytes of memory a task for this algorithm needs. This is
+     * reserved on the host while the task runs and passed to docker via --memory
+     * @return memory in megabytes, 0 or less means no limit
+     */
+    public long getMemory() {
+        return _memory;
+    }
+
+    public void setMemory(long memory) {
+        _memory = memory;
+    }
+
+    /**
+     * Gets number of long running containers to keep started for this
+     * algorithm. These containers are sent tasks over the line protocol
+     * described in {@link org.ndexbio.communitydetection.rest.engine.util.WarmContainer}
+     * so the docker image must support it.
+     * @return number of containers, 0 or less means every task is run in
+     *         a new container
+     */
+    public int getWarmContainers() {
+        return _warmContainers;
+    }
+
+    public void setWarmContainers(int warmContainers) {
+        _warmContainers = warmContainers;
+    }
+
+    /**
+     * Gets number of tasks a warm container runs before it is replaced
+     * @return number of tasks, default is 100
+     */
+    public int getTasksPerContainer() {
+        return _tasksPerContainer;
+    }
+
+    public void setTasksPerContainer(int tasksPerContainer) {
+        _tasksPerContainer = tasksPerContainer;
+    }
+
+    /**
+     * Gets arguments passed to docker image to start it as a warm container
+     * @return arguments, never {@code null}
+     */
+    public List<String> getWarmArguments() {
+        return _warmArguments;
+    }
+
+    public void setWarmArguments(List<String> warmArguments) {
+        if (warmArguments == null){
+            _warmArguments = Collections.emptyList();
+            return;
+        }
+        _warmArguments = warmArguments;
+    }
+
+    /**
+     * Denotes whether request data is streamed to the container over
+     * standard input instead of being written to a file in the task
+     * directory. The docker image must accept {@code /dev/stdin} as
+     * its input file. Warm containers are not used when this is set.
+     * @return {@code true} if data is streamed, default is {@code false}
+     */
+    public boolean isStandardInput() {
+        return _standardInput;
+    }
+
+    public void setStandardInput(boolean standardInput) {
+        _standardInput = standardInput;
+    }
+
+    /**
+     * Denotes whether json output of the algorithm is left in its task
+     * directory and copied from there when the result is saved or returned,
+     * instead of being parsed into memory. Useful for algorithms, like
+     * CliXO, with large hierarchies as output
+     * @return {@code true} if json output is not loaded, default is {@code false}
+     */
+    public boolean isFileBackedResult() {
+        return _fileBackedResult;
+    }
+
+    public void setFileBackedResult(boolean fileBackedResult) {
+        _fileBackedResult = fileBackedResult;
+    }
+
+    /**
+     * Gets how algorithm is run, either {@value #DOCKER_RUNNER} or
+     * {@value #NATIVE_RUNNER} in which case {@link #getExecutable()}
+     * installed on this host is run instead of the docker image
+     * @return runner, default is {@value #DOCKER_RUNNER}
+     */
+    public String getRunner() {
+        return _runner;
+    }
+
+    public void setRunner(String runner) {
+        if (runner == null){
+            _runner = DOCKER_RUNNER;
+            return;
+        }
+        _runner = runner;
+    }
+
+    /**
+     * Gets path to algorithm executable run when {@link #getRunner()} is
+     * {@value #NATIVE_RUNNER}
+     * @return path or {@code null} if not set
+     */
+    public String getExecutable() {
+        return _executable;
+    }
+
+    public void setExecutable(String executable) {
+        _executable = executable;
+    }
+}
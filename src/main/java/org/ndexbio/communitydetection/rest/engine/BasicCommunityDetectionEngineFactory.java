@@ -1,9 +1,23 @@
 package org.ndexbio.communitydetection.rest.engine;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRequestValidator;
 import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRequestValidatorImpl;
+import org.ndexbio.communitydetection.rest.engine.util.DockerContainerReaper;
+import org.ndexbio.communitydetection.rest.engine.util.WarmContainerPool;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
 import org.ndexbio.communitydetection.rest.services.Configuration;
@@ -19,11 +33,36 @@ public class BasicCommunityDetectionEngineFactory {
     
     static Logger _logger = LoggerFactory.getLogger(BasicCommunityDetectionEngineFactory.class);
 
+    /**
+     * Seconds to wait for docker to resolve an image
+     */
+    public static final long IMAGE_INSPECT_TIMEOUT = 30;
+
     private int _numWorkers;
     private String _taskDir;
     private String _dockerCmd;
     private CommunityDetectionAlgorithms _algorithms;
     private CommunityDetectionRequestValidator _validator;
+    private Map<String, AlgorithmSettings> _algorithmSettings;
+    private double _hostCpus;
+    private long _hostMemory;
+    private boolean _adaptiveWorkers;
+    private int _adaptiveMinWorkers;
+    private int _adaptiveMaxWorkers;
+    private long _adaptiveInterval;
+    private String _resultCacheDir;
+    private int _resultCacheMaxEntries;
+    private long _resultCacheMaxBytes;
+    private long _resultCacheMaxAge;
+    private boolean _coordinatorEnabled;
+    private String _coordinatorToken;
+    private long _coordinatorLease;
+    private RemoteTaskQueue _remoteTaskQueue;
+    private boolean _taskJournal;
+    private int _taskJournalCompact;
+    private boolean _taskIndex;
+    private int _taskIndexThreads;
+    private long _containerReapInterval;
     
     /**
      * Temp directory where query results will temporarily be stored.
@@ -35,20 +74,291 @@ public class BasicCommunityDetectionEngineFactory {
         _taskDir = config.getTaskDirectory();
         _dockerCmd = config.getDockerCommand();
         _algorithms = config.getAlgorithms();
+        _algorithmSettings = config.getAlgorithmSettings();
+        _hostCpus = config.getHostCpus();
+        _hostMemory = config.getHostMemory();
+        _adaptiveWorkers = config.isAdaptiveWorkers();
+        _adaptiveMinWorkers = config.getAdaptiveMinWorkers();
+        _adaptiveMaxWorkers = config.getAdaptiveMaxWorkers();
+        _adaptiveInterval = config.getAdaptiveInterval();
+        _resultCacheDir = config.getResultCacheDirectory();
+        _resultCacheMaxEntries = config.getResultCacheMaxEntries();
+        _resultCacheMaxBytes = config.getResultCacheMaxBytes();
+        _resultCacheMaxAge = config.getResultCacheMaxAge();
+        _coordinatorEnabled = config.isCoordinatorEnabled();
+        _coordinatorToken = config.getCoordinatorToken();
+        _coordinatorLease = config.getCoordinatorLease();
+        _taskJournal = config.isTaskJournal();
+        _taskJournalCompact = config.getTaskJournalCompact();
+        _taskIndex = config.isTaskIndex();
+        _taskIndexThreads = config.getTaskIndexThreads();
+        _containerReapInterval = config.getContainerReapInterval();
         _validator = new CommunityDetectionRequestValidatorImpl();
        
     }
 
     /**
-     * Creates CommunityDetectionEngine with a fixed threadpool to process requests
+     * Creates CommunityDetectionEngine with a shared pool of workers used by 
+     * all algorithms, plus a dedicated pool for every algorithm whose
+     * {@link AlgorithmSettings#getWorkers()} is greater then 0. If adaptive
+     * workers are enabled, the number of workers in the shared pool is
+     * adjusted by an {@link AdaptiveWorkerController}
+     * <p>
+     * If this server is a coordinator, tasks are handed to workers on other
+     * nodes via a {@link RemoteTaskQueue} and the number of workers in the
+     * pools limits how many tasks are given out at once. Since the tasks do
+     * not run on this node, no resources are reserved on this node for them
+     * and neither warm containers nor adaptive workers are used. Since
+     * workers run any task they claim, a coordinator token must be set.
+     * Otherwise
+     * docker containers left by tasks that were running when the server
+     * last stopped are removed by a {@link DockerContainerReaper}
+     * <p>
+     * Algorithms implemented in java, found via {@link InProcessAlgorithm},
+     * are run in process on the worker pool threads.
+     * <p>
+     * If the task index is enabled, tasks in the task directory are indexed
+     * before unfinished tasks are resumed. If the task journal is enabled,
+     * tasks left unfinished when the server last stopped are resumed before
+     * the engine is returned
      * @return {@link org.ndexbio.communitydetection.rest.engine.CommunityDetectionEngine} object 
      *         ready to service requests
+     * @throws CommunityDetectionException if coordinator is enabled without
+     *         a token or there was an error creating the engine
      */
     public CommunityDetectionEngine getCommunityDetectionEngine() throws CommunityDetectionException {
-        _logger.debug("Creating executor service with: " + Integer.toString(_numWorkers) + " workers");
-        ExecutorService es = Executors.newFixedThreadPool(_numWorkers);
-        CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es, _taskDir,
-                _dockerCmd, _algorithms, _validator);
+        if (_coordinatorEnabled == true && _coordinatorToken == null){
+            throw new CommunityDetectionException(Configuration.COORDINATOR_TOKEN
+                    + " must be set when " + Configuration.COORDINATOR_ENABLED + " is true");
+        }
+        _logger.debug("Creating shared worker pool with: " + Integer.toString(_numWorkers) + " workers");
+        
+        // the pools limit how many tasks run and threads are only needed to
+        // start each docker process, which is then watched by the 
+        // ProcessSupervisor, so threads are just created as needed
+        ExecutorService es = Executors.newCachedThreadPool();
+        WorkerPool sharedPool = new WorkerPool(CommunityDetectionEngineImpl.SHARED_POOL,
+                _numWorkers, es);
+        _logger.debug("Host has " + _hostCpus + " cpus and " + _hostMemory
+                + " megabytes of memory that can be reserved by tasks");
+        ResourceLedger ledger = null;
+        if (_coordinatorEnabled == false){
+            ledger = new ResourceLedger(_hostCpus, _hostMemory);
+            sharedPool.setResourceLedger(ledger);
+        }
+        LinkedHashMap<String, WorkerPool> algorithmPools = new LinkedHashMap<>();
+        for (String algoName : _algorithmSettings.keySet()){
+            AlgorithmSettings settings = _algorithmSettings.get(algoName);
+            if (settings.getWorkers() <= 0){
+                continue;
+            }
+            _logger.debug("Creating " + algoName + " worker pool with: "
+                    + Integer.toString(settings.getWorkers()) + " workers");
+            WorkerPool pool = new WorkerPool(algoName, settings.getWorkers(), es);
+            pool.setResourceLedger(ledger);
+            if (settings.isOverflow()){
+                pool.setOverflowPool(sharedPool);
+            }
+            algorithmPools.put(algoName, pool);
+        }
+        if (_adaptiveWorkers == true && _coordinatorEnabled == false){
+            startAdaptiveWorkerController(sharedPool);
+        }
+        // algorithms implemented in java are found on the classpath and
+        // added to the catalog after those in the algorithms json
+        CmdlineCommunityDetectionAlgorithmsFactory algoFactory = new CmdlineCommunityDetectionAlgorithmsFactory(_algorithms,
+                CmdlineCommunityDetectionAlgorithmsFactory.loadInProcessAlgorithms(
+                        BasicCommunityDetectionEngineFactory.class.getClassLoader()));
+        CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(sharedPool,
+                algorithmPools, _taskDir, _dockerCmd,
+                algoFactory.getCommunityDetectionAlgorithms(), _validator);
+        engine.setInProcessAlgorithms(algoFactory.getInProcessAlgorithms());
+        if (_coordinatorEnabled == true){
+            _logger.info("Handing tasks to workers with a lease of "
+                    + _coordinatorLease + " seconds");
+            _remoteTaskQueue = new RemoteTaskQueue(TimeUnit.SECONDS.toMillis(_coordinatorLease));
+            // lapsed leases are found even when no worker is claiming tasks
+            _remoteTaskQueue.start(_coordinatorLease, TimeUnit.SECONDS);
+            engine.setRemoteTaskQueue(_remoteTaskQueue);
+            engine.setWarmContainerPools(new LinkedHashMap<>());
+        } else {
+            DockerContainerReaper reaper = new DockerContainerReaper(_dockerCmd,
+                    new File(_taskDir).getAbsolutePath());
+            // remove containers before tasks are resumed under the same names
+            int removed = reaper.reapOrphans();
+            _logger.info("Removed " + removed + " orphaned containers");
+            reaper.start(_containerReapInterval, TimeUnit.SECONDS);
+            engine.setContainerReaper(reaper);
+            engine.setWarmContainerPools(getWarmContainerPools(reaper));
+        }
+        if (_resultCacheDir != null){
+            engine.setResultCache(getResultCache());
+            engine.setImageDigests(getImageDigests());
+        }
+        if (_taskIndex == true){
+            TaskIndex taskIndex = new TaskIndex(new File(_taskDir), _taskIndexThreads);
+            try {
+                taskIndex.load();
+            } catch(IOException io){
+                throw new CommunityDetectionException("Unable to index task directory: "
+                        + io.getMessage());
+            }
+            engine.setTaskIndex(taskIndex);
+        }
+        if (_taskJournal == true){
+            TaskJournal journal = new TaskJournal(new File(_taskDir, TaskJournal.JOURNAL_FILE),
+                    _taskJournalCompact);
+            List<TaskJournal.Entry> unfinished;
+            try {
+                unfinished = journal.load();
+            } catch(IOException io){
+                throw new CommunityDetectionException("Unable to load task journal: "
+                        + io.getMessage());
+            }
+            engine.setTaskJournal(journal);
+            engine.resumeTasks(unfinished);
+        }
         return engine;
     }
+    
+    /**
+     * Gets queue workers claim tasks from, created by
+     * {@link #getCommunityDetectionEngine() }
+     * @return queue or {@code null} if this server is not a coordinator
+     */
+    public RemoteTaskQueue getRemoteTaskQueue(){
+        return _remoteTaskQueue;
+    }
+    
+    /**
+     * Creates {@link ResultCache} and loads any entries already on disk
+     * @return cache
+     * @throws CommunityDetectionException if cache directory could not be created
+     */
+    private ResultCache getResultCache() throws CommunityDetectionException {
+        _logger.info("Caching results in " + _resultCacheDir);
+        ResultCache cache = new ResultCache(new File(_resultCacheDir),
+                _resultCacheMaxEntries, _resultCacheMaxBytes,
+                TimeUnit.SECONDS.toMillis(_resultCacheMaxAge));
+        try {
+            cache.load();
+        } catch(IOException io){
+            throw new CommunityDetectionException("Unable to load result cache: "
+                    + io.getMessage());
+        }
+        return cache;
+    }
+    
+    /**
+     * Resolves the docker image of every algorithm to its image id via
+     * {@code docker image inspect} so cached results are not reused when
+     * an image tag is updated. Images that cannot be resolved are left out
+     * @return image ids keyed by docker image
+     */
+    protected Map<String, String> getImageDigests(){
+        LinkedHashMap<String, String> digests = new LinkedHashMap<>();
+        if (_algorithms == null || _algorithms.getAlgorithms() == null){
+            return digests;
+        }
+        for (CommunityDetectionAlgorithm cda : _algorithms.getAlgorithms().values()){
+            String image = cda.getDockerImage();
+            if (image == null || digests.containsKey(image)){
+                continue;
+            }
+            String digest = getImageDigest(image);
+            if (digest != null){
+                _logger.debug("Docker image " + image + " resolved to " + digest);
+                digests.put(image, digest);
+            }
+        }
+        return digests;
+    }
+    
+    private String getImageDigest(final String image){
+        try {
+            Process p = new ProcessBuilder(_dockerCmd, "image", "inspect",
+                    "--format", "{{.Id}}", image).redirectErrorStream(true).start();
+            // output is a single line so it fits in the pipe buffer
+            if (p.waitFor(IMAGE_INSPECT_TIMEOUT, TimeUnit.SECONDS) == false){
+                p.destroyForcibly();
+                _logger.warn("Timed out resolving docker image " + image);
+                return null;
+            }
+            String line;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream(),
+                    StandardCharsets.UTF_8))){
+                line = br.readLine();
+            }
+            if (p.exitValue() != 0 || line == null || line.trim().isEmpty()){
+                _logger.warn("Unable to resolve docker image " + image + " : " + line);
+                return null;
+            }
+            return line.trim();
+        } catch(IOException io){
+            _logger.warn("Unable to resolve docker image " + image, io);
+        } catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Creates and starts a {@link WarmContainerPool} for every algorithm
+     * whose {@link AlgorithmSettings#getWarmContainers()} is greater then 0,
+     * unless the algorithm is run natively without docker
+     * @param reaper names and removes containers of the pools
+     * @return pools keyed by algorithm name
+     */
+    private Map<String, WarmContainerPool> getWarmContainerPools(DockerContainerReaper reaper){
+        LinkedHashMap<String, WarmContainerPool> warmPools = new LinkedHashMap<>();
+        ExecutorService es = null;
+        ScheduledExecutorService ses = null;
+        for (String algoName : _algorithmSettings.keySet()){
+            AlgorithmSettings settings = _algorithmSettings.get(algoName);
+            if (settings.getWarmContainers() <= 0 || _algorithms == null
+                    || AlgorithmSettings.NATIVE_RUNNER.equals(settings.getRunner())
+                    || _algorithms.getAlgorithms().containsKey(algoName) == false){
+                continue;
+            }
+            if (es == null){
+                es = Executors.newCachedThreadPool(getDaemonThreadFactory("warm-container"));
+                ses = Executors.newSingleThreadScheduledExecutor(getDaemonThreadFactory("warm-container-timeout"));
+            }
+            _logger.debug("Starting " + settings.getWarmContainers()
+                    + " warm containers for " + algoName);
+            // containers only see input files linked into their own directory
+            File workDir = new File(_taskDir + File.separator
+                    + WarmContainerPool.WARM_CONTAINERS_DIR, algoName);
+            List<String> command = WarmContainerPool.getDockerCommand(_dockerCmd,
+                    _algorithms.getAlgorithms().get(algoName).getDockerImage(),
+                    WarmContainerPool.getInputDirectory(workDir).getAbsolutePath(),
+                    settings.getCpus(), settings.getMemory(),
+                    settings.getWarmArguments());
+            WarmContainerPool pool = new WarmContainerPool(algoName, command,
+                    settings.getWarmContainers(), settings.getTasksPerContainer(),
+                    workDir, es, ses);
+            pool.setContainerReaper(reaper);
+            pool.start();
+            warmPools.put(algoName, pool);
+        }
+        return warmPools;
+    }
+    
+    private static ThreadFactory getDaemonThreadFactory(final String name){
+        return (Runnable r) -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+    
+    private void startAdaptiveWorkerController(WorkerPool pool){
+        _logger.info("Adjusting number of workers in " + pool.getName()
+                + " pool every " + _adaptiveInterval + " seconds");
+        AdaptiveWorkerController controller = new AdaptiveWorkerController(pool,
+                _adaptiveMinWorkers, _adaptiveMaxWorkers);
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(
+                getDaemonThreadFactory("adaptive-worker-controller"));
+        ses.scheduleWithFixedDelay(controller, 0, _adaptiveInterval, TimeUnit.SECONDS);
+    }
 }
@@ -0,0 +1,32 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.List;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
+
+/**
+ * {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus}
+ * of a batch of tasks. The status of the batch is
+ * {@link CommunityDetectionResultStatus#COMPLETE_STATUS} once every task
+ * completes, {@link CommunityDetectionResultStatus#FAILED_STATUS} once every
+ * task is done and at least one failed, 
+ * {@link CommunityDetectionResultStatus#PROCESSING_STATUS} while any task
+ * is running or done, and {@link CommunityDetectionResultStatus#SUBMITTED_STATUS}
+ * otherwise. Progress is the average progress of the tasks.
+ * @author churas
+ */
+public class BatchStatus extends CommunityDetectionResultStatus {
+
+    private List<CommunityDetectionResultStatus> _tasks;
+
+    /**
+     * Gets status of each task in batch
+     * @return 
+     */
+    public List<CommunityDetectionResultStatus> getTasks() {
+        return _tasks;
+    }
+
+    public void setTasks(List<CommunityDetectionResultStatus> tasks) {
+        _tasks = tasks;
+    }
+}
@@ -0,0 +1,43 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.List;
+
+/**
+ * Returned when a batch of requests is submitted. Contains the id
+ * of the batch and the id of each task in the same order as the
+ * requests in the batch
+ * @author churas
+ */
+public class BatchTask {
+
+    private String _id;
+    private List<String> _tasks;
+
+    public BatchTask(){
+    }
+
+    public BatchTask(final String id, List<String> tasks){
+        _id = id;
+        _tasks = tasks;
+    }
+
+    public String getId() {
+        return _id;
+    }
+
+    public void setId(String id) {
+        _id = id;
+    }
+
+    /**
+     * Gets ids of tasks in batch
+     * @return 
+     */
+    public List<String> getTasks() {
+        return _tasks;
+    }
+
+    public void setTasks(List<String> tasks) {
+        _tasks = tasks;
+    }
+}
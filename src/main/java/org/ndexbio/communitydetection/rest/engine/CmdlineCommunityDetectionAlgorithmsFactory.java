@@ -1,17 +1,118 @@
 package org.ndexbio.communitydetection.rest.engine;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Builds the catalog of algorithms from the command line algorithms, run
+ * via docker or natively, declared in the algorithms json file plus any
+ * {@link InProcessAlgorithm} found on the classpath. If an in process
+ * algorithm has the same name as a command line algorithm, the command
+ * line algorithm wins so an administrator can always override a plugin
  * @author churas
  */
 public class CmdlineCommunityDetectionAlgorithmsFactory implements CommunityDetectionAlgorithmsFactory  {
 
+    static Logger _logger = LoggerFactory.getLogger(CmdlineCommunityDetectionAlgorithmsFactory.class);
+
+    private final CommunityDetectionAlgorithms _cmdlineAlgorithms;
+    private final Map<String, InProcessAlgorithm> _inProcessAlgorithms;
+
+    /**
+     * Constructor
+     * @param cmdlineAlgorithms algorithms from algorithms json, can be {@code null}
+     * @param inProcessAlgorithms algorithms run in process, can be {@code null}
+     */
+    public CmdlineCommunityDetectionAlgorithmsFactory(CommunityDetectionAlgorithms cmdlineAlgorithms,
+            List<InProcessAlgorithm> inProcessAlgorithms){
+        _cmdlineAlgorithms = cmdlineAlgorithms;
+        _inProcessAlgorithms = new LinkedHashMap<>();
+        if (inProcessAlgorithms == null){
+            return;
+        }
+        for (InProcessAlgorithm algo : inProcessAlgorithms){
+            String name = algo.getAlgorithm().getName();
+            if (_cmdlineAlgorithms != null && _cmdlineAlgorithms.getAlgorithms() != null
+                    && _cmdlineAlgorithms.getAlgorithms().containsKey(name)){
+                _logger.warn("In process algorithm " + name + " ("
+                        + algo.getClass().getName()
+                        + ") is overridden by algorithm of same name in algorithms json");
+                continue;
+            }
+            if (_inProcessAlgorithms.containsKey(name)){
+                _logger.warn("Skipping in process algorithm " + algo.getClass().getName()
+                        + " since " + name + " is already registered");
+                continue;
+            }
+            _inProcessAlgorithms.put(name, algo);
+        }
+    }
+
+    /**
+     * Finds every {@link InProcessAlgorithm} registered with
+     * {@link java.util.ServiceLoader} via {@code classLoader}. Algorithms
+     * that can not be loaded are logged and skipped
+     * @param classLoader used to find algorithms
+     * @return algorithms, never {@code null}
+     */
+    public static List<InProcessAlgorithm> loadInProcessAlgorithms(ClassLoader classLoader){
+        List<InProcessAlgorithm> algorithms = new ArrayList<>();
+        Iterator<InProcessAlgorithm> itr = ServiceLoader.load(InProcessAlgorithm.class,
+                classLoader).iterator();
+        while (true){
+            try {
+                if (itr.hasNext() == false){
+                    break;
+                }
+                InProcessAlgorithm algo = itr.next();
+                if (algo.getAlgorithm() == null || algo.getAlgorithm().getName() == null){
+                    _logger.error("Skipping in process algorithm "
+                            + algo.getClass().getName() + " that has no name");
+                    continue;
+                }
+                algorithms.add(algo);
+            } catch(ServiceConfigurationError sce){
+                _logger.error("Unable to load in process algorithm : " + sce.getMessage());
+            }
+        }
+        return algorithms;
+    }
+
+    /**
+     * Gets catalog with command line algorithms followed by in process
+     * algorithms
+     * @return catalog
+     */
     @Override
     public CommunityDetectionAlgorithms getCommunityDetectionAlgorithms() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        LinkedHashMap<String, CommunityDetectionAlgorithm> algoMap = new LinkedHashMap<>();
+        if (_cmdlineAlgorithms != null && _cmdlineAlgorithms.getAlgorithms() != null){
+            algoMap.putAll(_cmdlineAlgorithms.getAlgorithms());
+        }
+        for (InProcessAlgorithm algo : _inProcessAlgorithms.values()){
+            algoMap.put(algo.getAlgorithm().getName(), algo.getAlgorithm());
+        }
+        CommunityDetectionAlgorithms algos = new CommunityDetectionAlgorithms();
+        algos.setAlgorithms(algoMap);
+        return algos;
+    }
+
+    /**
+     * Gets in process algorithms that are not overridden by a command
+     * line algorithm of the same name
+     * @return algorithms keyed by name
+     */
+    public Map<String, InProcessAlgorithm> getInProcessAlgorithms(){
+        return Collections.unmodifiableMap(_inProcessAlgorithms);
     }
-    
-    
 }
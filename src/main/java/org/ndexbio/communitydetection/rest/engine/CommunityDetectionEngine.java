@@ -1,5 +1,6 @@
 package org.ndexbio.communitydetection.rest.engine;
 
+import java.util.List;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
@@ -19,6 +20,57 @@ public interface CommunityDetectionEngine extends Runnable {
      * @return UUID as a string that is an identifier for query
      */
     public String request(CommunityDetectionRequest request) throws CommunityDetectionException;
+    
+    /**
+     * Submits request for processing on behalf of a client. Queued requests
+     * are shared fairly across clients
+     * @param request to process
+     * @param clientId identifies client submitting request such as an ip
+     *                 address or api key, can be {@code null}
+     * @return UUID as a string that is an identifier for query
+     */
+    public String request(CommunityDetectionRequest request, final String clientId) throws CommunityDetectionException;
+    
+    /**
+     * Submits a batch of requests for processing on behalf of a client.
+     * Either all requests are submitted or none are
+     * @param requests to process
+     * @param clientId identifies client submitting request such as an ip
+     *                 address or api key, can be {@code null}
+     * @return id of batch and ids of tasks in same order as {@code requests}
+     * @throws CommunityDetectionException if there is an error
+     */
+    public BatchTask requestBatch(List<CommunityDetectionRequest> requests, final String clientId) throws CommunityDetectionException;
+    
+    /**
+     * Gets status of batch which aggregates status of its tasks
+     * @param id id of batch
+     * @return
+     * @throws CommunityDetectionException if there is an error
+     */
+    public BatchStatus getBatchStatus(final String id) throws CommunityDetectionException;
+    
+    /**
+     * Submits a pipeline of algorithms to run as a single task where
+     * the output of each stage is the input of the next stage
+     * @param pipeline stages to run
+     * @param clientId identifies client submitting request such as an ip
+     *                 address or api key, can be {@code null}
+     * @return UUID as a string that is an identifier for the task
+     * @throws CommunityDetectionException if there is an error
+     */
+    public String requestPipeline(PipelineRequest pipeline, final String clientId) throws CommunityDetectionException;
+    
+    /**
+     * Submits a task that runs a term mapping algorithm on every community
+     * in a hierarchy and joins the results
+     * @param request algorithm to run with hierarchy as data
+     * @param clientId identifies client submitting request such as an ip
+     *                 address or api key, can be {@code null}
+     * @return UUID as a string that is an identifier for the task
+     * @throws CommunityDetectionException if there is an error
+     */
+    public String requestFanOut(FanOutRequest request, final String clientId) throws CommunityDetectionException;
      
     /**
      * Gets query results
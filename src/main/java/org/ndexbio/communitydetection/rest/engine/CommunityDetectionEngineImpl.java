@@ -1,25 +1,39 @@
 package org.ndexbio.communitydetection.rest.engine;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRequestValidator;
+import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRunner;
 import org.ndexbio.communitydetection.rest.engine.util.DockerCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.DockerContainerReaper;
+import org.ndexbio.communitydetection.rest.engine.util.DockerPipelineStage;
+import org.ndexbio.communitydetection.rest.engine.util.FanOutPipelineStage;
+import org.ndexbio.communitydetection.rest.engine.util.InProcessCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.NativeCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.PipelineRunner;
+import org.ndexbio.communitydetection.rest.engine.util.PipelineStage;
+import org.ndexbio.communitydetection.rest.engine.util.RemoteCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.WarmContainerPool;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
@@ -46,33 +60,118 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
     
     public static final String CDRESULT_JSON_FILE = "cdresult.json";
     
+    /**
+     * Name of file in batch directory containing ids of tasks in batch
+     */
+    public static final String BATCH_JSON_FILE = "batch.json";
+    
+    /**
+     * Data format of a hierarchy of communities
+     */
+    public static final String COMMUNITY_DETECT_RESULT_FORMAT = "COMMUNITYDETECTRESULT";
+    
+    /**
+     * Data format of a list of genes
+     */
+    public static final String GENE_LIST_FORMAT = "GENELIST";
+    
+    /**
+     * Name of {@link WorkerPool} used by algorithms without a pool
+     * of their own
+     */
+    public static final String SHARED_POOL = "shared";
+    
+    /**
+     * Number of most recently finished tasks used to estimate
+     * how fast queues are draining
+     */
+    public static final int DRAIN_RATE_WINDOW = 50;
+    
+    /**
+     * Maximum number of seconds callers are told to wait before 
+     * submitting again when queue is full
+     */
+    public static final long MAX_RETRY_AFTER_SECONDS = 3600;
+    
     static Logger _logger = LoggerFactory.getLogger(CommunityDetectionEngineImpl.class);
 
     private String _taskDir;
-    private boolean _shutdown;
-    private ExecutorService _executorService;
-    private ConcurrentHashMap<String, Future> _futureTaskMap;
+    private CountDownLatch _shutdownLatch;
+    private WorkerPool _sharedPool;
+    private Map<String, WorkerPool> _algorithmPools;
+    private ConcurrentHashMap<String, CommunityDetectionTask> _futureTaskMap;
     private AtomicInteger _completedTasks;
     private AtomicInteger _queuedTasks;
     private AtomicInteger _canceledTasks;
+    private ConcurrentHashMap<String, AtomicInteger> _algorithmTasks;
+    private DrainRate _drainRate;
+    private ConcurrentHashMap<String, DrainRate> _algorithmDrainRates;
     private CommunityDetectionAlgorithms _algorithms;
     private CommunityDetectionRequestValidator _validator;
     private String _dockerCmd;
+    private Map<String, WarmContainerPool> _warmContainerPools;
+    private Map<String, InProcessAlgorithm> _inProcessAlgorithms;
+    
+    /**
+     * Queued or running executions keyed by request fingerprint
+     */
+    private ConcurrentHashMap<String, SharedExecution> _sharedExecutions;
+    
+    /**
+     * Executions keyed by id of every task attached to them
+     */
+    private ConcurrentHashMap<String, SharedExecution> _executionsByTaskId;
+    private ResultCache _resultCache;
+    private Map<String, String> _imageDigests;
+    private RemoteTaskQueue _remoteTaskQueue;
+    private TaskJournal _journal;
+    private TaskIndex _taskIndex;
+    private DockerContainerReaper _containerReaper;
         
     /**
      * This should be a map of <query UUID> => EnrichmentQueryResults object
      */
     private ConcurrentHashMap<String, CommunityDetectionResult> _results;
 
-    private long _threadSleep = 10;
-    
+    /**
+     * Constructor where all tasks are run by {@code es} 
+     * @param es runs the tasks
+     * @param taskDir directory where tasks are stored
+     * @param dockerCmd docker command
+     * @param algorithms algorithms this engine can run
+     * @param validator validates requests
+     */
     public CommunityDetectionEngineImpl(ExecutorService es,
             final String taskDir,
             final String dockerCmd,
             final CommunityDetectionAlgorithms algorithms,
             final CommunityDetectionRequestValidator validator){
-        _executorService = es;
-        _shutdown = false;
+        this(new WorkerPool(SHARED_POOL, Integer.MAX_VALUE, es), null,
+                taskDir, dockerCmd, algorithms, validator);
+    }
+    
+    /**
+     * Constructor
+     * @param sharedPool runs tasks for any algorithm without its own pool
+     * @param algorithmPools pools dedicated to specific algorithms keyed by
+     *                       algorithm name, can be {@code null}
+     * @param taskDir directory where tasks are stored
+     * @param dockerCmd docker command
+     * @param algorithms algorithms this engine can run
+     * @param validator validates requests
+     */
+    public CommunityDetectionEngineImpl(WorkerPool sharedPool,
+            Map<String, WorkerPool> algorithmPools,
+            final String taskDir,
+            final String dockerCmd,
+            final CommunityDetectionAlgorithms algorithms,
+            final CommunityDetectionRequestValidator validator){
+        _sharedPool = sharedPool;
+        _algorithmPools = algorithmPools;
+        if (_algorithmPools == null){
+            _algorithmPools = Collections.emptyMap();
+        }
+        _shutdownLatch = new CountDownLatch(1);
         _futureTaskMap = new ConcurrentHashMap<>();
         _taskDir = taskDir;
         _dockerCmd = dockerCmd;
@@ -82,67 +181,121 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
         _completedTasks = new AtomicInteger(0);
         _queuedTasks = new AtomicInteger(0);
         _canceledTasks = new AtomicInteger(0);
+        _algorithmTasks = new ConcurrentHashMap<>();
+        _drainRate = new DrainRate(DRAIN_RATE_WINDOW);
+        _algorithmDrainRates = new ConcurrentHashMap<>();
+        _warmContainerPools = Collections.emptyMap();
+        _inProcessAlgorithms = Collections.emptyMap();
+        _sharedExecutions = new ConcurrentHashMap<>();
+        _executionsByTaskId = new ConcurrentHashMap<>();
+        _imageDigests = Collections.emptyMap();
     }
     
     /**
-     * Sets milliseconds thread should sleep if no work needs to be done.
-     * @param sleepTime 
+     * Sets cache used to answer requests identical to ones already run
+     * @param resultCache cache or {@code null} to disable caching
      */
-    public void updateThreadSleepTime(long sleepTime){
-        _threadSleep = sleepTime;
+    public void setResultCache(ResultCache resultCache){
+        _resultCache = resultCache;
     }
-
-    protected void threadSleep(){
-        try {
-            Thread.sleep(_threadSleep);
+    
+    /**
+     * Sets digests of docker images used when fingerprinting requests so
+     * cached results are not reused after an image is updated
+     * @param imageDigests digests keyed by docker image, can be {@code null}.
+     *                     Images without a digest are fingerprinted by name
+     */
+    public void setImageDigests(Map<String, String> imageDigests){
+        if (imageDigests == null){
+            _imageDigests = Collections.emptyMap();
+            return;
         }
-        catch(InterruptedException ie){
-
+        _imageDigests = imageDigests;
+    }
+    
+    /**
+     * Sets queue that workers on other nodes claim tasks from. If set,
+     * tasks submitted via {@link #request(org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest, java.lang.String) }
+     * are run by those workers instead of on this node. Pipelines and
+     * fan out tasks still run on this node
+     * @param remoteTaskQueue queue or {@code null} to run tasks on this node
+     */
+    public void setRemoteTaskQueue(RemoteTaskQueue remoteTaskQueue){
+        _remoteTaskQueue = remoteTaskQueue;
+    }
+    
+    /**
+     * Sets journal where tasks are recorded as they are submitted and
+     * finish so unfinished tasks can be resumed via
+     * {@link #resumeTasks(java.util.List) } after a restart
+     * @param journal loaded journal or {@code null} to not record tasks
+     */
+    public void setTaskJournal(TaskJournal journal){
+        _journal = journal;
+    }
+    
+    /**
+     * Sets index of tasks in the task directory. Once set, tasks not in
+     * the index nor in memory are treated as unknown without checking
+     * the filesystem and the completed task counter starts from the
+     * number of finished tasks in the index
+     * @param taskIndex loaded index or {@code null} to always read results
+     *                  from the filesystem
+     */
+    public void setTaskIndex(TaskIndex taskIndex){
+        _taskIndex = taskIndex;
+        if (_taskIndex != null){
+            _completedTasks.set(_taskIndex.getNumberOfFinishedTasks());
         }
     }
     
     /**
-     * Processes any query tasks, looping until {@link #shutdown()} is invoked
+     * Sets reaper that removes docker containers of tasks that are
+     * canceled or time out
+     * @param containerReaper reaper or {@code null} to leave containers alone
+     */
+    public void setContainerReaper(DockerContainerReaper containerReaper){
+        _containerReaper = containerReaper;
+    }
+    
+    /**
+     * Sets algorithms run in process instead of via docker. Requests for
+     * these algorithms are run on the worker pool threads
+     * @param inProcessAlgorithms algorithms keyed by name, can be {@code null}
+     */
+    public void setInProcessAlgorithms(Map<String, InProcessAlgorithm> inProcessAlgorithms){
+        if (inProcessAlgorithms == null){
+            _inProcessAlgorithms = Collections.emptyMap();
+            return;
+        }
+        _inProcessAlgorithms = inProcessAlgorithms;
+    }
+    
+    /**
+     * Sets pools of warm containers used to run tasks
+     * @param warmContainerPools pools keyed by algorithm name, can be {@code null}
+     */
+    public void setWarmContainerPools(Map<String, WarmContainerPool> warmContainerPools){
+        if (warmContainerPools == null){
+            _warmContainerPools = Collections.emptyMap();
+            return;
+        }
+        _warmContainerPools = warmContainerPools;
+    }
+    
+    /**
+     * Blocks until {@link #shutdown()} is invoked. Tasks no longer need to be
+     * polled for, each task is finalized by {@link #taskCompleted(java.lang.String, java.lang.String, org.ndexbio.communitydetection.rest.model.CommunityDetectionResult, java.lang.Throwable) }
+     * as soon as it finishes.
      */
     @Override
     public void run() {
-        while(_shutdown == false){
-            Future f;
-            String taskId;
-            int queuedCount = 0;
-            Iterator<String> idItr = _futureTaskMap.keySet().iterator();
-            while(idItr.hasNext()){
-                taskId = idItr.next();
-                
-                f = _futureTaskMap.get(taskId);
-                if (f == null){
-                    continue;
-                }
-                if (f.isCancelled()){
-                    _futureTaskMap.remove(taskId);
-                    _canceledTasks.incrementAndGet();
-                } else if (f.isDone()){
-                    _logger.debug("Found a completed or failed task");
-                    try {
-                        CommunityDetectionResult cdr = (CommunityDetectionResult) f.get();
-                        saveCommunityDetectionResultToFilesystem(cdr);
-                        _completedTasks.incrementAndGet();
-                    } catch (InterruptedException ex) {
-                        _logger.error("Got interrupted exception", ex);
-                    } catch (ExecutionException ex) {
-                        _logger.error("Got execution exception", ex);
-                    } catch (CancellationException ex){
-                        _logger.error("Got cancellation exception", ex);
-                    }
-                    _futureTaskMap.remove(taskId);
-                } else {
-                    queuedCount++;
-                }
-            }
-            if (_queuedTasks.get() != queuedCount){
-                _queuedTasks.set(queuedCount);
+        while(_shutdownLatch.getCount() > 0){
+            try {
+                _shutdownLatch.await();
+            } catch(InterruptedException ie){
+                _logger.debug("Interrupted waiting for shutdown", ie);
             }
-            threadSleep();
         }
         _logger.debug("Shutdown was invoked");
         logServerStatus(null);
@@ -150,7 +303,164 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
 
     @Override
     public void shutdown() {
-        _shutdown = true;
+        if (_journal != null){
+            // tasks stopped by the shutdown are resumed on next start
+            _journal.close();
+        }
+        if (_taskIndex != null){
+            _taskIndex.saveSnapshot();
+        }
+        for (WarmContainerPool pool : _warmContainerPools.values()){
+            pool.shutdown();
+        }
+        if (_containerReaper != null){
+            _containerReaper.shutdown();
+        }
+        _shutdownLatch.countDown();
+    }
+    
+    /**
+     * Invoked as the task with id {@code taskId} runs. Marks the in memory
+     * result of the task, and of every task attached to it via
+     * {@link SharedExecution}, as processing with {@code progress} so
+     * {@link #getStatus(java.lang.String) } reports it without reading
+     * anything from the filesystem
+     * @param taskId id of task
+     * @param progress percent complete
+     */
+    protected void taskProgressed(final String taskId, int progress){
+        SharedExecution exec = _executionsByTaskId.get(taskId);
+        List<String> ids = exec == null ? Collections.singletonList(taskId) : exec.getIds();
+        for (String id : ids){
+            CommunityDetectionResult cdr = _results.get(id);
+            if (cdr == null){
+                continue;
+            }
+            synchronized(cdr){
+                if (CommunityDetectionResult.SUBMITTED_STATUS.equals(cdr.getStatus())
+                        || CommunityDetectionResult.PROCESSING_STATUS.equals(cdr.getStatus())){
+                    cdr.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+                    cdr.setProgress(progress);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Invoked by the thread that completed, failed, or canceled the task
+     * with id {@code taskId}. Persists any result to the filesystem for
+     * the task and every task attached to it via {@link SharedExecution}
+     * and updates the queued, completed, and canceled task counters.
+     * @param taskId id of task
+     * @param algorithm name of algorithm task was running
+     * @param cdr result of task or {@code null} if task failed or was canceled
+     * @param ex error raised by task or {@code null} if task completed
+     */
+    protected void taskCompleted(final String taskId, final String algorithm,
+            final CommunityDetectionResult cdr, final Throwable ex){
+        _futureTaskMap.remove(taskId);
+        releaseTask(algorithm);
+        List<String> ids = finishSharedExecution(taskId);
+        try {
+            saveCompletedTasks(taskId, ids, cdr, ex);
+        } finally {
+            if (ids.contains(taskId) == false){
+                // task was deleted while other tasks were attached to it. Only
+                // removed now since a file backed result is read from here
+                _logger.debug("Removing task " + taskId + " that was deleted while running");
+                FileUtils.deleteQuietly(new File(this._taskDir + File.separator + taskId));
+            }
+        }
+    }
+    
+    /**
+     * Persists result of task {@code taskId} for every task in {@code ids}
+     * and updates the completed and canceled task counters
+     * @param taskId id of task
+     * @param ids ids of tasks that should get the result of {@code taskId}
+     * @param cdr result of task or {@code null} if task failed or was canceled
+     * @param ex error raised by task or {@code null} if task completed
+     */
+    private void saveCompletedTasks(final String taskId, final List<String> ids,
+            final CommunityDetectionResult cdr, final Throwable ex){
+        Throwable cause = ex;
+        if (cause instanceof CompletionException && cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        if (cause instanceof CancellationException){
+            _logger.debug("Task " + taskId + " was canceled");
+            _canceledTasks.incrementAndGet();
+            return;
+        }
+        if (cause != null){
+            _logger.error("Got execution exception for task " + taskId, cause);
+            for (String id : ids){
+                CommunityDetectionResult failedRes = _results.get(id);
+                if (failedRes != null){
+                    // synchronized so a late progress update is not persisted
+                    synchronized(failedRes){
+                        failedRes.setStatus(CommunityDetectionResult.FAILED_STATUS);
+                        failedRes.setMessage("Received error trying to run task: " + cause.getMessage());
+                        failedRes.setProgress(100);
+                        failedRes.setWallTime(System.currentTimeMillis() - failedRes.getStartTime());
+                    }
+                    saveCommunityDetectionResultToFilesystem(failedRes);
+                }
+            }
+            return;
+        }
+        _logger.debug("Found a completed or failed task");
+        for (String id : ids){
+            // count before result is visible so status never lags result
+            _completedTasks.incrementAndGet();
+            if (id.equals(taskId)){
+                saveCommunityDetectionResultToFilesystem(cdr);
+            } else {
+                completeAttachedTask(id, cdr);
+            }
+        }
+    }
+    
+    /**
+     * Marks {@link SharedExecution} run by task {@code taskId} finished
+     * @param taskId id of task
+     * @return ids of tasks that should get the result of {@code taskId}
+     *         including {@code taskId} if it was not deleted
+     */
+    private List<String> finishSharedExecution(final String taskId){
+        SharedExecution exec = _executionsByTaskId.get(taskId);
+        if (exec == null){
+            return Collections.singletonList(taskId);
+        }
+        _sharedExecutions.remove(exec.getFingerprint(), exec);
+        List<String> ids = exec.finish();
+        for (String id : ids){
+            _executionsByTaskId.remove(id);
+        }
+        _executionsByTaskId.remove(taskId);
+        return ids;
+    }
+    
+    /**
+     * Copies status, message, and result from {@code cdr} to the result
+     * of attached task {@code id} and saves it to the filesystem
+     * @param id id of attached task
+     * @param cdr result of task that ran the algorithm
+     */
+    private void completeAttachedTask(final String id, final CommunityDetectionResult cdr){
+        CommunityDetectionResult submitted = _results.get(id);
+        if (submitted == null || cdr == null){
+            return;
+        }
+        // copy so status is not seen as complete before the result is saved
+        CommunityDetectionResult res = new CommunityDetectionResult(submitted.getStartTime());
+        res.setId(id);
+        res.setStatus(cdr.getStatus());
+        res.setMessage(cdr.getMessage());
+        res.setProgress(cdr.getProgress());
+        res.setResult(cdr.getResult());
+        res.setWallTime(System.currentTimeMillis() - res.getStartTime());
+        saveCommunityDetectionResultToFilesystem(res);
     }
     
     /**
@@ -190,7 +500,13 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
         } catch(IOException io){
             _logger.error("Caught exception writing " + destFile.getAbsolutePath(), io);
         }
+        if (_taskIndex != null && destFile.isFile()){
+            // index before removing in memory entry so task is always
+            // found by one or the other
+            _taskIndex.update(cdr, destFile.length());
+        }
         _results.remove(cdr.getId());
+        journalFinished(cdr.getId(), cdr.getStatus());
     }
     
     protected void logResult(final CommunityDetectionResult result){
@@ -213,12 +529,23 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
     }
 
     protected CommunityDetectionResult getCommunityDetectionResultFromDbOrFilesystem(final String id){
+        // in memory entry is only removed after the result file is fully
+        // written so check it first to avoid reading a partially written file
+        CommunityDetectionResult inMemory = _results.get(id);
+        if (inMemory != null){
+            return inMemory;
+        }
+        if (_taskIndex != null && _taskIndex.contains(id) == false){
+            _logger.debug("No entry found for " + id + " in task index or "
+                    + "in memory store");
+            return null;
+        }
         ObjectMapper mappy = new ObjectMapper();
         File cdrFile = new File(getCommunityDetectionResultFilePath(id));
         if (cdrFile.isFile() == false){
-            _logger.debug(cdrFile.getAbsolutePath() + " is not a file. "
-		    + "Will attempt to retreive from in memory store");
-            return _results.get(id);
+            _logger.debug(cdrFile.getAbsolutePath() + " is not a file and "
+		    + "no entry found in in memory store");
+            return null;
         }
         try {
             return mappy.readValue(cdrFile, CommunityDetectionResult.class);
@@ -239,7 +566,604 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
     @Override
     public String request(CommunityDetectionRequest request) throws CommunityDetectionException,
             CommunityDetectionBadRequestException {
-
+        return request(request, null);
+    }
+    
+    /**
+     * Request a Community Detection algorithm be run on behalf of the client
+     * {@code clientId}. Each client gets its own queue within a {@link WorkerPool}
+     * and workers are handed out round robin across clients.
+     * @param request The request
+     * @param clientId identifies client, can be {@code null}
+     * @return UUID as string
+     * @throws CommunityDetectionBadRequestException if request is invalid
+     * @throws CommunityDetectionException If there is a server side error
+     */
+    @Override
+    public String request(CommunityDetectionRequest request, final String clientId) throws CommunityDetectionException,
+            CommunityDetectionBadRequestException {
+        CommunityDetectionAlgorithm cda = validateRequest(request);
+        return submitRequest(null, request, cda, clientId, false);
+    }
+    
+    /**
+     * Submits a batch of requests on behalf of the client {@code clientId}.
+     * Every request is validated and room in the queue is reserved for all
+     * of them before any are submitted, so either all requests are
+     * submitted or none are.
+     * @param requests the requests
+     * @param clientId identifies client, can be {@code null}
+     * @return id of batch and id of each task in the same order as {@code requests}
+     * @throws CommunityDetectionBadRequestException if any request is invalid
+     * @throws CommunityDetectionQueueFullException if there is not room in the
+     *         queue for all the requests
+     * @throws CommunityDetectionException If there is a server side error
+     */
+    @Override
+    public BatchTask requestBatch(List<CommunityDetectionRequest> requests,
+            final String clientId) throws CommunityDetectionException {
+        if (requests == null || requests.isEmpty()){
+            throw new CommunityDetectionBadRequestException("No requests in batch");
+        }
+        ArrayList<CommunityDetectionAlgorithm> algos = new ArrayList<>(requests.size());
+        LinkedHashMap<String, Integer> algoCounts = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++){
+            try {
+                algos.add(validateRequest(requests.get(i)));
+            } catch(CommunityDetectionBadRequestException bre){
+                throw new CommunityDetectionBadRequestException("Request " + i
+                        + " in batch is invalid: " + bre.getMessage(),
+                        bre.getErrorResponse());
+            }
+            algoCounts.merge(requests.get(i).getAlgorithm(), 1, Integer::sum);
+        }
+        admitTasks(algoCounts);
+        
+        String batchId = UUID.randomUUID().toString();
+        ArrayList<String> ids = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++){
+            try {
+                ids.add(submitRequest(null, requests.get(i), algos.get(i), clientId, true));
+            } catch(CommunityDetectionException cde){
+                // free up slots reserved for requests not yet submitted
+                for (int j = i + 1; j < requests.size(); j++){
+                    unadmitTask(requests.get(j).getAlgorithm());
+                }
+                for (String id : ids){
+                    delete(id);
+                }
+                throw cde;
+            }
+        }
+        BatchTask batch = new BatchTask(batchId, ids);
+        saveBatchToFilesystem(batch);
+        _logger.info("Batch id: " + batchId + " contains " + ids.size() + " tasks");
+        return batch;
+    }
+    
+    /**
+     * Gets status of batch submitted via {@link #requestBatch(java.util.List, java.lang.String) }
+     * which aggregates the status of every task in the batch as described in
+     * {@link BatchStatus}
+     * @param id id of batch
+     * @return status of batch
+     * @throws CommunityDetectionException if batch is not found
+     */
+    @Override
+    public BatchStatus getBatchStatus(final String id) throws CommunityDetectionException {
+        List<String> ids = getBatchTaskIds(id);
+        if (ids == null){
+            throw new CommunityDetectionException("No batch with " + id + " found");
+        }
+        BatchStatus batchStatus = new BatchStatus();
+        batchStatus.setId(id);
+        ArrayList<CommunityDetectionResultStatus> statuses = new ArrayList<>(ids.size());
+        long startTime = Long.MAX_VALUE;
+        long endTime = 0;
+        long totalProgress = 0;
+        int done = 0;
+        int failed = 0;
+        int started = 0;
+        for (String taskId : ids){
+            CommunityDetectionResultStatus status;
+            try {
+                status = getStatus(taskId);
+            } catch(CommunityDetectionException cde){
+                // task was deleted
+                status = new CommunityDetectionResultStatus();
+                status.setId(taskId);
+                status.setStatus(CommunityDetectionResult.FAILED_STATUS);
+                status.setMessage(cde.getMessage());
+                status.setProgress(100);
+            }
+            statuses.add(status);
+            if (status.getStartTime() > 0){
+                startTime = Math.min(startTime, status.getStartTime());
+            }
+            endTime = Math.max(endTime, status.getStartTime() + status.getWallTime());
+            totalProgress += status.getProgress();
+            if (CommunityDetectionResult.FAILED_STATUS.equals(status.getStatus())){
+                failed++;
+                done++;
+            } else if (CommunityDetectionResult.COMPLETE_STATUS.equals(status.getStatus())){
+                done++;
+            } else if (CommunityDetectionResult.PROCESSING_STATUS.equals(status.getStatus())){
+                started++;
+            }
+        }
+        if (done == ids.size()){
+            batchStatus.setStatus(failed > 0 ? CommunityDetectionResult.FAILED_STATUS :
+                    CommunityDetectionResult.COMPLETE_STATUS);
+            if (failed > 0){
+                batchStatus.setMessage(failed + " of " + ids.size() + " tasks failed");
+            }
+        } else if (done > 0 || started > 0){
+            batchStatus.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+        } else {
+            batchStatus.setStatus(CommunityDetectionResult.SUBMITTED_STATUS);
+        }
+        if (startTime != Long.MAX_VALUE){
+            batchStatus.setStartTime(startTime);
+            if (done == ids.size()){
+                batchStatus.setWallTime(endTime - startTime);
+            } else {
+                batchStatus.setWallTime(System.currentTimeMillis() - startTime);
+            }
+        }
+        batchStatus.setProgress((int)(totalProgress / ids.size()));
+        batchStatus.setTasks(statuses);
+        return batchStatus;
+    }
+    
+    /**
+     * Gets ids of tasks in batch from the filesystem
+     * @param id id of batch
+     * @return ids or {@code null} if batch is not found
+     */
+    private List<String> getBatchTaskIds(final String id){
+        File batchFile = new File(getBatchFilePath(id));
+        if (batchFile.isFile() == false){
+            return null;
+        }
+        ObjectMapper mappy = new ObjectMapper();
+        try {
+            return mappy.readValue(batchFile, BatchTask.class).getTasks();
+        } catch(IOException io){
+            _logger.error("Caught exception trying to load " + batchFile.getAbsolutePath(), io);
+        }
+        return null;
+    }
+    
+    protected String getBatchFilePath(final String id){
+        return this._taskDir + File.separator + id + File.separator + CommunityDetectionEngineImpl.BATCH_JSON_FILE;
+    }
+    
+    private void saveBatchToFilesystem(BatchTask batch) throws CommunityDetectionException {
+        File batchFile = new File(getBatchFilePath(batch.getId()));
+        if (batchFile.getParentFile().mkdirs() == false){
+            throw new CommunityDetectionException("Unable to create directory: "
+                    + batchFile.getParentFile().getAbsolutePath());
+        }
+        ObjectMapper mappy = new ObjectMapper();
+        try (FileOutputStream out = new FileOutputStream(batchFile)){
+            mappy.writeValue(out, batch);
+        } catch(IOException io){
+            _logger.error("Caught exception writing " + batchFile.getAbsolutePath(), io);
+        }
+    }
+    
+    /**
+     * Submits {@code pipeline} as a single task that runs each stage with
+     * {@link PipelineRunner} passing the output file of a stage as the
+     * input file of the next stage. The task is queued on the pool of
+     * the first stage and counts against the queue of that algorithm.
+     * Every stage is validated and the output format of each stage must
+     * match the input format of the next stage, if both are set, before
+     * the task is submitted. A stage that takes a {@value #GENE_LIST_FORMAT}
+     * after a stage that outputs a {@value #COMMUNITY_DETECT_RESULT_FORMAT}
+     * is run on every community via {@link FanOutPipelineStage}
+     * <p>
+     * Unlike {@link #request(org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest, java.lang.String) }
+     * pipelines are not deduplicated or answered from the {@link ResultCache}
+     * @param pipeline stages to run
+     * @param clientId identifies client, can be {@code null}
+     * @return id of task
+     * @throws CommunityDetectionBadRequestException if any stage is invalid
+     * @throws CommunityDetectionQueueFullException if the queue of the first
+     *         stage is full
+     * @throws CommunityDetectionException If there is a server side error
+     */
+    @Override
+    public String requestPipeline(PipelineRequest pipeline, final String clientId) throws CommunityDetectionException {
+        return requestPipeline(null, pipeline, clientId, true);
+    }
+    
+    /**
+     * Submits {@code pipeline} as described in {@link #requestPipeline(org.ndexbio.communitydetection.rest.engine.PipelineRequest, java.lang.String) }
+     * @param taskId id to give task or {@code null} to generate one
+     * @param pipeline stages to run
+     * @param clientId identifies client, can be {@code null}
+     * @param checkLimits if false, queue limits are not checked
+     * @return id of task
+     * @throws CommunityDetectionException if pipeline is invalid or there
+     *         is a server side error
+     */
+    private String requestPipeline(final String taskId, PipelineRequest pipeline,
+            final String clientId, boolean checkLimits) throws CommunityDetectionException {
+        if (pipeline == null || pipeline.getStages() == null || pipeline.getStages().isEmpty()){
+            throw new CommunityDetectionBadRequestException("No stages in pipeline");
+        }
+        List<CommunityDetectionRequest> stages = pipeline.getStages();
+        ArrayList<CommunityDetectionAlgorithm> algos = new ArrayList<>(stages.size());
+        boolean[] fanOut = new boolean[stages.size()];
+        for (int i = 0; i < stages.size(); i++){
+            CommunityDetectionRequest stage = stages.get(i);
+            if (i > 0 && stage != null){
+                // data of later stages comes from the previous stage
+                CommunityDetectionRequest check = new CommunityDetectionRequest();
+                check.setAlgorithm(stage.getAlgorithm());
+                check.setCustomParameters(stage.getCustomParameters());
+                check.setData(stages.get(0).getData());
+                stage = check;
+            }
+            CommunityDetectionAlgorithm cda;
+            try {
+                cda = validateRequest(stage);
+                checkRunsInContainer(cda);
+            } catch(CommunityDetectionBadRequestException bre){
+                throw new CommunityDetectionBadRequestException("Stage " + i
+                        + " in pipeline is invalid: " + bre.getMessage(),
+                        bre.getErrorResponse());
+            }
+            if (i > 0){
+                String outFormat = algos.get(i - 1).getOutputDataFormat();
+                String inFormat = cda.getInputDataFormat();
+                if (COMMUNITY_DETECT_RESULT_FORMAT.equalsIgnoreCase(outFormat)
+                        && GENE_LIST_FORMAT.equalsIgnoreCase(inFormat)){
+                    fanOut[i] = true;
+                } else if (outFormat != null && inFormat != null
+                        && outFormat.equalsIgnoreCase(inFormat) == false){
+                    throw new CommunityDetectionBadRequestException("Stage " + i
+                            + " in pipeline expects " + inFormat + " but stage "
+                            + (i - 1) + " outputs " + outFormat);
+                }
+            }
+            algos.add(cda);
+        }
+        String id = submitPipeline(taskId, TaskJournal.PIPELINE_KIND, pipeline,
+                stages, algos, fanOut, pipeline.getNodeNames(), clientId, checkLimits);
+        _logger.info("Pipeline id: " + id + " contains " + stages.size() + " stages");
+        return id;
+    }
+    
+    /**
+     * Submits a task that runs the algorithm of {@code request} on every
+     * community in the {@value #COMMUNITY_DETECT_RESULT_FORMAT} formatted
+     * hierarchy in the data of {@code request} via {@link FanOutPipelineStage}.
+     * No more than {@link Configuration#getFanOutConcurrency() } communities
+     * are run at once and the task counts as a single task against the queue
+     * of the algorithm. Fan out tasks are not deduplicated or answered from
+     * the {@link ResultCache}
+     * @param request algorithm, custom parameters, and hierarchy
+     * @param clientId identifies client, can be {@code null}
+     * @return id of task
+     * @throws CommunityDetectionBadRequestException if request is invalid or the
+     *         algorithm does not take a {@value #GENE_LIST_FORMAT}
+     * @throws CommunityDetectionQueueFullException if the queue of the
+     *         algorithm is full
+     * @throws CommunityDetectionException If there is a server side error
+     */
+    @Override
+    public String requestFanOut(FanOutRequest request, final String clientId) throws CommunityDetectionException {
+        return requestFanOut(null, request, clientId, true);
+    }
+    
+    /**
+     * Submits {@code request} as described in {@link #requestFanOut(org.ndexbio.communitydetection.rest.engine.FanOutRequest, java.lang.String) }
+     * @param taskId id to give task or {@code null} to generate one
+     * @param request algorithm, custom parameters, and hierarchy
+     * @param clientId identifies client, can be {@code null}
+     * @param checkLimits if false, queue limits are not checked
+     * @return id of task
+     * @throws CommunityDetectionException if request is invalid or there
+     *         is a server side error
+     */
+    private String requestFanOut(final String taskId, FanOutRequest request,
+            final String clientId, boolean checkLimits) throws CommunityDetectionException {
+        CommunityDetectionAlgorithm cda = validateRequest(request);
+        checkRunsInContainer(cda);
+        if (cda.getInputDataFormat() != null
+                && GENE_LIST_FORMAT.equalsIgnoreCase(cda.getInputDataFormat()) == false){
+            throw new CommunityDetectionBadRequestException(cda.getName() + " expects "
+                    + cda.getInputDataFormat() + " not " + GENE_LIST_FORMAT);
+        }
+        String id = submitPipeline(taskId, TaskJournal.FANOUT_KIND, request,
+                Collections.singletonList(request),
+                Collections.singletonList(cda), new boolean[]{true},
+                request.getNodeNames(), clientId, checkLimits);
+        _logger.info("Fan out id: " + id);
+        return id;
+    }
+    
+    /**
+     * Submits {@code stages} as a single task run by {@link PipelineRunner}
+     * on the pool of the first stage
+     * @param taskId id to give task or {@code null} to generate one
+     * @param kind kind of task recorded in {@link TaskJournal}
+     * @param request request recorded in {@link TaskJournal}
+     * @param stages validated stages
+     * @param algos algorithm of each stage
+     * @param fanOut denotes which stages run on every community
+     * @param nodeNames maps member ids to gene names for stages that run on
+     *                  every community, can be {@code null}
+     * @param clientId identifies client, can be {@code null}
+     * @param checkLimits if false, queue limits are not checked
+     * @return id of task
+     * @throws CommunityDetectionException if there is an error
+     */
+    private String submitPipeline(final String taskId, final String kind,
+            final Object request, List<CommunityDetectionRequest> stages,
+            List<CommunityDetectionAlgorithm> algos, boolean[] fanOut,
+            Map<String, String> nodeNames, final String clientId,
+            boolean checkLimits) throws CommunityDetectionException {
+        final String algorithm = stages.get(0).getAlgorithm();
+        admitTasks(Collections.singletonMap(algorithm, 1), checkLimits);
+        
+        String id = taskId == null ? UUID.randomUUID().toString() : taskId;
+        CommunityDetectionResult cdr = new CommunityDetectionResult(System.currentTimeMillis());
+        cdr.setStatus(CommunityDetectionResult.SUBMITTED_STATUS);
+        cdr.setId(id);
+        _results.put(id, cdr);
+        logRequest(stages.get(0), id, clientId);
+        journalSubmitted(id, kind, request, clientId);
+        try {
+            Configuration config = Configuration.getInstance();
+            String pipelineDir = _taskDir + File.separator + id;
+            ArrayList<PipelineStage> pipelineStages = new ArrayList<>(stages.size());
+            double cpus = 0;
+            long memory = 0;
+            for (int i = 0; i < stages.size(); i++){
+                CommunityDetectionRequest stage = stages.get(i);
+                AlgorithmSettings settings = config.getAlgorithmSettings().get(stage.getAlgorithm());
+                WarmContainerPool warmPool = _warmContainerPools.get(stage.getAlgorithm());
+                int concurrency = fanOut[i] ? Math.max(1, config.getFanOutConcurrency()) : 1;
+                if (settings != null){
+                    cpus = Math.max(cpus, settings.getCpus() * concurrency);
+                    memory = Math.max(memory, settings.getMemory() * concurrency);
+                }
+                if (fanOut[i]){
+                    FanOutPipelineStage fps = new FanOutPipelineStage("stage_" + i,
+                            stage, nodeNames, cdr.getStartTime(), pipelineDir,
+                            _dockerCmd, algos.get(i).getDockerImage(), concurrency,
+                            config.getAlgorithmTimeOut(), TimeUnit.SECONDS);
+                    fps.setWarmContainerPool(warmPool);
+                    fps.setContainerName(DockerContainerReaper.getContainerName(id, "stage_" + i));
+                    fps.setContainerReaper(_containerReaper);
+                    if (settings != null){
+                        fps.setResourceLimits(settings.getCpus(), settings.getMemory());
+                    }
+                    pipelineStages.add(fps);
+                    continue;
+                }
+                DockerPipelineStage dps = new DockerPipelineStage("stage_" + i,
+                        stage, cdr.getStartTime(), pipelineDir, _dockerCmd,
+                        algos.get(i).getDockerImage(), config.getAlgorithmTimeOut(),
+                        TimeUnit.SECONDS);
+                dps.setWarmContainerPool(warmPool);
+                dps.setContainerName(DockerContainerReaper.getContainerName(id, "stage_" + i));
+                dps.setContainerReaper(_containerReaper);
+                if (settings != null){
+                    dps.setResourceLimits(settings.getCpus(), settings.getMemory());
+                }
+                pipelineStages.add(dps);
+            }
+            CommunityDetectionTask cdTask = new CommunityDetectionTask(id,
+                    new PipelineRunner(id, pipelineStages, cdr.getStartTime()));
+            cdTask.setPriority(getTaskPriority(algorithm, cdr.getStartTime(),
+                    getInputSize(stages.get(0).getData())));
+            cdTask.setClientId(clientId);
+            // stages run one at a time so reserve the most any stage needs
+            cdTask.setCpus(cpus);
+            cdTask.setMemory(memory);
+            _futureTaskMap.put(id, cdTask);
+            cdTask.getFuture().whenComplete((res, ex) -> taskCompleted(id, algorithm, res, ex));
+            getWorkerPool(algorithm).submit(cdTask);
+            return id;
+        } catch(Exception ex){
+            if (_futureTaskMap.containsKey(id) == false){
+                // task was never created so free up the slot taken by admitTask
+                releaseTask(algorithm);
+                journalFinished(id, CommunityDetectionResult.FAILED_STATUS);
+            }
+            throw new CommunityDetectionException(ex.getMessage());
+        }
+    }
+    
+    /**
+     * Submits tasks that were unfinished when the server stopped again
+     * under their original ids. The task directory of each task is removed
+     * first since any partial output is not reused. Tasks that completed,
+     * but whose completion was not recorded in the journal, are left as is
+     * and tasks that can no longer be submitted, such as those for an
+     * algorithm that was removed, are failed. Tasks are resumed in the
+     * order they were submitted without checking queue limits since they
+     * were already accepted.
+     * @param entries unfinished tasks returned by {@link TaskJournal#load() }
+     * @return number of tasks resumed
+     */
+    public int resumeTasks(List<TaskJournal.Entry> entries){
+        if (entries == null){
+            return 0;
+        }
+        ObjectMapper mappy = new ObjectMapper();
+        int resumed = 0;
+        for (TaskJournal.Entry entry : entries){
+            final String id = entry.getId();
+            CommunityDetectionResult existing = getCommunityDetectionResultFromDbOrFilesystem(id);
+            if (existing != null && CommunityDetectionResult.COMPLETE_STATUS.equals(existing.getStatus())){
+                journalFinished(id, existing.getStatus());
+                continue;
+            }
+            File thisTaskDir = new File(this._taskDir + File.separator + id);
+            FileUtils.deleteQuietly(thisTaskDir);
+            if (_taskIndex != null){
+                _taskIndex.remove(id);
+            }
+            try {
+                if (TaskJournal.REQUEST_KIND.equals(entry.getKind())){
+                    CommunityDetectionRequest request = mappy.treeToValue(entry.getRequest(),
+                            CommunityDetectionRequest.class);
+                    CommunityDetectionAlgorithm cda = validateRequest(request);
+                    admitTasks(Collections.singletonMap(request.getAlgorithm(), 1), false);
+                    submitRequest(id, request, cda, entry.getClientId(), true);
+                } else if (TaskJournal.PIPELINE_KIND.equals(entry.getKind())){
+                    requestPipeline(id, mappy.treeToValue(entry.getRequest(),
+                            PipelineRequest.class), entry.getClientId(), false);
+                } else if (TaskJournal.FANOUT_KIND.equals(entry.getKind())){
+                    requestFanOut(id, mappy.treeToValue(entry.getRequest(),
+                            FanOutRequest.class), entry.getClientId(), false);
+                } else {
+                    throw new CommunityDetectionException("Unknown kind of task: "
+                            + entry.getKind());
+                }
+                resumed++;
+            } catch(Exception ex){
+                _logger.error("Unable to resume task " + id, ex);
+                CommunityDetectionResult cdr = new CommunityDetectionResult(entry.getSubmitTime());
+                cdr.setId(id);
+                cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+                cdr.setMessage("Unable to resume task after restart: " + ex.getMessage());
+                cdr.setProgress(100);
+                thisTaskDir.mkdirs();
+                saveCommunityDetectionResultToFilesystem(cdr);
+            }
+        }
+        _logger.info("Resumed " + resumed + " of " + entries.size() + " unfinished tasks");
+        return resumed;
+    }
+    
+    private void journalSubmitted(final String id, final String kind,
+            final Object request, final String clientId){
+        if (_journal == null){
+            return;
+        }
+        _journal.submitted(id, kind, request, clientId);
+    }
+    
+    private void journalFinished(final String id, final String status){
+        if (_journal == null){
+            return;
+        }
+        _journal.finished(id, status);
+    }
+    
+    /**
+     * Gets approximate size of {@code data} once written to the input file
+     * @param data data of request
+     * @return size in characters
+     */
+    private long getInputSize(JsonNode data){
+        if (data == null){
+            return 0;
+        }
+        return data.isTextual() ? data.asText().length() : data.toString().length();
+    }
+    
+    /**
+     * Creates task to hand to a worker via the {@link RemoteTaskQueue}
+     * @param id id of task
+     * @param request validated request
+     * @param dockerImage docker image of algorithm
+     * @param settings settings of algorithm, can be {@code null}
+     * @return task
+     * @throws CommunityDetectionException if configuration could not be loaded
+     */
+    private RemoteTask getRemoteTask(final String id, CommunityDetectionRequest request,
+            final String dockerImage, AlgorithmSettings settings) throws CommunityDetectionException {
+        RemoteTask remoteTask = new RemoteTask();
+        remoteTask.setId(id);
+        remoteTask.setAlgorithm(request.getAlgorithm());
+        remoteTask.setDockerImage(dockerImage);
+        remoteTask.setCustomParameters(request.getCustomParameters());
+        remoteTask.setData(request.getData());
+        remoteTask.setTimeOut(Configuration.getInstance().getAlgorithmTimeOut());
+        if (settings != null){
+            remoteTask.setCpus(settings.getCpus());
+            remoteTask.setMemory(settings.getMemory());
+            remoteTask.setStandardInput(settings.isStandardInput());
+        }
+        return remoteTask;
+    }
+    
+    /**
+     * Creates runner for {@code request}, which runs the docker image
+     * unless {@code settings} say to run an executable on this host
+     * @param id id of task
+     * @param request the request
+     * @param startTime start time of task
+     * @param dockerImage docker image of algorithm
+     * @param settings settings for algorithm, can be {@code null}
+     * @return runner
+     * @throws Exception if runner could not be created
+     */
+    protected DockerCommunityDetectionRunner createRunner(final String id,
+            CommunityDetectionRequest request, long startTime, final String dockerImage,
+            AlgorithmSettings settings) throws Exception {
+        boolean standardInput = settings != null && settings.isStandardInput();
+        if (isNativeRunner(settings)){
+            if (settings.getExecutable() == null){
+                throw new CommunityDetectionException("No executable set for "
+                        + AlgorithmSettings.NATIVE_RUNNER + " algorithm "
+                        + request.getAlgorithm());
+            }
+            return new NativeCommunityDetectionRunner(id, request, startTime, _taskDir,
+                    settings.getExecutable(), request.getCustomParameters(),
+                    Configuration.getInstance().getAlgorithmTimeOut(),
+                    TimeUnit.SECONDS, standardInput);
+        }
+        return new DockerCommunityDetectionRunner(id, request, startTime,
+                _taskDir, _dockerCmd, dockerImage, request.getCustomParameters(),
+                Configuration.getInstance().getAlgorithmTimeOut(),
+                TimeUnit.SECONDS, standardInput);
+    }
+    
+    /**
+     * Tells if algorithm with {@code settings} is run without docker
+     * @param settings settings for algorithm, can be {@code null}
+     * @return {@code true} if runner in {@code settings} is
+     *         {@value org.ndexbio.communitydetection.rest.engine.AlgorithmSettings#NATIVE_RUNNER}
+     */
+    private static boolean isNativeRunner(AlgorithmSettings settings){
+        return settings != null && AlgorithmSettings.NATIVE_RUNNER.equals(settings.getRunner());
+    }
+    
+    /**
+     * Verifies {@code cda} runs in a docker container since stages of
+     * pipelines and fan out tasks are only run that way
+     * @param cda algorithm
+     * @throws CommunityDetectionBadRequestException if {@code cda} is run
+     *         in process or natively
+     * @throws CommunityDetectionException if configuration can not be loaded
+     */
+    private void checkRunsInContainer(CommunityDetectionAlgorithm cda) throws CommunityDetectionException {
+        if (_inProcessAlgorithms.containsKey(cda.getName())){
+            throw new CommunityDetectionBadRequestException(cda.getName()
+                    + " runs in process and can not be run in a pipeline or fan out");
+        }
+        if (isNativeRunner(Configuration.getInstance().getAlgorithmSettings().get(cda.getName()))){
+            throw new CommunityDetectionBadRequestException(cda.getName()
+                    + " runs without docker and can not be run in a pipeline or fan out");
+        }
+    }
+    
+    /**
+     * Verifies {@code request} is for a known algorithm and is valid
+     * for that algorithm
+     * @param request the request
+     * @return algorithm request is for
+     * @throws CommunityDetectionBadRequestException if request is invalid
+     */
+    protected CommunityDetectionAlgorithm validateRequest(CommunityDetectionRequest request) throws CommunityDetectionBadRequestException {
         if (request == null){ 
             throw new CommunityDetectionBadRequestException("Request is null");
         }
@@ -257,35 +1181,445 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
         if (er != null){
             throw new CommunityDetectionBadRequestException("Bad request", er);
         }
-        
-        String id = UUID.randomUUID().toString();
+        return cda;
+    }
+    
+    /**
+     * Answers {@code request} from the {@link ResultCache}, attaches it to
+     * an identical request already queued or running, or submits it to
+     * the {@link WorkerPool} for the algorithm
+     * @param taskId id to give task or {@code null} to generate one
+     * @param request validated request
+     * @param cda algorithm request is for
+     * @param clientId identifies client, can be {@code null}
+     * @param admitted true if caller already reserved a slot via
+     *                 {@link #admitTasks(java.util.Map)}
+     * @return id of task
+     * @throws CommunityDetectionException if there is an error
+     */
+    private String submitRequest(final String taskId, CommunityDetectionRequest request,
+            CommunityDetectionAlgorithm cda, final String clientId,
+            boolean admitted) throws CommunityDetectionException {
+        String id = taskId == null ? UUID.randomUUID().toString() : taskId;
+        String fingerprint;
+        String existingId;
+        SharedExecution exec = null;
+        try {
+            fingerprint = RequestFingerprint.getFingerprint(request,
+                    _imageDigests.getOrDefault(cda.getDockerImage(), cda.getDockerImage()));
+            existingId = getCachedResult(id, fingerprint, request, clientId);
+            while (existingId == null && exec == null){
+                // claim fingerprint before creating the task so identical
+                // requests arriving at the same time attach to this one
+                SharedExecution claimed = new SharedExecution(fingerprint, id);
+                SharedExecution existing = _sharedExecutions.putIfAbsent(fingerprint, claimed);
+                if (existing == null){
+                    exec = claimed;
+                    _executionsByTaskId.put(id, exec);
+                } else {
+                    // null if existing finished, which removed it, so try again
+                    existingId = attachToSharedExecution(id, existing, request, clientId);
+                    if (existingId == null){
+                        _sharedExecutions.remove(fingerprint, existing);
+                    }
+                }
+            }
+        } catch(CommunityDetectionException cde){
+            if (admitted == true){
+                unadmitTask(request.getAlgorithm());
+            }
+            throw cde;
+        }
+        if (existingId != null){
+            if (admitted == true){
+                // nothing is run so free up slot
+                unadmitTask(request.getAlgorithm());
+            }
+            return existingId;
+        }
+        if (admitted == false){
+            try {
+                admitTask(request.getAlgorithm());
+            } catch(CommunityDetectionException cde){
+                failSharedExecution(id, cde.getMessage());
+                throw cde;
+            }
+        }
 
         CommunityDetectionResult cdr = new CommunityDetectionResult(System.currentTimeMillis());
         cdr.setStatus(CommunityDetectionResult.SUBMITTED_STATUS);
         cdr.setId(id);
         _results.put(id, cdr);
-        logRequest(request, id);
+        logRequest(request, id, clientId);
+        journalSubmitted(id, TaskJournal.REQUEST_KIND, request, clientId);
         String dockerImage = cda.getDockerImage();
         try {
-            DockerCommunityDetectionRunner task = new DockerCommunityDetectionRunner(id, request, cdr.getStartTime(),
-            _taskDir, _dockerCmd, dockerImage, request.getCustomParameters(),
-                    Configuration.getInstance().getAlgorithmTimeOut(),
-            TimeUnit.SECONDS);
-            _futureTaskMap.put(id, _executorService.submit(task));
+            AlgorithmSettings settings = Configuration.getInstance().getAlgorithmSettings().get(request.getAlgorithm());
+            CommunityDetectionRunner runner;
+            long inputSize;
+            InProcessAlgorithm inProcessAlgorithm = _inProcessAlgorithms.get(request.getAlgorithm());
+            if (inProcessAlgorithm != null){
+                // runs on the worker pool thread and only the result is written
+                File thisTaskDir = new File(this._taskDir + File.separator + id);
+                if (thisTaskDir.mkdirs() == false){
+                    throw new CommunityDetectionException("Unable to create directory: "
+                            + thisTaskDir.getAbsolutePath());
+                }
+                InProcessCommunityDetectionRunner task = new InProcessCommunityDetectionRunner(id,
+                        request, cdr.getStartTime(), inProcessAlgorithm,
+                        Configuration.getInstance().getAlgorithmTimeOut(), TimeUnit.SECONDS);
+                task.setProgressListener((progress) -> taskProgressed(id, progress));
+                runner = task;
+                inputSize = getInputSize(request.getData());
+            } else if (_remoteTaskQueue != null && isNativeRunner(settings) == false){
+                // worker runs the task elsewhere, but result is kept here.
+                // native algorithms are installed here so they are run here
+                File thisTaskDir = new File(this._taskDir + File.separator + id);
+                if (thisTaskDir.mkdirs() == false){
+                    throw new CommunityDetectionException("Unable to create directory: "
+                            + thisTaskDir.getAbsolutePath());
+                }
+                RemoteTask remoteTask = getRemoteTask(id, request, dockerImage, settings);
+                runner = new RemoteCommunityDetectionRunner(remoteTask,
+                        _remoteTaskQueue, cdr.getStartTime(),
+                        Configuration.getInstance().getAlgorithmTimeOut(), TimeUnit.SECONDS);
+                inputSize = getInputSize(request.getData());
+            } else {
+                DockerCommunityDetectionRunner task = createRunner(id, request,
+                        cdr.getStartTime(), dockerImage, settings);
+                task.setWarmContainerPool(_warmContainerPools.get(request.getAlgorithm()));
+                task.setContainerReaper(_containerReaper);
+                if (settings != null){
+                    task.setResourceLimits(settings.getCpus(), settings.getMemory());
+                    task.setFileBackedResult(settings.isFileBackedResult());
+                }
+                task.setProgressListener((progress) -> taskProgressed(id, progress));
+                runner = task;
+                inputSize = task.getInputSize();
+            }
+            // run asynchronously so no thread waits on the docker process
+            CommunityDetectionTask cdTask = new CommunityDetectionTask(id, runner);
+            cdTask.setPriority(getTaskPriority(request.getAlgorithm(),
+                    cdr.getStartTime(), inputSize));
+            cdTask.setClientId(clientId);
+            if (settings != null){
+                cdTask.setCpus(settings.getCpus());
+                cdTask.setMemory(settings.getMemory());
+            }
+            _futureTaskMap.put(id, cdTask);
+            final String algorithm = request.getAlgorithm();
+            cdTask.getFuture().whenComplete((res, ex) -> {
+                // cached first since taskCompleted removes the directory of
+                // a deleted task which may hold a file backed result
+                if (ex == null && _resultCache != null){
+                    _resultCache.put(fingerprint, res, System.currentTimeMillis());
+                }
+                taskCompleted(id, algorithm, res, ex);
+            });
+            getWorkerPool(algorithm).submit(cdTask);
             return id;
         } catch(Exception ex){
+            if (_futureTaskMap.containsKey(id) == false){
+                // task was never created so free up the slot taken by admitTask
+                // and fail any tasks that attached to it in the meantime
+                failSharedExecution(id, ex.getMessage());
+                releaseTask(request.getAlgorithm());
+                journalFinished(id, CommunityDetectionResult.FAILED_STATUS);
+            }
             throw new CommunityDetectionException(ex.getMessage());
         }
     }
     
+    /**
+     * Finishes {@link SharedExecution} of task {@code taskId}, which could
+     * not be created, and fails every other task attached to it
+     * @param taskId id of task
+     * @param message reason task could not be created
+     */
+    private void failSharedExecution(final String taskId, final String message){
+        for (String id : finishSharedExecution(taskId)){
+            CommunityDetectionResult failedRes = _results.get(id);
+            if (id.equals(taskId) || failedRes == null){
+                continue;
+            }
+            synchronized(failedRes){
+                failedRes.setStatus(CommunityDetectionResult.FAILED_STATUS);
+                failedRes.setMessage("Received error trying to run task: " + message);
+                failedRes.setProgress(100);
+                failedRes.setWallTime(System.currentTimeMillis() - failedRes.getStartTime());
+            }
+            saveCommunityDetectionResultToFilesystem(failedRes);
+        }
+    }
+    
+    /**
+     * If the result of an identical request, as denoted by {@code fingerprint},
+     * is in the {@link ResultCache}, a new task is created and completed
+     * with that result without running anything
+     * @param id id to give task
+     * @param fingerprint fingerprint of {@code request}
+     * @param request the request
+     * @param clientId identifies client, can be {@code null}
+     * @return id of completed task or {@code null} if there is no cache or
+     *         no result for {@code fingerprint}
+     * @throws CommunityDetectionException if task directory could not be created
+     */
+    protected String getCachedResult(final String id, final String fingerprint,
+            final CommunityDetectionRequest request, final String clientId) throws CommunityDetectionException {
+        if (_resultCache == null){
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        JsonNode result = _resultCache.get(fingerprint, now);
+        if (result == null){
+            return null;
+        }
+        File thisTaskDir = new File(this._taskDir + File.separator + id);
+        if (thisTaskDir.mkdirs() == false){
+            throw new CommunityDetectionException("Unable to create directory: "
+                    + thisTaskDir.getAbsolutePath());
+        }
+        CommunityDetectionResult cdr = new CommunityDetectionResult(now);
+        cdr.setId(id);
+        cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+        cdr.setProgress(100);
+        cdr.setWallTime(0);
+        cdr.setResult(result);
+        logRequest(request, id, clientId);
+        _logger.info("Request id: " + id + " answered from result cache");
+        saveCommunityDetectionResultToFilesystem(cdr);
+        _completedTasks.incrementAndGet();
+        return id;
+    }
+    
+    /**
+     * Attaches a new task id to {@code exec}, the execution of an identical
+     * request that is queued or running, so the algorithm is only
+     * run once. Attached tasks do not count against queue limits since
+     * they do not run anything.
+     * @param id id to give task
+     * @param exec execution of identical request
+     * @param request the request
+     * @param clientId identifies client, can be {@code null}
+     * @return id of attached task or {@code null} if {@code exec} already
+     *         finished
+     * @throws CommunityDetectionException if task directory could not be created
+     */
+    protected String attachToSharedExecution(final String id, SharedExecution exec,
+            final CommunityDetectionRequest request, final String clientId) throws CommunityDetectionException {
+        File thisTaskDir = new File(this._taskDir + File.separator + id);
+        if (thisTaskDir.mkdirs() == false){
+            throw new CommunityDetectionException("Unable to create directory: "
+                    + thisTaskDir.getAbsolutePath());
+        }
+        CommunityDetectionResult cdr = new CommunityDetectionResult(System.currentTimeMillis());
+        cdr.setStatus(CommunityDetectionResult.SUBMITTED_STATUS);
+        cdr.setId(id);
+        _results.put(id, cdr);
+        _executionsByTaskId.put(id, exec);
+        journalSubmitted(id, TaskJournal.REQUEST_KIND, request, clientId);
+        if (exec.attach(id) == false){
+            // execution finished before task could be attached
+            _executionsByTaskId.remove(id);
+            _results.remove(id);
+            FileUtils.deleteQuietly(thisTaskDir);
+            journalFinished(id, CommunityDetectionResult.FAILED_STATUS);
+            return null;
+        }
+        logRequest(request, id, clientId);
+        _logger.info("Request id: " + id + " attached to identical task "
+                + exec.getTaskId());
+        return id;
+    }
+    
+    /**
+     * Reserves a slot for a task running {@code algorithm} if doing so would
+     * not exceed {@link Configuration#getMaxQueueSize()} or 
+     * {@link AlgorithmSettings#getQueueSize()} for the algorithm. 
+     * Every successful call must be matched with a call to {@link #releaseTask(java.lang.String)}
+     * @param algorithm name of algorithm
+     * @throws CommunityDetectionQueueFullException if either limit would be exceeded
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected void admitTask(final String algorithm) throws CommunityDetectionException {
+        admitTasks(Collections.singletonMap(algorithm, 1));
+    }
+    
+    /**
+     * Reserves slots for tasks running the algorithms in {@code algorithmCounts}
+     * if doing so would not exceed {@link Configuration#getMaxQueueSize()} or 
+     * {@link AlgorithmSettings#getQueueSize()} for any algorithm. Either all
+     * slots are reserved or none are. Every slot reserved must be freed with a
+     * call to {@link #releaseTask(java.lang.String)} or {@link #unadmitTask(java.lang.String)}
+     * @param algorithmCounts number of tasks keyed by name of algorithm
+     * @throws CommunityDetectionQueueFullException if either limit would be exceeded
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected void admitTasks(Map<String, Integer> algorithmCounts) throws CommunityDetectionException {
+        admitTasks(algorithmCounts, true);
+    }
+    
+    /**
+     * Reserves slots for tasks running the algorithms in {@code algorithmCounts}
+     * as described in {@link #admitTasks(java.util.Map) }
+     * @param algorithmCounts number of tasks keyed by name of algorithm
+     * @param checkLimits if false, slots are reserved even if limits are
+     *                    exceeded which is used when resuming tasks that
+     *                    were already accepted
+     * @throws CommunityDetectionQueueFullException if either limit would be exceeded
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected synchronized void admitTasks(Map<String, Integer> algorithmCounts,
+            boolean checkLimits) throws CommunityDetectionException {
+        if (checkLimits == false){
+            for (Map.Entry<String, Integer> entry : algorithmCounts.entrySet()){
+                _queuedTasks.addAndGet(entry.getValue());
+                _algorithmTasks.computeIfAbsent(entry.getKey(),
+                        k -> new AtomicInteger(0)).addAndGet(entry.getValue());
+            }
+            return;
+        }
+        Configuration config = Configuration.getInstance();
+        int numTasks = 0;
+        for (Integer count : algorithmCounts.values()){
+            numTasks += count;
+        }
+        int maxQueueSize = config.getMaxQueueSize();
+        if (maxQueueSize > 0 && _queuedTasks.get() + numTasks > maxQueueSize){
+            throw new CommunityDetectionQueueFullException("Server has "
+                    + _queuedTasks.get() + " tasks queued or running and the "
+                    + "maximum allowed is " + maxQueueSize + ". Please try again later",
+                    getRetryAfter(_drainRate, _queuedTasks.get() + numTasks - maxQueueSize));
+        }
+        for (Map.Entry<String, Integer> entry : algorithmCounts.entrySet()){
+            String algorithm = entry.getKey();
+            AtomicInteger algoTasks = _algorithmTasks.computeIfAbsent(algorithm,
+                    k -> new AtomicInteger(0));
+            AlgorithmSettings settings = config.getAlgorithmSettings().get(algorithm);
+            if (settings != null && settings.getQueueSize() > 0
+                    && algoTasks.get() + entry.getValue() > settings.getQueueSize()){
+                throw new CommunityDetectionQueueFullException("Server has "
+                        + algoTasks.get() + " " + algorithm + " tasks queued or running"
+                        + " and the maximum allowed is " + settings.getQueueSize()
+                        + ". Please try again later",
+                        getRetryAfter(getAlgorithmDrainRate(algorithm),
+                                algoTasks.get() + entry.getValue() - settings.getQueueSize()));
+            }
+        }
+        for (Map.Entry<String, Integer> entry : algorithmCounts.entrySet()){
+            _queuedTasks.addAndGet(entry.getValue());
+            _algorithmTasks.get(entry.getKey()).addAndGet(entry.getValue());
+        }
+    }
+    
+    /**
+     * Frees slot reserved by {@link #admitTasks(java.util.Map)} for a task
+     * that was never run
+     * @param algorithm name of algorithm
+     */
+    protected void unadmitTask(final String algorithm){
+        _queuedTasks.decrementAndGet();
+        AtomicInteger algoTasks = _algorithmTasks.get(algorithm);
+        if (algoTasks != null){
+            algoTasks.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Frees slot reserved by {@link #admitTask(java.lang.String)} and records
+     * the task finishing so drain rate can be estimated
+     * @param algorithm name of algorithm
+     */
+    protected void releaseTask(final String algorithm){
+        _queuedTasks.decrementAndGet();
+        AtomicInteger algoTasks = _algorithmTasks.get(algorithm);
+        if (algoTasks != null){
+            algoTasks.decrementAndGet();
+        }
+        long now = System.currentTimeMillis();
+        _drainRate.taskFinished(now);
+        getAlgorithmDrainRate(algorithm).taskFinished(now);
+    }
+    
+    private DrainRate getAlgorithmDrainRate(final String algorithm){
+        return _algorithmDrainRates.computeIfAbsent(algorithm,
+                k -> new DrainRate(DRAIN_RATE_WINDOW));
+    }
+    
+    /**
+     * Estimates number of seconds until {@code numTasks} tasks finish
+     * given the current drain rate. If no tasks have finished yet
+     * {@link Configuration#getAlgorithmTimeOut()} is used since no
+     * task should take longer than that
+     * @param drainRate rate queue is draining
+     * @param numTasks number of tasks that need to finish
+     * @return seconds between 1 and {@link #MAX_RETRY_AFTER_SECONDS}
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected long getRetryAfter(DrainRate drainRate, int numTasks) throws CommunityDetectionException {
+        long waitMillis = drainRate.getEstimatedWaitMillis(numTasks,
+                System.currentTimeMillis());
+        long retryAfter;
+        if (waitMillis < 0){
+            retryAfter = Configuration.getInstance().getAlgorithmTimeOut();
+        } else {
+            retryAfter = (waitMillis + 999) / 1000;
+        }
+        return Math.max(1, Math.min(retryAfter, MAX_RETRY_AFTER_SECONDS));
+    }
+    
+    /**
+     * Calculates priority of a task so tasks with a lower expected cost are
+     * run first. The expected cost is the size of the input multiplied by
+     * {@link AlgorithmSettings#getCostWeight()} for the algorithm. This cost
+     * is converted to milliseconds via {@link Configuration#getSchedulerCostPerMillisecond()}
+     * and added to the submit time which lets tasks that have waited
+     * long enough run ahead of cheaper tasks submitted later.
+     * @param algorithm name of algorithm
+     * @param submitTime time task was submitted in milliseconds since epoch
+     * @param inputSize size of input data in bytes
+     * @return priority of task, lower values are run first
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected long getTaskPriority(final String algorithm, long submitTime,
+            long inputSize) throws CommunityDetectionException {
+        Configuration config = Configuration.getInstance();
+        double costPerMs = config.getSchedulerCostPerMillisecond();
+        if (costPerMs <= 0){
+            return submitTime;
+        }
+        double costWeight = 1.0;
+        AlgorithmSettings settings = config.getAlgorithmSettings().get(algorithm);
+        if (settings != null){
+            costWeight = settings.getCostWeight();
+        }
+        return submitTime + Math.round((costWeight * (double)inputSize) / costPerMs);
+    }
+    
+    /**
+     * Gets pool that should run tasks for {@code algorithm}
+     * @param algorithm name of algorithm
+     * @return pool dedicated to {@code algorithm} or the shared pool if
+     *         the algorithm does not have one
+     */
+    protected WorkerPool getWorkerPool(final String algorithm){
+        WorkerPool pool = _algorithmPools.get(algorithm);
+        if (pool == null){
+            return _sharedPool;
+        }
+        return pool;
+    }
+    
     private void logRequest(final CommunityDetectionRequest request,
-	    final String id){
+	    final String id, final String clientId){
 	if (request == null){
 	    return;
 	}
 	StringBuilder sb = new StringBuilder();
 	sb.append("Request id: ");
 	sb.append(id == null ? "NULL" : id);
+	sb.append(" from client ");
+	sb.append(clientId == null ? "NULL" : clientId);
 	sb.append(" to run ( ");
 	sb.append(request.getAlgorithm() == null ? "NULL" : request.getAlgorithm());
 	
@@ -324,6 +1658,14 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
 
     @Override
     public CommunityDetectionResultStatus getStatus(String id) throws CommunityDetectionException {
+        if (_taskIndex != null && _results.containsKey(id) == false){
+            // finished tasks are answered from the index without reading
+            // the result file
+            TaskIndex.Entry entry = _taskIndex.get(id);
+            if (entry != null && entry.isFinished()){
+                return entry.getResultStatus();
+            }
+        }
         CommunityDetectionResult cdr = getCommunityDetectionResultFromDbOrFilesystem(id);
         if (cdr == null){
             throw new CommunityDetectionException("No task with " + id + " found");
@@ -334,14 +1676,33 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
     @Override
     public void delete(String id) throws CommunityDetectionException {
         _logger.debug("Deleting task " + id);
+        journalFinished(id, TaskJournal.DELETED_STATUS);
         if (_results.containsKey(id) == true){
             _results.remove(id);
         }
-        Future f = _futureTaskMap.get(id);
-        if (f != null){
+        if (_taskIndex != null){
+            _taskIndex.remove(id);
+        }
+        String runningTaskId = id;
+        boolean cancel = true;
+        SharedExecution exec = _executionsByTaskId.get(id);
+        if (exec != null){
+            // only cancel once no tasks are attached to the execution
+            cancel = exec.detach(id);
+            runningTaskId = exec.getTaskId();
+            if (id.equals(runningTaskId) == false){
+                _executionsByTaskId.remove(id);
+            }
+        }
+        CommunityDetectionTask f = _futureTaskMap.get(runningTaskId);
+        if (f != null && cancel == true){
             _logger.info("Delete invoked, canceling task: " + id +
 		    " result of cancel(): " +
-                    Boolean.toString(f.cancel(true)));
+                    Boolean.toString(f.cancel()));
+        } else if (f != null && id.equals(runningTaskId)){
+            _logger.info("Delete invoked on task: " + id + " but other tasks "
+                    + "are attached to it, directory will be removed once it finishes");
+            return;
         }
         File thisTaskDir = new File(this._taskDir + File.separator + id);
         if (thisTaskDir.exists() == false){
@@ -365,7 +1726,7 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
     public ServerStatus getServerStatus() throws CommunityDetectionException {
         try {
             String version = "unknown";
-            ServerStatus sObj = new ServerStatus();
+            CommunityDetectionServerStatus sObj = new CommunityDetectionServerStatus();
             sObj.setStatus(ServerStatus.OK_STATUS);
             sObj.setRestVersion(CommunityDetectionHttpServletDispatcher.getVersion());
             OperatingSystemMXBean omb = ManagementFactory.getOperatingSystemMXBean();
@@ -377,6 +1738,12 @@ public class CommunityDetectionEngineImpl implements CommunityDetectionEngine {
             sObj.setQueuedTasks(_queuedTasks.get());
             sObj.setCompletedTasks(_completedTasks.get());
             sObj.setCanceledTasks(_canceledTasks.get());
+            LinkedHashMap<String, WorkerPoolStatus> poolStatus = new LinkedHashMap<>();
+            poolStatus.put(_sharedPool.getName(), _sharedPool.getWorkerPoolStatus());
+            for (WorkerPool pool : _algorithmPools.values()){
+                poolStatus.put(pool.getName(), pool.getWorkerPoolStatus());
+            }
+            sObj.setWorkerPools(poolStatus);
             logServerStatus(sObj);
             return sObj;
         } catch(Exception ex){
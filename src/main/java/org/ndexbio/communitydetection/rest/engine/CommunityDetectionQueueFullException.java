@@ -0,0 +1,33 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ * Raised when a request cannot be accepted because too many tasks
+ * are already queued or running
+ * @author churas
+ */
+public class CommunityDetectionQueueFullException extends CommunityDetectionException {
+
+    private final long _retryAfter;
+
+    /**
+     * Constructor
+     * @param message description of error
+     * @param retryAfter suggested number of seconds caller should wait
+     *                   before submitting again
+     */
+    public CommunityDetectionQueueFullException(final String message, long retryAfter){
+        super(message);
+        _retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets suggested number of seconds caller should wait before
+     * submitting again
+     * @return
+     */
+    public long getRetryAfter(){
+        return _retryAfter;
+    }
+}
@@ -0,0 +1,26 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.Map;
+import org.ndexbio.communitydetection.rest.model.ServerStatus;
+
+/**
+ * {@link org.ndexbio.communitydetection.rest.model.ServerStatus} that also
+ * reports worker usage for each {@link WorkerPool} in the engine
+ * @author churas
+ */
+public class CommunityDetectionServerStatus extends ServerStatus {
+
+    private Map<String, WorkerPoolStatus> _workerPools;
+
+    /**
+     * Gets worker usage for each pool keyed by name of pool
+     * @return 
+     */
+    public Map<String, WorkerPoolStatus> getWorkerPools() {
+        return _workerPools;
+    }
+
+    public void setWorkerPools(Map<String, WorkerPoolStatus> workerPools) {
+        _workerPools = workerPools;
+    }
+}
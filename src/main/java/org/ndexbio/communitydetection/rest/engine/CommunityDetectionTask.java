@@ -0,0 +1,238 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ * Wraps a {@link java.util.concurrent.Callable} that generates a
+ * {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult}
+ * so it can be run by an {@link java.util.concurrent.Executor} while
+ * exposing completion via a {@link java.util.concurrent.CompletableFuture}.
+ *
+ * A task can also wrap a {@link org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRunner}
+ * in which case the thread running the task is only used to start the
+ * algorithm and is free to run other tasks while the algorithm runs.
+ *
+ * Unlike {@link java.util.concurrent.CompletableFuture#cancel(boolean)},
+ * {@link #cancel()} interrupts the thread running the task and cancels
+ * any running algorithm so any command line process is stopped.
+ *
+ * @author churas
+ */
+public class CommunityDetectionTask implements Runnable {
+
+    /**
+     * Orders tasks by ascending {@link #getPriority()} and then by the
+     * order in which they were created
+     */
+    public static final Comparator<CommunityDetectionTask> PRIORITY_ORDER =
+            Comparator.comparingLong(CommunityDetectionTask::getPriority)
+                    .thenComparingLong(CommunityDetectionTask::getSequence);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong(0);
+
+    private final String _id;
+    private final long _sequence;
+    private long _priority;
+    private String _clientId;
+    private double _cpus;
+    private long _memory;
+    private final CommunityDetectionRunner _runner;
+    private final CompletableFuture<CommunityDetectionResult> _future;
+    private Thread _runningThread;
+    private CompletableFuture<CommunityDetectionResult> _runnerFuture;
+
+    /**
+     * Constructor
+     * @param id id of task
+     * @param callable does the actual work
+     */
+    public CommunityDetectionTask(final String id,
+            final Callable<CommunityDetectionResult> callable){
+        this(id, () -> CompletableFuture.completedFuture(callable.call()));
+    }
+    
+    /**
+     * Constructor
+     * @param id id of task
+     * @param runner starts the actual work
+     */
+    public CommunityDetectionTask(final String id,
+            final CommunityDetectionRunner runner){
+        _id = id;
+        _runner = runner;
+        _future = new CompletableFuture<>();
+        _sequence = SEQUENCE.getAndIncrement();
+        _priority = System.currentTimeMillis();
+    }
+
+    public String getId(){
+        return _id;
+    }
+
+    /**
+     * Gets priority of task, tasks with lower values are run first. Defaults
+     * to time task was created in milliseconds since epoch
+     * @return
+     */
+    public long getPriority(){
+        return _priority;
+    }
+
+    /**
+     * Sets priority of task, must be set before task is submitted to
+     * a {@link WorkerPool}
+     * @param priority lower values are run first
+     */
+    public void setPriority(long priority){
+        _priority = priority;
+    }
+
+    /**
+     * Gets id of client that submitted this task
+     * @return client id or {@code null} if unknown
+     */
+    public String getClientId(){
+        return _clientId;
+    }
+
+    /**
+     * Sets id of client that submitted this task, must be set before 
+     * task is submitted to a {@link WorkerPool}
+     * @param clientId 
+     */
+    public void setClientId(final String clientId){
+        _clientId = clientId;
+    }
+
+    /**
+     * Gets number of CPUs reserved for this task while it runs
+     * @return number of CPUs, 0 or less means no reservation
+     */
+    public double getCpus(){
+        return _cpus;
+    }
+
+    /**
+     * Sets number of CPUs reserved for this task while it runs, must be set
+     * before task is submitted to a {@link WorkerPool}
+     * @param cpus 
+     */
+    public void setCpus(double cpus){
+        _cpus = cpus;
+    }
+
+    /**
+     * Gets megabytes of memory reserved for this task while it runs
+     * @return memory in megabytes, 0 or less means no reservation
+     */
+    public long getMemory(){
+        return _memory;
+    }
+
+    /**
+     * Sets megabytes of memory reserved for this task while it runs, must 
+     * be set before task is submitted to a {@link WorkerPool}
+     * @param memory 
+     */
+    public void setMemory(long memory){
+        _memory = memory;
+    }
+
+    /**
+     * Gets number denoting order this task was created relative to
+     * other tasks
+     * @return
+     */
+    public long getSequence(){
+        return _sequence;
+    }
+
+    /**
+     * Gets future that is completed when this task finishes, fails, or
+     * is canceled
+     * @return
+     */
+    public CompletableFuture<CommunityDetectionResult> getFuture(){
+        return _future;
+    }
+
+    /**
+     * Starts the {@link org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRunner}
+     * or runs the {@link java.util.concurrent.Callable} passed in via constructor
+     * arranging for {@link #getFuture()} to be completed with the result.
+     * If this task was already canceled this method just returns.
+     */
+    @Override
+    public void run() {
+        synchronized(this){
+            if (_future.isDone()){
+                return;
+            }
+            _runningThread = Thread.currentThread();
+        }
+        CompletableFuture<CommunityDetectionResult> runnerFuture = null;
+        try {
+            runnerFuture = _runner.callAsync();
+        } catch(Throwable ex){
+            _future.completeExceptionally(ex);
+        } finally {
+            synchronized(this){
+                _runningThread = null;
+                _runnerFuture = runnerFuture;
+                // clear any interrupt from cancel() so it does not leak
+                // into the next task run by this thread
+                Thread.interrupted();
+            }
+        }
+        if (runnerFuture == null){
+            return;
+        }
+        runnerFuture.whenComplete((res, ex) -> {
+            if (ex == null){
+                _future.complete(res);
+                return;
+            }
+            if (ex instanceof CompletionException && ex.getCause() != null){
+                _future.completeExceptionally(ex.getCause());
+            } else {
+                _future.completeExceptionally(ex);
+            }
+        });
+        if (_future.isCancelled()){
+            // canceled while runner was being started
+            runnerFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels this task interrupting the thread running it if it is
+     * currently running
+     * @return true if task was canceled by this call
+     */
+    public boolean cancel(){
+        synchronized(this){
+            boolean res = _future.cancel(false);
+            if (res == true && _runningThread != null){
+                _runningThread.interrupt();
+            }
+            if (res == true && _runnerFuture != null){
+                _runnerFuture.cancel(true);
+            }
+            return res;
+        }
+    }
+
+    public boolean isCancelled(){
+        return _future.isCancelled();
+    }
+
+    public boolean isDone(){
+        return _future.isDone();
+    }
+}
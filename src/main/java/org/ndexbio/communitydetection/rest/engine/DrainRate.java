@@ -0,0 +1,54 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.ArrayDeque;
+
+/**
+ * Tracks the times at which the most recent tasks finished so the rate
+ * at which a queue is being drained can be estimated.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class DrainRate {
+
+    private final int _windowSize;
+    private final ArrayDeque<Long> _finishTimes;
+
+    /**
+     * Constructor
+     * @param windowSize number of most recent finish times to keep
+     */
+    public DrainRate(int windowSize){
+        _windowSize = windowSize;
+        _finishTimes = new ArrayDeque<>();
+    }
+
+    /**
+     * Records a task finishing at {@code finishTime}
+     * @param finishTime time in milliseconds since epoch
+     */
+    public synchronized void taskFinished(long finishTime){
+        _finishTimes.add(finishTime);
+        while (_finishTimes.size() > _windowSize){
+            _finishTimes.poll();
+        }
+    }
+
+    /**
+     * Estimates how long it will take for {@code numTasks} tasks to finish
+     * based on the number of tasks that finished between the oldest
+     * recorded finish time and {@code now}
+     * @param numTasks number of tasks ahead in queue
+     * @param now current time in milliseconds since epoch
+     * @return estimated time in milliseconds or -1 if no tasks have
+     *         finished yet
+     */
+    public synchronized long getEstimatedWaitMillis(int numTasks, long now){
+        if (_finishTimes.isEmpty()){
+            return -1;
+        }
+        long elapsed = Math.max(1, now - _finishTimes.peek());
+        double tasksPerMs = (double)_finishTimes.size() / (double)elapsed;
+        return Math.round((double)numTasks / tasksPerMs);
+    }
+}
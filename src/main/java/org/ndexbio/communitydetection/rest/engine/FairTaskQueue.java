@@ -0,0 +1,102 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * Queue of {@link CommunityDetectionTask} objects that keeps a separate
+ * sub queue for each client, as denoted by {@link CommunityDetectionTask#getClientId()},
+ * and hands out tasks round robin across clients. Within a client, tasks
+ * are ordered by {@link CommunityDetectionTask#PRIORITY_ORDER}.
+ * <p>
+ * This keeps one client that submits hundreds of tasks from making every
+ * other client wait behind them.
+ * <p>
+ * This class is NOT thread safe
+ * @author churas
+ */
+public class FairTaskQueue {
+
+    private final HashMap<String, PriorityQueue<CommunityDetectionTask>> _clientQueues;
+    private final ArrayDeque<String> _clientOrder;
+    private int _size;
+
+    public FairTaskQueue(){
+        _clientQueues = new HashMap<>();
+        _clientOrder = new ArrayDeque<>();
+        _size = 0;
+    }
+
+    /**
+     * Adds task to the sub queue of its client
+     * @param task
+     */
+    public void add(CommunityDetectionTask task){
+        String clientId = getClientKey(task);
+        PriorityQueue<CommunityDetectionTask> queue = _clientQueues.get(clientId);
+        if (queue == null){
+            queue = new PriorityQueue<>(CommunityDetectionTask.PRIORITY_ORDER);
+            _clientQueues.put(clientId, queue);
+            _clientOrder.add(clientId);
+        }
+        queue.add(task);
+        _size++;
+    }
+
+    /**
+     * Gets the task {@link #poll()} would return without removing it
+     * @return task or {@code null} if queue is empty
+     */
+    public CommunityDetectionTask peek(){
+        String clientId = _clientOrder.peek();
+        if (clientId == null){
+            return null;
+        }
+        return _clientQueues.get(clientId).peek();
+    }
+
+    /**
+     * Removes highest priority task of the client whose turn it is and
+     * moves that client to the back of the line
+     * @return task or {@code null} if queue is empty
+     */
+    public CommunityDetectionTask poll(){
+        String clientId = _clientOrder.poll();
+        if (clientId == null){
+            return null;
+        }
+        PriorityQueue<CommunityDetectionTask> queue = _clientQueues.get(clientId);
+        CommunityDetectionTask task = queue.poll();
+        _size--;
+        if (queue.isEmpty()){
+            _clientQueues.remove(clientId);
+        } else {
+            _clientOrder.add(clientId);
+        }
+        return task;
+    }
+
+    public int size(){
+        return _size;
+    }
+
+    public boolean isEmpty(){
+        return _size == 0;
+    }
+
+    /**
+     * Gets number of clients with queued tasks
+     * @return
+     */
+    public int getNumberOfClients(){
+        return _clientOrder.size();
+    }
+
+    private String getClientKey(CommunityDetectionTask task){
+        if (task.getClientId() == null){
+            return "";
+        }
+        return task.getClientId();
+    }
+}
@@ -0,0 +1,28 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.Map;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ * Request to run a term mapping algorithm on every community in a
+ * hierarchy. The data is the hierarchy in COMMUNITYDETECTRESULT format
+ * and the algorithm is run once per community with the genes of that
+ * community as input
+ * @author churas
+ */
+public class FanOutRequest extends CommunityDetectionRequest {
+
+    private Map<String, String> _nodeNames;
+
+    /**
+     * Gets map of member ids in hierarchy to gene names
+     * @return map or {@code null} if member ids are used as is
+     */
+    public Map<String, String> getNodeNames() {
+        return _nodeNames;
+    }
+
+    public void setNodeNames(Map<String, String> nodeNames) {
+        _nodeNames = nodeNames;
+    }
+}
@@ -0,0 +1,39 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ * Community detection algorithm implemented in Java and run inside the
+ * server on the threads of the engine, without any process, container,
+ * or files. Implementations are found via {@link java.util.ServiceLoader}
+ * so one is registered by putting a jar on the classpath that lists it in
+ * {@code META-INF/services/org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm}.
+ * Implementations must have a public no argument constructor and be safe
+ * to run by several threads at once
+ * @author churas
+ */
+public interface InProcessAlgorithm {
+
+    /**
+     * Gets entry added to the catalog of algorithms returned by
+     * {@link CommunityDetectionEngine#getAlgorithms() }. The name of the
+     * entry is the name requests use to run this algorithm, and its custom
+     * parameters and input format are used to validate requests
+     * @return catalog entry
+     */
+    public CommunityDetectionAlgorithm getAlgorithm();
+
+    /**
+     * Runs the algorithm. Implementations should check
+     * {@link Thread#isInterrupted() } every so often and stop, by throwing
+     * {@link InterruptedException}, since that is how tasks are canceled
+     * @param request request with data and custom parameters
+     * @param listener can be notified of progress from 0 to 100
+     * @return result of algorithm
+     * @throws Exception if algorithm failed, message is returned to caller
+     */
+    public JsonNode run(CommunityDetectionRequest request, ProgressListener listener) throws Exception;
+}
@@ -0,0 +1,51 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.List;
+import java.util.Map;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ * Request to run several algorithms one after another as a single task
+ * where the output of each stage is the input of the next stage. Only the
+ * first stage needs data, the data of any later stage is ignored. A stage
+ * that runs on every community of a hierarchy output by the stage before
+ * it uses the node names, if set, to map member ids to gene names
+ * @author churas
+ */
+public class PipelineRequest {
+
+    private List<CommunityDetectionRequest> _stages;
+    private Map<String, String> _nodeNames;
+
+    public PipelineRequest(){
+    }
+
+    public PipelineRequest(List<CommunityDetectionRequest> stages){
+        _stages = stages;
+    }
+
+    /**
+     * Gets stages of pipeline in the order they are run
+     * @return 
+     */
+    public List<CommunityDetectionRequest> getStages() {
+        return _stages;
+    }
+
+    public void setStages(List<CommunityDetectionRequest> stages) {
+        _stages = stages;
+    }
+
+    /**
+     * Gets map of member ids in hierarchy to gene names used by stages
+     * that run on every community
+     * @return map or {@code null} if member ids are used as is
+     */
+    public Map<String, String> getNodeNames() {
+        return _nodeNames;
+    }
+
+    public void setNodeNames(Map<String, String> nodeNames) {
+        _nodeNames = nodeNames;
+    }
+}
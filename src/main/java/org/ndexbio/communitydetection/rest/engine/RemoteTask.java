@@ -0,0 +1,110 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Map;
+
+/**
+ * Task handed by the coordinator to a worker that contains everything
+ * the worker needs to run the algorithm via docker
+ * @author churas
+ */
+public class RemoteTask {
+
+    private String _id;
+    private String _algorithm;
+    private String _dockerImage;
+    private Map<String, String> _customParameters;
+    private JsonNode _data;
+    private long _timeOut;
+    private double _cpus;
+    private long _memory;
+    private boolean _standardInput;
+
+    public String getId() {
+        return _id;
+    }
+
+    public void setId(String id) {
+        _id = id;
+    }
+
+    public String getAlgorithm() {
+        return _algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        _algorithm = algorithm;
+    }
+
+    public String getDockerImage() {
+        return _dockerImage;
+    }
+
+    public void setDockerImage(String dockerImage) {
+        _dockerImage = dockerImage;
+    }
+
+    public Map<String, String> getCustomParameters() {
+        return _customParameters;
+    }
+
+    public void setCustomParameters(Map<String, String> customParameters) {
+        _customParameters = customParameters;
+    }
+
+    public JsonNode getData() {
+        return _data;
+    }
+
+    public void setData(JsonNode data) {
+        _data = data;
+    }
+
+    /**
+     * Gets time algorithm is allowed to run
+     * @return time in seconds
+     */
+    public long getTimeOut() {
+        return _timeOut;
+    }
+
+    public void setTimeOut(long timeOut) {
+        _timeOut = timeOut;
+    }
+
+    /**
+     * Gets number of CPUs docker container can use
+     * @return CPUs, 0 or less means no limit
+     */
+    public double getCpus() {
+        return _cpus;
+    }
+
+    public void setCpus(double cpus) {
+        _cpus = cpus;
+    }
+
+    /**
+     * Gets memory docker container can use
+     * @return megabytes, 0 or less means no limit
+     */
+    public long getMemory() {
+        return _memory;
+    }
+
+    public void setMemory(long memory) {
+        _memory = memory;
+    }
+
+    /**
+     * Denotes whether data is streamed to container over standard input
+     * @return {@code true} if data is streamed
+     */
+    public boolean isStandardInput() {
+        return _standardInput;
+    }
+
+    public void setStandardInput(boolean standardInput) {
+        _standardInput = standardInput;
+    }
+}
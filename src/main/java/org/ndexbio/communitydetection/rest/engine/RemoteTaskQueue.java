@@ -0,0 +1,326 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds {@link RemoteTask} objects on the coordinator until a worker claims
+ * them. A claimed task is leased to the worker that claimed it and the worker
+ * must renew the lease until it reports the result. If the lease lapses, such
+ * as when the worker dies, the task is put back at the front of the queue so
+ * another worker can claim it. A task whose lease lapses
+ * {@value #MAX_ATTEMPTS} times fails.
+ * <p>
+ * Canceling the future returned by {@link #submit(org.ndexbio.communitydetection.rest.engine.RemoteTask) }
+ * removes the task and the next renewal by the worker running it fails, which
+ * tells the worker to stop the task. The same happens when a task submitted
+ * with a timeout is not finished in time, in which case it fails with
+ * {@value #TIMEOUT_MESSAGE} like a task run locally.
+ * <p>
+ * Lapsed leases are found whenever a worker claims a task and, once
+ * {@link #start(long, java.util.concurrent.TimeUnit) } is called, on a
+ * background thread so tasks are not stuck with a dead worker while no
+ * other worker is claiming tasks.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class RemoteTaskQueue {
+
+    static Logger _logger = LoggerFactory.getLogger(RemoteTaskQueue.class);
+
+    /**
+     * Number of times a task can be claimed before it fails
+     */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Message of result when task is not finished within its timeout
+     */
+    public static final String TIMEOUT_MESSAGE = "Runtime limit exceeded";
+
+    private static class Entry {
+        private final RemoteTask _task;
+        private final CompletableFuture<CommunityDetectionResult> _future;
+        private String _workerId;
+        private long _leaseExpires;
+        private int _attempts;
+
+        Entry(RemoteTask task){
+            _task = task;
+            _future = new CompletableFuture<>();
+            _attempts = 0;
+        }
+    }
+
+    private final long _leaseMillis;
+    private final LinkedList<Entry> _pending;
+    private final LinkedHashMap<String, Entry> _claimed;
+    private final ScheduledExecutorService _scheduler;
+
+    /**
+     * Constructor
+     * @param leaseMillis time in milliseconds a worker has to renew its
+     *                    lease on a task before the task is given to
+     *                    another worker
+     */
+    public RemoteTaskQueue(long leaseMillis){
+        _leaseMillis = leaseMillis;
+        _pending = new LinkedList<>();
+        _claimed = new LinkedHashMap<>();
+        _scheduler = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread t = new Thread(r, "remote-task-queue");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Looks for lapsed leases every {@code interval} in the background
+     * @param interval time between looks, if 0 or less nothing is scheduled
+     * @param unit unit of {@code interval}
+     */
+    public void start(long interval, TimeUnit unit){
+        if (interval <= 0){
+            return;
+        }
+        _scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                requeueExpiredLeases();
+            } catch(RuntimeException re){
+                // never let an error stop the scheduled runs
+                _logger.error("Error looking for lapsed leases", re);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops background thread
+     */
+    public void shutdown(){
+        _scheduler.shutdownNow();
+    }
+
+    /**
+     * Adds {@code task} to end of queue
+     * @param task task to run
+     * @return future completed with result reported by worker. Canceling
+     *         the future removes the task
+     */
+    public CompletableFuture<CommunityDetectionResult> submit(RemoteTask task){
+        return submit(task, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds {@code task} to end of queue
+     * @param task task to run
+     * @param timeOut task fails if not finished within this time, which
+     *                includes time spent waiting to be claimed, 0 or less
+     *                means no limit
+     * @param unit unit of {@code timeOut}
+     * @return future completed with result reported by worker. Canceling
+     *         the future removes the task
+     */
+    public CompletableFuture<CommunityDetectionResult> submit(RemoteTask task,
+            long timeOut, TimeUnit unit){
+        Entry entry = new Entry(task);
+        entry._future.whenComplete((res, ex) -> {
+            if (entry._future.isCancelled()){
+                remove(entry);
+            }
+        });
+        if (timeOut > 0){
+            ScheduledFuture<?> timer = _scheduler.schedule(() -> timeOut(entry),
+                    timeOut, unit);
+            entry._future.whenComplete((res, ex) -> timer.cancel(false));
+        }
+        synchronized(this){
+            _pending.add(entry);
+            notifyAll();
+        }
+        return entry._future;
+    }
+
+    /**
+     * Claims next task in queue for {@code workerId}, waiting up to
+     * {@code waitMillis} for a task to be submitted
+     * @param workerId id of worker
+     * @param waitMillis maximum time to wait in milliseconds
+     * @return task or {@code null} if none were available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public RemoteTask claim(final String workerId, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        List<Entry> failed = new LinkedList<>();
+        try {
+            synchronized(this){
+                while (true){
+                    long now = System.currentTimeMillis();
+                    requeueExpiredLeases(now, failed);
+                    Entry entry = _pending.poll();
+                    if (entry != null){
+                        entry._workerId = workerId;
+                        entry._leaseExpires = now + _leaseMillis;
+                        entry._attempts++;
+                        _claimed.put(entry._task.getId(), entry);
+                        _logger.debug("Task " + entry._task.getId() + " claimed by " + workerId);
+                        return entry._task;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0){
+                        return null;
+                    }
+                    // wake up in time to requeue tasks whose lease lapses
+                    wait(Math.min(remaining, Math.max(1, _leaseMillis)));
+                }
+            }
+        } finally {
+            failLostTasks(failed);
+        }
+    }
+
+    /**
+     * Renews lease {@code workerId} has on task {@code taskId}
+     * @param taskId id of task
+     * @param workerId id of worker
+     * @return true if renewed, false if task was canceled, finished, its
+     *         lease lapsed, or is no longer leased to {@code workerId} in
+     *         which case the worker should stop running it
+     */
+    public synchronized boolean renew(final String taskId, final String workerId){
+        Entry entry = _claimed.get(taskId);
+        long now = System.currentTimeMillis();
+        if (entry == null || entry._workerId.equals(workerId) == false
+                || entry._leaseExpires <= now){
+            return false;
+        }
+        entry._leaseExpires = now + _leaseMillis;
+        return true;
+    }
+
+    /**
+     * Completes task {@code taskId} with {@code cdr}
+     * @param taskId id of task
+     * @param workerId id of worker reporting result
+     * @param cdr result
+     * @return true if result was accepted, false if the task was canceled,
+     *         already finished, or is not leased to {@code workerId}
+     */
+    public boolean complete(final String taskId, final String workerId,
+            final CommunityDetectionResult cdr){
+        Entry entry;
+        synchronized(this){
+            entry = _claimed.get(taskId);
+            if (entry == null || entry._workerId.equals(workerId) == false){
+                return false;
+            }
+            _claimed.remove(taskId);
+        }
+        return entry._future.complete(cdr);
+    }
+
+    /**
+     * Gets number of tasks waiting to be claimed
+     * @return
+     */
+    public synchronized int getPendingTasks(){
+        return _pending.size();
+    }
+
+    /**
+     * Gets number of tasks claimed by workers
+     * @return
+     */
+    public synchronized int getClaimedTasks(){
+        return _claimed.size();
+    }
+
+    /**
+     * Puts tasks whose lease lapsed back at the front of the queue and
+     * fails those that were lost too many times
+     */
+    protected void requeueExpiredLeases(){
+        List<Entry> failed = new LinkedList<>();
+        synchronized(this){
+            int pending = _pending.size();
+            requeueExpiredLeases(System.currentTimeMillis(), failed);
+            if (_pending.size() > pending){
+                notifyAll();
+            }
+        }
+        failLostTasks(failed);
+    }
+
+    /**
+     * Puts tasks whose lease lapsed back at the front of the queue, in the
+     * order they were claimed, unless they have been claimed
+     * {@value #MAX_ATTEMPTS} times in which case they are added to
+     * {@code failed}. Caller must hold lock on this object
+     * @param now current time in milliseconds
+     * @param failed tasks that should fail
+     */
+    private void requeueExpiredLeases(long now, List<Entry> failed){
+        LinkedList<Entry> expired = new LinkedList<>();
+        Iterator<Map.Entry<String, Entry>> itr = _claimed.entrySet().iterator();
+        while (itr.hasNext()){
+            Entry entry = itr.next().getValue();
+            if (entry._leaseExpires > now){
+                continue;
+            }
+            itr.remove();
+            _logger.warn("Lease on task " + entry._task.getId() + " held by "
+                    + entry._workerId + " expired");
+            if (entry._attempts >= MAX_ATTEMPTS){
+                failed.add(entry);
+            } else {
+                expired.add(entry);
+            }
+        }
+        while (expired.isEmpty() == false){
+            _pending.addFirst(expired.removeLast());
+        }
+    }
+
+    private void failLostTasks(List<Entry> failed){
+        for (Entry entry : failed){
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setId(entry._task.getId());
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage("Task was lost by workers " + entry._attempts + " times");
+            cdr.setProgress(100);
+            entry._future.complete(cdr);
+        }
+    }
+
+    /**
+     * Removes task of {@code entry}, so the worker running it is told to
+     * stop on its next renewal, and fails it
+     */
+    private void timeOut(Entry entry){
+        remove(entry);
+        CommunityDetectionResult cdr = new CommunityDetectionResult();
+        cdr.setId(entry._task.getId());
+        cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+        cdr.setMessage(TIMEOUT_MESSAGE);
+        cdr.setProgress(100);
+        if (entry._future.complete(cdr)){
+            _logger.error("Task " + entry._task.getId() + " exceeded timeout");
+        }
+    }
+
+    private synchronized void remove(Entry entry){
+        _pending.remove(entry);
+        _claimed.remove(entry._task.getId(), entry);
+    }
+}
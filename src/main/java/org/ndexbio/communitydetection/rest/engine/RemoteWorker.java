@@ -0,0 +1,247 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.ndexbio.communitydetection.rest.engine.util.CoordinatorClient;
+import org.ndexbio.communitydetection.rest.engine.util.DockerCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.DockerContainerReaper;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Claims tasks from a coordinator via a {@link CoordinatorClient}, runs
+ * them on this node with {@link DockerCommunityDetectionRunner}, and
+ * reports the results back to the coordinator. Each thread runs one task
+ * at a time and renews the lease on its task while it runs. If the
+ * coordinator refuses to renew the lease, because the task was deleted or
+ * given to another worker, the task is stopped.
+ * <p>
+ * Task directories on this node are removed once the result is reported
+ * since the coordinator keeps the result. Containers of stopped tasks, and
+ * those left when the worker last stopped, are removed by a
+ * {@link DockerContainerReaper}
+ * @author churas
+ */
+public class RemoteWorker implements Runnable {
+
+    static Logger _logger = LoggerFactory.getLogger(RemoteWorker.class);
+
+    /**
+     * Time in milliseconds to wait before contacting the coordinator
+     * again after an error
+     */
+    public static final long RETRY_DELAY = 5000;
+
+    /**
+     * Number of times to try reporting a result to the coordinator
+     */
+    public static final int MAX_REPORT_ATTEMPTS = 3;
+
+    private final String _workerId;
+    private final CoordinatorClient _client;
+    private final int _numThreads;
+    private final String _taskDir;
+    private final String _dockerCmd;
+    private final long _renewInterval;
+    private final long _claimWait;
+    private final CountDownLatch _shutdownLatch;
+    private final ExecutorService _es;
+    private final ScheduledExecutorService _scheduler;
+    private final DockerContainerReaper _containerReaper;
+    private volatile boolean _shutdown;
+
+    /**
+     * Constructor
+     * @param workerId id of this worker, must be unique across workers
+     * @param client used to talk to coordinator
+     * @param numThreads number of tasks to run at once
+     * @param taskDir directory where tasks are run on this node
+     * @param dockerCmd command to run docker
+     * @param renewInterval time in milliseconds between lease renewals which
+     *                      should be well under the lease time of the coordinator
+     * @param claimWait time in milliseconds coordinator should wait for a
+     *                  task before replying that there are none
+     */
+    public RemoteWorker(final String workerId, CoordinatorClient client,
+            int numThreads, final String taskDir, final String dockerCmd,
+            long renewInterval, long claimWait){
+        _workerId = workerId;
+        _client = client;
+        _numThreads = Math.max(1, numThreads);
+        _taskDir = taskDir;
+        _dockerCmd = dockerCmd;
+        _renewInterval = Math.max(1, renewInterval);
+        _claimWait = claimWait;
+        _shutdownLatch = new CountDownLatch(1);
+        _es = Executors.newFixedThreadPool(_numThreads);
+        _scheduler = Executors.newSingleThreadScheduledExecutor();
+        _containerReaper = new DockerContainerReaper(dockerCmd,
+                new File(taskDir).getAbsolutePath());
+        _shutdown = false;
+    }
+
+    public String getWorkerId(){
+        return _workerId;
+    }
+
+    /**
+     * Claims and runs tasks until {@link #shutdown() } is called
+     */
+    @Override
+    public void run() {
+        _logger.info("Worker " + _workerId + " running " + _numThreads + " tasks at once");
+        // containers left by tasks running when worker last stopped
+        _containerReaper.reapOrphansAsync();
+        _containerReaper.start(DockerContainerReaper.DEFAULT_REAP_INTERVAL, TimeUnit.SECONDS);
+        for (int i = 0; i < _numThreads; i++){
+            _es.execute(() -> claimTasks());
+        }
+        try {
+            _shutdownLatch.await();
+        } catch(InterruptedException ie){
+            _logger.info("Worker " + _workerId + " interrupted");
+        }
+        _es.shutdownNow();
+        _scheduler.shutdownNow();
+        _containerReaper.shutdown();
+        _logger.info("Worker " + _workerId + " exiting");
+    }
+
+    /**
+     * Tells worker to stop claiming tasks and stops any running tasks
+     */
+    public void shutdown(){
+        _shutdown = true;
+        _shutdownLatch.countDown();
+    }
+
+    private void claimTasks(){
+        while (_shutdown == false){
+            try {
+                RemoteTask task = _client.claim(_workerId, _claimWait);
+                if (task != null){
+                    runTask(task);
+                }
+            } catch(InterruptedException ie){
+                return;
+            } catch(Exception ex){
+                if (_shutdown == true){
+                    return;
+                }
+                _logger.error("Worker " + _workerId + " caught error, will retry in "
+                        + RETRY_DELAY + " ms", ex);
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch(InterruptedException ie){
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs {@code task} and reports its result to the coordinator
+     * @param task task to run
+     * @throws InterruptedException if interrupted while task was running
+     */
+    protected void runTask(RemoteTask task) throws InterruptedException {
+        _logger.info("Worker " + _workerId + " running task " + task.getId());
+        try {
+            CommunityDetectionResult cdr = runTaskLocally(task);
+            if (cdr != null){
+                reportResult(task, cdr);
+            }
+        } finally {
+            FileUtils.deleteQuietly(new File(_taskDir + File.separator + task.getId()));
+        }
+    }
+
+    /**
+     * Runs {@code task} via docker renewing the lease on it until it finishes
+     * @param task task to run
+     * @return result or {@code null} if task was stopped because the
+     *         coordinator refused to renew the lease
+     * @throws InterruptedException if interrupted while task was running
+     */
+    private CommunityDetectionResult runTaskLocally(RemoteTask task) throws InterruptedException {
+        CompletableFuture<CommunityDetectionResult> future;
+        try {
+            CommunityDetectionRequest request = new CommunityDetectionRequest();
+            request.setAlgorithm(task.getAlgorithm());
+            request.setCustomParameters(task.getCustomParameters());
+            request.setData(task.getData());
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner(task.getId(),
+                    request, System.currentTimeMillis(), _taskDir, _dockerCmd,
+                    task.getDockerImage(), task.getCustomParameters(),
+                    task.getTimeOut(), TimeUnit.SECONDS, task.isStandardInput());
+            runner.setResourceLimits(task.getCpus(), task.getMemory());
+            runner.setContainerReaper(_containerReaper);
+            future = runner.callAsync();
+        } catch(Exception ex){
+            _logger.error("Unable to start task " + task.getId(), ex);
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage("Worker " + _workerId + " unable to start task: " + ex.getMessage());
+            cdr.setProgress(100);
+            return cdr;
+        }
+        ScheduledFuture<?> renewal = _scheduler.scheduleWithFixedDelay(() -> renewLease(task, future),
+                _renewInterval, _renewInterval, TimeUnit.MILLISECONDS);
+        try {
+            return future.get();
+        } catch(CancellationException ce){
+            _logger.info("Task " + task.getId() + " stopped since it is no longer leased to "
+                    + _workerId);
+            return null;
+        } catch(ExecutionException ee){
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage("Received error trying to run task: " + ee.getCause().getMessage());
+            cdr.setProgress(100);
+            return cdr;
+        } catch(InterruptedException ie){
+            future.cancel(true);
+            throw ie;
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    private void renewLease(RemoteTask task, CompletableFuture<CommunityDetectionResult> future){
+        try {
+            if (_client.renew(task.getId(), _workerId) == false){
+                future.cancel(true);
+            }
+        } catch(Exception ex){
+            // lease lapses if coordinator stays unreachable
+            _logger.warn("Unable to renew lease on task " + task.getId() + ": " + ex.getMessage());
+        }
+    }
+
+    private void reportResult(RemoteTask task, CommunityDetectionResult cdr) throws InterruptedException {
+        cdr.setId(task.getId());
+        for (int i = 1; i <= MAX_REPORT_ATTEMPTS; i++){
+            try {
+                if (_client.complete(task.getId(), _workerId, cdr) == false){
+                    _logger.info("Coordinator no longer wanted result of task " + task.getId());
+                }
+                return;
+            } catch(Exception ex){
+                _logger.error("Attempt " + i + " to report result of task "
+                        + task.getId() + " failed", ex);
+            }
+            Thread.sleep(RETRY_DELAY);
+        }
+    }
+}
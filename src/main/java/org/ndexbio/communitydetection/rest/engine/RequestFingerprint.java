@@ -0,0 +1,155 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.output.NullOutputStream;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ * Generates a fingerprint of a {@link CommunityDetectionRequest} from its
+ * algorithm, custom parameters, and data along with the docker image
+ * that runs the algorithm. Two requests with the same fingerprint produce
+ * the same result. Custom parameters, and the fields of every json object
+ * in the data, are sorted by name so their order does not matter.
+ * @author churas
+ */
+public class RequestFingerprint {
+
+    /**
+     * Digest algorithm used to generate fingerprint
+     */
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final byte SEPARATOR = 0;
+
+    /**
+     * Written in place of a {@code null} value so it differs from an
+     * empty string
+     */
+    private static final byte NULL_MARKER = 1;
+
+    /**
+     * Written before every value that is not {@code null}
+     */
+    private static final byte VALUE_MARKER = 2;
+
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory();
+
+    /**
+     * Generates fingerprint of {@code request} without a docker image
+     * @param request request to fingerprint
+     * @return fingerprint as lower case hex string
+     * @throws CommunityDetectionException if request is {@code null} or
+     *         there was an error generating the fingerprint
+     */
+    public static String getFingerprint(CommunityDetectionRequest request) throws CommunityDetectionException {
+        return getFingerprint(request, null);
+    }
+    
+    /**
+     * Generates fingerprint of {@code request}. The data is streamed into
+     * the digest in canonical form, with the fields of each object sorted
+     * by name, so no copy of it is made
+     * @param request request to fingerprint
+     * @param dockerImage digest or name of docker image that runs the
+     *                    algorithm, can be {@code null}
+     * @return fingerprint as lower case hex string
+     * @throws CommunityDetectionException if request is {@code null} or
+     *         there was an error generating the fingerprint
+     */
+    public static String getFingerprint(CommunityDetectionRequest request,
+            final String dockerImage) throws CommunityDetectionException {
+        if (request == null){
+            throw new CommunityDetectionException("Request is null");
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            update(digest, request.getAlgorithm());
+            update(digest, dockerImage);
+            if (request.getCustomParameters() != null){
+                TreeMap<String, String> sortedParams = new TreeMap<>();
+                for (Map.Entry<String, String> entry : request.getCustomParameters().entrySet()){
+                    sortedParams.put(entry.getKey() == null ? "" : entry.getKey(),
+                            entry.getValue());
+                }
+                for (Map.Entry<String, String> entry : sortedParams.entrySet()){
+                    update(digest, entry.getKey());
+                    update(digest, entry.getValue());
+                }
+            }
+            digest.update(SEPARATOR);
+            if (request.getData() != null){
+                try (OutputStream out = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest);
+                        JsonGenerator gen = JSON_FACTORY.createGenerator(out)){
+                    writeCanonical(gen, request.getData());
+                }
+            }
+            return toHex(digest.digest());
+        } catch(NoSuchAlgorithmException | IOException ex){
+            throw new CommunityDetectionException("Unable to fingerprint request: "
+                    + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes {@code node} to {@code gen} with the fields of every object
+     * sorted by name
+     */
+    private static void writeCanonical(JsonGenerator gen, final JsonNode node) throws IOException {
+        if (node.isObject()){
+            List<String> names = new ArrayList<>(node.size());
+            Iterator<String> itr = node.fieldNames();
+            while (itr.hasNext()){
+                names.add(itr.next());
+            }
+            Collections.sort(names);
+            gen.writeStartObject();
+            for (String name : names){
+                gen.writeFieldName(name);
+                writeCanonical(gen, node.get(name));
+            }
+            gen.writeEndObject();
+        } else if (node.isArray()){
+            gen.writeStartArray();
+            for (JsonNode element : node){
+                writeCanonical(gen, element);
+            }
+            gen.writeEndArray();
+        } else {
+            gen.writeTree(node);
+        }
+    }
+
+    private static void update(MessageDigest digest, final String val){
+        if (val == null){
+            digest.update(NULL_MARKER);
+            return;
+        }
+        digest.update(VALUE_MARKER);
+        digest.update(val.getBytes(StandardCharsets.UTF_8));
+        digest.update(SEPARATOR);
+    }
+
+    private static String toHex(byte[] bytes){
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes){
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
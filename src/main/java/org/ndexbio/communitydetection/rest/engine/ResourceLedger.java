@@ -0,0 +1,122 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of CPUs and memory reserved by running {@link CommunityDetectionTask}
+ * objects so the sum of reservations never exceeds what the host has. Tasks
+ * reserving more than the host has are limited to what the host has, which
+ * means they only run when nothing else holds a reservation.
+ * <p>
+ * Every {@link WorkerPool} using this ledger is told to dispatch tasks
+ * whenever a reservation is released since a task waiting in one pool
+ * may be able to start due to a task finishing in another pool.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class ResourceLedger {
+
+    /**
+     * Tolerance used when comparing CPU reservations to avoid
+     * floating point rounding errors
+     */
+    private static final double CPU_TOLERANCE = 0.000001;
+
+    private final double _cpus;
+    private final long _memory;
+    private double _reservedCpus;
+    private long _reservedMemory;
+    private final List<WorkerPool> _pools;
+
+    /**
+     * Constructor
+     * @param cpus number of CPUs on host, if 0 or less CPUs are not tracked
+     * @param memory megabytes of memory on host, if 0 or less memory is not tracked
+     */
+    public ResourceLedger(double cpus, long memory){
+        _cpus = cpus;
+        _memory = memory;
+        _reservedCpus = 0;
+        _reservedMemory = 0;
+        _pools = new CopyOnWriteArrayList<>();
+    }
+
+    public double getCpus(){
+        return _cpus;
+    }
+
+    public long getMemory(){
+        return _memory;
+    }
+
+    public synchronized double getReservedCpus(){
+        return _reservedCpus;
+    }
+
+    public synchronized long getReservedMemory(){
+        return _reservedMemory;
+    }
+
+    /**
+     * Adds pool that should be told to dispatch tasks when
+     * reservations are released
+     * @param pool
+     */
+    protected void addWorkerPool(WorkerPool pool){
+        _pools.add(pool);
+    }
+
+    /**
+     * Reserves CPUs and memory requested by {@code task} if they are available
+     * @param task
+     * @return true if reservation was made, false otherwise
+     */
+    public synchronized boolean tryReserve(CommunityDetectionTask task){
+        double cpus = getCpuReservation(task);
+        long memory = getMemoryReservation(task);
+        if (cpus > 0 && _reservedCpus > 0 && _reservedCpus + cpus > _cpus + CPU_TOLERANCE){
+            return false;
+        }
+        if (memory > 0 && _reservedMemory > 0 && _reservedMemory + memory > _memory){
+            return false;
+        }
+        _reservedCpus += cpus;
+        _reservedMemory += memory;
+        return true;
+    }
+
+    /**
+     * Releases reservation made by {@link #tryReserve(org.ndexbio.communitydetection.rest.engine.CommunityDetectionTask) }
+     * and then has every pool using this ledger dispatch tasks. This
+     * method must not be called while holding a lock on a {@link WorkerPool}
+     * @param task
+     */
+    public void release(CommunityDetectionTask task){
+        synchronized(this){
+            _reservedCpus -= getCpuReservation(task);
+            if (_reservedCpus < CPU_TOLERANCE){
+                _reservedCpus = 0;
+            }
+            _reservedMemory = Math.max(0, _reservedMemory - getMemoryReservation(task));
+        }
+        for (WorkerPool pool : _pools){
+            pool.dispatch();
+        }
+    }
+
+    private double getCpuReservation(CommunityDetectionTask task){
+        if (_cpus <= 0 || task.getCpus() <= 0){
+            return 0;
+        }
+        return Math.min(task.getCpus(), _cpus);
+    }
+
+    private long getMemoryReservation(CommunityDetectionTask task){
+        if (_memory <= 0 || task.getMemory() <= 0){
+            return 0;
+        }
+        return Math.min(task.getMemory(), _memory);
+    }
+}
@@ -0,0 +1,238 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores results of completed tasks on disk keyed by the fingerprint of
+ * the request generated by {@link RequestFingerprint} so identical requests
+ * can be answered without running the algorithm again. Each entry is a file
+ * named {@code <key>}{@value #ENTRY_SUFFIX} in the cache directory containing
+ * the result json.
+ * <p>
+ * Entries are evicted least recently used first when there are more than
+ * the maximum number of entries or their total size exceeds the maximum
+ * number of bytes. Entries older then the maximum age are evicted when found.
+ * When loaded from disk, entries are ordered by the time they were written.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class ResultCache {
+
+    static Logger _logger = LoggerFactory.getLogger(ResultCache.class);
+
+    /**
+     * Suffix of files containing cached results
+     */
+    public static final String ENTRY_SUFFIX = ".json";
+
+    /**
+     * Suffix of files being written
+     */
+    public static final String TMP_SUFFIX = ".tmp";
+
+    private static class CacheEntry {
+        private final long _size;
+        private final long _createTime;
+
+        CacheEntry(long size, long createTime){
+            _size = size;
+            _createTime = createTime;
+        }
+    }
+
+    private final File _cacheDir;
+    private final int _maxEntries;
+    private final long _maxBytes;
+    private final long _maxAge;
+    private final LinkedHashMap<String, CacheEntry> _entries;
+    private final ObjectMapper _mapper;
+    private long _totalBytes;
+
+    /**
+     * Constructor, call {@link #load()} to pick up entries already on disk
+     * @param cacheDir directory where results are stored
+     * @param maxEntries maximum number of entries, 0 or less means no limit
+     * @param maxBytes maximum total size of entries in bytes, 0 or less means no limit
+     * @param maxAge maximum age of entries in milliseconds, 0 or less means no limit
+     */
+    public ResultCache(File cacheDir, int maxEntries, long maxBytes, long maxAge){
+        _cacheDir = cacheDir;
+        _maxEntries = maxEntries;
+        _maxBytes = maxBytes;
+        _maxAge = maxAge;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+        _mapper = new ObjectMapper();
+        _totalBytes = 0;
+    }
+
+    /**
+     * Creates cache directory if needed and loads any entries in it,
+     * removing partially written entries and applying eviction
+     * @throws IOException if cache directory could not be created
+     */
+    public synchronized void load() throws IOException {
+        if (_cacheDir.isDirectory() == false && _cacheDir.mkdirs() == false){
+            throw new IOException("Unable to create directory: "
+                    + _cacheDir.getAbsolutePath());
+        }
+        _entries.clear();
+        _totalBytes = 0;
+        File[] files = _cacheDir.listFiles();
+        if (files == null){
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files){
+            String name = f.getName();
+            if (name.endsWith(TMP_SUFFIX)){
+                f.delete();
+                continue;
+            }
+            if (f.isFile() == false || name.endsWith(ENTRY_SUFFIX) == false){
+                continue;
+            }
+            String key = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+            _entries.put(key, new CacheEntry(f.length(), f.lastModified()));
+            _totalBytes += f.length();
+        }
+        evict(System.currentTimeMillis());
+        _logger.info("Loaded " + _entries.size() + " entries (" + _totalBytes
+                + " bytes) from result cache " + _cacheDir.getAbsolutePath());
+    }
+
+    /**
+     * Gets number of entries in cache
+     * @return
+     */
+    public synchronized int getNumberOfEntries(){
+        return _entries.size();
+    }
+
+    /**
+     * Gets total size of entries in cache
+     * @return size in bytes
+     */
+    public synchronized long getTotalBytes(){
+        return _totalBytes;
+    }
+
+    /**
+     * Gets cached result for {@code key}
+     * @param key fingerprint of request
+     * @param now current time in milliseconds since epoch
+     * @return result or {@code null} if not in cache or expired
+     */
+    public JsonNode get(final String key, long now){
+        synchronized(this){
+            CacheEntry entry = _entries.get(key);
+            if (entry == null){
+                return null;
+            }
+            if (isExpired(entry, now)){
+                remove(key);
+                return null;
+            }
+        }
+        try {
+            return _mapper.readTree(getEntryFile(key));
+        } catch(IOException io){
+            // entry could have been evicted after lock was released
+            _logger.debug("Unable to read result cache entry " + key, io);
+            synchronized(this){
+                remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds result of {@code cdr} to cache if its status is
+     * {@link CommunityDetectionResult#COMPLETE_STATUS}. Any errors
+     * are logged
+     * @param key fingerprint of request
+     * @param cdr result of task
+     * @param now current time in milliseconds since epoch
+     */
+    public void put(final String key, CommunityDetectionResult cdr, long now){
+        if (cdr == null || cdr.getResult() == null
+                || CommunityDetectionResult.COMPLETE_STATUS.equals(cdr.getStatus()) == false){
+            return;
+        }
+        File entryFile = getEntryFile(key);
+        File tmpFile = new File(_cacheDir, key + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        try {
+            _mapper.writeValue(tmpFile, cdr.getResult());
+            long size = tmpFile.length();
+            if (_maxBytes > 0 && size > _maxBytes){
+                _logger.debug("Result for " + key + " is too large to cache");
+                tmpFile.delete();
+                return;
+            }
+            synchronized(this){
+                Files.move(tmpFile.toPath(), entryFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                CacheEntry old = _entries.put(key, new CacheEntry(size, now));
+                if (old != null){
+                    _totalBytes -= old._size;
+                }
+                _totalBytes += size;
+                evict(now);
+            }
+        } catch(IOException io){
+            _logger.error("Unable to add " + key + " to result cache", io);
+            tmpFile.delete();
+        }
+    }
+
+    private boolean isExpired(CacheEntry entry, long now){
+        return _maxAge > 0 && now - entry._createTime > _maxAge;
+    }
+
+    /**
+     * Removes expired entries and then least recently used entries until
+     * limits on number of entries and total size are met. Caller must
+     * hold lock on this object
+     * @param now current time in milliseconds since epoch
+     */
+    private void evict(long now){
+        Iterator<Map.Entry<String, CacheEntry>> itr = _entries.entrySet().iterator();
+        while (itr.hasNext()){
+            Map.Entry<String, CacheEntry> entry = itr.next();
+            boolean overLimit = (_maxEntries > 0 && _entries.size() > _maxEntries)
+                    || (_maxBytes > 0 && _totalBytes > _maxBytes);
+            if (overLimit == false && isExpired(entry.getValue(), now) == false){
+                continue;
+            }
+            itr.remove();
+            _totalBytes -= entry.getValue()._size;
+            getEntryFile(entry.getKey()).delete();
+        }
+    }
+
+    private void remove(final String key){
+        CacheEntry entry = _entries.remove(key);
+        if (entry != null){
+            _totalBytes -= entry._size;
+            getEntryFile(key).delete();
+        }
+    }
+
+    private File getEntryFile(final String key){
+        return new File(_cacheDir, key + ENTRY_SUFFIX);
+    }
+}
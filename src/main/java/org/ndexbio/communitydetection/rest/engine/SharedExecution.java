@@ -0,0 +1,97 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Tracks the ids of all requests that are waiting on a single run of
+ * an algorithm. The first request creates the run and identical requests
+ * that arrive while it is queued or running are attached to it.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class SharedExecution {
+
+    private final String _fingerprint;
+    private final String _taskId;
+    private final LinkedHashSet<String> _ids;
+    private boolean _finished;
+
+    /**
+     * Constructor
+     * @param fingerprint fingerprint of request as generated by
+     *                    {@link RequestFingerprint#getFingerprint(org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest) }
+     * @param taskId id of task that runs the algorithm, this id is attached
+     */
+    public SharedExecution(final String fingerprint, final String taskId){
+        _fingerprint = fingerprint;
+        _taskId = taskId;
+        _ids = new LinkedHashSet<>();
+        _ids.add(taskId);
+        _finished = false;
+    }
+
+    public String getFingerprint(){
+        return _fingerprint;
+    }
+
+    /**
+     * Gets id of task that runs the algorithm
+     * @return
+     */
+    public String getTaskId(){
+        return _taskId;
+    }
+
+    /**
+     * Attaches {@code id} so it gets the result of this execution
+     * @param id
+     * @return true if attached, false if execution already finished
+     */
+    public synchronized boolean attach(final String id){
+        if (_finished == true){
+            return false;
+        }
+        _ids.add(id);
+        return true;
+    }
+
+    /**
+     * Detaches {@code id} so it no longer gets the result of this execution
+     * @param id
+     * @return true if no ids remain attached meaning the execution can
+     *         be canceled
+     */
+    public synchronized boolean detach(final String id){
+        _ids.remove(id);
+        return _ids.isEmpty();
+    }
+
+    /**
+     * Denotes if {@code id} is attached
+     * @param id
+     * @return true if attached
+     */
+    public synchronized boolean isAttached(final String id){
+        return _ids.contains(id);
+    }
+
+    /**
+     * Gets ids attached to this execution
+     * @return copy of attached ids
+     */
+    public synchronized List<String> getIds(){
+        return new ArrayList<>(_ids);
+    }
+
+    /**
+     * Marks execution finished so no more ids can be attached
+     * @return ids attached at the time execution finished
+     */
+    public synchronized List<String> finish(){
+        _finished = true;
+        return new ArrayList<>(_ids);
+    }
+}
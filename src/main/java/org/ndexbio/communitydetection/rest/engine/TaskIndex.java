@@ -0,0 +1,454 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory index of tasks whose result is in the task directory so the
+ * status of a task can be returned, and unknown tasks rejected, without
+ * reading {@value CommunityDetectionEngineImpl#CDRESULT_JSON_FILE} from disk.
+ * <p>
+ * The index is built by reading the result file of every task directory
+ * in parallel and is saved to {@value #SNAPSHOT_FILE} in the task directory.
+ * When a snapshot exists, {@link #load() } only reads the result files of
+ * task directories not in the snapshot and drops tasks whose directories
+ * are gone, so a snapshot left by a server that did not shut down cleanly
+ * is still correct once loaded.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class TaskIndex {
+
+    static Logger _logger = LoggerFactory.getLogger(TaskIndex.class);
+
+    /**
+     * Name of snapshot file in task directory
+     */
+    public static final String SNAPSHOT_FILE = "taskindex.snapshot";
+
+    /**
+     * Default number of threads used to read result files
+     */
+    public static final int DEFAULT_THREADS = 8;
+
+    private static final int SNAPSHOT_MAGIC = 0x43445458;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int NO_STRING = -1;
+
+    /**
+     * Compact summary of a task
+     */
+    public static class Entry {
+        private final String _id;
+        private final String _status;
+        private final String _message;
+        private final int _progress;
+        private final long _startTime;
+        private final long _wallTime;
+        private final long _resultSize;
+
+        Entry(final String id, final String status, final String message,
+                int progress, long startTime, long wallTime, long resultSize){
+            _id = id;
+            _status = status;
+            _message = message;
+            _progress = progress;
+            _startTime = startTime;
+            _wallTime = wallTime;
+            _resultSize = resultSize;
+        }
+
+        public String getId() {
+            return _id;
+        }
+
+        public String getStatus() {
+            return _status;
+        }
+
+        public String getMessage() {
+            return _message;
+        }
+
+        public int getProgress() {
+            return _progress;
+        }
+
+        public long getStartTime() {
+            return _startTime;
+        }
+
+        public long getWallTime() {
+            return _wallTime;
+        }
+
+        /**
+         * Gets size of result file
+         * @return size in bytes
+         */
+        public long getResultSize() {
+            return _resultSize;
+        }
+
+        /**
+         * Denotes if task completed or failed
+         * @return
+         */
+        public boolean isFinished(){
+            return CommunityDetectionResultStatus.COMPLETE_STATUS.equals(_status)
+                    || CommunityDetectionResultStatus.FAILED_STATUS.equals(_status);
+        }
+
+        /**
+         * Gets status of task as returned by the status endpoint
+         * @return
+         */
+        public CommunityDetectionResultStatus getResultStatus(){
+            CommunityDetectionResultStatus status = new CommunityDetectionResultStatus(_startTime);
+            status.setId(_id);
+            status.setStatus(_status);
+            status.setMessage(_message);
+            status.setProgress(_progress);
+            status.setWallTime(_wallTime);
+            return status;
+        }
+    }
+
+    private final File _taskDir;
+    private final File _snapshotFile;
+    private final int _numThreads;
+    private final JsonFactory _jsonFactory;
+    private final ConcurrentHashMap<String, Entry> _entries;
+
+    /**
+     * Constructor, call {@link #load() } to populate the index
+     * @param taskDir task directory
+     * @param numThreads number of threads used to read result files
+     */
+    public TaskIndex(File taskDir, int numThreads){
+        _taskDir = taskDir;
+        _snapshotFile = new File(taskDir, SNAPSHOT_FILE);
+        _numThreads = Math.max(1, numThreads);
+        _jsonFactory = new JsonFactory();
+        _entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads snapshot, if any, reads result files of task directories not in
+     * the snapshot, or whose task had not finished, and saves a new snapshot
+     * @return number of tasks in index
+     * @throws IOException if task directory could not be listed
+     */
+    public int load() throws IOException {
+        long startTime = System.currentTimeMillis();
+        String[] names = _taskDir.list();
+        if (names == null){
+            throw new IOException("Unable to list " + _taskDir.getAbsolutePath());
+        }
+        Map<String, Entry> snapshot = readSnapshot();
+        HashSet<String> dirNames = new HashSet<>(Arrays.asList(names));
+        _entries.clear();
+        List<String> toScan = new ArrayList<>();
+        for (String name : names){
+            if (name.startsWith(SNAPSHOT_FILE) || name.startsWith(TaskJournal.JOURNAL_FILE)){
+                continue;
+            }
+            Entry entry = snapshot.get(name);
+            if (entry != null && entry.isFinished()){
+                _entries.put(name, entry);
+            } else {
+                toScan.add(name);
+            }
+        }
+        int dropped = 0;
+        for (String id : snapshot.keySet()){
+            if (dirNames.contains(id) == false){
+                dropped++;
+            }
+        }
+        for (Entry entry : scan(toScan)){
+            _entries.put(entry.getId(), entry);
+        }
+        _logger.info("Indexed " + _entries.size() + " tasks in "
+                + (System.currentTimeMillis() - startTime) + "ms using "
+                + (snapshot.size() - dropped) + " from snapshot, dropping "
+                + dropped + " deleted and reading " + toScan.size()
+                + " task directories");
+        saveSnapshot();
+        return _entries.size();
+    }
+
+    /**
+     * Gets entry for task
+     * @param id id of task
+     * @return entry or {@code null} if task is not in index
+     */
+    public Entry get(final String id){
+        if (id == null){
+            return null;
+        }
+        return _entries.get(id);
+    }
+
+    /**
+     * Denotes if task is in index
+     * @param id id of task
+     * @return
+     */
+    public boolean contains(final String id){
+        return get(id) != null;
+    }
+
+    /**
+     * Adds or replaces entry for task whose result was just written
+     * @param cdr result of task
+     * @param resultSize size of result file in bytes
+     */
+    public void update(final CommunityDetectionResult cdr, long resultSize){
+        if (cdr == null || cdr.getId() == null){
+            return;
+        }
+        _entries.put(cdr.getId(), new Entry(cdr.getId(), cdr.getStatus(),
+                cdr.getMessage(), cdr.getProgress(), cdr.getStartTime(),
+                cdr.getWallTime(), resultSize));
+    }
+
+    /**
+     * Removes task from index
+     * @param id id of task
+     */
+    public void remove(final String id){
+        if (id == null){
+            return;
+        }
+        _entries.remove(id);
+    }
+
+    /**
+     * Gets number of tasks in index
+     * @return
+     */
+    public int size(){
+        return _entries.size();
+    }
+
+    /**
+     * Gets number of tasks in index that completed or failed
+     * @return
+     */
+    public int getNumberOfFinishedTasks(){
+        int count = 0;
+        for (Entry entry : _entries.values()){
+            if (entry.isFinished()){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes index to {@value #SNAPSHOT_FILE} in task directory. Snapshot
+     * is written to a temporary file and moved into place so a partially
+     * written snapshot is never loaded
+     */
+    public synchronized void saveSnapshot(){
+        File tmpFile = new File(_snapshotFile.getAbsolutePath() + ".tmp");
+        List<Entry> entries = new ArrayList<>(_entries.values());
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))){
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries){
+                    writeString(out, entry.getId());
+                    writeString(out, entry.getStatus());
+                    writeString(out, entry.getMessage());
+                    out.writeInt(entry.getProgress());
+                    out.writeLong(entry.getStartTime());
+                    out.writeLong(entry.getWallTime());
+                    out.writeLong(entry.getResultSize());
+                }
+            }
+            Files.move(tmpFile.toPath(), _snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException io){
+            _logger.error("Unable to write task index snapshot "
+                    + _snapshotFile.getAbsolutePath(), io);
+        }
+    }
+
+    /**
+     * Reads snapshot
+     * @return entries in snapshot keyed by task id, empty if there is no
+     *         snapshot or it could not be read
+     */
+    private Map<String, Entry> readSnapshot(){
+        HashMap<String, Entry> snapshot = new HashMap<>();
+        if (_snapshotFile.isFile() == false){
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(_snapshotFile)))){
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION){
+                _logger.warn("Ignoring task index snapshot "
+                        + _snapshotFile.getAbsolutePath() + " of unknown format");
+                return snapshot;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++){
+                Entry entry = new Entry(readString(in), readString(in),
+                        readString(in), in.readInt(), in.readLong(),
+                        in.readLong(), in.readLong());
+                snapshot.put(entry.getId(), entry);
+            }
+        } catch(IOException io){
+            _logger.warn("Ignoring unreadable task index snapshot "
+                    + _snapshotFile.getAbsolutePath() + " : " + io.getMessage());
+            snapshot.clear();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads result files of task directories in {@code ids} splitting the
+     * work across {@code numThreads} threads
+     * @param ids names of task directories
+     * @return entries for tasks with a readable result file
+     */
+    private List<Entry> scan(List<String> ids){
+        List<Entry> entries = new ArrayList<>();
+        if (ids.isEmpty()){
+            return entries;
+        }
+        int numChunks = Math.min(ids.size(), _numThreads * 4);
+        int chunkSize = (ids.size() + numChunks - 1) / numChunks;
+        List<Callable<List<Entry>>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += chunkSize){
+            final List<String> chunk = ids.subList(i, Math.min(ids.size(), i + chunkSize));
+            chunks.add(() -> {
+                List<Entry> res = new ArrayList<>(chunk.size());
+                for (String id : chunk){
+                    Entry entry = readEntry(id);
+                    if (entry != null){
+                        res.add(entry);
+                    }
+                }
+                return res;
+            });
+        }
+        ExecutorService es = Executors.newFixedThreadPool(Math.min(_numThreads, chunks.size()));
+        try {
+            for (Future<List<Entry>> f : es.invokeAll(chunks)){
+                entries.addAll(f.get());
+            }
+        } catch(Exception ex){
+            _logger.error("Error reading task directories, index may be incomplete", ex);
+        } finally {
+            es.shutdownNow();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads id, status, message, progress, start and wall time from result
+     * file of task skipping over the result itself
+     * @param id id of task
+     * @return entry or {@code null} if task has no readable result file
+     */
+    private Entry readEntry(final String id){
+        File cdrFile = new File(_taskDir, id + File.separator
+                + CommunityDetectionEngineImpl.CDRESULT_JSON_FILE);
+        if (cdrFile.isFile() == false){
+            return null;
+        }
+        String status = null;
+        String message = null;
+        int progress = 0;
+        long startTime = 0;
+        long wallTime = 0;
+        try (JsonParser parser = _jsonFactory.createParser(cdrFile)){
+            if (parser.nextToken() != JsonToken.START_OBJECT){
+                throw new IOException("result is not a json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL){
+                    continue;
+                }
+                if ("status".equals(field)){
+                    status = parser.getValueAsString();
+                } else if ("message".equals(field)){
+                    message = parser.getValueAsString();
+                } else if ("progress".equals(field)){
+                    progress = parser.getValueAsInt();
+                } else if ("startTime".equals(field)){
+                    startTime = parser.getValueAsLong();
+                } else if ("wallTime".equals(field)){
+                    wallTime = parser.getValueAsLong();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch(IOException io){
+            _logger.warn("Skipping unreadable result " + cdrFile.getAbsolutePath()
+                    + " : " + io.getMessage());
+            return null;
+        }
+        return new Entry(id, status, message, progress, startTime, wallTime,
+                cdrFile.length());
+    }
+
+    private static void writeString(DataOutputStream out, final String val) throws IOException {
+        if (val == null){
+            out.writeInt(NO_STRING);
+            return;
+        }
+        byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == NO_STRING){
+            return null;
+        }
+        if (len < 0){
+            throw new EOFException("Invalid string length " + len);
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
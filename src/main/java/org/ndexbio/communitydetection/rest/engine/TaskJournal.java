@@ -0,0 +1,413 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only journal of tasks submitted to the engine and of those tasks
+ * finishing so tasks that were queued or running when the server stopped
+ * can be submitted again when it starts. Each record is a line of json.
+ * A {@value #SUBMIT_OP} record holds the kind of task and the request
+ * needed to submit it again and a {@value #FINISH_OP} record denotes the
+ * task completed, failed, or was deleted.
+ * <p>
+ * Once more then {@code compactThreshold} records have been written and
+ * most of them are for finished tasks, the journal is compacted by
+ * rewriting it with only the {@value #SUBMIT_OP} records of unfinished
+ * tasks. Records are flushed to the operating system as they are written
+ * so they survive the server process stopping, but not the host crashing.
+ * <p>
+ * Only the offset and length of the {@value #SUBMIT_OP} record of each
+ * unfinished task is kept in memory, records are read back from the
+ * journal when it is compacted, so large requests are not held in memory
+ * for as long as their task runs.
+ * <p>
+ * This class is thread safe
+ * @author churas
+ */
+public class TaskJournal {
+
+    static Logger _logger = LoggerFactory.getLogger(TaskJournal.class);
+
+    /**
+     * Name of journal file in task directory
+     */
+    public static final String JOURNAL_FILE = "taskjournal.log";
+
+    /**
+     * Default number of records written before journal is compacted
+     */
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+
+    /**
+     * Operation of record written when task is submitted
+     */
+    public static final String SUBMIT_OP = "submit";
+
+    /**
+     * Operation of record written when task finishes
+     */
+    public static final String FINISH_OP = "finish";
+
+    /**
+     * Kind of task submitted via {@link CommunityDetectionEngine#request(org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest, java.lang.String) }
+     */
+    public static final String REQUEST_KIND = "request";
+
+    /**
+     * Kind of task submitted via {@link CommunityDetectionEngine#requestPipeline(org.ndexbio.communitydetection.rest.engine.PipelineRequest, java.lang.String) }
+     */
+    public static final String PIPELINE_KIND = "pipeline";
+
+    /**
+     * Kind of task submitted via {@link CommunityDetectionEngine#requestFanOut(org.ndexbio.communitydetection.rest.engine.FanOutRequest, java.lang.String) }
+     */
+    public static final String FANOUT_KIND = "fanout";
+
+    /**
+     * Status recorded when task is deleted
+     */
+    public static final String DELETED_STATUS = "deleted";
+
+    private static final String OP = "op";
+    private static final String ID = "id";
+    private static final String KIND = "kind";
+    private static final String CLIENT_ID = "clientId";
+    private static final String TIME = "time";
+    private static final String REQUEST = "request";
+    private static final String STATUS = "status";
+
+    /**
+     * Unfinished task read from or written to the journal
+     */
+    public static class Entry {
+        private final String _id;
+        private final String _kind;
+        private final String _clientId;
+        private final long _submitTime;
+        private final JsonNode _request;
+
+        Entry(final String id, final String kind, final String clientId,
+                long submitTime, JsonNode request){
+            _id = id;
+            _kind = kind;
+            _clientId = clientId;
+            _submitTime = submitTime;
+            _request = request;
+        }
+
+        public String getId() {
+            return _id;
+        }
+
+        /**
+         * Gets kind of task which is one of {@value TaskJournal#REQUEST_KIND},
+         * {@value TaskJournal#PIPELINE_KIND}, or {@value TaskJournal#FANOUT_KIND}
+         * @return
+         */
+        public String getKind() {
+            return _kind;
+        }
+
+        public String getClientId() {
+            return _clientId;
+        }
+
+        /**
+         * Gets time task was first submitted
+         * @return time in milliseconds since epoch
+         */
+        public long getSubmitTime() {
+            return _submitTime;
+        }
+
+        /**
+         * Gets request as json
+         * @return
+         */
+        public JsonNode getRequest() {
+            return _request;
+        }
+    }
+
+    /**
+     * Where the {@value #SUBMIT_OP} record of an unfinished task is
+     * in the journal
+     */
+    private static class Location {
+        private final long _offset;
+        private final int _length;
+
+        Location(long offset, int length){
+            _offset = offset;
+            _length = length;
+        }
+    }
+
+    private final File _journalFile;
+    private final int _compactThreshold;
+    private final ObjectMapper _mapper;
+    private final LinkedHashMap<String, Location> _unfinished;
+    private FileOutputStream _out;
+    private int _records;
+
+    /**
+     * Constructor, call {@link #load() } before writing to the journal
+     * @param journalFile journal file
+     * @param compactThreshold number of records written before journal
+     *                         is compacted
+     */
+    public TaskJournal(File journalFile, int compactThreshold){
+        _journalFile = journalFile;
+        _compactThreshold = Math.max(1, compactThreshold);
+        _mapper = new ObjectMapper();
+        _unfinished = new LinkedHashMap<>();
+        _records = 0;
+    }
+
+    /**
+     * Reads journal, compacts it, and opens it for writing. A partially
+     * written last record, left if the server stopped mid write, is ignored
+     * @return tasks that were submitted but never finished in the order
+     *         they were submitted
+     * @throws IOException if journal could not be read or written
+     */
+    public synchronized List<Entry> load() throws IOException {
+        closeWriter();
+        _unfinished.clear();
+        if (_journalFile.isFile()){
+            try (InputStream in = new BufferedInputStream(new FileInputStream(_journalFile))){
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                long offset = 0;
+                int lineNum = 0;
+                int b;
+                do {
+                    b = in.read();
+                    if (b != -1 && b != '\n'){
+                        line.write(b);
+                        continue;
+                    }
+                    lineNum++;
+                    if (line.size() > 0){
+                        applyRecord(line.toByteArray(), offset, lineNum);
+                    }
+                    offset += line.size() + 1;
+                    line.reset();
+                } while (b != -1);
+            }
+        }
+        compact();
+        ArrayList<Entry> entries = new ArrayList<>(_unfinished.size());
+        try (RandomAccessFile raf = new RandomAccessFile(_journalFile, "r")){
+            for (Location loc : _unfinished.values()){
+                JsonNode record = _mapper.readTree(readRecord(raf, loc));
+                entries.add(new Entry(record.get(ID).asText(), record.get(KIND).asText(),
+                        record.hasNonNull(CLIENT_ID) ? record.get(CLIENT_ID).asText() : null,
+                        record.path(TIME).asLong(), record.get(REQUEST)));
+            }
+        }
+        _logger.info("Loaded " + entries.size() + " unfinished tasks from journal "
+                + _journalFile.getAbsolutePath());
+        return entries;
+    }
+
+    /**
+     * Records task {@code id} was submitted. The record is serialized
+     * before the lock on this journal is taken so large requests do not
+     * hold up other tasks
+     * @param id id of task
+     * @param kind kind of task
+     * @param request request, serialized as json
+     * @param clientId identifies client, can be {@code null}
+     */
+    public void submitted(final String id, final String kind,
+            final Object request, final String clientId){
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (JsonGenerator gen = _mapper.getFactory().createGenerator(record)){
+            gen.writeStartObject();
+            gen.writeStringField(OP, SUBMIT_OP);
+            gen.writeStringField(ID, id);
+            gen.writeStringField(KIND, kind);
+            gen.writeStringField(CLIENT_ID, clientId);
+            gen.writeNumberField(TIME, System.currentTimeMillis());
+            gen.writeFieldName(REQUEST);
+            _mapper.writeValue(gen, request);
+            gen.writeEndObject();
+        } catch(IOException io){
+            _logger.error("Unable to write request of task " + id + " to task journal", io);
+            return;
+        }
+        synchronized(this){
+            long offset = write(record.toByteArray());
+            if (offset >= 0){
+                _unfinished.put(id, new Location(offset, record.size()));
+            }
+        }
+    }
+
+    /**
+     * Records task {@code id} finished. Tasks that are not in the journal
+     * are ignored
+     * @param id id of task
+     * @param status final status of task
+     */
+    public synchronized void finished(final String id, final String status){
+        if (_unfinished.remove(id) == null){
+            return;
+        }
+        ObjectNode record = _mapper.createObjectNode();
+        record.put(OP, FINISH_OP);
+        record.put(ID, id);
+        record.put(STATUS, status);
+        write(record.toString().getBytes(StandardCharsets.UTF_8));
+        if (_out != null && _records > _compactThreshold && _records > 2 * _unfinished.size()){
+            try {
+                compact();
+            } catch(IOException io){
+                _logger.error("Unable to compact task journal", io);
+            }
+        }
+    }
+
+    /**
+     * Gets number of tasks submitted and not yet finished
+     * @return
+     */
+    public synchronized int getNumberOfUnfinishedTasks(){
+        return _unfinished.size();
+    }
+
+    /**
+     * Closes journal. Tasks that finish after this are submitted again
+     * when the journal is next loaded
+     */
+    public synchronized void close(){
+        closeWriter();
+    }
+
+    /**
+     * Rewrites journal with records of unfinished tasks, read back one at
+     * a time from the current journal, and reopens it for appending.
+     * If the rewrite fails the untouched journal is reopened for appending
+     * so records are not lost. Caller must hold lock on this object
+     * @throws IOException if journal could not be written
+     */
+    private void compact() throws IOException {
+        closeWriter();
+        File tmpFile = new File(_journalFile.getAbsolutePath() + ".tmp");
+        boolean moved = false;
+        try {
+            LinkedHashMap<String, Location> compacted = new LinkedHashMap<>();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))){
+                if (_unfinished.isEmpty() == false){
+                    try (RandomAccessFile raf = new RandomAccessFile(_journalFile, "r")){
+                        long offset = 0;
+                        for (Map.Entry<String, Location> entry : _unfinished.entrySet()){
+                            byte[] record = readRecord(raf, entry.getValue());
+                            out.write(record);
+                            out.write('\n');
+                            compacted.put(entry.getKey(), new Location(offset, record.length));
+                            offset += record.length + 1;
+                        }
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), _journalFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            _unfinished.clear();
+            _unfinished.putAll(compacted);
+            _records = _unfinished.size();
+        } finally {
+            if (moved == false && tmpFile.isFile()){
+                tmpFile.delete();
+            }
+            _out = new FileOutputStream(_journalFile, true);
+        }
+    }
+
+    private static byte[] readRecord(RandomAccessFile raf, Location loc) throws IOException {
+        byte[] record = new byte[loc._length];
+        raf.seek(loc._offset);
+        raf.readFully(record);
+        return record;
+    }
+
+    private void applyRecord(final byte[] line, long offset, int lineNum){
+        JsonNode record;
+        try {
+            record = _mapper.readTree(line);
+        } catch(IOException io){
+            _logger.warn("Skipping unreadable record on line " + lineNum
+                    + " of task journal " + _journalFile.getAbsolutePath());
+            return;
+        }
+        if (record == null || record.hasNonNull(ID) == false){
+            return;
+        }
+        String id = record.get(ID).asText();
+        String op = record.path(OP).asText();
+        if (SUBMIT_OP.equals(op) && record.hasNonNull(KIND) && record.hasNonNull(REQUEST)){
+            _unfinished.put(id, new Location(offset, line.length));
+        } else if (FINISH_OP.equals(op)){
+            _unfinished.remove(id);
+        }
+    }
+
+    /**
+     * Appends {@code record} and a newline to journal
+     * @param record record to write
+     * @return offset of record in journal or {@code -1} if it was not written
+     */
+    private long write(final byte[] record){
+        if (_out == null){
+            _logger.debug("Task journal is closed, record not written");
+            return -1;
+        }
+        try {
+            long offset = _out.getChannel().position();
+            byte[] line = new byte[record.length + 1];
+            System.arraycopy(record, 0, line, 0, record.length);
+            line[record.length] = '\n';
+            _out.write(line);
+            _records++;
+            return offset;
+        } catch(IOException io){
+            _logger.error("Unable to write to task journal", io);
+        }
+        return -1;
+    }
+
+    private void closeWriter(){
+        if (_out == null){
+            return;
+        }
+        try {
+            _out.close();
+        } catch(IOException io){
+            _logger.warn("Unable to close task journal", io);
+        }
+        _out = null;
+    }
+}
@@ -0,0 +1,327 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of {@link CommunityDetectionTask} objects that can run
+ * at the same time. Tasks beyond that limit are queued in a {@link FairTaskQueue}
+ * and dispatched round robin across clients, in order of
+ * {@link CommunityDetectionTask#getPriority()} for each client, as running
+ * tasks finish. Each pool acts as a bulkhead so a burst of
+ * tasks for one algorithm cannot starve tasks for another algorithm.
+ * <p>
+ * A pool can be given an overflow pool via {@link #setOverflowPool(org.ndexbio.communitydetection.rest.engine.WorkerPool) }
+ * which is used to run tasks from this pool whenever the overflow pool has
+ * idle workers and nothing of its own to run.
+ * <p>
+ * If a {@link ResourceLedger} is set via {@link #setResourceLedger(org.ndexbio.communitydetection.rest.engine.ResourceLedger) }
+ * a task is only started once the CPUs and memory it needs can be reserved.
+ * Queued tasks wait for the task ahead of them so tasks needing lots of
+ * resources are not starved by smaller ones.
+ * <p>
+ * Threads are obtained from the {@link java.util.concurrent.Executor} passed
+ * in via the constructor, which can be shared by many pools. A worker is
+ * held until the future of its task completes, not just while a thread
+ * runs the task, so the limit holds for tasks that run asynchronously.
+ *
+ * @author churas
+ */
+public class WorkerPool {
+
+    static Logger _logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    private final String _name;
+    private int _maxWorkers;
+    private final Executor _executor;
+    private final FairTaskQueue _queue;
+    private final List<WorkerPool> _overflowSources;
+    private WorkerPool _overflowPool;
+    private ResourceLedger _ledger;
+    private int _activeWorkers;
+    private long _completedTasks;
+
+    /**
+     * Constructor
+     * @param name name of pool
+     * @param maxWorkers maximum number of tasks that can run at the same time
+     * @param executor used to run the tasks
+     */
+    public WorkerPool(final String name, int maxWorkers, Executor executor){
+        _name = name;
+        _maxWorkers = maxWorkers;
+        _executor = executor;
+        _queue = new FairTaskQueue();
+        _overflowSources = new CopyOnWriteArrayList<>();
+        _activeWorkers = 0;
+        _completedTasks = 0;
+    }
+
+    /**
+     * Sets pool that can run tasks from this pool when this pool
+     * has no idle workers
+     * @param overflowPool
+     */
+    public void setOverflowPool(WorkerPool overflowPool){
+        _overflowPool = overflowPool;
+        if (overflowPool != null){
+            overflowPool._overflowSources.add(this);
+        }
+    }
+
+    /**
+     * Sets ledger used to reserve CPUs and memory for tasks before they
+     * are started
+     * @param ledger 
+     */
+    public void setResourceLedger(ResourceLedger ledger){
+        _ledger = ledger;
+        if (ledger != null){
+            ledger.addWorkerPool(this);
+        }
+    }
+
+    public String getName(){
+        return _name;
+    }
+
+    public synchronized int getMaxWorkers(){
+        return _maxWorkers;
+    }
+    
+    /**
+     * Changes number of tasks that can run at the same time. If lowered,
+     * running tasks are left alone and no new tasks are started until
+     * enough of them finish
+     * @param maxWorkers new maximum number of tasks that can run at the same time
+     */
+    public void setMaxWorkers(int maxWorkers){
+        synchronized(this){
+            _maxWorkers = maxWorkers;
+        }
+        dispatch();
+    }
+    
+    /**
+     * Gets number of tasks that have finished in this pool, including
+     * those that failed or were canceled while running
+     * @return
+     */
+    public synchronized long getCompletedTasks(){
+        return _completedTasks;
+    }
+
+    public synchronized int getActiveWorkers(){
+        return _activeWorkers;
+    }
+
+    public synchronized int getQueuedTasks(){
+        return _queue.size();
+    }
+
+    /**
+     * Gets snapshot of worker usage for this pool
+     * @return
+     */
+    public synchronized WorkerPoolStatus getWorkerPoolStatus(){
+        WorkerPoolStatus wps = new WorkerPoolStatus();
+        wps.setMaxWorkers(_maxWorkers);
+        wps.setActiveWorkers(_activeWorkers);
+        wps.setQueuedTasks(_queue.size());
+        return wps;
+    }
+
+    /**
+     * Runs {@code task} as soon as a worker is available in this pool or
+     * its overflow pool
+     * @param task task to run
+     */
+    public void submit(CommunityDetectionTask task){
+        synchronized(this){
+            if (_activeWorkers < _maxWorkers && _queue.isEmpty()
+                    && reserveResources(task)){
+                startTask(task);
+                return;
+            }
+            if (_overflowPool == null){
+                _queue.add(task);
+                return;
+            }
+        }
+        if (_overflowPool.tryStart(task) == true){
+            _logger.debug("Task " + task.getId() + " from " + _name
+                    + " pool running in " + _overflowPool.getName() + " pool");
+            return;
+        }
+        synchronized(this){
+            _queue.add(task);
+        }
+        // a worker in either pool may have finished while the task was
+        // not yet queued so give both pools a chance to pick it up
+        dispatch();
+        _overflowPool.dispatch();
+    }
+
+    /**
+     * Starts {@code task} if this pool has an idle worker and no queued tasks
+     * of its own
+     * @param task
+     * @return true if task was started, false otherwise
+     */
+    protected synchronized boolean tryStart(CommunityDetectionTask task){
+        if (_activeWorkers >= _maxWorkers || _queue.isEmpty() == false
+                || reserveResources(task) == false){
+            return false;
+        }
+        startTask(task);
+        return true;
+    }
+
+    /**
+     * Removes next queued task that has not already been canceled
+     * @return task or {@code null} if none are queued
+     */
+    protected synchronized CommunityDetectionTask pollQueuedTask(){
+        CommunityDetectionTask task = _queue.poll();
+        while (task != null && task.isDone()){
+            task = _queue.poll();
+        }
+        return task;
+    }
+    
+    /**
+     * Gets next queued task that has not already been canceled 
+     * without removing it
+     * @return task or {@code null} if none are queued
+     */
+    protected synchronized CommunityDetectionTask peekQueuedTask(){
+        CommunityDetectionTask task = _queue.peek();
+        while (task != null && task.isDone()){
+            _queue.poll();
+            task = _queue.peek();
+        }
+        return task;
+    }
+    
+    /**
+     * Removes next queued task if resources can be reserved for it
+     * @return task or {@code null} if none are queued or there are not enough
+     *         resources for the next task
+     */
+    protected synchronized CommunityDetectionTask pollQueuedTaskIfResourcesAvailable(){
+        CommunityDetectionTask task = peekQueuedTask();
+        if (task == null || reserveResources(task) == false){
+            return null;
+        }
+        return pollQueuedTask();
+    }
+    
+    /**
+     * Gets the pool, among the pools that use this pool for overflow, 
+     * with the highest priority queued task
+     * @return pool or {@code null} if none have queued tasks
+     */
+    private WorkerPool getBestOverflowSource(){
+        WorkerPool bestSource = null;
+        CommunityDetectionTask bestTask = null;
+        for (WorkerPool source : _overflowSources){
+            CommunityDetectionTask task = source.peekQueuedTask();
+            if (task == null){
+                continue;
+            }
+            if (bestTask == null ||
+                    CommunityDetectionTask.PRIORITY_ORDER.compare(task, bestTask) < 0){
+                bestTask = task;
+                bestSource = source;
+            }
+        }
+        return bestSource;
+    }
+    
+    /**
+     * Starts queued tasks until this pool runs out of workers, tasks,
+     * or resources for the next task. Once this pool has nothing of its 
+     * own queued, tasks are pulled from any pool that uses this pool for overflow
+     */
+    protected void dispatch(){
+        List<CommunityDetectionTask> toStart = new ArrayList<>();
+        synchronized(this){
+            while (_activeWorkers < _maxWorkers){
+                WorkerPool source = this;
+                if (peekQueuedTask() == null){
+                    source = getBestOverflowSource();
+                }
+                if (source == null){
+                    break;
+                }
+                CommunityDetectionTask task = source.pollQueuedTaskIfResourcesAvailable();
+                if (task == null){
+                    break;
+                }
+                _activeWorkers++;
+                toStart.add(task);
+            }
+        }
+        for (CommunityDetectionTask task : toStart){
+            execute(task);
+        }
+    }
+
+    /**
+     * Must be called while holding lock on this object
+     * @param task
+     */
+    private void startTask(CommunityDetectionTask task){
+        _activeWorkers++;
+        execute(task);
+    }
+
+    /**
+     * Runs {@code task} via the executor. The worker is not released when
+     * the thread finishes {@link CommunityDetectionTask#run()}, but when the
+     * future of the task completes so tasks whose algorithm runs
+     * asynchronously still count against this pool
+     * @param task 
+     */
+    private void execute(CommunityDetectionTask task){
+        task.getFuture().whenComplete((res, ex) -> taskFinished(task));
+        try {
+            _executor.execute(task);
+        } catch(RejectedExecutionException ree){
+            _logger.error("Unable to run task " + task.getId() + " in "
+                    + _name + " pool", ree);
+            task.getFuture().completeExceptionally(ree);
+        }
+    }
+
+    private void taskFinished(CommunityDetectionTask task){
+        synchronized(this){
+            _activeWorkers--;
+            _completedTasks++;
+        }
+        if (_ledger != null){
+            // dispatches every pool using the ledger
+            _ledger.release(task);
+            return;
+        }
+        dispatch();
+    }
+    
+    /**
+     * Reserves resources for {@code task} from ledger set via 
+     * {@link #setResourceLedger(org.ndexbio.communitydetection.rest.engine.ResourceLedger) }
+     * @param task
+     * @return true if reserved or no ledger is set, false otherwise
+     */
+    private boolean reserveResources(CommunityDetectionTask task){
+        if (_ledger == null){
+            return true;
+        }
+        return _ledger.tryReserve(task);
+    }
+}
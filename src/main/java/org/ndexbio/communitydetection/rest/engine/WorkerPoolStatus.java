@@ -0,0 +1,48 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+/**
+ * Worker usage of a {@link WorkerPool}
+ * @author churas
+ */
+public class WorkerPoolStatus {
+
+    private int _maxWorkers;
+    private int _activeWorkers;
+    private int _queuedTasks;
+
+    /**
+     * Gets maximum number of tasks the pool can run at the same time
+     * @return 
+     */
+    public int getMaxWorkers() {
+        return _maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+        _maxWorkers = maxWorkers;
+    }
+
+    /**
+     * Gets number of tasks currently running in the pool
+     * @return 
+     */
+    public int getActiveWorkers() {
+        return _activeWorkers;
+    }
+
+    public void setActiveWorkers(int activeWorkers) {
+        _activeWorkers = activeWorkers;
+    }
+
+    /**
+     * Gets number of tasks waiting for a worker in the pool
+     * @return 
+     */
+    public int getQueuedTasks() {
+        return _queuedTasks;
+    }
+
+    public void setQueuedTasks(int queuedTasks) {
+        _queuedTasks = queuedTasks;
+    }
+}
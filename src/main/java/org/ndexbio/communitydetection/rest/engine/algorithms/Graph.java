@@ -0,0 +1,304 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ * Weighted graph stored as compressed sparse row (CSR) arrays of both the
+ * outgoing and incoming arcs of every node, used by the in process
+ * community detection algorithms. Nodes are numbered {@code 0} to
+ * {@code getNumberOfNodes() - 1}. An undirected edge is stored as a pair
+ * of arcs, one in each direction, so algorithms only need the directed
+ * form of modularity. Instances are never modified so they can be read by
+ * several threads at once
+ * @author churas
+ */
+public class Graph {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final int _numNodes;
+    private final int[] _outOffsets;
+    private final int[] _outTargets;
+    private final double[] _outWeights;
+    private final int[] _inOffsets;
+    private final int[] _inSources;
+    private final double[] _inWeights;
+    private final double[] _outStrength;
+    private final double[] _inStrength;
+    private final double _totalWeight;
+    private final String[] _nodeNames;
+
+    /**
+     * Constructor
+     * @param numNodes number of nodes
+     * @param sources source node of each arc
+     * @param targets target node of each arc
+     * @param weights weight of each arc
+     * @param numArcs number of arcs, only this many entries of the arrays are used
+     * @param nodeNames name of each node, can be {@code null}
+     */
+    public Graph(int numNodes, final int[] sources, final int[] targets,
+            final double[] weights, int numArcs, final String[] nodeNames){
+        _numNodes = numNodes;
+        _nodeNames = nodeNames;
+        _outOffsets = new int[numNodes + 1];
+        _outTargets = new int[numArcs];
+        _outWeights = new double[numArcs];
+        _inOffsets = new int[numNodes + 1];
+        _inSources = new int[numArcs];
+        _inWeights = new double[numArcs];
+        _outStrength = new double[numNodes];
+        _inStrength = new double[numNodes];
+        double total = 0;
+        for (int a = 0; a < numArcs; a++){
+            _outOffsets[sources[a] + 1]++;
+            _inOffsets[targets[a] + 1]++;
+            _outStrength[sources[a]] += weights[a];
+            _inStrength[targets[a]] += weights[a];
+            total += weights[a];
+        }
+        _totalWeight = total;
+        for (int i = 0; i < numNodes; i++){
+            _outOffsets[i + 1] += _outOffsets[i];
+            _inOffsets[i + 1] += _inOffsets[i];
+        }
+        int[] outPos = new int[numNodes];
+        int[] inPos = new int[numNodes];
+        for (int a = 0; a < numArcs; a++){
+            int s = sources[a];
+            int t = targets[a];
+            int o = _outOffsets[s] + outPos[s]++;
+            _outTargets[o] = t;
+            _outWeights[o] = weights[a];
+            int p = _inOffsets[t] + inPos[t]++;
+            _inSources[p] = s;
+            _inWeights[p] = weights[a];
+        }
+    }
+
+    /**
+     * Parses {@code edgeList} which has one edge per line made up of a
+     * source node, a target node and an optional weight separated by
+     * whitespace, the EDGELIST format taken by the docker algorithms
+     * @param edgeList edges
+     * @param directed if {@code false} every edge is stored as an arc in
+     *                 each direction
+     * @return graph with node names set
+     * @throws CommunityDetectionException if a line is malformed or there
+     *         are no edges
+     */
+    public static Graph parseEdgeList(final String edgeList, boolean directed) throws CommunityDetectionException {
+        HashMap<String, Integer> nodeIds = new HashMap<>();
+        int capacity = 1024;
+        int[] sources = new int[capacity];
+        int[] targets = new int[capacity];
+        double[] weights = new double[capacity];
+        int numArcs = 0;
+        for (String line : edgeList.split("\n")){
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()){
+                continue;
+            }
+            String[] split = WHITESPACE.split(trimmed);
+            if (split.length < 2){
+                throw new CommunityDetectionException("Invalid edge: " + trimmed);
+            }
+            double weight = 1.0;
+            if (split.length > 2){
+                try {
+                    weight = Double.parseDouble(split[2]);
+                } catch(NumberFormatException nfe){
+                    throw new CommunityDetectionException("Invalid weight in edge: " + trimmed);
+                }
+                if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)){
+                    throw new CommunityDetectionException("Invalid weight in edge: " + trimmed);
+                }
+            }
+            int source = nodeIds.computeIfAbsent(split[0], k -> nodeIds.size());
+            int target = nodeIds.computeIfAbsent(split[1], k -> nodeIds.size());
+            if (numArcs + 2 > capacity){
+                capacity *= 2;
+                sources = Arrays.copyOf(sources, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            sources[numArcs] = source;
+            targets[numArcs] = target;
+            weights[numArcs++] = weight;
+            if (directed == false){
+                sources[numArcs] = target;
+                targets[numArcs] = source;
+                weights[numArcs++] = weight;
+            }
+        }
+        if (numArcs == 0){
+            throw new CommunityDetectionException("No edges found in input");
+        }
+        String[] names = new String[nodeIds.size()];
+        nodeIds.forEach((name, id) -> names[id] = name);
+        return new Graph(names.length, sources, targets, weights, numArcs, names);
+    }
+
+    /**
+     * Builds graph where each community in {@code community} is a node and
+     * arcs between nodes in two communities are merged into a single arc
+     * whose weight is the sum of their weights. Arcs within a community
+     * become a self loop
+     * @param community community of each node numbered {@code 0} to
+     *                  {@code numCommunities - 1}
+     * @param numCommunities number of communities
+     * @return aggregated graph without node names
+     */
+    public Graph aggregate(final int[] community, int numCommunities){
+        // group nodes by community with a counting sort
+        int[] start = new int[numCommunities + 1];
+        for (int i = 0; i < _numNodes; i++){
+            start[community[i] + 1]++;
+        }
+        for (int c = 0; c < numCommunities; c++){
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[_numNodes];
+        int[] pos = new int[numCommunities];
+        for (int i = 0; i < _numNodes; i++){
+            members[start[community[i]] + pos[community[i]]++] = i;
+        }
+        int[] sources = new int[Math.max(1, _outTargets.length)];
+        int[] targets = new int[sources.length];
+        double[] weights = new double[sources.length];
+        double[] weightTo = new double[numCommunities];
+        int[] lastSeen = new int[numCommunities];
+        Arrays.fill(lastSeen, -1);
+        int[] touched = new int[numCommunities];
+        int numArcs = 0;
+        for (int c = 0; c < numCommunities; c++){
+            int numTouched = 0;
+            for (int m = start[c]; m < start[c + 1]; m++){
+                int i = members[m];
+                for (int a = _outOffsets[i]; a < _outOffsets[i + 1]; a++){
+                    int t = community[_outTargets[a]];
+                    if (lastSeen[t] != c){
+                        lastSeen[t] = c;
+                        weightTo[t] = 0;
+                        touched[numTouched++] = t;
+                    }
+                    weightTo[t] += _outWeights[a];
+                }
+            }
+            for (int k = 0; k < numTouched; k++){
+                sources[numArcs] = c;
+                targets[numArcs] = touched[k];
+                weights[numArcs++] = weightTo[touched[k]];
+            }
+        }
+        return new Graph(numCommunities, sources, targets, weights, numArcs, null);
+    }
+
+    public int getNumberOfNodes(){
+        return _numNodes;
+    }
+
+    /**
+     * Gets offsets into {@link #getOutTargets()} and {@link #getOutWeights()},
+     * arcs leaving node {@code i} are at {@code offsets[i]} up to
+     * {@code offsets[i + 1]}
+     * @return offsets
+     */
+    public int[] getOutOffsets(){
+        return _outOffsets;
+    }
+
+    public int[] getOutTargets(){
+        return _outTargets;
+    }
+
+    public double[] getOutWeights(){
+        return _outWeights;
+    }
+
+    /**
+     * Gets offsets into {@link #getInSources()} and {@link #getInWeights()},
+     * arcs entering node {@code i} are at {@code offsets[i]} up to
+     * {@code offsets[i + 1]}
+     * @return offsets
+     */
+    public int[] getInOffsets(){
+        return _inOffsets;
+    }
+
+    public int[] getInSources(){
+        return _inSources;
+    }
+
+    public double[] getInWeights(){
+        return _inWeights;
+    }
+
+    /**
+     * Gets sum of weights of arcs leaving each node
+     * @return strengths
+     */
+    public double[] getOutStrength(){
+        return _outStrength;
+    }
+
+    /**
+     * Gets sum of weights of arcs entering each node
+     * @return strengths
+     */
+    public double[] getInStrength(){
+        return _inStrength;
+    }
+
+    /**
+     * Gets sum of weights of all arcs
+     * @return total weight
+     */
+    public double getTotalWeight(){
+        return _totalWeight;
+    }
+
+    /**
+     * Gets name of each node
+     * @return names or {@code null} if graph was built by {@link #aggregate(int[], int) }
+     */
+    public String[] getNodeNames(){
+        return _nodeNames;
+    }
+
+    /**
+     * Calculates modularity of {@code community}, for a directed graph
+     * this is the form by Leicht and Newman which, since undirected edges
+     * are stored as two arcs, is the same as the usual form for
+     * undirected graphs
+     * @param community community of each node
+     * @param numCommunities number of communities
+     * @param resolution resolution parameter, higher values favor smaller communities
+     * @return modularity
+     */
+    public double getModularity(final int[] community, int numCommunities, double resolution){
+        if (_totalWeight <= 0){
+            return 0;
+        }
+        double[] commOut = new double[numCommunities];
+        double[] commIn = new double[numCommunities];
+        double internal = 0;
+        for (int i = 0; i < _numNodes; i++){
+            commOut[community[i]] += _outStrength[i];
+            commIn[community[i]] += _inStrength[i];
+            for (int a = _outOffsets[i]; a < _outOffsets[i + 1]; a++){
+                if (community[_outTargets[a]] == community[i]){
+                    internal += _outWeights[a];
+                }
+            }
+        }
+        double expected = 0;
+        for (int c = 0; c < numCommunities; c++){
+            expected += commOut[c] * commIn[c];
+        }
+        return (internal - resolution * expected / _totalWeight) / _totalWeight;
+    }
+}
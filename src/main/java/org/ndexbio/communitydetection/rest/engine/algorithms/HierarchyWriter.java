@@ -0,0 +1,123 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import java.util.List;
+import org.ndexbio.communitydetection.rest.engine.util.FanOutRunner;
+
+/**
+ * Writes communities found by an in process algorithm in the
+ * COMMUNITYDETECTRESULT format returned by the docker algorithms, which is
+ * made up of {@code SOURCE,TARGET,INTERACTION;} edges where {@code c-c}
+ * edges link a community to a child community and {@code c-m} edges link a
+ * community to a member node.
+ * <p>
+ * Communities are given ids starting after the largest node name that is a
+ * whole number, or {@code 0} if there is none, so they never collide with
+ * a node. The first id is the root, which is the parent of every top level
+ * community
+ * @author churas
+ */
+public class HierarchyWriter {
+
+    private HierarchyWriter(){
+    }
+
+    /**
+     * Writes hierarchy from {@code levels} where the first level maps each
+     * node to its community and each following level maps each community
+     * of the level before it to its parent community. Communities at every
+     * level must be numbered from {@code 0} with no gaps
+     * @param nodeNames name of each node
+     * @param levels communities at each level, must have at least one level
+     * @param deep if {@code true} every level is written, otherwise only the
+     *             communities of the last level are written with the nodes
+     *             in them as members
+     * @return hierarchy
+     */
+    public static String write(final String[] nodeNames, final List<int[]> levels, boolean deep){
+        long rootId = getFirstCommunityId(nodeNames);
+        StringBuilder sb = new StringBuilder();
+        if (deep == false){
+            int[] community = flatten(levels);
+            int numCommunities = getNumberOfCommunities(community);
+            for (int c = 0; c < numCommunities; c++){
+                appendEdge(sb, rootId, Long.toString(rootId + 1 + c),
+                        FanOutRunner.COMMUNITY_COMMUNITY);
+            }
+            for (int i = 0; i < community.length; i++){
+                appendEdge(sb, rootId + 1 + community[i], nodeNames[i],
+                        FanOutRunner.COMMUNITY_MEMBER);
+            }
+            sb.append("\n");
+            return sb.toString();
+        }
+        // ids of each level are assigned from the top level down
+        long[] firstId = new long[levels.size()];
+        long nextId = rootId + 1;
+        for (int l = levels.size() - 1; l >= 0; l--){
+            firstId[l] = nextId;
+            nextId += getNumberOfCommunities(levels.get(l));
+        }
+        int top = levels.size() - 1;
+        int numTop = getNumberOfCommunities(levels.get(top));
+        for (int c = 0; c < numTop; c++){
+            appendEdge(sb, rootId, Long.toString(firstId[top] + c),
+                    FanOutRunner.COMMUNITY_COMMUNITY);
+        }
+        for (int l = top; l > 0; l--){
+            int[] parent = levels.get(l);
+            for (int c = 0; c < parent.length; c++){
+                appendEdge(sb, firstId[l] + parent[c], Long.toString(firstId[l - 1] + c),
+                        FanOutRunner.COMMUNITY_COMMUNITY);
+            }
+        }
+        int[] community = levels.get(0);
+        for (int i = 0; i < community.length; i++){
+            appendEdge(sb, firstId[0] + community[i], nodeNames[i],
+                    FanOutRunner.COMMUNITY_MEMBER);
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Maps each node to its community at the last level of {@code levels}
+     * @param levels communities at each level
+     * @return community of each node
+     */
+    public static int[] flatten(final List<int[]> levels){
+        int[] community = levels.get(0).clone();
+        for (int l = 1; l < levels.size(); l++){
+            int[] parent = levels.get(l);
+            for (int i = 0; i < community.length; i++){
+                community[i] = parent[community[i]];
+            }
+        }
+        return community;
+    }
+
+    private static int getNumberOfCommunities(final int[] community){
+        int max = -1;
+        for (int c : community){
+            max = Math.max(max, c);
+        }
+        return max + 1;
+    }
+
+    private static long getFirstCommunityId(final String[] nodeNames){
+        long max = -1;
+        for (String name : nodeNames){
+            try {
+                max = Math.max(max, Long.parseLong(name));
+            } catch(NumberFormatException nfe){
+                // not a number so can not collide with a community id
+            }
+        }
+        return max + 1;
+    }
+
+    private static void appendEdge(StringBuilder sb, long source, final String target,
+            final String interaction){
+        sb.append(source).append(',').append(target).append(',')
+                .append(interaction).append(';');
+    }
+}
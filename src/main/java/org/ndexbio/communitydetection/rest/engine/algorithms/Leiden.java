@@ -0,0 +1,456 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+
+/**
+ * Leiden community detection on a {@link Graph} as described by Traag,
+ * Waltman and van Eck. Each level moves nodes between communities to
+ * increase modularity, refines each community by merging only nodes and
+ * sub communities that are well connected to the rest of the community,
+ * and then aggregates the refined communities into single nodes. Since
+ * aggregation uses the refined communities, every community found is
+ * connected.
+ * <p>
+ * Refinement of each community only reads and writes entries of nodes in
+ * that community, so communities are refined in parallel with fork join
+ * while sharing arrays of one entry per node. Memory used beyond the
+ * graph is a few arrays of one entry per node plus the aggregated graph,
+ * which is never larger than the graph itself. Refinement merges a node
+ * into the well connected sub community with the largest gain, rather
+ * than a random one, so results only depend on the seed
+ * @author churas
+ */
+public class Leiden {
+
+    /**
+     * Default resolution parameter
+     */
+    public static final double DEFAULT_RESOLUTION = 1.0;
+
+    /**
+     * Communities with fewer nodes than this, taken together, are refined
+     * by a single fork join task
+     */
+    public static final int MIN_NODES_PER_TASK = 1024;
+
+    /**
+     * Pool shared by every instance for refinement, separate from the
+     * engine threads running the tasks
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final double _resolution;
+    private final Random _random;
+    private ProgressListener _progressListener;
+
+    /**
+     * Constructor
+     * @param resolution resolution parameter, higher values give more communities
+     * @param random source of random order nodes are visited in
+     */
+    public Leiden(double resolution, final Random random){
+        _resolution = resolution;
+        _random = random;
+    }
+
+    /**
+     * Sets listener notified as each level is completed
+     * @param listener listener, can be {@code null}
+     */
+    public void setProgressListener(ProgressListener listener){
+        _progressListener = listener;
+    }
+
+    /**
+     * Finds communities of {@code graph}
+     * @param graph graph
+     * @return community of each node of {@code graph} numbered from {@code 0}
+     * @throws InterruptedException if thread is interrupted
+     */
+    public int[] run(final Graph graph) throws InterruptedException {
+        int numNodes = graph.getNumberOfNodes();
+        // node of aggregated graph each node of graph is in
+        int[] nodeMap = new int[numNodes];
+        int[] community = new int[numNodes];
+        for (int i = 0; i < numNodes; i++){
+            nodeMap[i] = i;
+            community[i] = i;
+        }
+        Graph g = graph;
+        int level = 0;
+        while (true){
+            if (Thread.interrupted()){
+                throw new InterruptedException("Leiden interrupted");
+            }
+            moveNodes(g, community);
+            int n = g.getNumberOfNodes();
+            int numCommunities = Louvain.renumber(community);
+            level++;
+            if (_progressListener != null){
+                _progressListener.progressUpdated(100 - 100 / (level + 1));
+            }
+            if (numCommunities == n){
+                break;
+            }
+            int[] refined = refine(g, community, numCommunities);
+            int numRefined = Louvain.renumber(refined);
+            if (numRefined == n){
+                // nothing could be merged in refinement so aggregating
+                // would give the same graph, stop with communities found
+                // by moving nodes as leidenalg does rather than aggregate
+                // communities that may not be well connected
+                break;
+            }
+            int[] nextCommunity = new int[numRefined];
+            for (int i = 0; i < n; i++){
+                nextCommunity[refined[i]] = community[i];
+            }
+            for (int i = 0; i < numNodes; i++){
+                nodeMap[i] = refined[nodeMap[i]];
+            }
+            g = g.aggregate(refined, numRefined);
+            community = nextCommunity;
+        }
+        int[] result = new int[numNodes];
+        for (int i = 0; i < numNodes; i++){
+            result[i] = community[nodeMap[i]];
+        }
+        Louvain.renumber(result);
+        return result;
+    }
+
+    /**
+     * Moves nodes of {@code g} to the community giving the largest gain in
+     * modularity starting with every node in a queue in random order. When
+     * a node moves, its neighbors outside its new community are queued
+     * again, until the queue is empty
+     * @param g graph
+     * @param community starting community of each node, updated in place
+     */
+    private void moveNodes(final Graph g, int[] community) throws InterruptedException {
+        int n = g.getNumberOfNodes();
+        int[] outOffsets = g.getOutOffsets();
+        int[] outTargets = g.getOutTargets();
+        double[] outWeights = g.getOutWeights();
+        int[] inOffsets = g.getInOffsets();
+        int[] inSources = g.getInSources();
+        double[] inWeights = g.getInWeights();
+        double[] outStrength = g.getOutStrength();
+        double[] inStrength = g.getInStrength();
+        double scale = _resolution / g.getTotalWeight();
+        double[] totalOut = new double[n];
+        double[] totalIn = new double[n];
+        for (int i = 0; i < n; i++){
+            totalOut[community[i]] += outStrength[i];
+            totalIn[community[i]] += inStrength[i];
+        }
+        double[] weightTo = new double[n];
+        int[] mark = new int[n];
+        int[] touched = new int[n];
+        // circular queue that holds each node at most once
+        int[] queue = shuffle(n);
+        boolean[] queued = new boolean[n];
+        Arrays.fill(queued, true);
+        int head = 0;
+        int size = n;
+        long numVisited = 0;
+        Arrays.fill(mark, -1);
+        while (size > 0){
+            if (++numVisited % n == 0 && Thread.interrupted()){
+                throw new InterruptedException("Leiden interrupted");
+            }
+            int v = queue[head];
+            head = (head + 1) % n;
+            size--;
+            queued[v] = false;
+            int current = community[v];
+            int numTouched = 0;
+            for (int a = outOffsets[v]; a < outOffsets[v + 1]; a++){
+                int t = outTargets[a];
+                if (t != v){
+                    numTouched = addWeight(community[t], outWeights[a], v, weightTo, mark, touched, numTouched);
+                }
+            }
+            for (int a = inOffsets[v]; a < inOffsets[v + 1]; a++){
+                int s = inSources[a];
+                if (s != v){
+                    numTouched = addWeight(community[s], inWeights[a], v, weightTo, mark, touched, numTouched);
+                }
+            }
+            double ko = outStrength[v];
+            double ki = inStrength[v];
+            totalOut[current] -= ko;
+            totalIn[current] -= ki;
+            int best = current;
+            double bestGain = (mark[current] == v ? weightTo[current] : 0)
+                    - scale * (ko * totalIn[current] + ki * totalOut[current]);
+            for (int k = 0; k < numTouched; k++){
+                int c = touched[k];
+                double gain = weightTo[c] - scale * (ko * totalIn[c] + ki * totalOut[c]);
+                if (gain > bestGain){
+                    bestGain = gain;
+                    best = c;
+                }
+                // node can be visited again so clear its marks
+                mark[c] = -1;
+            }
+            totalOut[best] += ko;
+            totalIn[best] += ki;
+            if (best == current){
+                continue;
+            }
+            community[v] = best;
+            for (int a = outOffsets[v]; a < outOffsets[v + 1]; a++){
+                int t = outTargets[a];
+                if (queued[t] == false && community[t] != best){
+                    queued[t] = true;
+                    queue[(head + size++) % n] = t;
+                }
+            }
+            for (int a = inOffsets[v]; a < inOffsets[v + 1]; a++){
+                int s = inSources[a];
+                if (queued[s] == false && community[s] != best){
+                    queued[s] = true;
+                    queue[(head + size++) % n] = s;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds {@code w} to weight from node {@code v} to community {@code c}
+     * @return number of communities touched by {@code v}
+     */
+    private static int addWeight(int c, double w, int v, double[] weightTo, int[] mark,
+            int[] touched, int numTouched){
+        if (mark[c] != v){
+            mark[c] = v;
+            weightTo[c] = 0;
+            touched[numTouched++] = c;
+        }
+        weightTo[c] += w;
+        return numTouched;
+    }
+
+    /**
+     * Gets nodes {@code 0} to {@code n - 1} in random order
+     */
+    private int[] shuffle(int n){
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++){
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--){
+            int j = _random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Splits each community into well connected sub communities, refining
+     * communities in parallel
+     * @param g graph
+     * @param community community of each node numbered from {@code 0}
+     * @param numCommunities number of communities
+     * @return sub community of each node, ids are node ids
+     */
+    private int[] refine(final Graph g, final int[] community, int numCommunities) throws InterruptedException {
+        Refinement r = new Refinement(g, community, numCommunities, shuffle(g.getNumberOfNodes()));
+        RefineTask task = new RefineTask(r, 0, numCommunities);
+        POOL.execute(task);
+        try {
+            task.get();
+        } catch(InterruptedException ie){
+            task.cancel(true);
+            throw ie;
+        } catch(Exception ex){
+            throw new IllegalStateException("Error refining communities", ex);
+        }
+        return r._refined;
+    }
+
+    /**
+     * State of a refinement shared by every {@link RefineTask}. Arrays
+     * indexed by node are also indexed by sub community since each sub
+     * community starts as a single node, so a task only ever touches
+     * entries of nodes in the communities it refines
+     */
+    private class Refinement {
+
+        private final Graph _graph;
+        private final int[] _community;
+        private final int[] _refined;
+        private final int[] _start;
+        private final int[] _members;
+        private final double[] _communityOut;
+        private final double[] _communityIn;
+        private final double[] _refinedOut;
+        private final double[] _refinedIn;
+        private final double[] _externalWeight;
+        private final boolean[] _singleton;
+        private final double[] _weightTo;
+        private final int[] _mark;
+        private final double _scale;
+
+        Refinement(final Graph g, final int[] community, int numCommunities, final int[] order){
+            _graph = g;
+            _community = community;
+            int n = g.getNumberOfNodes();
+            _scale = _resolution / g.getTotalWeight();
+            // group nodes by community keeping random order within each
+            _start = new int[numCommunities + 1];
+            for (int i = 0; i < n; i++){
+                _start[community[i] + 1]++;
+            }
+            for (int c = 0; c < numCommunities; c++){
+                _start[c + 1] += _start[c];
+            }
+            _members = new int[n];
+            int[] pos = new int[numCommunities];
+            for (int i : order){
+                _members[_start[community[i]] + pos[community[i]]++] = i;
+            }
+            _communityOut = new double[numCommunities];
+            _communityIn = new double[numCommunities];
+            _refined = new int[n];
+            _refinedOut = g.getOutStrength().clone();
+            _refinedIn = g.getInStrength().clone();
+            _externalWeight = new double[n];
+            _singleton = new boolean[n];
+            _weightTo = new double[n];
+            _mark = new int[n];
+            int[] outOffsets = g.getOutOffsets();
+            int[] outTargets = g.getOutTargets();
+            double[] outWeights = g.getOutWeights();
+            for (int i = 0; i < n; i++){
+                _refined[i] = i;
+                _singleton[i] = true;
+                _mark[i] = -1;
+                _communityOut[community[i]] += _refinedOut[i];
+                _communityIn[community[i]] += _refinedIn[i];
+                for (int a = outOffsets[i]; a < outOffsets[i + 1]; a++){
+                    int t = outTargets[a];
+                    if (t != i && community[t] == community[i]){
+                        _externalWeight[i] += outWeights[a];
+                        _externalWeight[t] += outWeights[a];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Tells if a set with strengths {@code out} and {@code in} and
+         * {@code weight} of arcs to the rest of community {@code c} is
+         * well connected to the rest of {@code c}
+         */
+        boolean isWellConnected(int c, double out, double in, double weight){
+            return weight >= _scale * (out * (_communityIn[c] - in) + in * (_communityOut[c] - out));
+        }
+
+        /**
+         * Visits nodes of community {@code c} in random order merging each
+         * well connected node that is still alone into the well connected
+         * sub community of {@code c} with the largest gain, if any gain is
+         * positive
+         */
+        void refineCommunity(int c){
+            int[] outOffsets = _graph.getOutOffsets();
+            int[] outTargets = _graph.getOutTargets();
+            double[] outWeights = _graph.getOutWeights();
+            int[] inOffsets = _graph.getInOffsets();
+            int[] inSources = _graph.getInSources();
+            double[] inWeights = _graph.getInWeights();
+            double[] outStrength = _graph.getOutStrength();
+            double[] inStrength = _graph.getInStrength();
+            int first = _start[c];
+            int last = _start[c + 1];
+            int[] touched = new int[last - first];
+            for (int m = first; m < last; m++){
+                int v = _members[m];
+                if (_singleton[v] == false){
+                    continue;
+                }
+                double ko = outStrength[v];
+                double ki = inStrength[v];
+                if (isWellConnected(c, ko, ki, _externalWeight[v]) == false){
+                    continue;
+                }
+                int numTouched = 0;
+                for (int a = outOffsets[v]; a < outOffsets[v + 1]; a++){
+                    int t = outTargets[a];
+                    if (t != v && _community[t] == c){
+                        numTouched = addWeight(_refined[t], outWeights[a], v, _weightTo,
+                                _mark, touched, numTouched);
+                    }
+                }
+                for (int a = inOffsets[v]; a < inOffsets[v + 1]; a++){
+                    int s = inSources[a];
+                    if (s != v && _community[s] == c){
+                        numTouched = addWeight(_refined[s], inWeights[a], v, _weightTo,
+                                _mark, touched, numTouched);
+                    }
+                }
+                int best = v;
+                double bestGain = 0;
+                for (int k = 0; k < numTouched; k++){
+                    int r = touched[k];
+                    if (isWellConnected(c, _refinedOut[r], _refinedIn[r], _externalWeight[r]) == false){
+                        continue;
+                    }
+                    double gain = _weightTo[r] - _scale * (ko * _refinedIn[r] + ki * _refinedOut[r]);
+                    if (gain > bestGain){
+                        bestGain = gain;
+                        best = r;
+                    }
+                }
+                if (best == v){
+                    continue;
+                }
+                _refined[v] = best;
+                _singleton[best] = false;
+                _refinedOut[best] += ko;
+                _refinedIn[best] += ki;
+                _externalWeight[best] += _externalWeight[v] - 2 * _weightTo[best];
+            }
+        }
+    }
+
+    /**
+     * Refines communities {@code lo} to {@code hi - 1}, splitting the range
+     * in half until it holds fewer than {@link #MIN_NODES_PER_TASK} nodes
+     * or a single community
+     */
+    private static class RefineTask extends RecursiveAction {
+
+        private final Refinement _refinement;
+        private final int _lo;
+        private final int _hi;
+
+        RefineTask(final Refinement refinement, int lo, int hi){
+            _refinement = refinement;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            int numNodes = _refinement._start[_hi] - _refinement._start[_lo];
+            if (_hi - _lo == 1 || numNodes < MIN_NODES_PER_TASK){
+                for (int c = _lo; c < _hi; c++){
+                    _refinement.refineCommunity(c);
+                }
+                return;
+            }
+            int mid = (_lo + _hi) >>> 1;
+            invokeAll(new RefineTask(_refinement, _lo, mid),
+                    new RefineTask(_refinement, mid, _hi));
+        }
+    }
+}
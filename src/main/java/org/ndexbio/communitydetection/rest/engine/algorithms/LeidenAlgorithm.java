@@ -0,0 +1,92 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CustomParameter;
+
+/**
+ * Runs {@link Leiden} inside the server. Like the louvain and infomap
+ * algorithms it takes an EDGELIST and returns a COMMUNITYDETECTRESULT
+ * made up of a root with a child for each community found
+ * @author churas
+ */
+public class LeidenAlgorithm implements InProcessAlgorithm {
+
+    /**
+     * Name of algorithm
+     */
+    public static final String NAME = "leiden";
+
+    @Override
+    public CommunityDetectionAlgorithm getAlgorithm() {
+        CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+        cda.setName(NAME);
+        cda.setDisplayName("Leiden");
+        cda.setDescription("Runs Leiden community detection algorithm inside "
+                + "the server.<br/><br/>Leiden improves on Louvain by refining "
+                + "communities before they are merged, which guarantees every "
+                + "community found is well connected.");
+        cda.setVersion("1.0.0");
+        cda.setInputDataFormat("EDGELIST");
+        cda.setOutputDataFormat("COMMUNITYDETECTRESULT");
+        HashSet<CustomParameter> cpSet = new HashSet<>();
+
+        CustomParameter cp = new CustomParameter();
+        cp.setName(LouvainAlgorithm.DIRECTED_PARAM);
+        cp.setDisplayName("Treat input as directed graph");
+        cp.setDescription("If set, input is treated as directed graph");
+        cp.setType(CustomParameter.FLAG_TYPE);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(LouvainAlgorithm.RESOLUTION_PARAM);
+        cp.setDisplayName("Cluster resolution");
+        cp.setDescription("Guides number of communities the algorithm will "
+                + "detect. Higher the value the more communities detected.");
+        cp.setType(CustomParameter.VALUE_TYPE);
+        cp.setDefaultValue(Double.toString(Leiden.DEFAULT_RESOLUTION));
+        cp.setValidationType(CustomParameter.NUMBER_VALIDATION);
+        cp.setMinValue(0);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(LouvainAlgorithm.SEED_PARAM);
+        cp.setDisplayName("Random number generator seed");
+        cp.setDescription("Sets random number generator seed. Leave blank to not set.");
+        cp.setType(CustomParameter.VALUE_TYPE);
+        cp.setDefaultValue("");
+        cp.setValidationType(CustomParameter.DIGITS_VALIDATION);
+        cp.setValidationHelp("Should be a whole number");
+        cpSet.add(cp);
+
+        cda.setCustomParameters(cpSet);
+        return cda;
+    }
+
+    /**
+     * Runs Leiden on edge list in data of {@code request}
+     * @param request request whose data is a string with an edge per line
+     * @param listener notified as each level is completed
+     * @return hierarchy as {@link TextNode}
+     * @throws Exception if data or a custom parameter is invalid
+     */
+    @Override
+    public JsonNode run(CommunityDetectionRequest request, ProgressListener listener) throws Exception {
+        Map<String, String> params = request.getCustomParameters();
+        Graph graph = Graph.parseEdgeList(LouvainAlgorithm.getEdgeList(request),
+                LouvainAlgorithm.isFlagSet(params, LouvainAlgorithm.DIRECTED_PARAM));
+        Leiden leiden = new Leiden(LouvainAlgorithm.getResolution(params, Leiden.DEFAULT_RESOLUTION),
+                LouvainAlgorithm.getRandom(params));
+        leiden.setProgressListener(listener);
+        int[] community = leiden.run(graph);
+        return new TextNode(HierarchyWriter.write(graph.getNodeNames(),
+                Collections.singletonList(community), false));
+    }
+}
@@ -0,0 +1,441 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+
+/**
+ * Louvain community detection on a {@link Graph}, which alternates between
+ * moving nodes to the neighboring community that most increases modularity
+ * and aggregating each community into a single node, until no community
+ * merges.
+ * <p>
+ * The node moving phase works only on primitive arrays indexed by node and
+ * community. On graphs with at least the parallel threshold of nodes, each
+ * round finds the best community of every node across several threads,
+ * using community totals from the start of the round, and then applies the
+ * moves. A round that lowers modularity is undone and redone one node at a
+ * time, so the result always improves. Smaller graphs are always done one
+ * node at a time
+ * @author churas
+ */
+public class Louvain {
+
+    /**
+     * Default resolution parameter
+     */
+    public static final double DEFAULT_RESOLUTION = 0.1;
+
+    /**
+     * Default minimum number of nodes for node moving to be done in parallel
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+
+    /**
+     * Node moving stops once a round improves modularity by less than this
+     */
+    public static final double MIN_IMPROVEMENT = 1e-7;
+
+    private static final int NUM_PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Threads shared by every instance for the parallel rounds, these are
+     * separate from the engine threads running the tasks so a round never
+     * waits on a task
+     */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(NUM_PROCESSORS,
+            (Runnable r) -> {
+                Thread t = new Thread(r, "louvain-worker");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final double _resolution;
+    private final Random _random;
+    private final int _numThreads;
+    private final int _parallelThreshold;
+    private ProgressListener _progressListener;
+
+    /**
+     * Constructor that uses every processor on graphs with at least
+     * {@link #DEFAULT_PARALLEL_THRESHOLD} nodes
+     * @param resolution resolution parameter, higher values give more communities
+     * @param random source of random order nodes are visited in
+     */
+    public Louvain(double resolution, final Random random){
+        this(resolution, random, NUM_PROCESSORS, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Constructor
+     * @param resolution resolution parameter, higher values give more communities
+     * @param random source of random order nodes are visited in
+     * @param numThreads number of chunks each parallel round is split into,
+     *                   no more than number of processors run at once
+     * @param parallelThreshold minimum number of nodes for a graph to be
+     *                          done in parallel
+     */
+    public Louvain(double resolution, final Random random, int numThreads,
+            int parallelThreshold){
+        _resolution = resolution;
+        _random = random;
+        _numThreads = Math.max(1, numThreads);
+        _parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Sets listener notified as each level is completed
+     * @param listener listener, can be {@code null}
+     */
+    public void setProgressListener(ProgressListener listener){
+        _progressListener = listener;
+    }
+
+    /**
+     * Finds communities of {@code graph}
+     * @param graph graph
+     * @return communities at each level, the first maps each node of
+     *         {@code graph} to its community and each following level maps
+     *         each community of the level before it to its parent. There is
+     *         always at least one level
+     * @throws InterruptedException if thread is interrupted
+     */
+    public List<int[]> run(final Graph graph) throws InterruptedException {
+        List<int[]> levels = new ArrayList<>();
+        Graph g = graph;
+        while (true){
+            int[] community = moveNodes(g);
+            int numCommunities = renumber(community);
+            if (numCommunities == g.getNumberOfNodes() && levels.isEmpty() == false){
+                break;
+            }
+            levels.add(community);
+            if (_progressListener != null){
+                _progressListener.progressUpdated(100 - 100 / (levels.size() + 1));
+            }
+            if (numCommunities == g.getNumberOfNodes() || numCommunities == 1){
+                break;
+            }
+            g = g.aggregate(community, numCommunities);
+        }
+        return levels;
+    }
+
+    /**
+     * Renumbers communities in {@code community} from {@code 0} in order of
+     * first appearance
+     * @param community community of each node, updated in place
+     * @return number of communities
+     */
+    public static int renumber(int[] community){
+        int[] newId = new int[community.length];
+        Arrays.fill(newId, -1);
+        int numCommunities = 0;
+        for (int i = 0; i < community.length; i++){
+            if (newId[community[i]] == -1){
+                newId[community[i]] = numCommunities++;
+            }
+            community[i] = newId[community[i]];
+        }
+        return numCommunities;
+    }
+
+    /**
+     * Gets nodes of {@code g} in random order
+     */
+    private int[] getOrder(final Graph g){
+        int n = g.getNumberOfNodes();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++){
+            order[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--){
+            int j = _random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    /**
+     * Moves nodes of {@code g}, each starting in its own community, until
+     * modularity stops improving
+     * @return community of each node
+     */
+    private int[] moveNodes(final Graph g) throws InterruptedException {
+        int n = g.getNumberOfNodes();
+        Partition p = new Partition(g);
+        int[] order = getOrder(g);
+        boolean parallel = _numThreads > 1 && n >= _parallelThreshold;
+        Scratch scratch = new Scratch(n);
+        Scratch[] scratches = null;
+        int[] best = null;
+        if (parallel){
+            scratches = new Scratch[_numThreads];
+            scratches[0] = scratch;
+            for (int t = 1; t < _numThreads; t++){
+                scratches[t] = new Scratch(n);
+            }
+            best = new int[n];
+        }
+        double quality = g.getModularity(p._community, n, _resolution);
+        while (true){
+            if (Thread.interrupted()){
+                throw new InterruptedException("Louvain interrupted");
+            }
+            double newQuality;
+            if (parallel){
+                int[] saved = p._community.clone();
+                int numMoved = parallelRound(g, p, order, scratches, best);
+                newQuality = g.getModularity(p._community, n, _resolution);
+                if (numMoved > 0 && newQuality < quality){
+                    p.reset(saved);
+                    sequentialRound(g, p, order, scratch);
+                    newQuality = g.getModularity(p._community, n, _resolution);
+                }
+            } else {
+                sequentialRound(g, p, order, scratch);
+                newQuality = g.getModularity(p._community, n, _resolution);
+            }
+            if (newQuality - quality < MIN_IMPROVEMENT){
+                break;
+            }
+            quality = newQuality;
+        }
+        return p._community;
+    }
+
+    /**
+     * Visits every node in {@code order} moving it to its best community
+     * as it is visited
+     * @return number of nodes moved
+     */
+    private int sequentialRound(final Graph g, Partition p, final int[] order, Scratch scratch){
+        double[] outStrength = g.getOutStrength();
+        double[] inStrength = g.getInStrength();
+        int numMoved = 0;
+        for (int i : order){
+            int current = p._community[i];
+            p.remove(i, outStrength[i], inStrength[i]);
+            int target = findBestCommunity(g, p, i, current, scratch, false);
+            p.add(i, target, outStrength[i], inStrength[i]);
+            if (target != current){
+                numMoved++;
+            }
+        }
+        return numMoved;
+    }
+
+    /**
+     * Finds best community of every node in parallel, treating the
+     * partition as fixed, and then moves the nodes. A node alone in its
+     * community is only moved into another community with a single node if
+     * that community has a lower id so two nodes never swap communities
+     * @return number of nodes moved
+     */
+    private int parallelRound(final Graph g, Partition p, final int[] order,
+            final Scratch[] scratches, final int[] best) throws InterruptedException {
+        int n = order.length;
+        int chunkSize = (n + scratches.length - 1) / scratches.length;
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int t = 0; t < scratches.length; t++){
+            final int start = t * chunkSize;
+            final int end = Math.min(n, start + chunkSize);
+            final Scratch scratch = scratches[t];
+            chunks.add(() -> {
+                for (int k = start; k < end; k++){
+                    int i = order[k];
+                    best[i] = findBestCommunity(g, p, i, p._community[i], scratch, true);
+                }
+                return null;
+            });
+        }
+        // calling thread does the first chunk instead of waiting idle
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 1; t < chunks.size(); t++){
+            futures.add(POOL.submit(chunks.get(t)));
+        }
+        try {
+            chunks.get(0).call();
+            for (Future<Void> f : futures){
+                f.get();
+            }
+        } catch(InterruptedException ie){
+            throw ie;
+        } catch(ExecutionException ee){
+            throw new IllegalStateException("Error finding best communities", ee.getCause());
+        } catch(Exception ex){
+            throw new IllegalStateException("Error finding best communities", ex);
+        } finally {
+            for (Future<Void> f : futures){
+                f.cancel(true);
+            }
+        }
+        double[] outStrength = g.getOutStrength();
+        double[] inStrength = g.getInStrength();
+        int[] size = p._size.clone();
+        int numMoved = 0;
+        for (int i : order){
+            int current = p._community[i];
+            int target = best[i];
+            if (target == current){
+                continue;
+            }
+            if (size[current] == 1 && size[target] == 1 && target > current){
+                continue;
+            }
+            p.remove(i, outStrength[i], inStrength[i]);
+            p.add(i, target, outStrength[i], inStrength[i]);
+            numMoved++;
+        }
+        return numMoved;
+    }
+
+    /**
+     * Finds community of neighbors of node {@code i} that gives the largest
+     * modularity gain. If {@code inPlace} is {@code true} node {@code i}
+     * is still counted in totals of {@code current} so its strengths are
+     * subtracted here, otherwise it has already been removed
+     * @return best community, {@code current} if no other community is better
+     */
+    private int findBestCommunity(final Graph g, final Partition p, int i, int current,
+            Scratch scratch, boolean inPlace){
+        int[] outOffsets = g.getOutOffsets();
+        int[] outTargets = g.getOutTargets();
+        double[] outWeights = g.getOutWeights();
+        int[] inOffsets = g.getInOffsets();
+        int[] inSources = g.getInSources();
+        double[] inWeights = g.getInWeights();
+        int[] community = p._community;
+        scratch._numTouched = 0;
+        scratch._stamp++;
+        for (int a = outOffsets[i]; a < outOffsets[i + 1]; a++){
+            if (outTargets[a] != i){
+                scratch.add(community[outTargets[a]], outWeights[a]);
+            }
+        }
+        for (int a = inOffsets[i]; a < inOffsets[i + 1]; a++){
+            if (inSources[a] != i){
+                scratch.add(community[inSources[a]], inWeights[a]);
+            }
+        }
+        double ko = g.getOutStrength()[i];
+        double ki = g.getInStrength()[i];
+        double scale = _resolution / g.getTotalWeight();
+        double currentOut = p._totalOut[current];
+        double currentIn = p._totalIn[current];
+        if (inPlace){
+            currentOut -= ko;
+            currentIn -= ki;
+        }
+        int bestCommunity = current;
+        double bestGain = scratch.get(current) - scale * (ko * currentIn + ki * currentOut);
+        for (int k = 0; k < scratch._numTouched; k++){
+            int c = scratch._touched[k];
+            if (c == current){
+                continue;
+            }
+            double gain = scratch._weight[c] - scale * (ko * p._totalIn[c] + ki * p._totalOut[c]);
+            if (gain > bestGain){
+                bestGain = gain;
+                bestCommunity = c;
+            }
+        }
+        return bestCommunity;
+    }
+
+    /**
+     * Community of each node along with sum of strengths and number of
+     * nodes of each community
+     */
+    private static class Partition {
+
+        private final Graph _graph;
+        private final int[] _community;
+        private final int[] _size;
+        private final double[] _totalOut;
+        private final double[] _totalIn;
+
+        Partition(final Graph g){
+            _graph = g;
+            int n = g.getNumberOfNodes();
+            _community = new int[n];
+            _size = new int[n];
+            _totalOut = new double[n];
+            _totalIn = new double[n];
+            for (int i = 0; i < n; i++){
+                _community[i] = i;
+            }
+            reset(_community);
+        }
+
+        void reset(final int[] community){
+            System.arraycopy(community, 0, _community, 0, community.length);
+            Arrays.fill(_size, 0);
+            Arrays.fill(_totalOut, 0);
+            Arrays.fill(_totalIn, 0);
+            double[] outStrength = _graph.getOutStrength();
+            double[] inStrength = _graph.getInStrength();
+            for (int i = 0; i < _community.length; i++){
+                _size[_community[i]]++;
+                _totalOut[_community[i]] += outStrength[i];
+                _totalIn[_community[i]] += inStrength[i];
+            }
+        }
+
+        void remove(int i, double outStrength, double inStrength){
+            int c = _community[i];
+            _size[c]--;
+            _totalOut[c] -= outStrength;
+            _totalIn[c] -= inStrength;
+            _community[i] = -1;
+        }
+
+        void add(int i, int c, double outStrength, double inStrength){
+            _community[i] = c;
+            _size[c]++;
+            _totalOut[c] += outStrength;
+            _totalIn[c] += inStrength;
+        }
+    }
+
+    /**
+     * Per thread arrays used to sum weight from a node to each neighboring
+     * community without clearing them between nodes
+     */
+    private static class Scratch {
+
+        private final double[] _weight;
+        private final int[] _seen;
+        private final int[] _touched;
+        private int _numTouched;
+        private int _stamp;
+
+        Scratch(int n){
+            _weight = new double[n];
+            _seen = new int[n];
+            _touched = new int[n];
+        }
+
+        void add(int c, double w){
+            if (_seen[c] != _stamp){
+                _seen[c] = _stamp;
+                _weight[c] = 0;
+                _touched[_numTouched++] = c;
+            }
+            _weight[c] += w;
+        }
+
+        double get(int c){
+            return _seen[c] == _stamp ? _weight[c] : 0;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CustomParameter;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionBadRequestException;
+
+/**
+ * Runs {@link Louvain} inside the server. Takes the same EDGELIST input and
+ * custom parameters as the louvain docker algorithm and returns the same
+ * COMMUNITYDETECTRESULT output. Since an algorithm in the algorithms json
+ * overrides an in process algorithm of the same name, the louvain entry
+ * must be removed from the algorithms json for this one to be used
+ * @author churas
+ */
+public class LouvainAlgorithm implements InProcessAlgorithm {
+
+    /**
+     * Name of algorithm
+     */
+    public static final String NAME = "louvain";
+
+    public static final String DIRECTED_PARAM = "--directed";
+    public static final String RESOLUTION_PARAM = "--resolution_parameter";
+    public static final String SEED_PARAM = "--seed";
+    public static final String OVERLAP_PARAM = "--overlap";
+    public static final String DEEP_PARAM = "--deep";
+    public static final String CONFIGMODEL_PARAM = "--configmodel";
+
+    /**
+     * Configuration models accepted by louvain docker algorithm
+     */
+    public static final String CONFIGMODEL_REGEX = "RB|RBER|CPM|Suprise|Significance|Default";
+
+    /**
+     * Configuration models that maximize modularity, which is the only
+     * objective implemented here
+     */
+    public static final Set<String> MODULARITY_CONFIGMODELS = new HashSet<>(Arrays.asList("Default", "RB"));
+
+    @Override
+    public CommunityDetectionAlgorithm getAlgorithm() {
+        CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+        cda.setName(NAME);
+        cda.setDisplayName("Louvain");
+        cda.setDescription("Runs Louvain community detection algorithm inside "
+                + "the server.<br/><br/>Louvain works by iteratively maximazing "
+                + "modularity in each community, building hierarchy from the "
+                + "bottom layer (single nodes) up to the root layer.");
+        cda.setVersion("1.0.0");
+        cda.setInputDataFormat("EDGELIST");
+        cda.setOutputDataFormat("COMMUNITYDETECTRESULT");
+        HashSet<CustomParameter> cpSet = new HashSet<>();
+
+        CustomParameter cp = new CustomParameter();
+        cp.setName(DIRECTED_PARAM);
+        cp.setDisplayName("Treat input as directed graph");
+        cp.setDescription("If set, input is treated as directed graph");
+        cp.setType(CustomParameter.FLAG_TYPE);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(RESOLUTION_PARAM);
+        cp.setDisplayName("Cluster resolution");
+        cp.setDescription("Guides number of communities the algorithm will "
+                + "detect. Higher the value the more communities detected.");
+        cp.setType(CustomParameter.VALUE_TYPE);
+        cp.setDefaultValue(Double.toString(Louvain.DEFAULT_RESOLUTION));
+        cp.setValidationType(CustomParameter.NUMBER_VALIDATION);
+        cp.setMinValue(0);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(SEED_PARAM);
+        cp.setDisplayName("Random number generator seed");
+        cp.setDescription("Sets random number generator seed. Leave blank to not set.");
+        cp.setType(CustomParameter.VALUE_TYPE);
+        cp.setDefaultValue("");
+        cp.setValidationType(CustomParameter.DIGITS_VALIDATION);
+        cp.setValidationHelp("Should be a whole number");
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(OVERLAP_PARAM);
+        cp.setDisplayName("Generate overlapping communities");
+        cp.setDescription("Accepted for compatibility with the louvain docker "
+                + "algorithm, communities found never overlap");
+        cp.setType(CustomParameter.FLAG_TYPE);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(DEEP_PARAM);
+        cp.setDisplayName("Generate deep hierarchy");
+        cp.setDescription("If set, generate deep hierarchy, otherwise algorithm "
+                + "will just create clusters");
+        cp.setType(CustomParameter.FLAG_TYPE);
+        cpSet.add(cp);
+
+        cp = new CustomParameter();
+        cp.setName(CONFIGMODEL_PARAM);
+        cp.setDisplayName("Configuration Model");
+        cp.setDescription("Accepted for compatibility with the louvain docker "
+                + "algorithm, only Default and RB, which both maximize "
+                + "modularity, are supported");
+        cp.setType(CustomParameter.VALUE_TYPE);
+        cp.setDefaultValue("Default");
+        cp.setValidationType(CustomParameter.STRING_VALIDATION);
+        cp.setValidationHelp("Must be one of following: RB, RBER, CPM, Suprise, Significance, Default");
+        cp.setValidationRegex(CONFIGMODEL_REGEX);
+        cpSet.add(cp);
+
+        cda.setCustomParameters(cpSet);
+        return cda;
+    }
+
+    /**
+     * Runs Louvain on edge list in data of {@code request}
+     * @param request request whose data is a string with an edge per line
+     * @param listener notified as each level of hierarchy is completed
+     * @return hierarchy as {@link TextNode}
+     * @throws Exception if data or a custom parameter is invalid
+     */
+    @Override
+    public JsonNode run(CommunityDetectionRequest request, ProgressListener listener) throws Exception {
+        Map<String, String> params = request.getCustomParameters();
+        checkConfigModel(params);
+        boolean directed = isFlagSet(params, DIRECTED_PARAM);
+        double resolution = getResolution(params, Louvain.DEFAULT_RESOLUTION);
+        Random random = getRandom(params);
+        Graph graph = Graph.parseEdgeList(getEdgeList(request), directed);
+        Louvain louvain = new Louvain(resolution, random);
+        louvain.setProgressListener(listener);
+        List<int[]> levels = louvain.run(graph);
+        return new TextNode(HierarchyWriter.write(graph.getNodeNames(), levels,
+                isFlagSet(params, DEEP_PARAM)));
+    }
+
+    /**
+     * Gets edge list from data of {@code request}
+     * @param request request
+     * @return edge list
+     * @throws CommunityDetectionBadRequestException if data is not a string
+     */
+    static String getEdgeList(CommunityDetectionRequest request) throws CommunityDetectionBadRequestException {
+        if (request.getData() == null || request.getData().isTextual() == false){
+            throw new CommunityDetectionBadRequestException("Data must be a string "
+                    + "with an edge per line");
+        }
+        return request.getData().asText();
+    }
+
+    /**
+     * Checks configuration model in {@code params} is one that maximizes
+     * modularity
+     * @param params custom parameters
+     * @throws CommunityDetectionBadRequestException if another model is set
+     */
+    static void checkConfigModel(Map<String, String> params) throws CommunityDetectionBadRequestException {
+        String value = getValue(params, CONFIGMODEL_PARAM);
+        if (value == null || MODULARITY_CONFIGMODELS.contains(value)){
+            return;
+        }
+        throw new CommunityDetectionBadRequestException(CONFIGMODEL_PARAM
+                + " " + value + " is not supported, must be one of: Default, RB");
+    }
+
+    static boolean isFlagSet(Map<String, String> params, final String name){
+        return params != null && params.containsKey(name);
+    }
+
+    /**
+     * Gets value of {@code name} from {@code params}
+     * @return value or {@code null} if not set or empty
+     */
+    static String getValue(Map<String, String> params, final String name){
+        if (params == null){
+            return null;
+        }
+        String value = params.get(name);
+        if (value == null || value.trim().isEmpty()){
+            return null;
+        }
+        return value.trim();
+    }
+
+    static double getResolution(Map<String, String> params,
+            double defaultResolution) throws CommunityDetectionBadRequestException {
+        String value = getValue(params, RESOLUTION_PARAM);
+        if (value == null){
+            return defaultResolution;
+        }
+        try {
+            double resolution = Double.parseDouble(value);
+            if (resolution >= 0 && Double.isInfinite(resolution) == false){
+                return resolution;
+            }
+        } catch(NumberFormatException nfe){
+            // handled below
+        }
+        throw new CommunityDetectionBadRequestException(RESOLUTION_PARAM
+                + " must be a number 0 or larger: " + value);
+    }
+
+    static Random getRandom(Map<String, String> params) throws CommunityDetectionBadRequestException {
+        String value = getValue(params, SEED_PARAM);
+        if (value == null){
+            return new Random();
+        }
+        try {
+            return new Random(Long.parseLong(value));
+        } catch(NumberFormatException nfe){
+            throw new CommunityDetectionBadRequestException(SEED_PARAM
+                    + " must be a whole number: " + value);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.ndexbio.communitydetection.rest.engine.util;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,4 +26,26 @@ public interface CommandLineRunner {
      */
     public int runCommandLineProcess(long timeOut, TimeUnit unit, File stdOutFile, File stdErrFile, String... command) throws Exception;
     
+    /**
+     * Starts command line program specified by first argument without
+     * waiting for it to finish.
+     * @param command - First argument should be full path to command followed by arguments
+     * @return future completed with exit code of program or 500 if the process
+     *         exceeded timeout. Canceling the future kills the process
+     * @throws java.lang.Exception if there was an error invoking the process
+     */
+    public CompletableFuture<Integer> runCommandLineProcessAsync(long timeOut, TimeUnit unit, File stdOutFile, File stdErrFile, String... command) throws Exception;
+    
+    /**
+     * Starts command line program specified by first argument without
+     * waiting for it to finish, streaming data written by {@code stdIn}
+     * to its standard input from a background thread.
+     * @param stdIn writes standard input of program, if {@code null} nothing is written
+     * @param command - First argument should be full path to command followed by arguments
+     * @return future completed with exit code of program or 500 if the process
+     *         exceeded timeout. Canceling the future kills the process
+     * @throws java.lang.Exception if there was an error invoking the process
+     */
+    public CompletableFuture<Integer> runCommandLineProcessAsync(long timeOut, TimeUnit unit, StandardInputWriter stdIn, File stdOutFile, File stdErrFile, String... command) throws Exception;
+    
 }
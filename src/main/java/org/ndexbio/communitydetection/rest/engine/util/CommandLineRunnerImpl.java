@@ -1,9 +1,16 @@
 package org.ndexbio.communitydetection.rest.engine.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,9 +22,38 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
       private static final Logger _log
             = LoggerFactory.getLogger(CommandLineRunnerImpl.class.getName());
     
+    private static final AtomicInteger STDIN_THREADS = new AtomicInteger(0);
+    
+    /**
+     * Writes standard input of processes so callers do not block on
+     * processes that read their input slowly
+     */
+    private static final Executor STDIN_EXECUTOR = Executors.newCachedThreadPool((Runnable r) -> {
+        Thread t = new Thread(r, "process-stdin-" + STDIN_THREADS.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    
     private String _workingDirectory;
     private Map<String, String> _environVars;
     private String _lastCommand;
+    private ProcessSupervisor _supervisor;
+    
+    /**
+     * Constructor that uses {@link ProcessSupervisor#getInstance()} to
+     * watch processes
+     */
+    public CommandLineRunnerImpl(){
+        this(ProcessSupervisor.getInstance());
+    }
+    
+    /**
+     * Constructor
+     * @param supervisor watches processes started by this runner
+     */
+    public CommandLineRunnerImpl(ProcessSupervisor supervisor){
+        _supervisor = supervisor;
+    }
     
     /**
      * Sets the working directory for the process
@@ -47,7 +83,8 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
     }
     
     /**
-     * Runs command line process
+     * Runs command line process waiting for it to finish. If the calling
+     * thread is interrupted the process is killed
      * @param timeOut timeout value
      * @param unit unit for timeout value
      * @param stdOutFile File to write any standard output
@@ -58,7 +95,56 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
      */
     @Override
     public int runCommandLineProcess(long timeOut, TimeUnit unit,
-            File stdOutFile, File stdErrFile, String... command) throws Exception {        
+            File stdOutFile, File stdErrFile, String... command) throws Exception {
+        CompletableFuture<Integer> future = runCommandLineProcessAsync(timeOut,
+                unit, stdOutFile, stdErrFile, command);
+        try {
+            return future.get();
+        } catch(InterruptedException ie){
+            future.cancel(true);
+            throw ie;
+        }
+    }
+    
+    /**
+     * Starts command line process which is then watched by the
+     * {@link ProcessSupervisor} so no thread is blocked waiting for it
+     * @param timeOut timeout value
+     * @param unit unit for timeout value
+     * @param stdOutFile File to write any standard output
+     * @param stdErrFile File to write any standard
+     * @param command command with arguments to run
+     * @return future completed with exit code of process (if timeout exceeded,
+     *         500 is returned). Canceling the future kills the process
+     * @throws Exception if process could not be started
+     */
+    @Override
+    public CompletableFuture<Integer> runCommandLineProcessAsync(long timeOut, TimeUnit unit,
+            File stdOutFile, File stdErrFile, String... command) throws Exception {
+        return runCommandLineProcessAsync(timeOut, unit, null, stdOutFile,
+                stdErrFile, command);
+    }
+    
+    /**
+     * Starts command line process which is then watched by the
+     * {@link ProcessSupervisor} so no thread is blocked waiting for it.
+     * Data from {@code stdIn} is written to the standard input of the
+     * process from a background thread, which stops writing if the
+     * process exits or is killed
+     * @param timeOut timeout value
+     * @param unit unit for timeout value
+     * @param stdIn writes standard input of process, can be {@code null}
+     * @param stdOutFile File to write any standard output
+     * @param stdErrFile File to write any standard
+     * @param command command with arguments to run
+     * @return future completed with exit code of process (if timeout exceeded,
+     *         500 is returned). Canceling the future kills the process
+     * @throws Exception if process could not be started
+     */
+    @Override
+    public CompletableFuture<Integer> runCommandLineProcessAsync(long timeOut, TimeUnit unit,
+            StandardInputWriter stdIn, File stdOutFile, File stdErrFile,
+            String... command) throws Exception {        
         ArrayList<String> mCmd = new ArrayList<String>();
         _lastCommand = null;
         StringBuilder lastCmdSb = new StringBuilder();
@@ -95,11 +181,19 @@ public class CommandLineRunnerImpl implements CommandLineRunner {
         pb.redirectOutput(stdOutFile);
 
         Process proc = pb.start();
-        
-        if (proc.waitFor(timeOut, unit) == false){
-            proc.destroyForcibly();
-            return 500;
-        } 
-        return proc.exitValue();        
+        CompletableFuture<Integer> future = _supervisor.supervise(proc, timeOut, unit);
+        if (stdIn != null){
+            STDIN_EXECUTOR.execute(() -> writeStandardInput(proc, stdIn));
+        }
+        return future;
+    }
+    
+    private void writeStandardInput(Process proc, StandardInputWriter stdIn){
+        try (OutputStream out = new BufferedOutputStream(proc.getOutputStream())){
+            stdIn.write(out);
+        } catch(IOException io){
+            // process exited or was killed before reading all of its input
+            _log.debug("Unable to write standard input of process: " + io.getMessage());
+        }
     }
 }
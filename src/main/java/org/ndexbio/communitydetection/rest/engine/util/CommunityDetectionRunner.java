@@ -0,0 +1,20 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.util.concurrent.CompletableFuture;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ * Runs a community detection algorithm without blocking the calling
+ * thread for the duration of the algorithm
+ * @author churas
+ */
+public interface CommunityDetectionRunner {
+
+    /**
+     * Starts the algorithm
+     * @return future completed with result once algorithm finishes. Canceling
+     *         the future stops the algorithm
+     * @throws Exception if algorithm could not be started
+     */
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception;
+}
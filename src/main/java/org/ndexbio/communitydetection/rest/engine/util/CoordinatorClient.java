@@ -0,0 +1,41 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import org.ndexbio.communitydetection.rest.engine.RemoteTask;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ * Used by a worker to claim tasks from the coordinator and report
+ * their results
+ * @author churas
+ */
+public interface CoordinatorClient {
+
+    /**
+     * Claims next task
+     * @param workerId id of worker
+     * @param waitMillis maximum time coordinator should wait for a task
+     * @return task or {@code null} if none were available
+     * @throws Exception if coordinator could not be reached
+     */
+    public RemoteTask claim(final String workerId, long waitMillis) throws Exception;
+
+    /**
+     * Renews lease worker has on task
+     * @param taskId id of task
+     * @param workerId id of worker
+     * @return false if worker should stop running task
+     * @throws Exception if coordinator could not be reached
+     */
+    public boolean renew(final String taskId, final String workerId) throws Exception;
+
+    /**
+     * Reports result of task
+     * @param taskId id of task
+     * @param workerId id of worker
+     * @param cdr result of task
+     * @return false if coordinator no longer wanted the result
+     * @throws Exception if coordinator could not be reached
+     */
+    public boolean complete(final String taskId, final String workerId,
+            final CommunityDetectionResult cdr) throws Exception;
+}
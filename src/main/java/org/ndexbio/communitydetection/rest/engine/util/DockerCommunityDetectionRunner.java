@@ -1,17 +1,24 @@
 package org.ndexbio.communitydetection.rest.engine.util;
 
-import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.TextNode;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
@@ -24,7 +31,8 @@ import org.slf4j.LoggerFactory;
  * Runs algorithm via commandline
  * @author churas
  */
-public class DockerCommunityDetectionRunner implements Callable {
+public class DockerCommunityDetectionRunner implements Callable<CommunityDetectionResult>,
+        CommunityDetectionRunner {
 
     
     static Logger _logger = LoggerFactory.getLogger(DockerCommunityDetectionRunner.class);
@@ -34,6 +42,11 @@ public class DockerCommunityDetectionRunner implements Callable {
     public static final String STD_ERR_FILE = "stderr.txt";
     public static final String CMD_RUN_FILE = "cmdrun.sh";
     
+    /**
+     * Input file passed to algorithm when data is streamed over standard input
+     */
+    public static final String STD_IN_INPUT_FILE = "/dev/stdin";
+    
     private String _id;
     private CommunityDetectionRequest _cdr;
     private String _dockerCmd;
@@ -44,6 +57,14 @@ public class DockerCommunityDetectionRunner implements Callable {
     private long _startTime;
     private long _timeOut;
     private TimeUnit _timeUnit;
+    private double _cpus;
+    private long _memory;
+    private WarmContainerPool _warmContainerPool;
+    private String _containerName;
+    private DockerContainerReaper _containerReaper;
+    private boolean _standardInput;
+    private boolean _fileBackedResult;
+    private ProgressListener _progressListener;
  
     private CommandLineRunner _runner;
     
@@ -65,6 +86,35 @@ public class DockerCommunityDetectionRunner implements Callable {
             final Map<String, String> customParameters,
             final long timeOut,
             final TimeUnit unit) throws Exception{
+        this(id, cdr, startTime, taskDir, dockerCmd, dockerImage, customParameters,
+                timeOut, unit, false);
+    }
+    
+    /**
+     * Constructor that can stream the data of the request to the container
+     * over standard input instead of writing it to {@link #INPUT_FILE} in
+     * a directory mounted into the container. In that case the algorithm
+     * is passed {@value #STD_IN_INPUT_FILE} as its input file, the data is
+     * never written to disk, and warm containers are not used
+     * @param id id of task (should be a 37 char uuid string)
+     * @param cdr The request to process
+     * @param startTime Time task started in ms since epoch (1969)
+     * @param taskDir Base directory for tasks (this task will be put into taskDir/id)
+     * @param dockerCmd Command to run docker (/usr/bin/docker /bin/docker etc..)
+     * @param dockerImage Docker image to run (hello-world)
+     * @param customParameters custom parameters passed to algorithm
+     * @param timeOut Any task exceeding this time (in unit set by unit) will be killed
+     * @param unit Unit to use for timeout
+     * @param standardInput if {@code true} data is streamed over standard input
+     * @throws Exception If there is an issue creating the task directory or
+     *                   writing the input data from the cdr object
+     */
+    public DockerCommunityDetectionRunner(final String id,
+            final CommunityDetectionRequest cdr, final long startTime, final String taskDir,
+            final String dockerCmd, final String dockerImage,
+            final Map<String, String> customParameters,
+            final long timeOut,
+            final TimeUnit unit, boolean standardInput) throws Exception{
         _id = id;
         _cdr = cdr;
         _dockerCmd = dockerCmd;
@@ -75,12 +125,119 @@ public class DockerCommunityDetectionRunner implements Callable {
         _workDir = _taskDir + File.separator + _id;
         _timeOut = timeOut;
         _timeUnit = unit;
-        writeInputFile();
+        _containerName = DockerContainerReaper.getContainerName(_id);
+        _standardInput = standardInput;
+        if (_standardInput){
+            createWorkDirectory();
+        } else {
+            writeInputFile();
+        }
        
         _runner = new CommandLineRunnerImpl();
         
     }
     
+    /**
+     * Constructor that uses an existing file, such as output of another
+     * task, as input. The file is hard linked into the task directory
+     * so its contents are not copied unless linking is not supported
+     * @param id id of task
+     * @param inputFile file to use as input
+     * @param startTime Time task started in ms since epoch (1969)
+     * @param taskDir Base directory for tasks (this task will be put into taskDir/id)
+     * @param dockerCmd Command to run docker (/usr/bin/docker /bin/docker etc..)
+     * @param dockerImage Docker image to run (hello-world)
+     * @param customParameters custom parameters passed to algorithm
+     * @param timeOut Any task exceeding this time (in unit set by unit) will be killed
+     * @param unit Unit to use for timeout
+     * @throws Exception If there is an issue linking the input file
+     */
+    public DockerCommunityDetectionRunner(final String id,
+            final File inputFile, final long startTime, final String taskDir,
+            final String dockerCmd, final String dockerImage,
+            final Map<String, String> customParameters,
+            final long timeOut,
+            final TimeUnit unit) throws Exception{
+        _id = id;
+        _dockerCmd = dockerCmd;
+        _dockerImage = dockerImage;
+        _customParameters = customParameters;
+        _startTime = startTime;
+        _taskDir = taskDir;
+        _workDir = _taskDir + File.separator + _id;
+        _timeOut = timeOut;
+        _timeUnit = unit;
+        _containerName = DockerContainerReaper.getContainerName(_id);
+        linkInputFile(inputFile);
+       
+        _runner = new CommandLineRunnerImpl();
+    }
+    
+    /**
+     * Sets limits on resources docker container can use
+     * @param cpus number of CPUs passed to docker via --cpus, ignored if 0 or less
+     * @param memory megabytes of memory passed to docker via --memory, ignored
+     *               if 0 or less
+     */
+    public void setResourceLimits(double cpus, long memory){
+        _cpus = cpus;
+        _memory = memory;
+    }
+    
+    /**
+     * Sets pool of warm containers to run task in. If no container
+     * in the pool is idle the task is run in a new container
+     * @param pool pool or {@code null} to always run in a new container
+     */
+    public void setWarmContainerPool(WarmContainerPool pool){
+        _warmContainerPool = pool;
+    }
+    
+    /**
+     * Sets name given to docker container, by default it is
+     * {@link DockerContainerReaper#getContainerName(java.lang.String...) }
+     * of the id of the task. Name must be unique among running containers
+     * @param containerName name of container
+     */
+    public void setContainerName(final String containerName){
+        _containerName = containerName;
+    }
+    
+    public String getContainerName(){
+        return _containerName;
+    }
+    
+    /**
+     * Sets whether json output is left in the standard out file and copied
+     * from there whenever the result is serialized, instead of being
+     * parsed into memory. Only set this if the result is persisted and
+     * returned as is, and the task directory outlives the result
+     * @param fileBacked if {@code true} json output is not loaded into memory
+     */
+    public void setFileBackedResult(boolean fileBacked){
+        _fileBackedResult = fileBacked;
+    }
+    
+    /**
+     * Sets listener notified with 0 once the algorithm starts and then
+     * with any progress the algorithm reports on standard error, as
+     * described in {@link StandardErrorProgressMonitor}, while it runs
+     * @param listener listener or {@code null} to not report progress
+     */
+    public void setProgressListener(ProgressListener listener){
+        _progressListener = listener;
+    }
+    
+    /**
+     * Sets reaper that labels the docker container and removes it if
+     * the task is canceled or times out
+     * @param reaper reaper or {@code null} to leave container alone, in which
+     *               case only the docker command line client is killed
+     */
+    public void setContainerReaper(DockerContainerReaper reaper){
+        _containerReaper = reaper;
+    }
+    
     /**
      * For testing, lets one set alternate command line runner
      * @param clr 
@@ -99,13 +256,7 @@ public class DockerCommunityDetectionRunner implements Callable {
      * @throws IOException If there was IO error writing the data to a file
      */
     protected String writeInputFile() throws CommunityDetectionException, IOException {
-        File workDir = new File(_workDir);
-        
-        if (workDir.isDirectory() == false){
-            if (workDir.mkdirs() == false){
-                throw new CommunityDetectionException("Unable to create directory: " + _workDir);
-            }
-        }
+        createWorkDirectory();
         File destFile = getInputFile();
         if (_cdr.getData()instanceof TextNode){
             try (BufferedWriter bw = new BufferedWriter(new FileWriter(destFile))){
@@ -119,6 +270,60 @@ public class DockerCommunityDetectionRunner implements Callable {
         return destFile.getAbsolutePath();
     }
     
+    /**
+     * Hard links {@code inputFile} to {@link #getInputFile()} falling back
+     * to a copy if the filesystem does not support links
+     * @param inputFile file to use as input
+     * @return full path to input file as String
+     * @throws CommunityDetectionException If there was an issue creating task directories
+     * @throws IOException If there was IO error linking or copying the file
+     */
+    protected String linkInputFile(File inputFile) throws CommunityDetectionException, IOException {
+        createWorkDirectory();
+        File destFile = getInputFile();
+        try {
+            Files.createLink(destFile.toPath(), inputFile.toPath());
+        } catch(IOException | UnsupportedOperationException ex){
+            _logger.debug("Unable to link " + inputFile.getAbsolutePath()
+                    + " copying it instead", ex);
+            Files.copy(inputFile.toPath(), destFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        return destFile.getAbsolutePath();
+    }
+    
+    /**
+     * Creates directory for this task if it does not exist
+     * @throws CommunityDetectionException If directory could not be created
+     */
+    protected void createWorkDirectory() throws CommunityDetectionException {
+        File workDir = new File(_workDir);
+        
+        if (workDir.isDirectory() == false){
+            if (workDir.mkdirs() == false){
+                throw new CommunityDetectionException("Unable to create directory: " + _workDir);
+            }
+        }
+    }
+    
+    /**
+     * Writes data of request to {@code out} without first copying it
+     * into a string, used to stream data over standard input
+     * @param out where to write data
+     * @throws IOException if there was an error writing
+     */
+    protected void writeData(OutputStream out) throws IOException {
+        JsonNode data = _cdr.getData();
+        if (data instanceof TextNode){
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(data.asText());
+            writer.flush();
+            return;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writeValue(out, data);
+    }
+    
     /**
      * This method generates a {@link java.io.File} object pointing to standard 
      * out file generated by {@link #call()}
@@ -149,6 +354,22 @@ public class DockerCommunityDetectionRunner implements Callable {
         return new File(_workDir + File.separator + INPUT_FILE);
     }
 
+    /**
+     * Gets size of input data written by {@link #writeInputFile()} or, if
+     * data is streamed over standard input, the approximate size of the data
+     * @return size in bytes or 0 if input file does not exist
+     */
+    public long getInputSize(){
+        if (_standardInput){
+            JsonNode data = _cdr.getData();
+            if (data == null){
+                return 0;
+            }
+            return data.isTextual() ? data.asText().length() : data.toString().length();
+        }
+        return getInputFile().length();
+    }
+
     /**
      * This method generates a {@link java.io.File} object pointing to a 
      * file that contains the
@@ -178,33 +399,20 @@ public class DockerCommunityDetectionRunner implements Callable {
     /**
      * Reads contents of 'outFile' {@link java.io.File} setting those contents
      * via {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult#setResult(com.fasterxml.jackson.databind.JsonNode)}
-     * This implementation is a bit naive it will first try to use Jackson's {@link com.fasterxml.jackson.databind.ObjectMapper#readTree(java.io.File)}
-     * to parse the 'outFile' {@link java.io.File} and if that tosses an exception the code will
-     * assume its raw text data and store the result as a {@link com.fasterxml.jackson.databind.node.TextNode}
+     * using {@link ResultFileReader} which reads json output with a streaming
+     * parser and anything else as a {@link com.fasterxml.jackson.databind.node.TextNode}
+     * in a single pass. If {@link #setFileBackedResult(boolean) } was set,
+     * json output is not loaded into memory
      * @param cdr The object to update with results from 'outFile' {@link java.io.File}
      * @param outFile {@link java.io.File} to get data from
      * @throws Exception 
      */
     protected void updateCommunityDetectionResultWithFileContents(CommunityDetectionResult cdr, File outFile) throws Exception {
-        StringBuilder sb = new StringBuilder();
         if (outFile.isFile() == false){
             _logger.error(outFile.getAbsolutePath() + " does not exist or is not a file");
             return;
         }
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            cdr.setResult(mapper.readTree(outFile));
-        } catch(JsonParseException jpe){
-            _logger.debug("Received a json parsing error going to try to store result as string: ", jpe);
-            try (BufferedReader br = new BufferedReader(new FileReader(outFile))){
-                String line = br.readLine();
-                while(line != null){
-                    sb.append(line).append("\n");
-                    line = br.readLine();
-                }
-                cdr.setResult(new TextNode(sb.toString()));
-            }
-        }
+        cdr.setResult(new ResultFileReader().read(outFile, _fileBackedResult));
     }
     
     /**
@@ -242,10 +450,18 @@ public class DockerCommunityDetectionRunner implements Callable {
      * filesystem storing contents at {@link #getCommandRunFile() }
      */
     protected void writeCommandRunToFile(){
+        writeCommandRunToFile(_runner.getLastCommand());
+    }
+    
+    /**
+     * Writes {@code command} to {@link #getCommandRunFile() }
+     * @param command
+     */
+    protected void writeCommandRunToFile(final String command){
         File outFile = getCommandRunFile();
         
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))){
-            bw.write(_runner.getLastCommand());
+            bw.write(command);
         } catch(IOException io){
             _logger.error("Error writing command run to: " + outFile.getAbsolutePath(), io);
         }
@@ -253,63 +469,261 @@ public class DockerCommunityDetectionRunner implements Callable {
     
     /**
      * Runs the command line process set via the constructor storing output, error, and
-     * command run by this process to the file system. 
+     * command run by this process to the file system. This method blocks until
+     * the process finishes, see {@link #callAsync()} for a version that does not.
      * @return {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult} with status, message, and result set
      * @throws Exception if there was a problem with IO.
      */
     @Override
     public CommunityDetectionResult call() throws Exception {
+        CompletableFuture<CommunityDetectionResult> future = callAsync();
+        try {
+            return future.get();
+        } catch(InterruptedException ie){
+            future.cancel(true);
+            throw ie;
+        }
+    }
+    
+    /**
+     * Starts the command line process set via the constructor without waiting
+     * for it to finish. If a {@link WarmContainerPool} was set and it has an idle
+     * container, the task is sent to that container instead. Once the task
+     * finishes output, error, and command run are stored on the file system.
+     * Canceling the returned future kills the process
+     * @return future completed with {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult} 
+     *         with status, message, and result set
+     * @throws Exception if there was a problem writing the input file
+     */
+    @Override
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception {
         
         File workDir = new File(_workDir);
         
-        String mapDir = _workDir + ":" + _workDir + ":ro";
         _runner.setWorkingDirectory(_workDir);
         
-        String inputFile = writeInputFile();
+        // input was written or linked by constructor unless it is streamed
+        String inputFile = _standardInput ? STD_IN_INPUT_FILE : getInputFile().getAbsolutePath();
         
         File stdOutFile = getStandardOutFile();
         File stdErrFile = getStandardErrorFile();
         
         CommunityDetectionResult cdr = createCommunityDetectionResult();
         
+        CompletableFuture<Integer> procFuture = null;
+        final String commandRun;
         try {
             if (workDir.isDirectory() == false){
                 throw new Exception(_workDir + " directory does not exist");
             }
-            ArrayList<String> mCmd = new ArrayList<String>();
-            mCmd.add(_dockerCmd);
-            mCmd.add("run");
-            mCmd.add("--rm");
+            if (_warmContainerPool != null && _standardInput == false){
+                procFuture = runInWarmContainer(inputFile, stdOutFile, stdErrFile);
+            }
+            if (procFuture == null){
+                procFuture = runInNewContainer(inputFile, stdOutFile, stdErrFile);
+                commandRun = _runner.getLastCommand();
+            } else {
+                commandRun = "warm " + _warmContainerPool.getName() + " container: "
+                        + String.join(" ", getAlgorithmArguments(inputFile));
+            }
+        } catch(Exception ex){
+            updateCommunityDetectionResultWithError(cdr, ex);
+            return CompletableFuture.completedFuture(finishCommunityDetectionResult(cdr));
+        }
+        if (_progressListener != null){
+            _progressListener.progressUpdated(0);
+            StandardErrorProgressMonitor monitor = new StandardErrorProgressMonitor(stdErrFile,
+                    _progressListener);
+            monitor.start(StandardErrorProgressMonitor.DEFAULT_POLL_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+            procFuture.whenComplete((exitValue, ex) -> monitor.stop());
+        }
+        CompletableFuture<CommunityDetectionResult> future = procFuture.handle((exitValue, ex) -> {
+            try {
+                if (ex != null){
+                    throw ex;
+                }
+                writeCommandRunToFile(commandRun);
+                updateCommunityDetectionResult(exitValue, stdOutFile, stdErrFile, cdr);
+            } catch(Throwable t){
+                updateCommunityDetectionResultWithError(cdr, t);
+            }
+            return finishCommunityDetectionResult(cdr);
+        });
+        final CompletableFuture<Integer> finalProcFuture = procFuture;
+        future.whenComplete((res, ex) -> {
+            if (future.isCancelled()){
+                finalProcFuture.cancel(true);
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Runs task in new docker container. If a {@link DockerContainerReaper}
+     * was set, the container is registered with it while it runs and is
+     * removed if the returned future is canceled or the timeout is exceeded
+     * since killing the docker command line client does not stop the container
+     * @param inputFile path to input file
+     * @param stdOutFile
+     * @param stdErrFile
+     * @return future completed with exit code
+     * @throws Exception if docker could not be started
+     */
+    private CompletableFuture<Integer> runInNewContainer(final String inputFile,
+            File stdOutFile, File stdErrFile) throws Exception {
+        StandardInputWriter stdIn = _standardInput ? this::writeData : null;
+        if (_containerReaper == null){
+            return _runner.runCommandLineProcessAsync(_timeOut, _timeUnit, stdIn,
+                    stdOutFile, stdErrFile, getDockerCommand(inputFile));
+        }
+        final DockerContainerReaper reaper = _containerReaper;
+        final String containerName = _containerName;
+        reaper.register(containerName);
+        CompletableFuture<Integer> procFuture;
+        try {
+            procFuture = _runner.runCommandLineProcessAsync(_timeOut, _timeUnit, stdIn,
+                    stdOutFile, stdErrFile, getDockerCommand(inputFile));
+        } catch(Exception ex){
+            reaper.unregister(containerName);
+            throw ex;
+        }
+        final CompletableFuture<Integer> finalProcFuture = procFuture;
+        procFuture.whenComplete((exitValue, ex) -> {
+            if (finalProcFuture.isCancelled() || (exitValue != null
+                    && exitValue == ProcessSupervisor.TIMEOUT_EXIT_CODE)){
+                _logger.info("Removing container " + containerName + " of task "
+                        + _id + " since it was canceled or timed out");
+                reaper.removeContainer(containerName);
+            } else {
+                reaper.unregister(containerName);
+            }
+        });
+        return procFuture;
+    }
+    
+    /**
+     * Sends task to idle container in {@link WarmContainerPool} set via
+     * {@link #setWarmContainerPool(org.ndexbio.communitydetection.rest.engine.util.WarmContainerPool) }
+     * writing standard out and standard error from reply to {@code stdOutFile}
+     * and {@code stdErrFile}
+     * @param inputFile path to input file, which the pool links to where
+     *                  its containers can see it
+     * @param stdOutFile
+     * @param stdErrFile
+     * @return future completed with exit code or {@code null} if no 
+     *         container is idle
+     */
+    private CompletableFuture<Integer> runInWarmContainer(final String inputFile,
+            File stdOutFile, File stdErrFile){
+        List<String> arguments = getAlgorithmArguments(inputFile);
+        // pool passes path of linked input file in place of the input file
+        arguments.remove(arguments.size() - 1);
+        CompletableFuture<WarmContainer.Result> warmFuture = _warmContainerPool.runTask(_id,
+                arguments, new File(inputFile), _timeOut, _timeUnit);
+        if (warmFuture == null){
+            return null;
+        }
+        CompletableFuture<Integer> exitFuture = warmFuture.thenApply((res) -> {
+            try {
+                writeStringToFile(stdOutFile, res.getStandardOut());
+                writeStringToFile(stdErrFile, res.getStandardError());
+            } catch(IOException io){
+                throw new UncheckedIOException(io);
+            }
+            return res.getExitCode();
+        });
+        exitFuture.whenComplete((res, ex) -> {
+            if (exitFuture.isCancelled()){
+                warmFuture.cancel(true);
+            }
+        });
+        return exitFuture;
+    }
+    
+    private void writeStringToFile(File outFile, final String data) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outFile))){
+            if (data != null){
+                bw.write(data);
+            }
+        }
+    }
+    
+    /**
+     * Builds the docker command line used to run the algorithm. If data is
+     * streamed over standard input, the container is run interactively
+     * and the task directory is not mounted
+     * @param inputFile path to input file
+     * @return command with arguments
+     */
+    protected String[] getDockerCommand(final String inputFile){
+        String mapDir = _workDir + ":" + _workDir + ":ro";
+        ArrayList<String> mCmd = new ArrayList<String>();
+        mCmd.add(_dockerCmd);
+        mCmd.add("run");
+        if (_standardInput){
+            mCmd.add("-i");
+        }
+        mCmd.add("--rm");
+        if (_containerReaper != null){
+            mCmd.addAll(_containerReaper.getDockerRunArguments(_containerName));
+        } else {
+            mCmd.add("--name");
+            mCmd.add(_containerName);
+        }
+        if (_cpus > 0){
+            mCmd.add("--cpus");
+            mCmd.add(Double.toString(_cpus));
+        }
+        if (_memory > 0){
+            mCmd.add("--memory");
+            mCmd.add(Long.toString(_memory) + "m");
+        }
+        if (_standardInput == false){
             mCmd.add("-v");
             mCmd.add(mapDir);
-            mCmd.add(_dockerImage);
-            if (_customParameters != null){
-                _logger.debug("Custom Parameters is not null adding to command line call");
-                for (String key : _customParameters.keySet()){
-                    mCmd.add(key);
-                    
-                    String val = _customParameters.get(key);
-                    if (val != null && val.trim().isEmpty() == false){
-                        mCmd.add(val);
-                    }
+        }
+        mCmd.add(_dockerImage);
+        mCmd.addAll(getAlgorithmArguments(inputFile));
+        return mCmd.toArray(new String[0]);
+    }
+    
+    /**
+     * Builds the arguments passed to the algorithm which are the
+     * custom parameters followed by the input file
+     * @param inputFile path to input file
+     * @return arguments
+     */
+    protected List<String> getAlgorithmArguments(final String inputFile){
+        ArrayList<String> args = new ArrayList<>();
+        if (_customParameters != null){
+            _logger.debug("Custom Parameters is not null adding to command line call");
+            for (String key : _customParameters.keySet()){
+                args.add(key);
+
+                String val = _customParameters.get(key);
+                if (val != null && val.trim().isEmpty() == false){
+                    args.add(val);
                 }
-            } else {
-                _logger.debug("Custom Parameters is null");
             }
-            mCmd.add(inputFile);
-            int  exitValue = _runner.runCommandLineProcess(_timeOut, _timeUnit,
-                    stdOutFile, stdErrFile, mCmd.toArray(new String[0]));
-            writeCommandRunToFile();
-            updateCommunityDetectionResult(exitValue, stdOutFile, stdErrFile, cdr);
-            
-        } catch(Exception ex){
-            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
-            cdr.setMessage("Received error trying to run detection: " + ex.getMessage());
-            _logger.error("Received error trying to run algorithm for task in " + _workDir, ex);
+        } else {
+            _logger.debug("Custom Parameters is null");
         }
+        args.add(inputFile);
+        return args;
+    }
+    
+    private void updateCommunityDetectionResultWithError(CommunityDetectionResult cdr,
+            Throwable ex){
+        cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+        cdr.setMessage("Received error trying to run detection: " + ex.getMessage());
+        _logger.error("Received error trying to run algorithm for task in " + _workDir, ex);
+    }
+    
+    private CommunityDetectionResult finishCommunityDetectionResult(CommunityDetectionResult cdr){
         cdr.setProgress(100);
         cdr.setWallTime(System.currentTimeMillis() - cdr.getStartTime());
-        return cdr;          
+        return cdr;
     }
     
 }
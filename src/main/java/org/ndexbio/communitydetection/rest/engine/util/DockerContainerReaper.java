@@ -0,0 +1,270 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes docker containers run by {@link DockerCommunityDetectionRunner}.
+ * Killing the {@code docker} command line client does not stop the
+ * container it started, so containers are given a deterministic name
+ * via {@link #getContainerName(java.lang.String...) } and are removed
+ * with {@code docker rm -f} when their task is canceled or times out.
+ * <p>
+ * Containers are also labeled with {@value #OWNER_LABEL} set to the owner
+ * passed to the constructor. {@link #reapOrphans() } removes every container
+ * with that label that is not {@link #register(java.lang.String) registered}
+ * as running, which cleans up containers left behind when the server
+ * stopped without removing them. Containers are removed, and orphans
+ * reaped once {@link #start(long, java.util.concurrent.TimeUnit) } is
+ * called, on a single background thread so callers never wait on docker
+ * @author churas
+ */
+public class DockerContainerReaper {
+
+    static Logger _logger = LoggerFactory.getLogger(DockerContainerReaper.class);
+
+    /**
+     * Prefix of every container name
+     */
+    public static final String CONTAINER_PREFIX = "cdtask-";
+
+    /**
+     * Label set on every container, value is the owner
+     */
+    public static final String OWNER_LABEL = "org.ndexbio.communitydetection.owner";
+
+    /**
+     * Default number of seconds between searches for orphaned containers
+     */
+    public static final long DEFAULT_REAP_INTERVAL = 300;
+
+    /**
+     * Number of seconds to wait for a docker command before giving up on it
+     */
+    public static final long DOCKER_COMMAND_TIMEOUT = 30;
+
+    private final String _dockerCmd;
+    private final String _owner;
+    private final Set<String> _running;
+    private final ScheduledExecutorService _scheduler;
+
+    /**
+     * Constructor
+     * @param dockerCmd command to run docker
+     * @param owner identifies containers run by this server, such as the
+     *              path to its task directory, so the containers of other
+     *              servers using the same docker daemon are left alone
+     */
+    public DockerContainerReaper(final String dockerCmd, final String owner){
+        _dockerCmd = dockerCmd;
+        _owner = owner;
+        _running = ConcurrentHashMap.newKeySet();
+        final AtomicInteger counter = new AtomicInteger(0);
+        _scheduler = Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+            Thread t = new Thread(r, "container-reaper-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Builds container name by joining {@code parts} with {@code -} after
+     * {@value #CONTAINER_PREFIX}. Characters docker does not allow in
+     * names are replaced with {@code _}
+     * @param parts parts of name such as the task id
+     * @return container name
+     */
+    public static String getContainerName(final String... parts){
+        StringBuilder sb = new StringBuilder(CONTAINER_PREFIX);
+        sb.append(String.join("-", parts));
+        return sb.toString().replaceAll("[^a-zA-Z0-9_.-]", "_");
+    }
+
+    public String getOwner(){
+        return _owner;
+    }
+
+    /**
+     * Gets arguments to pass to {@code docker run} so container is named
+     * {@code containerName} and labeled with the owner of this reaper
+     * @param containerName name of container
+     * @return arguments
+     */
+    public List<String> getDockerRunArguments(final String containerName){
+        return Arrays.asList("--name", containerName, "--label", OWNER_LABEL + "=" + _owner);
+    }
+
+    /**
+     * Denotes container {@code containerName} is running so it is not
+     * removed by {@link #reapOrphans() }. Must be called before the
+     * container is started
+     * @param containerName name of container
+     */
+    public void register(final String containerName){
+        _running.add(containerName);
+    }
+
+    /**
+     * Denotes container {@code containerName} is no longer running
+     * @param containerName name of container
+     */
+    public void unregister(final String containerName){
+        _running.remove(containerName);
+    }
+
+    /**
+     * Gets number of containers registered as running
+     * @return
+     */
+    public int getNumberOfRunningContainers(){
+        return _running.size();
+    }
+
+    /**
+     * Kills and removes container {@code containerName} via {@code docker rm -f}
+     * in the background and then unregisters it
+     * @param containerName name of container
+     * @return future completed with {@code true} if container was removed
+     */
+    public CompletableFuture<Boolean> removeContainer(final String containerName){
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                runDockerCommand("rm", "-f", containerName);
+                _logger.info("Removed container " + containerName);
+                return true;
+            } catch(InterruptedException ie){
+                Thread.currentThread().interrupt();
+            } catch(Exception ex){
+                _logger.warn("Unable to remove container " + containerName
+                        + " : " + ex.getMessage());
+            } finally {
+                unregister(containerName);
+            }
+            return false;
+        }, _scheduler);
+    }
+
+    /**
+     * Removes every container labeled with the owner of this reaper that
+     * is not registered as running
+     * @return number of containers removed
+     */
+    public int reapOrphans(){
+        List<String> names;
+        try {
+            names = runDockerCommand("ps", "-a", "--filter",
+                    "label=" + OWNER_LABEL + "=" + _owner, "--format", "{{.Names}}");
+        } catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch(Exception ex){
+            _logger.warn("Unable to list containers : " + ex.getMessage());
+            return 0;
+        }
+        int removed = 0;
+        for (String name : names){
+            name = name.trim();
+            if (name.isEmpty() || _running.contains(name)){
+                continue;
+            }
+            try {
+                runDockerCommand("rm", "-f", name);
+                _logger.info("Removed orphaned container " + name);
+                removed++;
+            } catch(InterruptedException ie){
+                Thread.currentThread().interrupt();
+                return removed;
+            } catch(Exception ex){
+                _logger.warn("Unable to remove orphaned container " + name
+                        + " : " + ex.getMessage());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Runs {@link #reapOrphans() } in the background
+     * @return future completed with number of containers removed
+     */
+    public CompletableFuture<Integer> reapOrphansAsync(){
+        return CompletableFuture.supplyAsync(this::reapOrphans, _scheduler);
+    }
+
+    /**
+     * Runs {@link #reapOrphans() } every {@code interval} in the background
+     * @param interval time between runs, if 0 or less nothing is scheduled
+     * @param unit unit of {@code interval}
+     */
+    public void start(long interval, TimeUnit unit){
+        if (interval <= 0){
+            return;
+        }
+        _scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reapOrphans();
+            } catch(RuntimeException re){
+                // never let an error stop the scheduled runs
+                _logger.error("Error reaping orphaned containers", re);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops background thread, containers not yet removed are left alone
+     */
+    public void shutdown(){
+        _scheduler.shutdownNow();
+    }
+
+    /**
+     * Runs docker with {@code args}
+     * @param args arguments to pass to docker
+     * @return lines written to standard out and standard error
+     * @throws Exception if docker could not be run, exited with non zero
+     *         exit code, or did not finish within {@value #DOCKER_COMMAND_TIMEOUT}
+     *         seconds
+     */
+    protected List<String> runDockerCommand(final String... args) throws Exception {
+        ArrayList<String> cmd = new ArrayList<>();
+        cmd.add(_dockerCmd);
+        cmd.addAll(Arrays.asList(args));
+        // output goes to a file so a hung docker can not block reading it
+        File outFile = File.createTempFile("dockercmd", ".out");
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(outFile);
+        Process proc = null;
+        try {
+            proc = pb.start();
+            if (proc.waitFor(DOCKER_COMMAND_TIMEOUT, TimeUnit.SECONDS) == false){
+                throw new IOException("docker " + String.join(" ", args)
+                        + " did not finish within " + DOCKER_COMMAND_TIMEOUT + " seconds");
+            }
+            List<String> lines = Files.readAllLines(outFile.toPath(), StandardCharsets.UTF_8);
+            if (proc.exitValue() != 0){
+                throw new IOException("docker " + String.join(" ", args)
+                        + " exited with " + proc.exitValue() + ": " + String.join(" ", lines));
+            }
+            return lines;
+        } finally {
+            if (proc != null){
+                proc.destroyForcibly();
+            }
+            outFile.delete();
+        }
+    }
+}
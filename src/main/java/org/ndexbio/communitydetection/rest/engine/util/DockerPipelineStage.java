@@ -0,0 +1,116 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ * {@link PipelineStage} that runs an algorithm via {@link DockerCommunityDetectionRunner}
+ * in its own directory under the directory of the pipeline
+ * @author churas
+ */
+public class DockerPipelineStage implements PipelineStage {
+
+    private final String _stageId;
+    private final CommunityDetectionRequest _request;
+    private final long _startTime;
+    private final String _pipelineDir;
+    private final String _dockerCmd;
+    private final String _dockerImage;
+    private final long _timeOut;
+    private final TimeUnit _timeUnit;
+    private double _cpus;
+    private long _memory;
+    private WarmContainerPool _warmContainerPool;
+    private String _containerName;
+    private DockerContainerReaper _containerReaper;
+
+    /**
+     * Constructor
+     * @param stageId id of stage, used as name of directory for stage
+     * @param request algorithm and custom parameters to run, the data is only
+     *                used if this is the first stage
+     * @param startTime time pipeline started in ms since epoch
+     * @param pipelineDir directory of pipeline
+     * @param dockerCmd command to run docker
+     * @param dockerImage docker image to run
+     * @param timeOut any stage exceeding this time will be killed
+     * @param unit unit for timeout
+     */
+    public DockerPipelineStage(final String stageId, CommunityDetectionRequest request,
+            long startTime, final String pipelineDir, final String dockerCmd,
+            final String dockerImage, long timeOut, TimeUnit unit){
+        _stageId = stageId;
+        _request = request;
+        _startTime = startTime;
+        _pipelineDir = pipelineDir;
+        _dockerCmd = dockerCmd;
+        _dockerImage = dockerImage;
+        _timeOut = timeOut;
+        _timeUnit = unit;
+    }
+
+    /**
+     * Sets limits on resources docker container can use
+     * @param cpus number of CPUs, ignored if 0 or less
+     * @param memory megabytes of memory, ignored if 0 or less
+     */
+    public void setResourceLimits(double cpus, long memory){
+        _cpus = cpus;
+        _memory = memory;
+    }
+
+    public void setWarmContainerPool(WarmContainerPool pool){
+        _warmContainerPool = pool;
+    }
+    
+    /**
+     * Sets name given to docker container, by default it is derived
+     * from the id of the stage
+     * @param containerName name of container
+     */
+    public void setContainerName(final String containerName){
+        _containerName = containerName;
+    }
+    
+    /**
+     * Sets reaper that removes docker containers if they are canceled
+     * or time out
+     * @param reaper reaper, can be {@code null}
+     */
+    public void setContainerReaper(DockerContainerReaper reaper){
+        _containerReaper = reaper;
+    }
+
+    @Override
+    public String getName() {
+        return _request.getAlgorithm();
+    }
+
+    @Override
+    public CommunityDetectionRunner createRunner(File inputFile) throws Exception {
+        DockerCommunityDetectionRunner runner;
+        if (inputFile == null){
+            runner = new DockerCommunityDetectionRunner(_stageId, _request,
+                    _startTime, _pipelineDir, _dockerCmd, _dockerImage,
+                    _request.getCustomParameters(), _timeOut, _timeUnit);
+        } else {
+            runner = new DockerCommunityDetectionRunner(_stageId, inputFile,
+                    System.currentTimeMillis(), _pipelineDir, _dockerCmd, _dockerImage,
+                    _request.getCustomParameters(), _timeOut, _timeUnit);
+        }
+        runner.setResourceLimits(_cpus, _memory);
+        runner.setWarmContainerPool(_warmContainerPool);
+        if (_containerName != null){
+            runner.setContainerName(_containerName);
+        }
+        runner.setContainerReaper(_containerReaper);
+        return runner;
+    }
+
+    @Override
+    public File getOutputFile() {
+        return new File(_pipelineDir + File.separator + _stageId + File.separator
+                + DockerCommunityDetectionRunner.STD_OUT_FILE);
+    }
+}
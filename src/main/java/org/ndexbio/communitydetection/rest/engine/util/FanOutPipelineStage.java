@@ -0,0 +1,147 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ * {@link PipelineStage} that runs an algorithm on every community in a
+ * COMMUNITYDETECTRESULT formatted hierarchy via {@link FanOutRunner}
+ * @author churas
+ */
+public class FanOutPipelineStage implements PipelineStage {
+
+    private final String _stageId;
+    private final CommunityDetectionRequest _request;
+    private final Map<String, String> _nodeNames;
+    private final long _startTime;
+    private final String _pipelineDir;
+    private final String _dockerCmd;
+    private final String _dockerImage;
+    private final int _concurrency;
+    private final long _timeOut;
+    private final TimeUnit _timeUnit;
+    private double _cpus;
+    private long _memory;
+    private WarmContainerPool _warmContainerPool;
+    private String _containerName;
+    private DockerContainerReaper _containerReaper;
+
+    /**
+     * Constructor
+     * @param stageId id of stage, used as name of directory for stage
+     * @param request algorithm and custom parameters to run on each community,
+     *                the data, which is the hierarchy, is only used if this is
+     *                the first stage
+     * @param nodeNames maps member ids to gene names, can be {@code null}
+     * @param startTime time pipeline started in ms since epoch
+     * @param pipelineDir directory of pipeline
+     * @param dockerCmd command to run docker
+     * @param dockerImage docker image to run
+     * @param concurrency maximum number of communities to run at once
+     * @param timeOut any community exceeding this time will be killed
+     * @param unit unit for timeout
+     */
+    public FanOutPipelineStage(final String stageId, CommunityDetectionRequest request,
+            Map<String, String> nodeNames, long startTime, final String pipelineDir,
+            final String dockerCmd, final String dockerImage, int concurrency,
+            long timeOut, TimeUnit unit){
+        _stageId = stageId;
+        _request = request;
+        _nodeNames = nodeNames;
+        _startTime = startTime;
+        _pipelineDir = pipelineDir;
+        _dockerCmd = dockerCmd;
+        _dockerImage = dockerImage;
+        _concurrency = concurrency;
+        _timeOut = timeOut;
+        _timeUnit = unit;
+    }
+
+    /**
+     * Sets limits on resources each docker container can use
+     * @param cpus number of CPUs, ignored if 0 or less
+     * @param memory megabytes of memory, ignored if 0 or less
+     */
+    public void setResourceLimits(double cpus, long memory){
+        _cpus = cpus;
+        _memory = memory;
+    }
+
+    public void setWarmContainerPool(WarmContainerPool pool){
+        _warmContainerPool = pool;
+    }
+    
+    /**
+     * Sets prefix of container names, see
+     * {@link FanOutRunner#setContainerName(java.lang.String) }
+     * @param containerName name of container
+     */
+    public void setContainerName(final String containerName){
+        _containerName = containerName;
+    }
+    
+    /**
+     * Sets reaper that removes docker containers if they are canceled
+     * or time out
+     * @param reaper reaper, can be {@code null}
+     */
+    public void setContainerReaper(DockerContainerReaper reaper){
+        _containerReaper = reaper;
+    }
+
+    @Override
+    public String getName() {
+        return _request.getAlgorithm();
+    }
+
+    @Override
+    public CommunityDetectionRunner createRunner(File inputFile) throws Exception {
+        File hierarchyFile = inputFile;
+        long startTime = System.currentTimeMillis();
+        if (hierarchyFile == null){
+            hierarchyFile = writeHierarchyFile();
+            startTime = _startTime;
+        }
+        FanOutRunner runner = new FanOutRunner(_stageId, hierarchyFile, startTime,
+                _pipelineDir, _dockerCmd, _dockerImage, _request.getCustomParameters(),
+                _nodeNames, _concurrency, _timeOut, _timeUnit);
+        runner.setResourceLimits(_cpus, _memory);
+        runner.setWarmContainerPool(_warmContainerPool);
+        if (_containerName != null){
+            runner.setContainerName(_containerName);
+        }
+        runner.setContainerReaper(_containerReaper);
+        return runner;
+    }
+
+    /**
+     * Writes data of request to input file of stage
+     * @return input file
+     * @throws Exception if there was an error writing the file
+     */
+    private File writeHierarchyFile() throws Exception {
+        File stageDir = new File(_pipelineDir + File.separator + _stageId);
+        if (stageDir.isDirectory() == false && stageDir.mkdirs() == false){
+            throw new CommunityDetectionException("Unable to create directory: "
+                    + stageDir.getAbsolutePath());
+        }
+        File inputFile = new File(stageDir, DockerCommunityDetectionRunner.INPUT_FILE);
+        JsonNode data = _request.getData();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(inputFile))){
+            bw.write(data.isTextual() ? data.asText() : data.toString());
+        }
+        return inputFile;
+    }
+
+    @Override
+    public File getOutputFile() {
+        return new File(_pipelineDir + File.separator + _stageId + File.separator
+                + DockerCommunityDetectionRunner.STD_OUT_FILE);
+    }
+}
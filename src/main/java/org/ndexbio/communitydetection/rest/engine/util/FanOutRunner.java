@@ -0,0 +1,405 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a term mapping algorithm, such as one that takes a GENELIST, on every
+ * community in a COMMUNITYDETECTRESULT formatted hierarchy. The hierarchy is
+ * made up of {@code SOURCE,TARGET,INTERACTION;} edges where {@code c-c} edges
+ * link a community to a child community and {@code c-m} edges link a community
+ * to a member. The genes of a community are its members plus the genes of its
+ * child communities.
+ * <p>
+ * Each community is run via {@link DockerCommunityDetectionRunner} in its own
+ * directory under the directory of this task with no more than the concurrency
+ * set in the constructor running at once. The result is a json object whose
+ * keys are the community ids and whose values are the results of the algorithm
+ * for that community. Communities the algorithm failed on are left out. If the
+ * algorithm fails on every community the task fails.
+ * @author churas
+ */
+public class FanOutRunner implements CommunityDetectionRunner {
+
+    static Logger _logger = LoggerFactory.getLogger(FanOutRunner.class);
+
+    /**
+     * Prefix of directory for each community which is followed by the index
+     * of the community in the hierarchy
+     */
+    public static final String COMMUNITY_DIR_PREFIX = "community_";
+
+    /**
+     * Interaction of edge linking community to child community
+     */
+    public static final String COMMUNITY_COMMUNITY = "c-c";
+
+    /**
+     * Interaction of edge linking community to member
+     */
+    public static final String COMMUNITY_MEMBER = "c-m";
+
+    private final String _id;
+    private final File _inputFile;
+    private final long _startTime;
+    private final String _workDir;
+    private final String _dockerCmd;
+    private final String _dockerImage;
+    private final Map<String, String> _customParameters;
+    private final Map<String, String> _nodeNames;
+    private final int _concurrency;
+    private final long _timeOut;
+    private final TimeUnit _timeUnit;
+    private double _cpus;
+    private long _memory;
+    private WarmContainerPool _warmContainerPool;
+    private String _containerName;
+    private DockerContainerReaper _containerReaper;
+
+    /**
+     * Constructor
+     * @param id id of task
+     * @param inputFile file containing COMMUNITYDETECTRESULT formatted hierarchy
+     * @param startTime Time task started in ms since epoch (1969)
+     * @param taskDir Base directory for tasks (this task will be put into taskDir/id)
+     * @param dockerCmd Command to run docker (/usr/bin/docker /bin/docker etc..)
+     * @param dockerImage Docker image of algorithm to run on each community
+     * @param customParameters custom parameters passed to algorithm
+     * @param nodeNames maps member ids in hierarchy to gene names, members
+     *                  not in map, or all members if {@code null}, are
+     *                  passed as is
+     * @param concurrency maximum number of communities to run at once,
+     *                    values less than 1 are treated as 1
+     * @param timeOut Any community exceeding this time (in unit set by unit) will be killed
+     * @param unit Unit to use for timeout
+     */
+    public FanOutRunner(final String id, final File inputFile, long startTime,
+            final String taskDir, final String dockerCmd, final String dockerImage,
+            final Map<String, String> customParameters,
+            final Map<String, String> nodeNames, int concurrency,
+            long timeOut, TimeUnit unit){
+        _id = id;
+        _inputFile = inputFile;
+        _startTime = startTime;
+        _workDir = taskDir + File.separator + id;
+        _dockerCmd = dockerCmd;
+        _dockerImage = dockerImage;
+        _customParameters = customParameters;
+        _nodeNames = nodeNames;
+        _concurrency = Math.max(1, concurrency);
+        _timeOut = timeOut;
+        _timeUnit = unit;
+        _containerName = DockerContainerReaper.getContainerName(id);
+    }
+
+    /**
+     * Sets limits on resources each docker container can use
+     * @param cpus number of CPUs, ignored if 0 or less
+     * @param memory megabytes of memory, ignored if 0 or less
+     */
+    public void setResourceLimits(double cpus, long memory){
+        _cpus = cpus;
+        _memory = memory;
+    }
+
+    public void setWarmContainerPool(WarmContainerPool pool){
+        _warmContainerPool = pool;
+    }
+    
+    /**
+     * Sets prefix of container names, the container of each community is
+     * named with this prefix followed by {@code -}, {@value #COMMUNITY_DIR_PREFIX},
+     * and the index of the community
+     * @param containerName name of container
+     */
+    public void setContainerName(final String containerName){
+        _containerName = containerName;
+    }
+    
+    /**
+     * Sets reaper that removes docker containers if they are canceled
+     * or time out
+     * @param reaper reaper, can be {@code null}
+     */
+    public void setContainerReaper(DockerContainerReaper reaper){
+        _containerReaper = reaper;
+    }
+
+    /**
+     * Gets file where aggregate result is written
+     * @return
+     */
+    public File getOutputFile(){
+        return new File(_workDir + File.separator + DockerCommunityDetectionRunner.STD_OUT_FILE);
+    }
+
+    /**
+     * Parses COMMUNITYDETECTRESULT formatted {@code hierarchy} into the genes
+     * of each community. Cycles in {@code c-c} edges are ignored
+     * @param hierarchy edges in {@code SOURCE,TARGET,INTERACTION;} format
+     * @param nodeNames maps member ids to gene names, can be {@code null}
+     * @return community ids in order they first appear mapped to their
+     *         sorted genes
+     * @throws CommunityDetectionException if an edge is malformed
+     */
+    public static LinkedHashMap<String, List<String>> getGeneLists(final String hierarchy,
+            final Map<String, String> nodeNames) throws CommunityDetectionException {
+        LinkedHashMap<String, List<String>> children = new LinkedHashMap<>();
+        LinkedHashMap<String, List<String>> members = new LinkedHashMap<>();
+        for (String edge : hierarchy.split(";")){
+            String trimmedEdge = edge.trim();
+            if (trimmedEdge.isEmpty()){
+                continue;
+            }
+            String[] split = trimmedEdge.split(",");
+            if (split.length < 3){
+                throw new CommunityDetectionException("Invalid edge in hierarchy: " + trimmedEdge);
+            }
+            String source = split[0].trim();
+            String target = split[1].trim();
+            String interaction = split[2].trim();
+            children.computeIfAbsent(source, k -> new ArrayList<>());
+            members.computeIfAbsent(source, k -> new ArrayList<>());
+            if (interaction.startsWith(COMMUNITY_COMMUNITY)){
+                children.get(source).add(target);
+            } else if (interaction.startsWith(COMMUNITY_MEMBER)){
+                String gene = nodeNames == null ? target : nodeNames.getOrDefault(target, target);
+                members.get(source).add(gene);
+            }
+        }
+        HashMap<String, Set<String>> genes = new HashMap<>();
+        LinkedHashMap<String, List<String>> geneLists = new LinkedHashMap<>();
+        for (String community : children.keySet()){
+            geneLists.put(community, new ArrayList<>(getGenes(community, children,
+                    members, genes, new HashSet<>())));
+        }
+        return geneLists;
+    }
+
+    private static Set<String> getGenes(final String community,
+            Map<String, List<String>> children, Map<String, List<String>> members,
+            Map<String, Set<String>> genes, Set<String> visiting){
+        Set<String> communityGenes = genes.get(community);
+        if (communityGenes != null){
+            return communityGenes;
+        }
+        communityGenes = new TreeSet<>();
+        if (visiting.add(community) == false){
+            return communityGenes;
+        }
+        communityGenes.addAll(members.getOrDefault(community, Collections.emptyList()));
+        for (String child : children.getOrDefault(community, Collections.emptyList())){
+            communityGenes.addAll(getGenes(child, children, members, genes, visiting));
+        }
+        visiting.remove(community);
+        genes.put(community, communityGenes);
+        return communityGenes;
+    }
+
+    /**
+     * Parses hierarchy in input file and starts the algorithm on as many
+     * communities as allowed by the concurrency set in the constructor,
+     * starting another as each one finishes
+     * @return future completed with aggregate result. Canceling the
+     *         future cancels any communities that are running
+     * @throws Exception if input file could not be read or parsed
+     */
+    @Override
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception {
+        String hierarchy = new String(Files.readAllBytes(_inputFile.toPath()),
+                StandardCharsets.UTF_8);
+        List<Map.Entry<String, List<String>>> communities = new ArrayList<>(getGeneLists(hierarchy,
+                _nodeNames).entrySet());
+        File workDir = new File(_workDir);
+        if (workDir.isDirectory() == false && workDir.mkdirs() == false){
+            throw new CommunityDetectionException("Unable to create directory: " + _workDir);
+        }
+        _logger.debug("Task " + _id + " fanning out to " + communities.size() + " communities");
+        FanOut fanOut = new FanOut(communities);
+        fanOut.start();
+        return fanOut._future;
+    }
+
+    /**
+     * Tracks communities being run by a call to {@link #callAsync() }
+     */
+    private class FanOut {
+
+        private final List<Map.Entry<String, List<String>>> _communities;
+        private final CommunityDetectionResult[] _results;
+        private final ConcurrentHashMap<Integer, CompletableFuture<CommunityDetectionResult>> _running;
+        private final CompletableFuture<CommunityDetectionResult> _future;
+        private int _nextIndex;
+        private int _remaining;
+        private int _toStart;
+        private boolean _starting;
+
+        FanOut(List<Map.Entry<String, List<String>>> communities){
+            _communities = communities;
+            _results = new CommunityDetectionResult[communities.size()];
+            _running = new ConcurrentHashMap<>();
+            _future = new CompletableFuture<>();
+            _nextIndex = 0;
+            _remaining = communities.size();
+            _future.whenComplete((res, ex) -> {
+                if (_future.isCancelled()){
+                    for (CompletableFuture<CommunityDetectionResult> f : _running.values()){
+                        f.cancel(true);
+                    }
+                }
+            });
+        }
+
+        void start(){
+            if (_communities.isEmpty()){
+                finish();
+                return;
+            }
+            startCommunities(_concurrency);
+        }
+
+        /**
+         * Starts {@code count} more communities. A community whose runner
+         * fails right away completes on this thread and asks for another
+         * to be started, so rather than recurse, which for thousands of
+         * communities would overflow the stack, only the first caller
+         * starts communities and does so in a loop until none are asked for
+         */
+        private void startCommunities(int count){
+            synchronized(this){
+                _toStart += count;
+                if (_starting){
+                    return;
+                }
+                _starting = true;
+            }
+            while (true){
+                synchronized(this){
+                    if (_toStart == 0){
+                        _starting = false;
+                        return;
+                    }
+                    _toStart--;
+                }
+                startNext();
+            }
+        }
+
+        private void startNext(){
+            int index;
+            synchronized(this){
+                if (_future.isDone() || _nextIndex >= _communities.size()){
+                    return;
+                }
+                index = _nextIndex++;
+            }
+            CompletableFuture<CommunityDetectionResult> communityFuture;
+            try {
+                communityFuture = createRunner(index).callAsync();
+            } catch(Exception ex){
+                communityFuture = new CompletableFuture<>();
+                communityFuture.completeExceptionally(ex);
+            }
+            _running.put(index, communityFuture);
+            if (_future.isCancelled()){
+                communityFuture.cancel(true);
+            }
+            communityFuture.whenComplete((res, ex) -> communityCompleted(index, res, ex));
+        }
+
+        private void communityCompleted(int index, CommunityDetectionResult res, Throwable ex){
+            _running.remove(index);
+            if (ex != null){
+                res = new CommunityDetectionResult();
+                res.setStatus(CommunityDetectionResult.FAILED_STATUS);
+                res.setMessage(ex.getMessage());
+            }
+            boolean done;
+            synchronized(this){
+                _results[index] = res;
+                done = --_remaining == 0;
+            }
+            if (done){
+                finish();
+            } else {
+                startCommunities(1);
+            }
+        }
+
+        private DockerCommunityDetectionRunner createRunner(int index) throws Exception {
+            CommunityDetectionRequest request = new CommunityDetectionRequest();
+            request.setData(new TextNode(String.join(",", _communities.get(index).getValue())));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner(COMMUNITY_DIR_PREFIX + index,
+                    request, System.currentTimeMillis(), _workDir, _dockerCmd, _dockerImage,
+                    _customParameters, _timeOut, _timeUnit);
+            runner.setResourceLimits(_cpus, _memory);
+            runner.setWarmContainerPool(_warmContainerPool);
+            runner.setContainerName(_containerName + "-" + COMMUNITY_DIR_PREFIX + index);
+            runner.setContainerReaper(_containerReaper);
+            return runner;
+        }
+
+        private void finish(){
+            ObjectMapper mapper = new ObjectMapper();
+            ObjectNode aggregate = mapper.createObjectNode();
+            int failed = 0;
+            String firstFailure = null;
+            for (int i = 0; i < _results.length; i++){
+                CommunityDetectionResult res = _results[i];
+                String community = _communities.get(i).getKey();
+                if (res != null && CommunityDetectionResult.COMPLETE_STATUS.equals(res.getStatus())){
+                    aggregate.set(community, res.getResult());
+                    continue;
+                }
+                failed++;
+                if (firstFailure == null){
+                    firstFailure = "community " + community + ": "
+                            + (res == null ? "no result" : res.getMessage());
+                }
+            }
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setId(_id);
+            cdr.setStartTime(_startTime);
+            cdr.setProgress(100);
+            cdr.setResult(aggregate);
+            if (failed > 0 && failed == _results.length){
+                cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            } else {
+                cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+            }
+            if (failed > 0){
+                cdr.setMessage(failed + " of " + _results.length
+                        + " communities failed, first was " + firstFailure);
+            }
+            try {
+                mapper.writeValue(getOutputFile(), aggregate);
+            } catch(IOException io){
+                _logger.error("Unable to write " + getOutputFile().getAbsolutePath(), io);
+            }
+            cdr.setWallTime(System.currentTimeMillis() - _startTime);
+            _future.complete(cdr);
+        }
+    }
+}
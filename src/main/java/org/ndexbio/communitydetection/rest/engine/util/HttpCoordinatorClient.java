@@ -0,0 +1,132 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import org.ndexbio.communitydetection.rest.engine.RemoteTask;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.services.Configuration;
+
+/**
+ * {@link CoordinatorClient} that talks to the coordinator over HTTP
+ * via the endpoints under {@value org.ndexbio.communitydetection.rest.services.Configuration#COORDINATOR_PATH}
+ * @author churas
+ */
+public class HttpCoordinatorClient implements CoordinatorClient {
+
+    /**
+     * Time in milliseconds to wait to connect to coordinator
+     */
+    public static final int CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Time in milliseconds, on top of any time the coordinator is asked
+     * to wait, to wait for a response
+     */
+    public static final int READ_TIMEOUT = 30000;
+
+    private final String _baseURL;
+    private final String _token;
+    private final ObjectMapper _mapper;
+
+    /**
+     * Constructor
+     * @param baseURL URL of coordinator such as http://host:8081/cd/communitydetection
+     * @param token token sent to coordinator, can be {@code null}
+     */
+    public HttpCoordinatorClient(final String baseURL, final String token){
+        _baseURL = baseURL.endsWith("/") ? baseURL.substring(0, baseURL.length() - 1) : baseURL;
+        _token = token;
+        _mapper = new ObjectMapper();
+        _mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public RemoteTask claim(final String workerId, long waitMillis) throws Exception {
+        HttpURLConnection conn = post("/tasks?worker=" + encode(workerId)
+                + "&wait=" + waitMillis, null, waitMillis);
+        try {
+            int status = conn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NO_CONTENT){
+                return null;
+            }
+            checkStatus(conn, status, HttpURLConnection.HTTP_OK);
+            try (InputStream in = conn.getInputStream()){
+                return _mapper.readValue(in, RemoteTask.class);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Override
+    public boolean renew(final String taskId, final String workerId) throws Exception {
+        return postAndCheckGone("/tasks/" + encode(taskId) + "/lease?worker="
+                + encode(workerId), null);
+    }
+
+    @Override
+    public boolean complete(final String taskId, final String workerId,
+            final CommunityDetectionResult cdr) throws Exception {
+        return postAndCheckGone("/tasks/" + encode(taskId) + "/result?worker="
+                + encode(workerId), _mapper.writeValueAsBytes(cdr));
+    }
+
+    /**
+     * Posts to coordinator
+     * @return true if coordinator replied with no content, false if it
+     *         replied that the task is gone
+     * @throws IOException if coordinator replied with any other status
+     */
+    private boolean postAndCheckGone(final String path, byte[] body) throws IOException {
+        HttpURLConnection conn = post(path, body, 0);
+        try {
+            int status = conn.getResponseCode();
+            if (status == 410){
+                return false;
+            }
+            checkStatus(conn, status, HttpURLConnection.HTTP_NO_CONTENT);
+            return true;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private HttpURLConnection post(final String path, byte[] body, long waitMillis) throws IOException {
+        URL url = new URL(_baseURL + Configuration.V_ONE_PATH
+                + Configuration.COORDINATOR_PATH + path);
+        HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout((int)Math.min(Integer.MAX_VALUE, READ_TIMEOUT + waitMillis));
+        if (_token != null){
+            conn.setRequestProperty(Configuration.COORDINATOR_TOKEN_HEADER, _token);
+        }
+        conn.setDoOutput(true);
+        if (body != null){
+            conn.setRequestProperty("Content-Type", "application/json");
+        }
+        try (OutputStream out = conn.getOutputStream()){
+            if (body != null){
+                out.write(body);
+            }
+        }
+        return conn;
+    }
+
+    private void checkStatus(HttpURLConnection conn, int status, int expected) throws IOException {
+        if (status != expected){
+            throw new IOException("Coordinator replied with " + status + " "
+                    + conn.getResponseMessage() + " for " + conn.getURL());
+        }
+    }
+
+    private String encode(final String val) throws IOException {
+        return URLEncoder.encode(val, "UTF-8");
+    }
+}
@@ -0,0 +1,149 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs an {@link org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm}
+ * on the thread calling {@link #callAsync() }, which for tasks run by the
+ * engine is a worker pool thread. Unlike the other runners the returned
+ * future is already complete, canceling the task interrupts the thread
+ * running the algorithm instead. The thread is also interrupted once the
+ * timeout is exceeded in which case the task fails with the same message
+ * as a docker task that exceeded the timeout
+ * @author churas
+ */
+public class InProcessCommunityDetectionRunner implements CommunityDetectionRunner {
+
+    static Logger _logger = LoggerFactory.getLogger(InProcessCommunityDetectionRunner.class);
+
+    private final String _id;
+    private final CommunityDetectionRequest _request;
+    private final long _startTime;
+    /**
+     * Message of result when timeout is exceeded
+     */
+    public static final String TIMEOUT_MESSAGE = "Runtime limit exceeded";
+
+    private static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread t = new Thread(r, "inprocess-timeout");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final InProcessAlgorithm _algorithm;
+    private final long _timeOut;
+    private final TimeUnit _timeUnit;
+    private ProgressListener _progressListener;
+    private Thread _runningThread;
+    private boolean _timedOut;
+
+    /**
+     * Constructor
+     * @param id id of task
+     * @param request the request
+     * @param startTime time task started in ms since epoch
+     * @param algorithm algorithm to run
+     * @param timeOut algorithm is interrupted once it runs longer than this,
+     *                0 or less means no limit
+     * @param unit unit of {@code timeOut}
+     */
+    public InProcessCommunityDetectionRunner(final String id,
+            final CommunityDetectionRequest request, long startTime,
+            final InProcessAlgorithm algorithm, long timeOut, TimeUnit unit){
+        _id = id;
+        _request = request;
+        _startTime = startTime;
+        _algorithm = algorithm;
+        _timeOut = timeOut;
+        _timeUnit = unit;
+    }
+
+    /**
+     * Sets listener notified with 0 once the algorithm starts and then with
+     * any progress the algorithm reports
+     * @param listener listener or {@code null} to not report progress
+     */
+    public void setProgressListener(ProgressListener listener){
+        _progressListener = listener;
+    }
+
+    /**
+     * Runs the algorithm, blocking until it finishes
+     * @return completed future with result which has failed status if
+     *         algorithm raised an error or exceeded the timeout
+     * @throws InterruptedException if interrupted, other than by the
+     *         timeout, while algorithm was running
+     */
+    @Override
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception {
+        CommunityDetectionResult cdr = new CommunityDetectionResult();
+        cdr.setId(_id);
+        cdr.setStartTime(_startTime);
+        ProgressListener listener = _progressListener == null ? (progress) -> {} : _progressListener;
+        ScheduledFuture<?> timer = null;
+        synchronized(this){
+            _runningThread = Thread.currentThread();
+        }
+        try {
+            if (_timeOut > 0){
+                timer = TIMER.schedule(this::timeOut, _timeOut, _timeUnit);
+            }
+            listener.progressUpdated(0);
+            JsonNode result = _algorithm.run(_request, listener);
+            cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+            cdr.setResult(result);
+        } catch(InterruptedException ie){
+            if (isTimedOut() == false){
+                throw ie;
+            }
+            _logger.error("Task " + _id + " exceeded timeout of " + _timeOut
+                    + " " + _timeUnit);
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage(TIMEOUT_MESSAGE);
+        } catch(Exception ex){
+            _logger.error("Received error running " + _request.getAlgorithm()
+                    + " for task " + _id, ex);
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage("Received error trying to run detection: " + ex.getMessage());
+        } finally {
+            if (timer != null){
+                timer.cancel(false);
+            }
+            synchronized(this){
+                _runningThread = null;
+            }
+        }
+        if (isTimedOut()){
+            // timeout fired after algorithm finished, do not leak interrupt
+            Thread.interrupted();
+        }
+        cdr.setProgress(100);
+        cdr.setWallTime(System.currentTimeMillis() - _startTime);
+        return CompletableFuture.completedFuture(cdr);
+    }
+
+    /**
+     * Interrupts thread running algorithm, if it is still running
+     */
+    private synchronized void timeOut(){
+        if (_runningThread != null){
+            _timedOut = true;
+            _runningThread.interrupt();
+        }
+    }
+
+    private synchronized boolean isTimedOut(){
+        return _timedOut;
+    }
+}
@@ -0,0 +1,78 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ * Runs algorithm installed on this host directly, without docker. Input,
+ * arguments, working directory and capture of standard out and standard
+ * error are the same as {@link DockerCommunityDetectionRunner}, but the
+ * command run is the executable followed by the arguments, so no
+ * container is created, no directory is mounted and the docker daemon is
+ * never contacted. Since there is no container, warm containers, the
+ * container reaper and resource limits are ignored
+ * @author churas
+ */
+public class NativeCommunityDetectionRunner extends DockerCommunityDetectionRunner {
+
+    private final String _executable;
+
+    /**
+     * Constructor
+     * @param id id of task
+     * @param cdr The request to process
+     * @param startTime Time task started in ms since epoch (1969)
+     * @param taskDir Base directory for tasks (this task will be put into taskDir/id)
+     * @param executable Path to algorithm executable on this host
+     * @param customParameters custom parameters passed to algorithm
+     * @param timeOut Any task exceeding this time (in unit set by unit) will be killed
+     * @param unit Unit to use for timeout
+     * @param standardInput if {@code true} data is streamed over standard input
+     * @throws Exception If there is an issue creating the task directory or
+     *                   writing the input data from the cdr object
+     */
+    public NativeCommunityDetectionRunner(final String id,
+            final CommunityDetectionRequest cdr, final long startTime, final String taskDir,
+            final String executable, final Map<String, String> customParameters,
+            final long timeOut, final TimeUnit unit, boolean standardInput) throws Exception {
+        super(id, cdr, startTime, taskDir, executable, executable, customParameters,
+                timeOut, unit, standardInput);
+        _executable = executable;
+    }
+
+    public String getExecutable(){
+        return _executable;
+    }
+
+    /**
+     * Warm containers are not used, this method does nothing
+     * @param pool ignored
+     */
+    @Override
+    public void setWarmContainerPool(WarmContainerPool pool){
+    }
+
+    /**
+     * There is no container to remove, this method does nothing
+     * @param reaper ignored
+     */
+    @Override
+    public void setContainerReaper(DockerContainerReaper reaper){
+    }
+
+    /**
+     * Builds command line that runs executable directly
+     * @param inputFile path to input file
+     * @return executable followed by algorithm arguments
+     */
+    @Override
+    protected String[] getDockerCommand(final String inputFile){
+        List<String> mCmd = new ArrayList<>();
+        mCmd.add(_executable);
+        mCmd.addAll(getAlgorithmArguments(inputFile));
+        return mCmd.toArray(new String[0]);
+    }
+}
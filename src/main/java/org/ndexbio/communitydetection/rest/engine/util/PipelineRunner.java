@@ -0,0 +1,122 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a list of {@link PipelineStage} objects one after another passing
+ * the output file of each stage as the input file of the next stage. The
+ * result of the pipeline is the result of the last stage. If a stage does
+ * not complete, the remaining stages are not run and the pipeline fails.
+ * @author churas
+ */
+public class PipelineRunner implements CommunityDetectionRunner {
+
+    static Logger _logger = LoggerFactory.getLogger(PipelineRunner.class);
+
+    private final String _id;
+    private final List<PipelineStage> _stages;
+    private final long _startTime;
+
+    /**
+     * Constructor
+     * @param id id of task running pipeline
+     * @param stages stages to run in order
+     * @param startTime time task was submitted in ms since epoch
+     */
+    public PipelineRunner(final String id, List<PipelineStage> stages, long startTime){
+        _id = id;
+        _stages = stages;
+        _startTime = startTime;
+    }
+
+    /**
+     * Starts first stage of pipeline
+     * @return future completed with result of pipeline. Canceling the
+     *         future stops the stage that is running
+     * @throws Exception if first stage could not be started
+     */
+    @Override
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception {
+        CompletableFuture<CommunityDetectionResult> future = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<CommunityDetectionResult>> running = new AtomicReference<>();
+        future.whenComplete((res, ex) -> {
+            if (future.isCancelled()){
+                CompletableFuture<CommunityDetectionResult> stageFuture = running.get();
+                if (stageFuture != null){
+                    stageFuture.cancel(true);
+                }
+            }
+        });
+        runStage(0, null, future, running);
+        return future;
+    }
+
+    private void runStage(int index, File inputFile,
+            CompletableFuture<CommunityDetectionResult> future,
+            AtomicReference<CompletableFuture<CommunityDetectionResult>> running) throws Exception {
+        PipelineStage stage = _stages.get(index);
+        _logger.debug("Task " + _id + " starting stage " + index + " (" + stage.getName() + ")");
+        CompletableFuture<CommunityDetectionResult> stageFuture = stage.createRunner(inputFile).callAsync();
+        running.set(stageFuture);
+        if (future.isCancelled()){
+            stageFuture.cancel(true);
+            return;
+        }
+        stageFuture.whenComplete((res, ex) -> {
+            if (future.isDone()){
+                return;
+            }
+            if (ex != null){
+                future.completeExceptionally(ex);
+                return;
+            }
+            if (res == null || CommunityDetectionResult.COMPLETE_STATUS.equals(res.getStatus()) == false){
+                future.complete(getPipelineResult(res, "Stage " + index + " ("
+                        + stage.getName() + ") failed: "
+                        + (res == null ? "no result" : res.getMessage())));
+                return;
+            }
+            if (index == _stages.size() - 1){
+                future.complete(getPipelineResult(res, null));
+                return;
+            }
+            try {
+                runStage(index + 1, stage.getOutputFile(), future, running);
+            } catch(Exception e){
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Creates result of pipeline from result of a stage
+     * @param stageResult result of last stage run
+     * @param failMessage if not {@code null} pipeline failed with this message
+     * @return result of pipeline
+     */
+    private CommunityDetectionResult getPipelineResult(CommunityDetectionResult stageResult,
+            final String failMessage){
+        CommunityDetectionResult cdr = new CommunityDetectionResult();
+        cdr.setId(_id);
+        cdr.setStartTime(_startTime);
+        cdr.setProgress(100);
+        cdr.setWallTime(System.currentTimeMillis() - _startTime);
+        if (stageResult != null){
+            cdr.setResult(stageResult.getResult());
+            cdr.setMessage(stageResult.getMessage());
+        }
+        if (failMessage != null){
+            cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+            cdr.setMessage(failMessage);
+        } else {
+            cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+        }
+        return cdr;
+    }
+}
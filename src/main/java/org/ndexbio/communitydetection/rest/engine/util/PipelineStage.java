@@ -0,0 +1,32 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+
+/**
+ * A stage of a pipeline run by {@link PipelineRunner}
+ * @author churas
+ */
+public interface PipelineStage {
+
+    /**
+     * Gets name of stage used in messages
+     * @return 
+     */
+    public String getName();
+
+    /**
+     * Creates runner for this stage
+     * @param inputFile output of previous stage or {@code null} if this
+     *                  is the first stage
+     * @return runner
+     * @throws Exception if runner could not be created
+     */
+    public CommunityDetectionRunner createRunner(File inputFile) throws Exception;
+
+    /**
+     * Gets file containing output of this stage which is passed as input
+     * to the next stage
+     * @return file which only exists once the stage completes
+     */
+    public File getOutputFile();
+}
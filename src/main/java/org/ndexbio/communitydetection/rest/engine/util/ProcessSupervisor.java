@@ -0,0 +1,174 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches running {@link java.lang.Process} objects from a single scheduled
+ * thread so no thread has to sit in {@link java.lang.Process#waitFor()} for
+ * the lifetime of each process. Every {@link #getPollInterval()} milliseconds
+ * each supervised process is checked and, once it has exited or exceeded its
+ * timeout, the future returned by {@link #supervise(java.lang.Process, long, java.util.concurrent.TimeUnit) }
+ * is completed.
+ * <p>
+ * Futures are completed on the {@link java.util.concurrent.Executor} passed
+ * in via the constructor so slow callbacks do not delay the supervisor thread.
+ *
+ * @author churas
+ */
+public class ProcessSupervisor {
+
+    static Logger _logger = LoggerFactory.getLogger(ProcessSupervisor.class);
+
+    /**
+     * Exit code used when process exceeded its timeout and was killed
+     */
+    public static final int TIMEOUT_EXIT_CODE = 500;
+
+    /**
+     * Default number of milliseconds between checks of supervised processes
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 100;
+
+    private static ProcessSupervisor INSTANCE;
+
+    private final long _pollInterval;
+    private final Executor _completionExecutor;
+    private final ScheduledExecutorService _scheduler;
+    private final ConcurrentLinkedQueue<SupervisedProcess> _processes;
+
+    private static class SupervisedProcess {
+        final Process process;
+        final long deadline;
+        final CompletableFuture<Integer> future;
+
+        SupervisedProcess(Process process, long deadline,
+                CompletableFuture<Integer> future){
+            this.process = process;
+            this.deadline = deadline;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param pollInterval milliseconds between checks of supervised processes
+     * @param completionExecutor runs completion of futures
+     */
+    public ProcessSupervisor(long pollInterval, Executor completionExecutor){
+        _pollInterval = pollInterval;
+        _completionExecutor = completionExecutor;
+        _processes = new ConcurrentLinkedQueue<>();
+        _scheduler = Executors.newSingleThreadScheduledExecutor(
+                getDaemonThreadFactory("process-supervisor"));
+        _scheduler.scheduleWithFixedDelay(this::checkProcesses, pollInterval,
+                pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets supervisor shared by all {@link CommandLineRunnerImpl} objects
+     * that were not given one of their own
+     * @return
+     */
+    public static synchronized ProcessSupervisor getInstance(){
+        if (INSTANCE == null){
+            INSTANCE = new ProcessSupervisor(DEFAULT_POLL_INTERVAL,
+                    Executors.newCachedThreadPool(getDaemonThreadFactory("process-completion")));
+        }
+        return INSTANCE;
+    }
+
+    private static ThreadFactory getDaemonThreadFactory(final String prefix){
+        final AtomicInteger counter = new AtomicInteger(0);
+        return (Runnable r) -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    public long getPollInterval(){
+        return _pollInterval;
+    }
+
+    /**
+     * Gets number of processes currently being supervised
+     * @return
+     */
+    public int getNumberOfProcesses(){
+        return _processes.size();
+    }
+
+    /**
+     * Supervises {@code process} until it exits or exceeds {@code timeOut}
+     * in which case it is killed. Canceling the returned future also
+     * kills the process.
+     * @param process process to supervise
+     * @param timeOut timeout value
+     * @param unit unit for timeout value
+     * @return future completed with exit code of process or {@link #TIMEOUT_EXIT_CODE}
+     *         if timeout was exceeded
+     */
+    public CompletableFuture<Integer> supervise(Process process, long timeOut,
+            TimeUnit unit){
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        future.whenComplete((exitCode, ex) -> {
+            if (future.isCancelled() && process.isAlive()){
+                _logger.debug("Supervised process canceled, killing it");
+                process.destroyForcibly();
+            }
+        });
+        _processes.add(new SupervisedProcess(process,
+                System.currentTimeMillis() + unit.toMillis(timeOut), future));
+        return future;
+    }
+
+    /**
+     * Stops supervising processes. Any processes still running are left alone
+     */
+    public void shutdown(){
+        _scheduler.shutdownNow();
+    }
+
+    /**
+     * Checks every supervised process, completing futures for those that
+     * have exited and killing any that exceeded their timeout
+     */
+    protected void checkProcesses(){
+        long now = System.currentTimeMillis();
+        Iterator<SupervisedProcess> itr = _processes.iterator();
+        while (itr.hasNext()){
+            SupervisedProcess sp = itr.next();
+            try {
+                if (sp.future.isDone()){
+                    itr.remove();
+                } else if (sp.process.isAlive() == false){
+                    itr.remove();
+                    complete(sp.future, sp.process.exitValue());
+                } else if (now >= sp.deadline){
+                    itr.remove();
+                    sp.process.destroyForcibly();
+                    complete(sp.future, TIMEOUT_EXIT_CODE);
+                }
+            } catch(RuntimeException re){
+                // never let an error stop the scheduled checks
+                _logger.error("Error checking supervised process", re);
+                _processes.remove(sp);
+                sp.future.completeExceptionally(re);
+            }
+        }
+    }
+
+    private void complete(final CompletableFuture<Integer> future, final int exitCode){
+        _completionExecutor.execute(() -> future.complete(exitCode));
+    }
+}
@@ -0,0 +1,15 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+/**
+ * Notified as a running algorithm reports its progress
+ * @author churas
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called when progress of algorithm changes
+     * @param progress percent complete from 0 to 100
+     */
+    public void progressUpdated(int progress);
+}
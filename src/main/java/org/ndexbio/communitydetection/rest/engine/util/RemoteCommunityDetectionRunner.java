@@ -0,0 +1,63 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.ndexbio.communitydetection.rest.engine.RemoteTask;
+import org.ndexbio.communitydetection.rest.engine.RemoteTaskQueue;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ * Runs a task on a worker by adding it to a {@link RemoteTaskQueue}
+ * where it waits for a worker to claim it
+ * @author churas
+ */
+public class RemoteCommunityDetectionRunner implements CommunityDetectionRunner {
+
+    private final RemoteTask _task;
+    private final RemoteTaskQueue _queue;
+    private final long _startTime;
+    private final long _timeOut;
+    private final TimeUnit _timeUnit;
+
+    /**
+     * Constructor
+     * @param task task to run
+     * @param queue queue workers claim tasks from
+     * @param startTime Time task started in ms since epoch (1969)
+     * @param timeOut task fails if worker does not report result within
+     *                this time, 0 or less means no limit
+     * @param unit unit of {@code timeOut}
+     */
+    public RemoteCommunityDetectionRunner(RemoteTask task, RemoteTaskQueue queue,
+            long startTime, long timeOut, TimeUnit unit){
+        _task = task;
+        _queue = queue;
+        _startTime = startTime;
+        _timeOut = timeOut;
+        _timeUnit = unit;
+    }
+
+    /**
+     * Adds task to queue
+     * @return future completed with result reported by worker. Canceling
+     *         the future removes the task from the queue or stops it
+     *         on the worker running it
+     */
+    @Override
+    public CompletableFuture<CommunityDetectionResult> callAsync() throws Exception {
+        CompletableFuture<CommunityDetectionResult> queueFuture = _queue.submit(_task,
+                _timeOut, _timeUnit);
+        CompletableFuture<CommunityDetectionResult> future = queueFuture.thenApply((cdr) -> {
+            cdr.setId(_task.getId());
+            cdr.setStartTime(_startTime);
+            cdr.setWallTime(System.currentTimeMillis() - _startTime);
+            return cdr;
+        });
+        future.whenComplete((res, ex) -> {
+            if (future.isCancelled()){
+                queueFuture.cancel(true);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,192 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads output of an algorithm into a {@link com.fasterxml.jackson.databind.JsonNode}
+ * in a single pass. The first non whitespace byte of the file decides how
+ * it is read: {@code {} or {@code [} means json which is parsed with a
+ * streaming {@link com.fasterxml.jackson.core.JsonParser}, anything else is
+ * stored as a {@link com.fasterxml.jackson.databind.node.TextNode}. Only
+ * output that looks like json but fails to parse is read a second time,
+ * as text.
+ * <p>
+ * If output only needs to be persisted, {@link #read(java.io.File, boolean) }
+ * can skip building the json tree and instead return a node that copies
+ * the json from the file each time it is serialized
+ * @author churas
+ */
+public class ResultFileReader {
+
+    static Logger _logger = LoggerFactory.getLogger(ResultFileReader.class);
+
+    /**
+     * Maximum number of leading whitespace bytes examined to decide if
+     * file is json
+     */
+    public static final int SNIFF_LIMIT = 8192;
+
+    private final ObjectMapper _mapper;
+
+    /**
+     * Constructor
+     */
+    public ResultFileReader(){
+        _mapper = new ObjectMapper();
+    }
+
+    /**
+     * Reads {@code file}
+     * @param file file to read
+     * @param fileBacked if {@code true} json is validated, but not loaded
+     *                   into memory, and the returned node copies it from
+     *                   {@code file} when serialized so {@code file} must
+     *                   not be removed while the node is in use
+     * @return contents of {@code file}
+     * @throws IOException if there was an error reading
+     */
+    public JsonNode read(final File file, boolean fileBacked) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))){
+            if (isJson(in)){
+                try {
+                    if (fileBacked){
+                        validateJson(in);
+                        return new POJONode(new FileBackedJson(file, _mapper));
+                    }
+                    return _mapper.readTree(_mapper.getFactory().createParser(in));
+                } catch(JsonProcessingException jpe){
+                    _logger.debug("Received a json parsing error going to try to store result as string: ", jpe);
+                    // stream is partly consumed, so start over
+                    return readText(file);
+                }
+            }
+            return readText(in, file.length());
+        }
+    }
+
+    /**
+     * Examines leading bytes of {@code in} to see if it holds json. The
+     * stream is reset to where it was before this call
+     * @param in stream that must support mark
+     * @return {@code true} if first non whitespace byte is <code>{</code> or {@code [}
+     * @throws IOException if there was an error reading
+     */
+    protected boolean isJson(InputStream in) throws IOException {
+        in.mark(SNIFF_LIMIT + 1);
+        try {
+            for (int i = 0; i < SNIFF_LIMIT; i++){
+                int b = in.read();
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r'){
+                    continue;
+                }
+                return b == '{' || b == '[';
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Parses first json value in {@code in} without keeping any of it
+     * @param in stream to parse
+     * @throws IOException if json is malformed
+     */
+    private void validateJson(InputStream in) throws IOException {
+        try (JsonParser parser = _mapper.getFactory().createParser(in)){
+            if (parser.nextToken() == null){
+                throw new IOException("No json found");
+            }
+            parser.skipChildren();
+        }
+    }
+
+    private JsonNode readText(final File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))){
+            return readText(in, file.length());
+        }
+    }
+
+    /**
+     * Reads {@code in} as text, each line ending with a newline
+     * @param in stream to read
+     * @param sizeHint expected number of bytes, used to size buffer
+     * @return text
+     * @throws IOException if there was an error reading
+     */
+    private JsonNode readText(InputStream in, long sizeHint) throws IOException {
+        StringBuilder sb = new StringBuilder((int)Math.min(sizeHint + 1, Integer.MAX_VALUE - 8));
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line = br.readLine();
+        while (line != null){
+            sb.append(line).append("\n");
+            line = br.readLine();
+        }
+        return new TextNode(sb.toString());
+    }
+
+    /**
+     * Json held in a file that is copied, token by token, to the
+     * generator whenever it is serialized
+     */
+    public static class FileBackedJson implements JsonSerializable {
+
+        private final File _file;
+        private final ObjectMapper _mapper;
+
+        /**
+         * Constructor
+         * @param file file with json
+         * @param mapper used to create parsers
+         */
+        public FileBackedJson(final File file, final ObjectMapper mapper){
+            _file = file;
+            _mapper = mapper;
+        }
+
+        public File getFile(){
+            return _file;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            try (JsonParser parser = _mapper.getFactory().createParser(_file)){
+                if (parser.nextToken() == null){
+                    gen.writeNull();
+                    return;
+                }
+                gen.copyCurrentStructure(parser);
+            }
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider provider,
+                TypeSerializer typeSer) throws IOException {
+            serialize(gen, provider);
+        }
+
+        @Override
+        public String toString(){
+            return _file.getAbsolutePath();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tails standard error of a running algorithm looking for lines of the form
+ * {@code PROGRESS: 42} and passes the value, clamped to 0 - 100, to a
+ * {@link ProgressListener} whenever it changes. Algorithms that do not
+ * write such lines are unaffected.
+ * <p>
+ * Standard error is redirected to a file by {@link CommandLineRunnerImpl}
+ * so the file is polled, from where the last poll left off, by a single
+ * thread shared by every monitor instead of a thread per process
+ * @author churas
+ */
+public class StandardErrorProgressMonitor {
+
+    static Logger _logger = LoggerFactory.getLogger(StandardErrorProgressMonitor.class);
+
+    /**
+     * Lines matching this pattern report progress
+     */
+    public static final Pattern PROGRESS_PATTERN = Pattern.compile("^\\s*PROGRESS:\\s*(\\d+(?:\\.\\d*)?)\\s*%?\\s*$");
+
+    /**
+     * Default number of milliseconds between polls of standard error
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    /**
+     * Lines longer than this can not be progress lines and are skipped
+     */
+    public static final int MAX_LINE_LENGTH = 256;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor((Runnable r) -> {
+                Thread t = new Thread(r, "progress-monitor");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final File _file;
+    private final ProgressListener _listener;
+    private final StringBuilder _line;
+    private final byte[] _buffer;
+    private long _offset;
+    private boolean _lineTooLong;
+    private int _progress;
+    private ScheduledFuture<?> _scheduled;
+
+    /**
+     * Constructor
+     * @param file standard error file of algorithm
+     * @param listener notified when progress changes
+     */
+    public StandardErrorProgressMonitor(final File file, final ProgressListener listener){
+        _file = file;
+        _listener = listener;
+        _line = new StringBuilder();
+        _buffer = new byte[8192];
+        _progress = -1;
+    }
+
+    /**
+     * Gets last progress reported
+     * @return progress or -1 if none has been reported
+     */
+    public synchronized int getProgress(){
+        return _progress;
+    }
+
+    /**
+     * Polls standard error file every {@code interval} until {@link #stop() }
+     * is called
+     * @param interval time between polls
+     * @param unit unit of {@code interval}
+     */
+    public synchronized void start(long interval, TimeUnit unit){
+        _scheduled = SCHEDULER.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch(RuntimeException re){
+                _logger.error("Error reading progress from " + _file.getAbsolutePath(), re);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops polling
+     */
+    public synchronized void stop(){
+        if (_scheduled != null){
+            _scheduled.cancel(false);
+            _scheduled = null;
+        }
+    }
+
+    /**
+     * Reads what was appended to standard error file since last poll and
+     * notifies listener if progress changed
+     * @return last progress reported or -1 if none has been reported
+     */
+    public synchronized int poll(){
+        int progress = _progress;
+        try (RandomAccessFile raf = new RandomAccessFile(_file, "r")){
+            if (raf.length() < _offset){
+                // file was truncated, start over
+                _offset = 0;
+                _line.setLength(0);
+                _lineTooLong = false;
+            }
+            raf.seek(_offset);
+            int numRead;
+            while ((numRead = raf.read(_buffer)) > 0){
+                _offset += numRead;
+                for (int i = 0; i < numRead; i++){
+                    char c = (char)(_buffer[i] & 0xff);
+                    if (c == '\n' || c == '\r'){
+                        if (_lineTooLong == false){
+                            progress = parseProgress(_line, progress);
+                        }
+                        _line.setLength(0);
+                        _lineTooLong = false;
+                    } else if (_lineTooLong == false){
+                        if (_line.length() >= MAX_LINE_LENGTH){
+                            _lineTooLong = true;
+                        } else {
+                            _line.append(c);
+                        }
+                    }
+                }
+            }
+        } catch(IOException io){
+            // file is not created until process starts
+            _logger.debug("Unable to read " + _file.getAbsolutePath() + " : " + io.getMessage());
+        }
+        if (progress != _progress){
+            _progress = progress;
+            _listener.progressUpdated(progress);
+        }
+        return _progress;
+    }
+
+    private int parseProgress(final CharSequence line, int progress){
+        Matcher m = PROGRESS_PATTERN.matcher(line);
+        if (m.matches() == false){
+            return progress;
+        }
+        try {
+            double value = Double.parseDouble(m.group(1));
+            return (int)Math.max(0, Math.min(100, value));
+        } catch(NumberFormatException nfe){
+            return progress;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes data to the standard input of a process started by
+ * {@link CommandLineRunner#runCommandLineProcessAsync(long, java.util.concurrent.TimeUnit, org.ndexbio.communitydetection.rest.engine.util.StandardInputWriter, java.io.File, java.io.File, java.lang.String...) }
+ * @author churas
+ */
+@FunctionalInterface
+public interface StandardInputWriter {
+
+    /**
+     * Writes data to {@code out} which is closed by the caller once this
+     * method returns
+     * @param out standard input of process
+     * @throws IOException if there was an error writing, such as the
+     *         process exiting before reading all of its input
+     */
+    public void write(OutputStream out) throws IOException;
+}
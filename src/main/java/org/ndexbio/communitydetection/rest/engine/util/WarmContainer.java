@@ -0,0 +1,155 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long running algorithm container that accepts tasks one at a
+ * time over a line protocol on its standard in and standard out.
+ * <p>
+ * For each task a single line of JSON is written to standard in of the
+ * container:
+ * <pre>
+ * {"id": "task id", "arguments": ["--someparam", "value", "/path/to/input.txt"]}
+ * </pre>
+ * where arguments are what would have been passed to the image via
+ * {@code docker run}. The container must reply with a single line of JSON:
+ * <pre>
+ * {"id": "task id", "exitCode": 0, "stdout": "output of algorithm", "stderr": "errors"}
+ * </pre>
+ * Anything the container writes to standard error outside of a reply
+ * is written to the file passed in via the constructor.
+ * @author churas
+ */
+public class WarmContainer {
+
+    static Logger _logger = LoggerFactory.getLogger(WarmContainer.class);
+
+    public static final String ID_KEY = "id";
+    public static final String ARGUMENTS_KEY = "arguments";
+    public static final String EXIT_CODE_KEY = "exitCode";
+    public static final String STDOUT_KEY = "stdout";
+    public static final String STDERR_KEY = "stderr";
+
+    private final Process _process;
+    private final BufferedWriter _writer;
+    private final BufferedReader _reader;
+    private final ObjectMapper _mapper;
+    private int _tasksRun;
+
+    /**
+     * Result of a task run by a {@link WarmContainer}
+     */
+    public static class Result {
+        private final int _exitCode;
+        private final String _stdout;
+        private final String _stderr;
+
+        public Result(int exitCode, final String stdout, final String stderr){
+            _exitCode = exitCode;
+            _stdout = stdout;
+            _stderr = stderr;
+        }
+
+        public int getExitCode(){
+            return _exitCode;
+        }
+
+        public String getStandardOut(){
+            return _stdout;
+        }
+
+        public String getStandardError(){
+            return _stderr;
+        }
+    }
+
+    /**
+     * Starts container by running {@code command}
+     * @param command command with arguments that starts the container
+     * @param stdErrFile file to write standard error of container to
+     * @throws IOException if the container could not be started
+     */
+    public WarmContainer(List<String> command, File stdErrFile) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(stdErrFile);
+        _process = pb.start();
+        _writer = new BufferedWriter(new OutputStreamWriter(_process.getOutputStream(),
+                StandardCharsets.UTF_8));
+        _reader = new BufferedReader(new InputStreamReader(_process.getInputStream(),
+                StandardCharsets.UTF_8));
+        _mapper = new ObjectMapper();
+        _tasksRun = 0;
+    }
+
+    /**
+     * Gets number of tasks sent to this container
+     * @return
+     */
+    public synchronized int getTasksRun(){
+        return _tasksRun;
+    }
+
+    public boolean isAlive(){
+        return _process.isAlive();
+    }
+
+    /**
+     * Sends task to container and waits for the reply. To stop waiting
+     * call {@link #destroy()} from another thread
+     * @param id id of task
+     * @param arguments arguments for algorithm
+     * @return result of task
+     * @throws IOException if there was an error talking to the container or
+     *                     the reply is invalid
+     */
+    public synchronized Result runTask(final String id, List<String> arguments) throws IOException {
+        _tasksRun++;
+        ObjectNode request = _mapper.createObjectNode();
+        request.put(ID_KEY, id);
+        ArrayNode args = request.putArray(ARGUMENTS_KEY);
+        for (String arg : arguments){
+            args.add(arg);
+        }
+        _writer.write(_mapper.writeValueAsString(request));
+        _writer.newLine();
+        _writer.flush();
+
+        String line = _reader.readLine();
+        if (line == null){
+            throw new IOException("Container exited before replying to task " + id);
+        }
+        JsonNode reply = _mapper.readTree(line);
+        if (reply == null || reply.has(EXIT_CODE_KEY) == false){
+            throw new IOException("Reply from container for task " + id
+                    + " is missing " + EXIT_CODE_KEY);
+        }
+        if (reply.has(ID_KEY) && id.equals(reply.get(ID_KEY).asText()) == false){
+            throw new IOException("Expected reply for task " + id + " but got reply for "
+                    + reply.get(ID_KEY).asText());
+        }
+        return new Result(reply.get(EXIT_CODE_KEY).asInt(),
+                reply.has(STDOUT_KEY) ? reply.get(STDOUT_KEY).asText() : "",
+                reply.has(STDERR_KEY) ? reply.get(STDERR_KEY).asText() : "");
+    }
+
+    /**
+     * Kills the container
+     */
+    public void destroy(){
+        _logger.debug("Destroying warm container");
+        _process.destroyForcibly();
+    }
+}
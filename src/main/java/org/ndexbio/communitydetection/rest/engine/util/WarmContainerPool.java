@@ -0,0 +1,407 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a number of {@link WarmContainer} objects running for an algorithm
+ * so tasks do not pay the cost of starting a container. A container is
+ * replaced after it has run the configured number of tasks, or when a task
+ * it runs fails, times out, or is canceled.
+ * <p>
+ * If no container is idle {@link #runTask(java.lang.String, java.util.List, long, java.util.concurrent.TimeUnit) }
+ * returns {@code null} and the caller is expected to run the task in
+ * a new container.
+ * <p>
+ * Containers only mount the {@value #INPUT_DIR} directory of the work
+ * directory of the pool, read only, and input files of tasks are linked
+ * there while the task runs so containers never see the rest of the task
+ * directory. Standard error of containers is written to the
+ * {@value #LOG_DIR} directory of the work directory
+ * <p>
+ * If a {@link DockerContainerReaper} is set, each container is named and
+ * labeled like any other task container and is removed via
+ * {@code docker rm -f} when it is replaced, since killing the docker
+ * client does not stop the container
+ * @author churas
+ */
+public class WarmContainerPool {
+
+    static Logger _logger = LoggerFactory.getLogger(WarmContainerPool.class);
+
+    /**
+     * Prefix of file in log directory where standard error
+     * of each container is written. Files are reused as 
+     * containers are replaced
+     */
+    public static final String STD_ERR_FILE_PREFIX = "warm_container_";
+
+    /**
+     * Directory in task directory holding work directory of each pool,
+     * which is named after the pool
+     */
+    public static final String WARM_CONTAINERS_DIR = "warmcontainers";
+
+    /**
+     * Directory in work directory where standard error of containers is written
+     */
+    public static final String LOG_DIR = "logs";
+
+    /**
+     * Directory in work directory where input files are linked
+     */
+    public static final String INPUT_DIR = "inputs";
+
+    private final String _name;
+    private final List<String> _command;
+    private final int _size;
+    private final int _tasksPerContainer;
+    private final File _logDir;
+    private final File _inputDir;
+    private final AtomicLong _inputCounter;
+    private final Executor _executor;
+    private final ScheduledExecutorService _scheduler;
+    private final ConcurrentLinkedQueue<WarmContainer> _idle;
+    private final AtomicInteger _containers;
+    private final AtomicInteger _containerCounter;
+    private final Map<WarmContainer, String> _containerNames;
+    private DockerContainerReaper _containerReaper;
+    private volatile boolean _shutdown;
+
+    /**
+     * Constructor, no containers are started until {@link #start()} is called
+     * @param name name of pool, usually name of algorithm
+     * @param command command that starts a container in warm mode
+     * @param size number of containers to keep running
+     * @param tasksPerContainer number of tasks a container runs before it is replaced
+     * @param workDir directory holding {@value #LOG_DIR} and {@value #INPUT_DIR}
+     *                directories, which are created by {@link #start() }
+     * @param executor runs the threads that wait for replies from containers
+     * @param scheduler used to enforce timeouts
+     */
+    public WarmContainerPool(final String name, List<String> command, int size,
+            int tasksPerContainer, File workDir, Executor executor,
+            ScheduledExecutorService scheduler){
+        _name = name;
+        _command = command;
+        _size = size;
+        _tasksPerContainer = tasksPerContainer;
+        _logDir = new File(workDir, LOG_DIR);
+        _inputDir = getInputDirectory(workDir);
+        _inputCounter = new AtomicLong(0);
+        _executor = executor;
+        _scheduler = scheduler;
+        _idle = new ConcurrentLinkedQueue<>();
+        _containers = new AtomicInteger(0);
+        _containerCounter = new AtomicInteger(0);
+        _containerNames = new ConcurrentHashMap<>();
+        _shutdown = false;
+    }
+
+    /**
+     * Sets reaper used to name, label, and remove containers. When set
+     * the command passed to the constructor must start with the docker
+     * command followed by {@code run}, as built by
+     * {@link #getDockerCommand(java.lang.String, java.lang.String, java.lang.String, double, long, java.util.List) },
+     * and this must be called before {@link #start() }
+     * @param reaper reaper or {@code null} to not name containers
+     */
+    public void setContainerReaper(DockerContainerReaper reaper){
+        _containerReaper = reaper;
+    }
+
+    /**
+     * Gets directory input files are linked into for pool with {@code workDir}
+     * @param workDir work directory of pool
+     * @return directory
+     */
+    public static File getInputDirectory(File workDir){
+        return new File(workDir, INPUT_DIR);
+    }
+
+    /**
+     * Builds command that runs {@code dockerImage} in warm mode
+     * @param dockerCmd docker command
+     * @param dockerImage image to run
+     * @param inputDir directory input files are linked into, see
+     *                 {@link #getInputDirectory(java.io.File) }, mounted
+     *                 read only in container
+     * @param cpus number of CPUs passed to docker via --cpus, ignored if 0 or less
+     * @param memory megabytes of memory passed to docker via --memory, ignored
+     *               if 0 or less
+     * @param warmArguments arguments passed to image to run it in warm mode
+     * @return command with arguments
+     */
+    public static List<String> getDockerCommand(final String dockerCmd,
+            final String dockerImage, final String inputDir, double cpus,
+            long memory, List<String> warmArguments){
+        ArrayList<String> mCmd = new ArrayList<>();
+        mCmd.add(dockerCmd);
+        mCmd.add("run");
+        mCmd.add("-i");
+        mCmd.add("--rm");
+        if (cpus > 0){
+            mCmd.add("--cpus");
+            mCmd.add(Double.toString(cpus));
+        }
+        if (memory > 0){
+            mCmd.add("--memory");
+            mCmd.add(Long.toString(memory) + "m");
+        }
+        mCmd.add("-v");
+        mCmd.add(inputDir + ":" + inputDir + ":ro");
+        mCmd.add(dockerImage);
+        if (warmArguments != null){
+            mCmd.addAll(warmArguments);
+        }
+        return mCmd;
+    }
+
+    public String getName(){
+        return _name;
+    }
+
+    /**
+     * Gets number of containers currently running
+     * @return
+     */
+    public int getNumberOfContainers(){
+        return _containers.get();
+    }
+
+    /**
+     * Gets number of containers waiting for a task
+     * @return
+     */
+    public int getNumberOfIdleContainers(){
+        return _idle.size();
+    }
+
+    /**
+     * Starts containers until there are as many running as the size
+     * passed in via the constructor
+     */
+    public synchronized void start(){
+        if (_logDir.isDirectory() == false && _logDir.mkdirs() == false){
+            _logger.error("Unable to create directory: " + _logDir.getAbsolutePath());
+        }
+        if (_inputDir.isDirectory() == false && _inputDir.mkdirs() == false){
+            _logger.error("Unable to create directory: " + _inputDir.getAbsolutePath());
+        }
+        while (_shutdown == false && _containers.get() < _size){
+            if (startContainer() == false){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Kills all idle containers, busy containers are killed once their task finishes
+     */
+    public void shutdown(){
+        _shutdown = true;
+        WarmContainer container = _idle.poll();
+        while (container != null){
+            destroy(container);
+            container = _idle.poll();
+        }
+    }
+
+    /**
+     * Runs task in an idle container
+     * @param id id of task
+     * @param arguments arguments for algorithm
+     * @param timeOut timeout value
+     * @param unit unit for timeout value
+     * @return future completed with result of task, if timeout is exceeded
+     *         exit code is {@link ProcessSupervisor#TIMEOUT_EXIT_CODE}. Canceling
+     *         the future kills the container. {@code null} is returned if no
+     *         container is idle
+     */
+    public CompletableFuture<WarmContainer.Result> runTask(final String id,
+            List<String> arguments, long timeOut, TimeUnit unit){
+        return runTask(id, arguments, null, timeOut, unit);
+    }
+
+    /**
+     * Runs task in an idle container after linking {@code inputFile} into
+     * the input directory of this pool. The path of the link is passed to
+     * the container after {@code arguments} and the link is removed once
+     * the task finishes
+     * @param id id of task
+     * @param arguments arguments for algorithm, not including input file
+     * @param inputFile input file of task or {@code null} if there is none
+     * @param timeOut timeout value
+     * @param unit unit for timeout value
+     * @return future completed with result of task, if timeout is exceeded
+     *         exit code is {@link ProcessSupervisor#TIMEOUT_EXIT_CODE}. Canceling
+     *         the future kills the container. {@code null} is returned if no
+     *         container is idle
+     */
+    public CompletableFuture<WarmContainer.Result> runTask(final String id,
+            List<String> arguments, final File inputFile, long timeOut, TimeUnit unit){
+        WarmContainer container = acquire();
+        if (container == null){
+            return null;
+        }
+        _logger.debug("Running task " + id + " in warm " + _name + " container");
+        CompletableFuture<WarmContainer.Result> future = new CompletableFuture<>();
+        if (inputFile != null){
+            File linkedInput = new File(_inputDir, _inputCounter.incrementAndGet()
+                    + "_" + inputFile.getName());
+            try {
+                linkInputFile(inputFile, linkedInput);
+            } catch(IOException io){
+                release(container, true);
+                future.completeExceptionally(io);
+                return future;
+            }
+            future.whenComplete((res, ex) -> linkedInput.delete());
+            arguments = new ArrayList<>(arguments);
+            arguments.add(linkedInput.getAbsolutePath());
+        }
+        final List<String> taskArguments = arguments;
+        AtomicBoolean released = new AtomicBoolean(false);
+        ScheduledFuture<?> timer = _scheduler.schedule(() -> {
+            if (released.compareAndSet(false, true)){
+                release(container, false);
+                future.complete(new WarmContainer.Result(ProcessSupervisor.TIMEOUT_EXIT_CODE,
+                        "", "Runtime limit exceeded"));
+            }
+        }, timeOut, unit);
+        future.whenComplete((res, ex) -> {
+            if (future.isCancelled() && released.compareAndSet(false, true)){
+                timer.cancel(false);
+                release(container, false);
+            }
+        });
+        try {
+            _executor.execute(() -> {
+                try {
+                    WarmContainer.Result res = container.runTask(id, taskArguments);
+                    if (released.compareAndSet(false, true)){
+                        timer.cancel(false);
+                        release(container, res.getExitCode() == 0);
+                        future.complete(res);
+                    }
+                } catch(IOException | RuntimeException ex){
+                    if (released.compareAndSet(false, true)){
+                        timer.cancel(false);
+                        release(container, false);
+                        future.completeExceptionally(ex);
+                    }
+                }
+            });
+        } catch(RuntimeException re){
+            timer.cancel(false);
+            released.set(true);
+            release(container, true);
+            throw re;
+        }
+        return future;
+    }
+
+    /**
+     * Hard links {@code inputFile} to {@code linkedInput} falling back
+     * to a copy if the file system does not support links
+     * @param inputFile input file
+     * @param linkedInput link to create
+     * @throws IOException if neither a link nor a copy could be made
+     */
+    private void linkInputFile(final File inputFile, final File linkedInput) throws IOException {
+        try {
+            Files.createLink(linkedInput.toPath(), inputFile.toPath());
+        } catch(IOException | UnsupportedOperationException ex){
+            _logger.debug("Unable to link " + inputFile.getAbsolutePath()
+                    + " copying instead: " + ex.getMessage());
+            Files.copy(inputFile.toPath(), linkedInput.toPath());
+        }
+    }
+
+    /**
+     * Gets an idle container, replacing any that have died
+     * @return container or {@code null} if none are idle
+     */
+    protected WarmContainer acquire(){
+        WarmContainer container = _idle.poll();
+        while (container != null && container.isAlive() == false){
+            _logger.info("Warm " + _name + " container died, replacing it");
+            destroy(container);
+            container = _idle.poll();
+        }
+        // replace any containers that died or could not be started earlier
+        start();
+        return container;
+    }
+
+    /**
+     * Returns container to idle containers or replaces it
+     * @param container
+     * @param reusable false if container should be replaced
+     */
+    protected void release(WarmContainer container, boolean reusable){
+        if (_shutdown == false && reusable == true && container.isAlive()
+                && container.getTasksRun() < _tasksPerContainer){
+            _idle.add(container);
+            return;
+        }
+        destroy(container);
+        start();
+    }
+
+    private void destroy(WarmContainer container){
+        container.destroy();
+        String containerName = _containerNames.remove(container);
+        if (containerName != null){
+            _containerReaper.removeContainer(containerName);
+        }
+        _containers.decrementAndGet();
+    }
+
+    private boolean startContainer(){
+        int containerNum = _containerCounter.getAndIncrement();
+        File stdErrFile = new File(_logDir, STD_ERR_FILE_PREFIX + _name + "_"
+                + (containerNum % _size) + ".txt");
+        List<String> command = _command;
+        String containerName = null;
+        if (_containerReaper != null){
+            containerName = DockerContainerReaper.getContainerName("warm", _name,
+                    Integer.toString(containerNum));
+            command = new ArrayList<>(_command);
+            // name and label go right after docker run
+            command.addAll(2, _containerReaper.getDockerRunArguments(containerName));
+            _containerReaper.register(containerName);
+        }
+        try {
+            WarmContainer container = new WarmContainer(command, stdErrFile);
+            if (containerName != null){
+                _containerNames.put(container, containerName);
+            }
+            _idle.add(container);
+            _containers.incrementAndGet();
+            return true;
+        } catch(IOException io){
+            _logger.error("Unable to start warm " + _name + " container", io);
+            if (containerName != null){
+                _containerReaper.unregister(containerName);
+            }
+        }
+        return false;
+    }
+}
@@ -1,16 +1,19 @@
 package org.ndexbio.communitydetection.rest.services; // Note your package will be {{ groupId }}.rest
 
 import java.net.URI;
+import java.util.List;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.info.Info;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
@@ -21,10 +24,17 @@ import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PathParam;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.engine.BatchStatus;
+import org.ndexbio.communitydetection.rest.engine.BatchTask;
+import org.ndexbio.communitydetection.rest.engine.FanOutRequest;
+import org.ndexbio.communitydetection.rest.engine.PipelineRequest;
 import org.ndexbio.communitydetection.rest.engine.CommunityDetectionEngine;
+import org.ndexbio.communitydetection.rest.engine.CommunityDetectionQueueFullException;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
 import org.ndexbio.communitydetection.rest.model.ErrorResponse;
@@ -81,12 +91,18 @@ public class CommunityDetection {
                    @ApiResponse(responseCode = "400", description = "Bad Request",
                                 content = @Content(mediaType = MediaType.APPLICATION_JSON,
                                 schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "429", description = "Too many tasks queued. Submit again "
+                                + "after number of seconds in Retry-After header",
+                                headers = @Header(name = "Retry-After", description = "Number of seconds to wait before submitting again"),
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
                    @ApiResponse(responseCode = "500", description = "Server Error",
                                 content = @Content(mediaType = MediaType.APPLICATION_JSON,
                                 schema = @Schema(implementation = ErrorResponse.class)))
                })
     public Response request(@RequestBody(description="Request as json", required = true,
-                                                   content = @Content(schema = @Schema(implementation = CommunityDetectionRequest.class))) final String query) {
+                                                   content = @Content(schema = @Schema(implementation = CommunityDetectionRequest.class))) final String query,
+                            @Context HttpServletRequest httpRequest) {
         ObjectMapper omappy = new ObjectMapper();
 
         try {
@@ -98,7 +114,7 @@ public class CommunityDetection {
                 throw new NullPointerException("CommunityDetection Engine not loaded");
             }
             CommunityDetectionRequest pQuery = omappy.readValue(query, CommunityDetectionRequest.class);
-            String id = engine.request(pQuery);
+            String id = engine.request(pQuery, getClientId(httpRequest));
             if (id == null){
                 throw new CommunityDetectionException("No id returned from CommunityDetection engine");
             }
@@ -106,6 +122,10 @@ public class CommunityDetection {
             t.setId(id);
             return Response.status(202).location(new URI(Configuration.getInstance().getHostURL() +
                                                          Configuration.V_ONE_PATH + "/" + id).normalize()).entity(omappy.writeValueAsString(t)).build();
+        } catch(CommunityDetectionQueueFullException qfe){
+            ErrorResponse er = new ErrorResponse("Too many tasks queued", qfe);
+            return Response.status(429).header("Retry-After", Long.toString(qfe.getRetryAfter()))
+                    .type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
         } catch(CommunityDetectionBadRequestException breq){
             ErrorResponse er = breq.getErrorResponse();
             if (er == null){
@@ -118,6 +138,291 @@ public class CommunityDetection {
         }
     }
 
+    /**
+     * Handles requests to run a batch of tasks
+     * @return {@link javax.ws.rs.core.Response} 
+     */
+    @POST 
+    @Path(Configuration.V_ONE_PATH + Configuration.BATCH_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Submits a batch of Community Detection tasks",
+               description="Payload in JSON format is an array of requests in the same format accepted "
+                       + "by the endpoint above. All requests are validated before any are submitted "
+                       + "and either all requests are submitted or none are.\n" +
+"\n" +
+"The service should upon post return 202 and set location to resource to poll for status of the\n" +
+"batch. The id of the task for each request is also returned in the same order as the requests.",
+               responses = {
+                   @ApiResponse(responseCode = "202",
+                           description = "The batch was successfully submitted to the service. Visit the URL "
+                                   + "specified in Location field in HEADERS to get status of the batch. "
+                                   + "In addition, the id of the batch and id of each task are returned as json\n",
+                           headers = @Header(name = "Location", description = "URL containing resource generated by this request"),
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = BatchTask.class))),
+                   @ApiResponse(responseCode = "400", description = "Bad Request",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "429", description = "Too many tasks queued to fit batch. Submit again "
+                                + "after number of seconds in Retry-After header",
+                                headers = @Header(name = "Retry-After", description = "Number of seconds to wait before submitting again"),
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response requestBatch(@RequestBody(description="Array of requests as json", required = true,
+                                                   content = @Content(array = @ArraySchema(schema = @Schema(implementation = CommunityDetectionRequest.class)))) final String query,
+                            @Context HttpServletRequest httpRequest) {
+        ObjectMapper omappy = new ObjectMapper();
+
+        try {
+            CommunityDetectionEngine engine = Configuration.getInstance().getCommunityDetectionEngine();
+            if (engine == null){
+                throw new NullPointerException("CommunityDetection Engine not loaded");
+            }
+            List<CommunityDetectionRequest> pQueries = omappy.readValue(query,
+                    new TypeReference<List<CommunityDetectionRequest>>(){});
+            BatchTask batch = engine.requestBatch(pQueries, getClientId(httpRequest));
+            if (batch == null || batch.getId() == null){
+                throw new CommunityDetectionException("No batch id returned from CommunityDetection engine");
+            }
+            return Response.status(202).location(new URI(Configuration.getInstance().getHostURL() +
+                                                         Configuration.V_ONE_PATH + Configuration.BATCH_PATH
+                                                         + "/" + batch.getId()).normalize()).entity(omappy.writeValueAsString(batch)).build();
+        } catch(CommunityDetectionQueueFullException qfe){
+            ErrorResponse er = new ErrorResponse("Too many tasks queued", qfe);
+            return Response.status(429).header("Retry-After", Long.toString(qfe.getRetryAfter()))
+                    .type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        } catch(CommunityDetectionBadRequestException breq){
+            ErrorResponse er = breq.getErrorResponse();
+            if (er == null){
+                er = new ErrorResponse("Bad request received", breq);
+            }
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error requesting CommunityDetection batch", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+    
+    /**
+     * Handles requests to run a pipeline of algorithms as one task
+     * @return {@link javax.ws.rs.core.Response} 
+     */
+    @POST 
+    @Path(Configuration.V_ONE_PATH + Configuration.PIPELINE_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Submits a pipeline of Community Detection algorithms as one task",
+               description="Payload in JSON format has a list of stages where each stage is a request in "
+                       + "the same format accepted by the endpoint above. Only the first stage needs data, "
+                       + "the output of each stage is used as the input of the next stage and the result "
+                       + "of the task is the output of the last stage. An optional nodeNames object maps "
+                       + "member ids to gene names for a GENELIST stage that follows a stage that outputs "
+                       + "a COMMUNITYDETECTRESULT hierarchy.\n" +
+"\n" +
+"The service should upon post return 202 and set location to resource to poll for result. Which will\n" +
+"Match the URL of GET request below.",
+               responses = {
+                   @ApiResponse(responseCode = "202",
+                           description = "The pipeline was successfully submitted to the service. Visit the URL "
+                                   + "specified in Location field in HEADERS to get status and results"
+                                   + "In addition, the id of the task is returned as json\n",
+                           headers = @Header(name = "Location", description = "URL containing resource generated by this request"),
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = Task.class))),
+                   @ApiResponse(responseCode = "400", description = "Bad Request",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "429", description = "Too many tasks queued. Submit again "
+                                + "after number of seconds in Retry-After header",
+                                headers = @Header(name = "Retry-After", description = "Number of seconds to wait before submitting again"),
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response requestPipeline(@RequestBody(description="Pipeline as json", required = true,
+                                                   content = @Content(schema = @Schema(implementation = PipelineRequest.class))) final String query,
+                            @Context HttpServletRequest httpRequest) {
+        ObjectMapper omappy = new ObjectMapper();
+
+        try {
+            CommunityDetectionEngine engine = Configuration.getInstance().getCommunityDetectionEngine();
+            if (engine == null){
+                throw new NullPointerException("CommunityDetection Engine not loaded");
+            }
+            PipelineRequest pipeline = omappy.readValue(query, PipelineRequest.class);
+            String id = engine.requestPipeline(pipeline, getClientId(httpRequest));
+            if (id == null){
+                throw new CommunityDetectionException("No id returned from CommunityDetection engine");
+            }
+            Task t = new Task();
+            t.setId(id);
+            return Response.status(202).location(new URI(Configuration.getInstance().getHostURL() +
+                                                         Configuration.V_ONE_PATH + "/" + id).normalize()).entity(omappy.writeValueAsString(t)).build();
+        } catch(CommunityDetectionQueueFullException qfe){
+            ErrorResponse er = new ErrorResponse("Too many tasks queued", qfe);
+            return Response.status(429).header("Retry-After", Long.toString(qfe.getRetryAfter()))
+                    .type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        } catch(CommunityDetectionBadRequestException breq){
+            ErrorResponse er = breq.getErrorResponse();
+            if (er == null){
+                er = new ErrorResponse("Bad request received", breq);
+            }
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error requesting CommunityDetection pipeline", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+    
+    /**
+     * Handles requests to run a term mapping algorithm on every community
+     * in a hierarchy
+     * @return {@link javax.ws.rs.core.Response} 
+     */
+    @POST 
+    @Path(Configuration.V_ONE_PATH + Configuration.FANOUT_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Submits a term mapping algorithm to run on every community in a hierarchy as one task",
+               description="Payload in JSON format is a request in the same format accepted by the endpoint "
+                       + "above where data is a hierarchy in COMMUNITYDETECTRESULT format and algorithm is "
+                       + "an algorithm that takes a GENELIST. An optional nodeNames object maps member ids "
+                       + "in the hierarchy to gene names. The algorithm is run on the genes of each community "
+                       + "and the result is a json object of community id to the result for that community.\n" +
+"\n" +
+"The service should upon post return 202 and set location to resource to poll for result. Which will\n" +
+"Match the URL of GET request below.",
+               responses = {
+                   @ApiResponse(responseCode = "202",
+                           description = "The task was successfully submitted to the service. Visit the URL "
+                                   + "specified in Location field in HEADERS to get status and results"
+                                   + "In addition, the id of the task is returned as json\n",
+                           headers = @Header(name = "Location", description = "URL containing resource generated by this request"),
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = Task.class))),
+                   @ApiResponse(responseCode = "400", description = "Bad Request",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "429", description = "Too many tasks queued. Submit again "
+                                + "after number of seconds in Retry-After header",
+                                headers = @Header(name = "Retry-After", description = "Number of seconds to wait before submitting again"),
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class))),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response requestFanOut(@RequestBody(description="Request as json", required = true,
+                                                   content = @Content(schema = @Schema(implementation = FanOutRequest.class))) final String query,
+                            @Context HttpServletRequest httpRequest) {
+        ObjectMapper omappy = new ObjectMapper();
+
+        try {
+            CommunityDetectionEngine engine = Configuration.getInstance().getCommunityDetectionEngine();
+            if (engine == null){
+                throw new NullPointerException("CommunityDetection Engine not loaded");
+            }
+            FanOutRequest fanOut = omappy.readValue(query, FanOutRequest.class);
+            String id = engine.requestFanOut(fanOut, getClientId(httpRequest));
+            if (id == null){
+                throw new CommunityDetectionException("No id returned from CommunityDetection engine");
+            }
+            Task t = new Task();
+            t.setId(id);
+            return Response.status(202).location(new URI(Configuration.getInstance().getHostURL() +
+                                                         Configuration.V_ONE_PATH + "/" + id).normalize()).entity(omappy.writeValueAsString(t)).build();
+        } catch(CommunityDetectionQueueFullException qfe){
+            ErrorResponse er = new ErrorResponse("Too many tasks queued", qfe);
+            return Response.status(429).header("Retry-After", Long.toString(qfe.getRetryAfter()))
+                    .type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        } catch(CommunityDetectionBadRequestException breq){
+            ErrorResponse er = breq.getErrorResponse();
+            if (er == null){
+                er = new ErrorResponse("Bad request received", breq);
+            }
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error requesting CommunityDetection fan out", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+    
+    @GET 
+    @Path(Configuration.V_ONE_PATH + Configuration.BATCH_PATH + "/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Gets status of a batch of Community Detection tasks",
+               description="Status of the batch is complete once every task completes, failed once every "
+                       + "task is done and at least one failed, processing while any task is running, and "
+                       + "submitted otherwise. Status of each task is also returned. Results of each task "
+                       + "can be obtained via the task id.",
+               responses = {
+                   @ApiResponse(responseCode = "200",
+                           description = "Success",
+                           content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = BatchStatus.class))),
+                   @ApiResponse(responseCode = "410",
+                           description = "Batch not found"),
+                   @ApiResponse(responseCode = "500", description = "Server Error",
+                                content = @Content(mediaType = MediaType.APPLICATION_JSON,
+                                schema = @Schema(implementation = ErrorResponse.class)))
+               })
+    public Response getBatchStatus(@PathParam("id") final String id) {
+        ObjectMapper omappy = new ObjectMapper();
+
+        try {
+            CommunityDetectionEngine engine = Configuration.getInstance().getCommunityDetectionEngine();
+            if (engine == null){
+                throw new NullPointerException("CommunityDetection Engine not loaded");
+            }
+            BatchStatus bs = engine.getBatchStatus(id);
+            if (bs == null){
+                return Response.status(410).build();
+            }
+            return Response.ok().type(MediaType.APPLICATION_JSON).entity(omappy.writeValueAsString(bs)).build();
+        }
+        catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error getting status of batch: " + id, ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+
+    /**
+     * Gets id of client making request. If {@link Configuration#getClientIdHeader()}
+     * is set and that header is in the request, its value is used, otherwise
+     * the remote address is used. When running behind a proxy the remote
+     * address is taken from X-Forwarded-For header.
+     * @param httpRequest
+     * @return client id or {@code null} if it cannot be determined
+     * @throws CommunityDetectionException if there was an error getting the configuration
+     */
+    protected String getClientId(HttpServletRequest httpRequest) throws CommunityDetectionException {
+        if (httpRequest == null){
+            return null;
+        }
+        String header = Configuration.getInstance().getClientIdHeader();
+        try {
+            if (header != null){
+                String headerVal = httpRequest.getHeader(header);
+                if (headerVal != null && headerVal.trim().isEmpty() == false){
+                    return headerVal.trim();
+                }
+            }
+            return httpRequest.getRemoteAddr();
+        } catch(RuntimeException re){
+            // resteasy injects a proxy that raises an error when
+            // not running within a servlet container
+            logger.debug("Unable to get client id from request", re);
+            return null;
+        }
+    }
+
     @GET 
     @Path(Configuration.V_ONE_PATH + "/{id}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -48,6 +48,7 @@ public class CommunityDetectionHttpServletDispatcher extends HttpServletDispatch
             _communityDetectionEngineThread.start();
             _logger.info("CommunityDetection Engine thread running id => " + Long.toString(_communityDetectionEngineThread.getId()));
             Configuration.getInstance().setCommunityDetectionEngine(_communityDetectionEngine);
+            Configuration.getInstance().setRemoteTaskQueue(fac.getRemoteTaskQueue());
         }
         catch(CommunityDetectionException ex){
             _logger.error("Unable to start enrichment engine", ex);
@@ -1,16 +1,27 @@
 package org.ndexbio.communitydetection.rest.services;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.ndexbio.communitydetection.rest.engine.AlgorithmSettings;
 import org.ndexbio.communitydetection.rest.engine.CommunityDetectionEngine;
+import org.ndexbio.communitydetection.rest.engine.RemoteTaskQueue;
+import org.ndexbio.communitydetection.rest.engine.TaskIndex;
+import org.ndexbio.communitydetection.rest.engine.TaskJournal;
+import org.ndexbio.communitydetection.rest.engine.util.DockerContainerReaper;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 
 /**
@@ -24,6 +35,11 @@ public class Configuration {
     
     public static final String APPLICATION_PATH = "/communitydetection";
     public static final String V_ONE_PATH = "/v1";
+    public static final String BATCH_PATH = "/batch";
+    public static final String PIPELINE_PATH = "/pipeline";
+    public static final String COORDINATOR_PATH = "/coordinator";
+    public static final String COORDINATOR_TOKEN_HEADER = "X-Coordinator-Token";
+    public static final String FANOUT_PATH = "/fanout";
     public static final String COMMUNITY_DETECTION_CONFIG = "COMMUNITY_DETECTION_CONFIG";
     
     public static final String TASK_DIR = "communitydetection.task.dir";
@@ -32,6 +48,31 @@ public class Configuration {
     public static final String DOCKER_CMD = "communitydetection.docker.cmd";
     public static final String ALGORITHM_MAP = "communitydetection.algorithm.map";
     public static final String ALGORITHM_TIMEOUT = "communitydetection.algorithm.timeout";
+    public static final String SCHEDULER_COST_PER_MS = "communitydetection.scheduler.cost.per.ms";
+    public static final String CLIENT_ID_HEADER = "communitydetection.client.id.header";
+    public static final String TRUST_FORWARDED_HEADERS = "communitydetection.trust.forwarded.headers";
+    public static final String MAX_QUEUE_SIZE = "communitydetection.max.queue.size";
+    public static final String HOST_CPUS = "communitydetection.host.cpus";
+    public static final String HOST_MEMORY = "communitydetection.host.memory";
+    public static final String ADAPTIVE_WORKERS = "communitydetection.adaptive.workers";
+    public static final String ADAPTIVE_MIN_WORKERS = "communitydetection.adaptive.min.workers";
+    public static final String ADAPTIVE_MAX_WORKERS = "communitydetection.adaptive.max.workers";
+    public static final String ADAPTIVE_INTERVAL = "communitydetection.adaptive.interval";
+    public static final String RESULT_CACHE_DIR = "communitydetection.result.cache.dir";
+    public static final String RESULT_CACHE_MAX_ENTRIES = "communitydetection.result.cache.max.entries";
+    public static final String RESULT_CACHE_MAX_BYTES = "communitydetection.result.cache.max.bytes";
+    public static final String RESULT_CACHE_MAX_AGE = "communitydetection.result.cache.max.age";
+    public static final String FANOUT_CONCURRENCY = "communitydetection.fanout.concurrency";
+    public static final String COORDINATOR_ENABLED = "communitydetection.coordinator.enabled";
+    public static final String COORDINATOR_URL = "communitydetection.coordinator.url";
+    public static final String COORDINATOR_TOKEN = "communitydetection.coordinator.token";
+    public static final String COORDINATOR_LEASE = "communitydetection.coordinator.lease";
+    public static final String WORKER_ID = "communitydetection.worker.id";
+    public static final String TASK_JOURNAL = "communitydetection.task.journal";
+    public static final String TASK_JOURNAL_COMPACT = "communitydetection.task.journal.compact";
+    public static final String TASK_INDEX = "communitydetection.task.index";
+    public static final String TASK_INDEX_THREADS = "communitydetection.task.index.threads";
+    public static final String CONTAINER_REAP_INTERVAL = "communitydetection.container.reap.interval";
     
     
     private static Configuration INSTANCE;
@@ -43,7 +84,34 @@ public class Configuration {
     private static String _dockerCmd;
     private static int _numWorkers;
     private static CommunityDetectionAlgorithms _algorithms;
+    private static Map<String, AlgorithmSettings> _algorithmSettings;
     private static long _timeOut;
+    private static double _costPerMillisecond;
+    private static String _clientIdHeader;
+    private static boolean _trustForwardedHeaders;
+    private static int _maxQueueSize;
+    private static double _hostCpus;
+    private static long _hostMemory;
+    private static boolean _adaptiveWorkers;
+    private static int _adaptiveMinWorkers;
+    private static int _adaptiveMaxWorkers;
+    private static long _adaptiveInterval;
+    private static String _resultCacheDir;
+    private static int _resultCacheMaxEntries;
+    private static long _resultCacheMaxBytes;
+    private static long _resultCacheMaxAge;
+    private static int _fanOutConcurrency;
+    private static boolean _coordinatorEnabled;
+    private static String _coordinatorURL;
+    private static String _coordinatorToken;
+    private static long _coordinatorLease;
+    private static String _workerId;
+    private static boolean _taskJournal;
+    private static int _taskJournalCompact;
+    private static boolean _taskIndex;
+    private static int _taskIndexThreads;
+    private static long _containerReapInterval;
+    private static RemoteTaskQueue _remoteTaskQueue;
     
     /**
      * Constructor that attempts to get configuration from properties file
@@ -72,7 +140,46 @@ public class Configuration {
         _hostURL = props.getProperty(Configuration.HOST_URL, "");
         _dockerCmd = props.getProperty(Configuration.DOCKER_CMD, "docker");
         _algorithms = getAlgorithms(props.getProperty(Configuration.ALGORITHM_MAP, null));
+        _algorithmSettings = getAlgorithmSettings(props.getProperty(Configuration.ALGORITHM_MAP, null));
         _timeOut = Long.parseLong(props.getProperty(Configuration.ALGORITHM_TIMEOUT, "180"));
+        _costPerMillisecond = Double.parseDouble(props.getProperty(Configuration.SCHEDULER_COST_PER_MS, "1000"));
+        _clientIdHeader = props.getProperty(Configuration.CLIENT_ID_HEADER, null);
+        if (_clientIdHeader != null && _clientIdHeader.trim().isEmpty()){
+            _clientIdHeader = null;
+        }
+        _trustForwardedHeaders = Boolean.parseBoolean(props.getProperty(Configuration.TRUST_FORWARDED_HEADERS, "false"));
+        _maxQueueSize = Integer.parseInt(props.getProperty(Configuration.MAX_QUEUE_SIZE, "0"));
+        _hostCpus = Double.parseDouble(props.getProperty(Configuration.HOST_CPUS,
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        _hostMemory = Long.parseLong(props.getProperty(Configuration.HOST_MEMORY, "0"));
+        _adaptiveWorkers = Boolean.parseBoolean(props.getProperty(Configuration.ADAPTIVE_WORKERS, "false"));
+        _adaptiveMinWorkers = Integer.parseInt(props.getProperty(Configuration.ADAPTIVE_MIN_WORKERS, "1"));
+        _adaptiveMaxWorkers = Integer.parseInt(props.getProperty(Configuration.ADAPTIVE_MAX_WORKERS, "0"));
+        _adaptiveInterval = Long.parseLong(props.getProperty(Configuration.ADAPTIVE_INTERVAL, "30"));
+        _resultCacheDir = props.getProperty(Configuration.RESULT_CACHE_DIR, null);
+        if (_resultCacheDir != null && _resultCacheDir.trim().isEmpty()){
+            _resultCacheDir = null;
+        }
+        _resultCacheMaxEntries = Integer.parseInt(props.getProperty(Configuration.RESULT_CACHE_MAX_ENTRIES, "1000"));
+        _resultCacheMaxBytes = Long.parseLong(props.getProperty(Configuration.RESULT_CACHE_MAX_BYTES, "0"));
+        _resultCacheMaxAge = Long.parseLong(props.getProperty(Configuration.RESULT_CACHE_MAX_AGE, "0"));
+        _fanOutConcurrency = Integer.parseInt(props.getProperty(Configuration.FANOUT_CONCURRENCY, "4"));
+        _coordinatorEnabled = Boolean.parseBoolean(props.getProperty(Configuration.COORDINATOR_ENABLED, "false"));
+        _coordinatorURL = props.getProperty(Configuration.COORDINATOR_URL, null);
+        _coordinatorToken = props.getProperty(Configuration.COORDINATOR_TOKEN, null);
+        if (_coordinatorToken != null && _coordinatorToken.trim().isEmpty()){
+            _coordinatorToken = null;
+        }
+        _coordinatorLease = Long.parseLong(props.getProperty(Configuration.COORDINATOR_LEASE, "60"));
+        _workerId = props.getProperty(Configuration.WORKER_ID, null);
+        _taskJournal = Boolean.parseBoolean(props.getProperty(Configuration.TASK_JOURNAL, "true"));
+        _taskJournalCompact = Integer.parseInt(props.getProperty(Configuration.TASK_JOURNAL_COMPACT,
+                Integer.toString(TaskJournal.DEFAULT_COMPACT_THRESHOLD)));
+        _taskIndex = Boolean.parseBoolean(props.getProperty(Configuration.TASK_INDEX, "true"));
+        _taskIndexThreads = Integer.parseInt(props.getProperty(Configuration.TASK_INDEX_THREADS,
+                Integer.toString(TaskIndex.DEFAULT_THREADS)));
+        _containerReapInterval = Long.parseLong(props.getProperty(Configuration.CONTAINER_REAP_INTERVAL,
+                Long.toString(DockerContainerReaper.DEFAULT_REAP_INTERVAL)));
         if (_hostURL.trim().isEmpty()){
             _hostURL = "";
         } else if (!_hostURL.endsWith("/")){
@@ -86,6 +193,9 @@ public class Configuration {
             return null;
         }
         ObjectMapper mapper = new ObjectMapper();
+        // entries can contain server side settings that are not
+        // part of the algorithm model
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         try {
             File algoFile = new File(algoPath);
             if (algoFile.isFile() == false){
@@ -100,6 +210,56 @@ public class Configuration {
         
         return null;
     }
+    
+    /**
+     * Parses the optional {@value org.ndexbio.communitydetection.rest.engine.AlgorithmSettings#SETTINGS_KEY}
+     * object from each entry in the algorithms json file
+     * @param algoPath path to algorithms json file
+     * @return map of algorithm name to settings, only algorithms with 
+     *         settings are included. If there is an error parsing the json
+     *         an empty map is returned
+     * @throws CommunityDetectionException if runner of an algorithm is not
+     *         {@value org.ndexbio.communitydetection.rest.engine.AlgorithmSettings#DOCKER_RUNNER}
+     *         or {@value org.ndexbio.communitydetection.rest.engine.AlgorithmSettings#NATIVE_RUNNER}
+     */
+    protected Map<String, AlgorithmSettings> getAlgorithmSettings(final String algoPath) throws CommunityDetectionException {
+        LinkedHashMap<String, AlgorithmSettings> settingsMap = new LinkedHashMap<>();
+        if (algoPath == null){
+            return settingsMap;
+        }
+        File algoFile = new File(algoPath);
+        if (algoFile.isFile() == false){
+            return settingsMap;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            JsonNode algos = mapper.readTree(algoFile).get("algorithms");
+            if (algos == null){
+                return settingsMap;
+            }
+            Iterator<Map.Entry<String, JsonNode>> itr = algos.fields();
+            while (itr.hasNext()){
+                Map.Entry<String, JsonNode> entry = itr.next();
+                JsonNode settingsNode = entry.getValue().get(AlgorithmSettings.SETTINGS_KEY);
+                if (settingsNode == null || settingsNode.isNull()){
+                    continue;
+                }
+                AlgorithmSettings settings = mapper.treeToValue(settingsNode, AlgorithmSettings.class);
+                if (AlgorithmSettings.DOCKER_RUNNER.equals(settings.getRunner()) == false &&
+                        AlgorithmSettings.NATIVE_RUNNER.equals(settings.getRunner()) == false){
+                    throw new CommunityDetectionException("Invalid runner " + settings.getRunner()
+                            + " for algorithm " + entry.getKey() + ", must be one of: "
+                            + AlgorithmSettings.DOCKER_RUNNER + ", " + AlgorithmSettings.NATIVE_RUNNER);
+                }
+                settingsMap.put(entry.getKey(), settings);
+            }
+        }
+        catch(IOException io){
+              _logger.error("Error parsing algorithm settings in json: "
+                      + algoPath + " : " + io.getMessage());
+        }
+        return settingsMap;
+    }
         
     protected void setCommunityDetectionEngine(CommunityDetectionEngine ee){
         _communityEngine = ee;
@@ -107,6 +267,18 @@ public class Configuration {
     public CommunityDetectionEngine getCommunityDetectionEngine(){
         return _communityEngine;
     }
+    
+    protected void setRemoteTaskQueue(RemoteTaskQueue queue){
+        _remoteTaskQueue = queue;
+    }
+    
+    /**
+     * Gets queue workers claim tasks from
+     * @return queue or {@code null} if this server is not a coordinator
+     */
+    public RemoteTaskQueue getRemoteTaskQueue(){
+        return _remoteTaskQueue;
+    }
 
     /**
      * Gets alternate URL prefix for the host running this service.
@@ -133,6 +305,227 @@ public class Configuration {
         return _timeOut;
     }
     
+    /**
+     * Gets amount of estimated task cost that is equivalent to one millisecond
+     * of time spent waiting in a queue. Cheaper tasks are run ahead of
+     * expensive ones, but every queued task eventually reaches the front.
+     * Larger values favor cheap tasks less.
+     * @return cost per millisecond, a value of 0 or less disables cost based
+     *         ordering so tasks are run in the order received
+     */
+    public double getSchedulerCostPerMillisecond(){
+        return _costPerMillisecond;
+    }
+    
+    /**
+     * Gets name of HTTP header whose value identifies the client
+     * submitting a request, such as an api key
+     * @return header name or {@code null} if not set in which case
+     *         clients are identified by ip address
+     */
+    public String getClientIdHeader(){
+        return _clientIdHeader;
+    }
+    
+    /**
+     * Denotes if client ip address should be taken from X-Forwarded-For
+     * and related headers. Only safe behind a trusted proxy that sets
+     * these headers since any caller can otherwise claim any address
+     * @return true if forwarded headers are trusted, default is false
+     */
+    public boolean isTrustForwardedHeaders(){
+        return _trustForwardedHeaders;
+    }
+    
+    /**
+     * Gets maximum number of tasks, across all algorithms, that can be
+     * queued or running at once. Requests beyond this are rejected
+     * @return maximum number of tasks, 0 or less means there is no limit
+     */
+    public int getMaxQueueSize(){
+        return _maxQueueSize;
+    }
+    
+    /**
+     * Gets number of CPUs on host that can be reserved by running tasks
+     * @return number of CPUs, 0 or less means CPUs are not reserved. Default
+     *         is number of CPUs available to this process
+     */
+    public double getHostCpus(){
+        return _hostCpus;
+    }
+    
+    /**
+     * Gets megabytes of memory on host that can be reserved by running tasks
+     * @return memory in megabytes, 0 or less means memory is not reserved
+     */
+    public long getHostMemory(){
+        return _hostMemory;
+    }
+    
+    /**
+     * Denotes whether number of workers in the shared pool should
+     * be adjusted based on host load and task throughput
+     * @return true if adaptive, false if {@link #getNumberWorkers()} is fixed
+     */
+    public boolean isAdaptiveWorkers(){
+        return _adaptiveWorkers;
+    }
+    
+    /**
+     * Gets lowest number of workers allowed when {@link #isAdaptiveWorkers()} is true
+     * @return
+     */
+    public int getAdaptiveMinWorkers(){
+        return _adaptiveMinWorkers;
+    }
+    
+    /**
+     * Gets highest number of workers allowed when {@link #isAdaptiveWorkers()} is true
+     * @return maximum number of workers, 0 or less means number of CPUs available
+     */
+    public int getAdaptiveMaxWorkers(){
+        return _adaptiveMaxWorkers;
+    }
+    
+    /**
+     * Gets number of seconds between adjustments of number of workers 
+     * when {@link #isAdaptiveWorkers()} is true
+     * @return
+     */
+    public long getAdaptiveInterval(){
+        return _adaptiveInterval;
+    }
+    
+    /**
+     * Gets directory where results are cached
+     * @return directory or {@code null} if results should not be cached
+     */
+    public String getResultCacheDirectory(){
+        return _resultCacheDir;
+    }
+    
+    /**
+     * Gets maximum number of entries in result cache
+     * @return maximum entries, 0 or less means no limit
+     */
+    public int getResultCacheMaxEntries(){
+        return _resultCacheMaxEntries;
+    }
+    
+    /**
+     * Gets maximum size of all entries in result cache
+     * @return maximum size in bytes, 0 or less means no limit
+     */
+    public long getResultCacheMaxBytes(){
+        return _resultCacheMaxBytes;
+    }
+    
+    /**
+     * Gets maximum age of entries in result cache
+     * @return maximum age in seconds, 0 or less means no limit
+     */
+    public long getResultCacheMaxAge(){
+        return _resultCacheMaxAge;
+    }
+    
+    /**
+     * Gets maximum number of communities a fan out task runs at once
+     * @return
+     */
+    public int getFanOutConcurrency(){
+        return _fanOutConcurrency;
+    }
+    
+    /**
+     * Denotes if this server hands tasks to workers instead of
+     * running them itself
+     * @return
+     */
+    public boolean isCoordinatorEnabled(){
+        return _coordinatorEnabled;
+    }
+    
+    /**
+     * Gets URL of coordinator a worker claims tasks from, such as
+     * http://host:8081/cd/communitydetection
+     * @return URL or {@code null} if not set
+     */
+    public String getCoordinatorURL(){
+        return _coordinatorURL;
+    }
+    
+    /**
+     * Gets token workers must send to coordinator, which is required
+     * for this server to be a coordinator
+     * @return token or {@code null} if not set
+     */
+    public String getCoordinatorToken(){
+        return _coordinatorToken;
+    }
+    
+    /**
+     * Gets time a worker has to renew its lease on a task before the
+     * coordinator gives the task to another worker
+     * @return time in seconds
+     */
+    public long getCoordinatorLease(){
+        return _coordinatorLease;
+    }
+    
+    /**
+     * Gets id of this worker
+     * @return id or {@code null} if not set
+     */
+    public String getWorkerId(){
+        return _workerId;
+    }
+    
+    /**
+     * Denotes if tasks are recorded in a journal in the task directory
+     * so unfinished tasks are resumed when the server restarts
+     * @return
+     */
+    public boolean isTaskJournal(){
+        return _taskJournal;
+    }
+    
+    /**
+     * Gets number of records written to the task journal before it is
+     * compacted
+     * @return
+     */
+    public int getTaskJournalCompact(){
+        return _taskJournalCompact;
+    }
+    
+    /**
+     * Denotes if an index of tasks in the task directory is built at
+     * startup and kept in memory
+     * @return
+     */
+    public boolean isTaskIndex(){
+        return _taskIndex;
+    }
+    
+    /**
+     * Gets number of threads used to read task directories when building
+     * the task index
+     * @return
+     */
+    public int getTaskIndexThreads(){
+        return _taskIndexThreads;
+    }
+    
+    /**
+     * Gets number of seconds between searches for orphaned docker
+     * containers
+     * @return seconds, 0 or less means only search at startup
+     */
+    public long getContainerReapInterval(){
+        return _containerReapInterval;
+    }
+    
     public String getDockerCommand(){
         return _dockerCmd;
     }
@@ -141,6 +534,18 @@ public class Configuration {
         return _algorithms;
     }
     
+    /**
+     * Gets server side settings for algorithms
+     * @return map of algorithm name to settings. Algorithms without
+     *         settings are not in the map
+     */
+    public Map<String, AlgorithmSettings> getAlgorithmSettings(){
+        if (_algorithmSettings == null){
+            return Collections.emptyMap();
+        }
+        return _algorithmSettings;
+    }
+    
     /**
      * Gets singleton instance of configuration
      * @return {@link org.ndexbio.communitydetection.rest.services.Configuration} object with configuration loaded
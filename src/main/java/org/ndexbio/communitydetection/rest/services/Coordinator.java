@@ -0,0 +1,168 @@
+package org.ndexbio.communitydetection.rest.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.ndexbio.communitydetection.rest.engine.RemoteTask;
+import org.ndexbio.communitydetection.rest.engine.RemoteTaskQueue;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.ErrorResponse;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Endpoints workers use to claim tasks from this server, renew their
+ * lease on those tasks, and report results. These endpoints are only
+ * available when this server is a coordinator and are left out of the
+ * public API documentation.
+ * <p>
+ * Workers must pass the configured token in the
+ * {@value Configuration#COORDINATOR_TOKEN_HEADER} header. Every request
+ * is rejected if no token is configured
+ * @author churas
+ */
+@Path("/")
+public class Coordinator {
+
+    static Logger _logger = LoggerFactory.getLogger(Coordinator.class);
+
+    /**
+     * Maximum time in milliseconds a claim request will wait for a task
+     */
+    public static final long MAX_CLAIM_WAIT = 30000;
+
+    /**
+     * Claims next task for worker, waiting up to {@code wait} milliseconds
+     * for one to be submitted
+     * @param token token set in {@value Configuration#COORDINATOR_TOKEN_HEADER} header
+     * @param workerId id of worker
+     * @param wait time in milliseconds to wait for a task
+     * @return 200 with {@link RemoteTask} as JSON or 204 if there was no task
+     */
+    @POST
+    @Path(Configuration.V_ONE_PATH + Configuration.COORDINATOR_PATH + "/tasks")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response claimTask(@HeaderParam(Configuration.COORDINATOR_TOKEN_HEADER) final String token,
+            @QueryParam("worker") final String workerId,
+            @QueryParam("wait") @DefaultValue("0") long wait) {
+        try {
+            Response notAllowed = checkAccess(token, workerId);
+            if (notAllowed != null){
+                return notAllowed;
+            }
+            RemoteTask task = Configuration.getInstance().getRemoteTaskQueue().claim(workerId,
+                    Math.min(Math.max(0, wait), MAX_CLAIM_WAIT));
+            if (task == null){
+                return Response.noContent().build();
+            }
+            ObjectMapper mappy = new ObjectMapper();
+            return Response.ok().type(MediaType.APPLICATION_JSON).entity(mappy.writeValueAsString(task)).build();
+        } catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error claiming task", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+
+    /**
+     * Renews lease worker holds on task
+     * @param token token set in {@value Configuration#COORDINATOR_TOKEN_HEADER} header
+     * @param id id of task
+     * @param workerId id of worker
+     * @return 204 if lease was renewed or 410 if worker should stop the task
+     */
+    @POST
+    @Path(Configuration.V_ONE_PATH + Configuration.COORDINATOR_PATH + "/tasks/{id}/lease")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response renewLease(@HeaderParam(Configuration.COORDINATOR_TOKEN_HEADER) final String token,
+            @PathParam("id") final String id,
+            @QueryParam("worker") final String workerId) {
+        try {
+            Response notAllowed = checkAccess(token, workerId);
+            if (notAllowed != null){
+                return notAllowed;
+            }
+            if (Configuration.getInstance().getRemoteTaskQueue().renew(id, workerId)){
+                return Response.noContent().build();
+            }
+            return Response.status(Response.Status.GONE).build();
+        } catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error renewing lease on task", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+
+    /**
+     * Reports result of task worker ran
+     * @param token token set in {@value Configuration#COORDINATOR_TOKEN_HEADER} header
+     * @param id id of task
+     * @param workerId id of worker
+     * @param cdr result of task
+     * @return 204 if result was accepted or 410 if task is no longer leased
+     *         to worker
+     */
+    @POST
+    @Path(Configuration.V_ONE_PATH + Configuration.COORDINATOR_PATH + "/tasks/{id}/result")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response completeTask(@HeaderParam(Configuration.COORDINATOR_TOKEN_HEADER) final String token,
+            @PathParam("id") final String id,
+            @QueryParam("worker") final String workerId,
+            CommunityDetectionResult cdr) {
+        try {
+            Response notAllowed = checkAccess(token, workerId);
+            if (notAllowed != null){
+                return notAllowed;
+            }
+            if (cdr == null){
+                throw new NullPointerException("No result");
+            }
+            if (Configuration.getInstance().getRemoteTaskQueue().complete(id, workerId, cdr)){
+                return Response.noContent().build();
+            }
+            return Response.status(Response.Status.GONE).build();
+        } catch(Exception ex){
+            ErrorResponse er = new ErrorResponse("Error reporting result", ex);
+            return Response.serverError().type(MediaType.APPLICATION_JSON).entity(er.asJson()).build();
+        }
+    }
+
+    /**
+     * Checks this server is a coordinator, {@code token} matches the
+     * configured token, and {@code workerId} is set
+     * @param token token passed by worker
+     * @param workerId id of worker
+     * @return {@code null} if access is allowed otherwise the response
+     *         to return
+     * @throws CommunityDetectionException if configuration could not be loaded
+     */
+    private Response checkAccess(final String token, final String workerId) throws CommunityDetectionException {
+        Configuration config = Configuration.getInstance();
+        RemoteTaskQueue queue = config.getRemoteTaskQueue();
+        if (queue == null){
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        // constant time comparison so token can not be guessed from timing
+        if (config.getCoordinatorToken() == null || token == null
+                || MessageDigest.isEqual(config.getCoordinatorToken().getBytes(StandardCharsets.UTF_8),
+                        token.getBytes(StandardCharsets.UTF_8)) == false){
+            _logger.warn("Rejected coordinator request from worker " + workerId
+                    + " with invalid token");
+            return Response.status(Response.Status.FORBIDDEN).build();
+        }
+        if (workerId == null || workerId.trim().isEmpty()){
+            throw new CommunityDetectionException("worker must be set");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author churas
+ */
+public class TestAdaptiveWorkerController {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    /**
+     * Controller with fixed cpu limit and load average
+     */
+    public static class FixedController extends AdaptiveWorkerController {
+        double load = 0;
+
+        public FixedController(WorkerPool pool, int minWorkers, int maxWorkers){
+            super(pool, minWorkers, maxWorkers);
+        }
+
+        @Override
+        protected double getLoadAverage(){
+            return load;
+        }
+
+        @Override
+        protected double getCpuLimit(){
+            return 4;
+        }
+    }
+
+    private static void writeFile(File file, final String data) throws Exception {
+        file.getParentFile().mkdirs();
+        try (FileWriter fw = new FileWriter(file)){
+            fw.write(data);
+        }
+    }
+
+    @Test
+    public void testGetCgroupCpuQuota() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            AdaptiveWorkerController controller = new AdaptiveWorkerController(null, 1, 2, tempDir);
+            assertEquals(-1, controller.getCgroupCpuQuota(), 0.001);
+
+            // cgroup v1
+            writeFile(new File(tempDir, AdaptiveWorkerController.CGROUP_V1_CPU_QUOTA), "-1\n");
+            writeFile(new File(tempDir, AdaptiveWorkerController.CGROUP_V1_CPU_PERIOD), "100000\n");
+            assertEquals(-1, controller.getCgroupCpuQuota(), 0.001);
+            writeFile(new File(tempDir, AdaptiveWorkerController.CGROUP_V1_CPU_QUOTA), "150000\n");
+            assertEquals(1.5, controller.getCgroupCpuQuota(), 0.001);
+
+            // cgroup v2 takes precedence
+            writeFile(new File(tempDir, AdaptiveWorkerController.CGROUP_V2_CPU_MAX), "max 100000\n");
+            assertEquals(-1, controller.getCgroupCpuQuota(), 0.001);
+            writeFile(new File(tempDir, AdaptiveWorkerController.CGROUP_V2_CPU_MAX), "200000 100000\n");
+            assertEquals(2, controller.getCgroupCpuQuota(), 0.001);
+        } finally {
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testAdjustWorkers() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            WorkerPool pool = new WorkerPool("foo", 2, es);
+            for (int i = 0; i < 10; i++){
+                pool.submit(TestWorkerPool.getBlockingTask(Integer.toString(i), latch));
+            }
+            FixedController controller = new FixedController(pool, 1, 0);
+
+            // first call only records throughput
+            assertEquals(2, controller.adjustWorkers(1000));
+
+            // tasks are queued and throughput did not drop so add worker
+            assertEquals(3, controller.adjustWorkers(2000));
+            assertEquals(3, pool.getActiveWorkers());
+            assertEquals(4, controller.adjustWorkers(3000));
+
+            // limited by number of cpus
+            assertEquals(4, controller.adjustWorkers(4000));
+
+            // load exceeds number of cpus so remove worker
+            controller.load = 5;
+            assertEquals(3, controller.adjustWorkers(5000));
+            assertEquals(2, controller.adjustWorkers(6000));
+            assertEquals(1, controller.adjustWorkers(7000));
+            assertEquals(1, controller.adjustWorkers(8000));
+        } finally {
+            latch.countDown();
+            es.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.engine.util.ProgressListener;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ *
+ * @author churas
+ */
+public class TestCmdlineCommunityDetectionAlgorithmsFactory {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    /**
+     * In process algorithm that returns its input data in upper case
+     */
+    public static class UpperCaseAlgorithm implements InProcessAlgorithm {
+
+        private final String _name;
+
+        public UpperCaseAlgorithm(){
+            this("uppercase");
+        }
+
+        public UpperCaseAlgorithm(final String name){
+            _name = name;
+        }
+
+        @Override
+        public CommunityDetectionAlgorithm getAlgorithm() {
+            CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+            cda.setName(_name);
+            cda.setDescription("upper cases data");
+            return cda;
+        }
+
+        @Override
+        public JsonNode run(CommunityDetectionRequest request, ProgressListener listener) throws Exception {
+            if (request.getData().asText().contains("bad")){
+                throw new Exception("bad data");
+            }
+            listener.progressUpdated(50);
+            return new TextNode(request.getData().asText().toUpperCase());
+        }
+    }
+
+    private static CommunityDetectionAlgorithms getAlgorithms(String... names){
+        LinkedHashMap<String, CommunityDetectionAlgorithm> algoMap = new LinkedHashMap<>();
+        for (String name : names){
+            CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+            cda.setName(name);
+            cda.setDockerImage(name + "image");
+            algoMap.put(name, cda);
+        }
+        CommunityDetectionAlgorithms algos = new CommunityDetectionAlgorithms();
+        algos.setAlgorithms(algoMap);
+        return algos;
+    }
+
+    @Test
+    public void testNullAlgorithms() {
+        CmdlineCommunityDetectionAlgorithmsFactory factory = new CmdlineCommunityDetectionAlgorithmsFactory(null, null);
+        assertTrue(factory.getCommunityDetectionAlgorithms().getAlgorithms().isEmpty());
+        assertTrue(factory.getInProcessAlgorithms().isEmpty());
+    }
+
+    @Test
+    public void testCmdlineAlgorithmsOverrideInProcessAlgorithms() {
+        CmdlineCommunityDetectionAlgorithmsFactory factory = new CmdlineCommunityDetectionAlgorithmsFactory(
+                getAlgorithms("foo", "bar"), Arrays.asList(new UpperCaseAlgorithm(),
+                        new UpperCaseAlgorithm("foo"), new UpperCaseAlgorithm("uppercase")));
+        Map<String, CommunityDetectionAlgorithm> algoMap = factory.getCommunityDetectionAlgorithms().getAlgorithms();
+        assertEquals(Arrays.asList("foo", "bar", "uppercase"), Arrays.asList(algoMap.keySet().toArray()));
+        assertEquals("fooimage", algoMap.get("foo").getDockerImage());
+        assertNull(algoMap.get("uppercase").getDockerImage());
+        assertEquals(Arrays.asList("uppercase"),
+                Arrays.asList(factory.getInProcessAlgorithms().keySet().toArray()));
+    }
+
+    @Test
+    public void testLoadInProcessAlgorithms() throws Exception {
+        File tempDir = _folder.newFolder();
+        File servicesDir = new File(tempDir, "META-INF" + File.separator + "services");
+        assertTrue(servicesDir.mkdirs());
+        try (FileWriter fw = new FileWriter(new File(servicesDir, InProcessAlgorithm.class.getName()))){
+            fw.write("# comment\n");
+            fw.write("org.ndexbio.doesnotexist\n");
+            fw.write(UpperCaseAlgorithm.class.getName() + "\n");
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{tempDir.toURI().toURL()},
+                getClass().getClassLoader())){
+            List<InProcessAlgorithm> algos = CmdlineCommunityDetectionAlgorithmsFactory.loadInProcessAlgorithms(loader);
+            // louvain and leiden are registered by this project
+            assertEquals(3, algos.size());
+            assertEquals("louvain", algos.get(0).getAlgorithm().getName());
+            assertEquals("leiden", algos.get(1).getAlgorithm().getName());
+            assertEquals("uppercase", algos.get(2).getAlgorithm().getName());
+        }
+    }
+}
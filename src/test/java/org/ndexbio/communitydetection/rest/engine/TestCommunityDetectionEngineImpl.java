@@ -0,0 +1,1088 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.engine.util.CommunityDetectionRequestValidatorImpl;
+import org.ndexbio.communitydetection.rest.engine.util.DockerCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.engine.util.FanOutRunner;
+import org.ndexbio.communitydetection.rest.engine.util.NativeCommunityDetectionRunner;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
+import org.ndexbio.communitydetection.rest.model.ServerStatus;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionBadRequestException;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+import org.ndexbio.communitydetection.rest.services.Configuration;
+
+/**
+ *
+ * @author churas
+ */
+public class TestCommunityDetectionEngineImpl {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    public static CommunityDetectionAlgorithms getAlgorithms(final String... names){
+        LinkedHashMap<String, CommunityDetectionAlgorithm> algoMap = new LinkedHashMap<>();
+        for (String name : names){
+            CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+            cda.setName(name);
+            cda.setDockerImage(name + "image");
+            algoMap.put(name, cda);
+        }
+        CommunityDetectionAlgorithms algos = new CommunityDetectionAlgorithms();
+        algos.setAlgorithms(algoMap);
+        return algos;
+    }
+
+    public static void writeConfiguration(File tempDir) throws Exception {
+        File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+        try (FileWriter fw = new FileWriter(confFile)){
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+        }
+        Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+    }
+
+    public static CommunityDetectionRequest getRequest(final String algorithm,
+            final String data){
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setAlgorithm(algorithm);
+        cdr.setData(new TextNode(data));
+        return cdr;
+    }
+
+    public static CommunityDetectionResult waitForResult(CommunityDetectionEngine engine,
+            final String id) throws Exception {
+        for (int i = 0; i < 500; i++){
+            CommunityDetectionResult cdr = engine.getResult(id);
+            if (CommunityDetectionResult.COMPLETE_STATUS.equals(cdr.getStatus()) ||
+                    CommunityDetectionResult.FAILED_STATUS.equals(cdr.getStatus())){
+                return cdr;
+            }
+            Thread.sleep(10);
+        }
+        fail("Task " + id + " never finished");
+        return null;
+    }
+
+    @Test
+    public void testRequestResultSavedWithoutRunLoop() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertTrue(cdr.getResult().asText().contains("fooimage"));
+            assertTrue(new File(engine.getCommunityDetectionResultFilePath(id)).isFile());
+
+            ServerStatus ss = engine.getServerStatus();
+            assertEquals(0, ss.getQueuedTasks());
+            assertEquals(1, ss.getCompletedTasks());
+            assertEquals(0, ss.getCanceledTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testDeleteQueuedTaskUpdatesCanceledCount() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/sleep", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+
+            // block the single worker so the request below stays queued
+            es.execute(() -> {
+                try {
+                    Thread.sleep(60000);
+                } catch(InterruptedException ie){
+                }
+            });
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            assertEquals(1, engine.getServerStatus().getQueuedTasks());
+            engine.delete(id);
+            ServerStatus ss = engine.getServerStatus();
+            assertEquals(0, ss.getQueuedTasks());
+            assertEquals(1, ss.getCanceledTasks());
+            assertEquals(0, ss.getCompletedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testGetTaskPriority() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            // default is 1000 bytes per millisecond of waiting
+            assertEquals(100, engine.getTaskPriority("foo", 100, 0));
+            assertEquals(101, engine.getTaskPriority("foo", 100, 1000));
+            assertEquals(300, engine.getTaskPriority("foo", 100, 200000));
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestRejectedWhenQueueFull() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            try (FileWriter fw = new FileWriter(confFile)){
+                fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+                fw.write(Configuration.MAX_QUEUE_SIZE + " = 1\n");
+            }
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/sleep", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+
+            // block the single worker so the request below stays queued
+            es.execute(() -> {
+                try {
+                    Thread.sleep(60000);
+                } catch(InterruptedException ie){
+                }
+            });
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            try {
+                // different data so request is not attached to first one
+                engine.request(getRequest("foo", "a\tc\n"));
+                fail("Expected CommunityDetectionQueueFullException");
+            } catch(CommunityDetectionQueueFullException qfe){
+                // no task has finished so algorithm timeout is used
+                assertEquals(180, qfe.getRetryAfter());
+            }
+            engine.delete(id);
+            assertNotNull(engine.request(getRequest("foo", "a\tb\n")));
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testIdenticalRequestsShareExecution() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+
+            // block the single worker until both requests are made
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            String attachedId = engine.request(getRequest("foo", "a\tb\n"));
+            String otherId = engine.request(getRequest("foo", "a\tc\n"));
+            assertNotEquals(id, attachedId);
+            assertEquals(2, engine.getServerStatus().getQueuedTasks());
+            assertEquals(CommunityDetectionResult.SUBMITTED_STATUS,
+                    engine.getStatus(attachedId).getStatus());
+            latch.countDown();
+
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            CommunityDetectionResult attachedCdr = waitForResult(engine, attachedId);
+            waitForResult(engine, otherId);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, attachedCdr.getStatus());
+            assertEquals(attachedId, attachedCdr.getId());
+            assertEquals(cdr.getResult(), attachedCdr.getResult());
+            assertTrue(new File(engine.getCommunityDetectionResultFilePath(attachedId)).isFile());
+            
+            // only the task that ran has a command run file
+            assertTrue(new File(tempDir, id + File.separator 
+                    + DockerCommunityDetectionRunner.CMD_RUN_FILE).isFile());
+            assertFalse(new File(tempDir, attachedId + File.separator 
+                    + DockerCommunityDetectionRunner.CMD_RUN_FILE).exists());
+
+            ServerStatus ss = engine.getServerStatus();
+            assertEquals(0, ss.getQueuedTasks());
+            assertEquals(3, ss.getCompletedTasks());
+
+            // execution finished so a new identical request runs again
+            String newId = engine.request(getRequest("foo", "a\tb\n"));
+            waitForResult(engine, newId);
+            assertTrue(new File(tempDir, newId + File.separator 
+                    + DockerCommunityDetectionRunner.CMD_RUN_FILE).isFile());
+        } finally {
+            latch.countDown();
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsRunOnce() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++){
+                futures.add(clients.submit(() -> {
+                    go.await();
+                    return engine.request(getRequest("foo", "a\tb\n"));
+                }));
+            }
+            go.countDown();
+            List<String> ids = new ArrayList<>();
+            for (Future<String> f : futures){
+                ids.add(f.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, engine.getServerStatus().getQueuedTasks());
+            latch.countDown();
+            int ran = 0;
+            for (String id : ids){
+                assertEquals(CommunityDetectionResult.COMPLETE_STATUS,
+                        waitForResult(engine, id).getStatus());
+                if (new File(tempDir, id + File.separator
+                        + DockerCommunityDetectionRunner.CMD_RUN_FILE).isFile()){
+                    ran++;
+                }
+            }
+            assertEquals(1, ran);
+        } finally {
+            latch.countDown();
+            clients.shutdownNow();
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testDeleteTaskWithAttachedTaskDoesNotCancel() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            String attachedId = engine.request(getRequest("foo", "a\tb\n"));
+            engine.delete(id);
+            assertEquals(0, engine.getServerStatus().getCanceledTasks());
+            assertEquals(1, engine.getServerStatus().getQueuedTasks());
+            latch.countDown();
+
+            CommunityDetectionResult cdr = waitForResult(engine, attachedId);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            waitForDeletion(new File(tempDir, id));
+            assertEquals(1, engine.getServerStatus().getCompletedTasks());
+            
+            // deleting last attached task cancels execution
+            CountDownLatch secondLatch = new CountDownLatch(1);
+            es.execute(() -> {
+                try {
+                    secondLatch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            id = engine.request(getRequest("foo", "x\ty\n"));
+            attachedId = engine.request(getRequest("foo", "x\ty\n"));
+            engine.delete(attachedId);
+            assertEquals(0, engine.getServerStatus().getCanceledTasks());
+            engine.delete(id);
+            assertEquals(1, engine.getServerStatus().getCanceledTasks());
+            assertEquals(0, engine.getServerStatus().getQueuedTasks());
+            secondLatch.countDown();
+        } finally {
+            latch.countDown();
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    /**
+     * Waits for directory of deleted task to be removed, which happens
+     * after results of tasks attached to it are saved
+     */
+    private static void waitForDeletion(File taskDir) throws Exception {
+        for (int i = 0; i < 500 && taskDir.exists(); i++){
+            Thread.sleep(10);
+        }
+        assertFalse(taskDir.exists());
+    }
+
+    @Test
+    public void testDeleteTaskWithAttachedTaskKeepsFileBackedResult() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            File algoFile = new File(tempDir, "algos.json");
+            try (FileWriter fw = new FileWriter(algoFile)){
+                fw.write("{\"algorithms\": {\"foo\": {\"name\": \"foo\","
+                        + "\"settings\": {\"fileBackedResult\": true}}}}");
+            }
+            File confFile = new File(tempDir, "foo.conf");
+            try (FileWriter fw = new FileWriter(confFile)){
+                fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+                fw.write(Configuration.ALGORITHM_MAP + " = " + algoFile.getAbsolutePath() + "\n");
+            }
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), writeFakeDocker(tempDir).getAbsolutePath(),
+                    getAlgorithms("foo"), new CommunityDetectionRequestValidatorImpl());
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            String id = engine.request(getRequest("foo", "{\"a\": [1, 2]}"));
+            String attachedId = engine.request(getRequest("foo", "{\"a\": [1, 2]}"));
+            engine.delete(id);
+            latch.countDown();
+
+            CommunityDetectionResult cdr = waitForResult(engine, attachedId);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals(2, cdr.getResult().get("a").size());
+            waitForDeletion(new File(tempDir, id));
+            // saved result does not depend on directory of deleted task
+            cdr = engine.getResult(attachedId);
+            assertEquals(2, cdr.getResult().get("a").get(1).asInt());
+        } finally {
+            latch.countDown();
+            es.shutdownNow();
+            // do not leave file backed settings for foo behind for other tests
+            writeConfiguration(tempDir);
+            Configuration.reloadConfiguration();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestAnsweredFromResultCache() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            ResultCache cache = new ResultCache(new File(tempDir, "cache"), 0, 0, 0);
+            cache.load();
+            engine.setResultCache(cache);
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            for (int i = 0; i < 500 && cache.getNumberOfEntries() == 0; i++){
+                Thread.sleep(10);
+            }
+            assertEquals(1, cache.getNumberOfEntries());
+
+            // block the single worker so only a cache hit can complete the task
+            CountDownLatch latch = new CountDownLatch(1);
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            String cachedId = engine.request(getRequest("foo", "a\tb\n"));
+            assertNotEquals(id, cachedId);
+            CommunityDetectionResult cachedCdr = engine.getResult(cachedId);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cachedCdr.getStatus());
+            assertEquals(cachedId, cachedCdr.getId());
+            assertEquals(100, cachedCdr.getProgress());
+            assertEquals(cdr.getResult(), cachedCdr.getResult());
+            assertFalse(new File(tempDir, cachedId + File.separator 
+                    + DockerCommunityDetectionRunner.CMD_RUN_FILE).exists());
+            assertEquals(0, engine.getServerStatus().getQueuedTasks());
+            assertEquals(2, engine.getServerStatus().getCompletedTasks());
+
+            // a different docker image digest means result is not reused
+            engine.setImageDigests(Collections.singletonMap("fooimage", "sha256:1234"));
+            engine.request(getRequest("foo", "a\tb\n"));
+            assertEquals(1, engine.getServerStatus().getQueuedTasks());
+            latch.countDown();
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestBatch() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo", "bar"),
+                    new CommunityDetectionRequestValidatorImpl());
+            es.execute(() -> {
+                try {
+                    latch.await();
+                } catch(InterruptedException ie){
+                }
+            });
+            BatchTask batch = engine.requestBatch(Arrays.asList(getRequest("foo", "a\tb\n"),
+                    getRequest("bar", "a\tb\n"), getRequest("foo", "c\td\n")), null);
+            assertNotNull(batch.getId());
+            assertEquals(3, batch.getTasks().size());
+            assertEquals(3, engine.getServerStatus().getQueuedTasks());
+            assertTrue(new File(engine.getBatchFilePath(batch.getId())).isFile());
+
+            BatchStatus bs = engine.getBatchStatus(batch.getId());
+            assertEquals(batch.getId(), bs.getId());
+            assertEquals(CommunityDetectionResult.SUBMITTED_STATUS, bs.getStatus());
+            assertEquals(0, bs.getProgress());
+            assertEquals(3, bs.getTasks().size());
+            assertEquals(batch.getTasks().get(1), bs.getTasks().get(1).getId());
+            latch.countDown();
+
+            for (String id : batch.getTasks()){
+                waitForResult(engine, id);
+            }
+            bs = engine.getBatchStatus(batch.getId());
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, bs.getStatus());
+            assertEquals(100, bs.getProgress());
+            assertTrue(bs.getStartTime() > 0);
+
+            // deleted task is reported as failed
+            engine.delete(batch.getTasks().get(0));
+            bs = engine.getBatchStatus(batch.getId());
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, bs.getStatus());
+            assertEquals("1 of 3 tasks failed", bs.getMessage());
+            
+            try {
+                engine.getBatchStatus("doesnotexist");
+                fail("Expected CommunityDetectionException");
+            } catch(CommunityDetectionException cde){
+                assertEquals("No batch with doesnotexist found", cde.getMessage());
+            }
+        } finally {
+            latch.countDown();
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestBatchInvalidRequestSubmitsNothing() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            try {
+                engine.requestBatch(Collections.emptyList(), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("No requests in batch", bre.getMessage());
+            }
+            try {
+                engine.requestBatch(Arrays.asList(getRequest("foo", "a\tb\n"),
+                        getRequest("bar", "a\tb\n")), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("Request 1 in batch is invalid: bar is not a valid algorithm",
+                        bre.getMessage());
+            }
+            ServerStatus ss = engine.getServerStatus();
+            assertEquals(0, ss.getQueuedTasks());
+            assertEquals(0, ss.getCompletedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestBatchRejectedWhenQueueCannotFitBatch() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            try (FileWriter fw = new FileWriter(confFile)){
+                fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+                fw.write(Configuration.MAX_QUEUE_SIZE + " = 2\n");
+            }
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/sleep", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            es.execute(() -> {
+                try {
+                    Thread.sleep(60000);
+                } catch(InterruptedException ie){
+                }
+            });
+            try {
+                engine.requestBatch(Arrays.asList(getRequest("foo", "a"),
+                        getRequest("foo", "b"), getRequest("foo", "c")), null);
+                fail("Expected CommunityDetectionQueueFullException");
+            } catch(CommunityDetectionQueueFullException qfe){
+                assertEquals(180, qfe.getRetryAfter());
+            }
+            assertEquals(0, engine.getServerStatus().getQueuedTasks());
+
+            // identical requests in batch share a slot once submitted
+            BatchTask batch = engine.requestBatch(Arrays.asList(getRequest("foo", "a"),
+                    getRequest("foo", "a")), null);
+            assertEquals(2, batch.getTasks().size());
+            assertEquals(1, engine.getServerStatus().getQueuedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestPipeline() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo", "bar"),
+                    new CommunityDetectionRequestValidatorImpl());
+            CommunityDetectionRequest second = new CommunityDetectionRequest();
+            second.setAlgorithm("bar");
+            String id = engine.requestPipeline(new PipelineRequest(Arrays.asList(
+                    getRequest("foo", "a\tb\n"), second)), null);
+            assertNotNull(id);
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals(id, cdr.getId());
+            assertEquals(100, cdr.getProgress());
+
+            File stageOne = new File(tempDir, id + File.separator + "stage_0");
+            File stageTwo = new File(tempDir, id + File.separator + "stage_1");
+            File stageTwoInput = new File(stageTwo, DockerCommunityDetectionRunner.INPUT_FILE);
+            assertTrue(stageTwoInput.isFile());
+            assertEquals(FileUtils.readFileToString(new File(stageOne,
+                    DockerCommunityDetectionRunner.STD_OUT_FILE), "UTF-8"),
+                    FileUtils.readFileToString(stageTwoInput, "UTF-8"));
+            assertTrue(cdr.getResult().asText().contains("barimage "
+                    + stageTwoInput.getAbsolutePath()));
+            assertEquals(1, engine.getServerStatus().getCompletedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestPipelineInvalidStages() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionAlgorithms algos = getAlgorithms("foo", "bar");
+            algos.getAlgorithms().get("foo").setOutputDataFormat("COMMUNITYDETECTRESULT");
+            algos.getAlgorithms().get("bar").setInputDataFormat("EDGELIST");
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", algos,
+                    new CommunityDetectionRequestValidatorImpl());
+            try {
+                engine.requestPipeline(new PipelineRequest(), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("No stages in pipeline", bre.getMessage());
+            }
+            CommunityDetectionRequest second = new CommunityDetectionRequest();
+            second.setAlgorithm("bar");
+            try {
+                engine.requestPipeline(new PipelineRequest(Arrays.asList(
+                        getRequest("foo", "a\tb\n"), second)), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("Stage 1 in pipeline expects EDGELIST but stage 0 "
+                        + "outputs COMMUNITYDETECTRESULT", bre.getMessage());
+            }
+            second.setAlgorithm("baz");
+            try {
+                engine.requestPipeline(new PipelineRequest(Arrays.asList(
+                        getRequest("foo", "a\tb\n"), second)), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("Stage 1 in pipeline is invalid: baz is not a valid algorithm",
+                        bre.getMessage());
+            }
+            assertEquals(0, engine.getServerStatus().getQueuedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    /**
+     * Writes script that pretends to be docker by writing the input
+     * file, which is the last argument, to standard out and failing
+     * if the input contains bad
+     */
+    public static File writeFakeDocker(File dir) throws Exception {
+        File script = new File(dir, "fakedocker.sh");
+        try (FileWriter fw = new FileWriter(script)){
+            fw.write("#!/bin/sh\n");
+            fw.write("for last; do true; done\n");
+            fw.write("if grep -q bad \"$last\"; then echo oops >&2; exit 1; fi\n");
+            fw.write("cat \"$last\"\n");
+        }
+        assertTrue(script.setExecutable(true));
+        return script;
+    }
+
+    @Test
+    public void testRequestFanOut() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionAlgorithms algos = getAlgorithms("foo", "bar");
+            algos.getAlgorithms().get("bar").setInputDataFormat("GENELIST");
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), writeFakeDocker(tempDir).getAbsolutePath(),
+                    algos, new CommunityDetectionRequestValidatorImpl());
+            FanOutRequest request = new FanOutRequest();
+            request.setAlgorithm("bar");
+            request.setData(new TextNode("1,2,c-c;1,ga,c-m;2,gb,c-m;2,gc,c-m;"));
+            request.setNodeNames(Collections.singletonMap("ga", "TP53"));
+            String id = engine.requestFanOut(request, null);
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals(2, cdr.getResult().size());
+            assertEquals("TP53,gb,gc\n", cdr.getResult().get("1").asText());
+            assertEquals("gb,gc\n", cdr.getResult().get("2").asText());
+
+            request.setAlgorithm("foo");
+            algos.getAlgorithms().get("foo").setInputDataFormat("EDGELIST");
+            try {
+                engine.requestFanOut(request, null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("foo expects EDGELIST not GENELIST", bre.getMessage());
+            }
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestPipelineFansOutHierarchyToGeneListStage() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionAlgorithms algos = getAlgorithms("foo", "bar");
+            algos.getAlgorithms().get("foo").setOutputDataFormat("COMMUNITYDETECTRESULT");
+            algos.getAlgorithms().get("bar").setInputDataFormat("GENELIST");
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), writeFakeDocker(tempDir).getAbsolutePath(),
+                    algos, new CommunityDetectionRequestValidatorImpl());
+            CommunityDetectionRequest second = new CommunityDetectionRequest();
+            second.setAlgorithm("bar");
+            PipelineRequest pipeline = new PipelineRequest(Arrays.asList(
+                    getRequest("foo", "5,ga,c-m;5,gb,c-m;8,gc,c-m;"), second));
+            pipeline.setNodeNames(Collections.singletonMap("ga", "TP53"));
+            String id = engine.requestPipeline(pipeline, null);
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals("TP53,gb\n", cdr.getResult().get("5").asText());
+            assertEquals("gc\n", cdr.getResult().get("8").asText());
+            assertTrue(new File(tempDir, id + File.separator + "stage_1" + File.separator
+                    + FanOutRunner.COMMUNITY_DIR_PREFIX + "1").isDirectory());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestHandedToRemoteWorker() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/false", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+            engine.setRemoteTaskQueue(queue);
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            RemoteTask task = queue.claim("w1", 5000);
+            assertEquals(id, task.getId());
+            assertEquals("foo", task.getAlgorithm());
+            assertEquals("fooimage", task.getDockerImage());
+            assertEquals("a\tb\n", task.getData().asText());
+
+            CommunityDetectionResult workerResult = new CommunityDetectionResult();
+            workerResult.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+            workerResult.setResult(new TextNode("done"));
+            workerResult.setProgress(100);
+            assertTrue(queue.complete(id, "w1", workerResult));
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals("done", cdr.getResult().asText());
+            assertEquals(id, cdr.getId());
+
+            // deleting task tells worker to stop it
+            id = engine.request(getRequest("foo", "c\td\n"));
+            assertEquals(id, queue.claim("w1", 5000).getId());
+            engine.delete(id);
+            // cancel reaches queue once task finishes starting the runner
+            long deadline = System.currentTimeMillis() + 5000;
+            while (queue.renew(id, "w1") && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertFalse(queue.renew(id, "w1"));
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testResumeTasksFromJournal() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            File journalFile = new File(tempDir, TaskJournal.JOURNAL_FILE);
+            TaskJournal journal = new TaskJournal(journalFile, 100);
+            journal.load();
+            // pool without workers so tasks stay queued until restart
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(
+                    new WorkerPool(CommunityDetectionEngineImpl.SHARED_POOL, 0, es), null,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo", "bar"),
+                    new CommunityDetectionRequestValidatorImpl());
+            engine.setTaskJournal(journal);
+            String queuedId = engine.request(getRequest("foo", "a\tb\n"));
+            String goneId = engine.request(getRequest("bar", "c\td\n"));
+            String deletedId = engine.request(getRequest("foo", "e\tf\n"));
+            engine.delete(deletedId);
+            assertEquals(2, journal.getNumberOfUnfinishedTasks());
+            engine.shutdown();
+
+            // restart without bar algorithm
+            TaskJournal reloaded = new TaskJournal(journalFile, 100);
+            List<TaskJournal.Entry> unfinished = reloaded.load();
+            assertEquals(2, unfinished.size());
+            CommunityDetectionEngineImpl restarted = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            restarted.setTaskJournal(reloaded);
+            assertEquals(1, restarted.resumeTasks(unfinished));
+
+            CommunityDetectionResult cdr = waitForResult(restarted, queuedId);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertTrue(cdr.getResult().asText().contains("fooimage"));
+
+            cdr = restarted.getResult(goneId);
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+            assertTrue(cdr.getMessage().startsWith("Unable to resume task after restart: "));
+            assertEquals(0, reloaded.getNumberOfUnfinishedTasks());
+            assertEquals(0, restarted.getServerStatus().getQueuedTasks());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+    
+    @Test
+    public void testStatusAnsweredFromTaskIndexAfterRestart() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            TaskIndex taskIndex = new TaskIndex(tempDir, 2);
+            taskIndex.load();
+            engine.setTaskIndex(taskIndex);
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            String deletedId = engine.request(getRequest("foo", "c\td\n"));
+            waitForResult(engine, id);
+            waitForResult(engine, deletedId);
+            assertTrue(taskIndex.contains(id));
+            engine.delete(deletedId);
+            assertFalse(taskIndex.contains(deletedId));
+            engine.shutdown();
+
+            CommunityDetectionEngineImpl restarted = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/echo", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            TaskIndex reloaded = new TaskIndex(tempDir, 2);
+            reloaded.load();
+            assertTrue(new File(engine.getCommunityDetectionResultFilePath(id)).delete());
+            restarted.setTaskIndex(reloaded);
+            assertEquals(1, restarted.getServerStatus().getCompletedTasks());
+            
+            // status comes from index even though result file is gone
+            CommunityDetectionResultStatus status = restarted.getStatus(id);
+            assertEquals(id, status.getId());
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, status.getStatus());
+            assertEquals(100, status.getProgress());
+            try {
+                restarted.getStatus(deletedId);
+                fail("Expected CommunityDetectionException");
+            } catch(CommunityDetectionException cde){
+                assertEquals("No task with " + deletedId + " found", cde.getMessage());
+            }
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testStatusReportsProgressWhileRunning() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            // fake docker reports progress and then waits for release file
+            File release = new File(tempDir, "release");
+            File script = new File(tempDir, "progressdocker.sh");
+            try (FileWriter fw = new FileWriter(script)){
+                fw.write("#!/bin/sh\n");
+                fw.write("echo 'PROGRESS: 42' >&2\n");
+                fw.write("while [ ! -f " + release.getAbsolutePath() + " ]; do sleep 0.1; done\n");
+                fw.write("echo done\n");
+            }
+            assertTrue(script.setExecutable(true));
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), script.getAbsolutePath(), getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            
+            CommunityDetectionResultStatus status = engine.getStatus(id);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (status.getProgress() != 42 && System.currentTimeMillis() < deadline){
+                Thread.sleep(50);
+                status = engine.getStatus(id);
+            }
+            assertEquals(CommunityDetectionResult.PROCESSING_STATUS, status.getStatus());
+            assertEquals(42, status.getProgress());
+            
+            assertTrue(release.createNewFile());
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals(100, cdr.getProgress());
+            assertEquals("done\n", cdr.getResult().asText());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testCreateRunnerForNativeAlgorithm() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "docker", getAlgorithms("foo"),
+                    new CommunityDetectionRequestValidatorImpl());
+            CommunityDetectionRequest request = getRequest("foo", "a\tb\n");
+            assertFalse(engine.createRunner("1", request, 0, "fooimage", null)
+                    instanceof NativeCommunityDetectionRunner);
+            
+            AlgorithmSettings settings = new AlgorithmSettings();
+            settings.setRunner(AlgorithmSettings.NATIVE_RUNNER);
+            try {
+                engine.createRunner("2", request, 0, "fooimage", settings);
+                fail("Expected CommunityDetectionException");
+            } catch(CommunityDetectionException cde){
+                assertEquals("No executable set for native algorithm foo", cde.getMessage());
+            }
+            settings.setExecutable("/bin/cat");
+            DockerCommunityDetectionRunner runner = engine.createRunner("3", request, 0,
+                    "fooimage", settings);
+            assertEquals("/bin/cat", ((NativeCommunityDetectionRunner)runner).getExecutable());
+            CommunityDetectionResult cdr = runner.callAsync().get(10, TimeUnit.SECONDS);
+            assertEquals("a\tb\n", cdr.getResult().asText());
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testRequestRunsInProcessAlgorithm() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            writeConfiguration(tempDir);
+            CmdlineCommunityDetectionAlgorithmsFactory algoFactory = new CmdlineCommunityDetectionAlgorithmsFactory(
+                    getAlgorithms("foo"), Collections.singletonList(
+                            new TestCmdlineCommunityDetectionAlgorithmsFactory.UpperCaseAlgorithm()));
+            // docker command that always fails shows docker is never run
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/false",
+                    algoFactory.getCommunityDetectionAlgorithms(),
+                    new CommunityDetectionRequestValidatorImpl());
+            engine.setInProcessAlgorithms(algoFactory.getInProcessAlgorithms());
+            assertTrue(engine.getAlgorithms().getAlgorithms().containsKey("uppercase"));
+            
+            String id = engine.request(getRequest("uppercase", "a\tb\n"));
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals(100, cdr.getProgress());
+            assertEquals("A\tB\n", cdr.getResult().asText());
+            assertTrue(new File(engine.getCommunityDetectionResultFilePath(id)).isFile());
+            
+            id = engine.request(getRequest("uppercase", "bad"));
+            cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+            assertEquals("Received error trying to run detection: bad data", cdr.getMessage());
+            assertEquals(2, engine.getServerStatus().getCompletedTasks());
+
+            try {
+                engine.requestPipeline(new PipelineRequest(Arrays.asList(
+                        getRequest("foo", "a\tb\n"), getRequest("uppercase", "a"))), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("Stage 1 in pipeline is invalid: uppercase runs in "
+                        + "process and can not be run in a pipeline or fan out",
+                        bre.getMessage());
+            }
+            FanOutRequest fanOut = new FanOutRequest();
+            fanOut.setAlgorithm("uppercase");
+            fanOut.setData(new TextNode("1,ga,c-m;"));
+            try {
+                engine.requestFanOut(fanOut, null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("uppercase runs in process and can not be run in "
+                        + "a pipeline or fan out", bre.getMessage());
+            }
+        } finally {
+            es.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testNativeAlgorithmRunsLocallyInCoordinatorMode() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newFixedThreadPool(1);
+        try {
+            File algoFile = new File(tempDir, "algos.json");
+            try (FileWriter fw = new FileWriter(algoFile)){
+                fw.write("{\"algorithms\": {\"foo\": {\"name\": \"foo\","
+                        + "\"settings\": {\"runner\": \"native\", "
+                        + "\"executable\": \"/bin/cat\"}}}}");
+            }
+            File confFile = new File(tempDir, "foo.conf");
+            try (FileWriter fw = new FileWriter(confFile)){
+                fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+                fw.write(Configuration.ALGORITHM_MAP + " = " + algoFile.getAbsolutePath() + "\n");
+            }
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            Configuration.reloadConfiguration();
+            CommunityDetectionAlgorithms algos = getAlgorithms("foo", "bar");
+            algos.getAlgorithms().get("bar").setInputDataFormat("GENELIST");
+            // docker command that always fails shows docker is never run
+            CommunityDetectionEngineImpl engine = new CommunityDetectionEngineImpl(es,
+                    tempDir.getAbsolutePath(), "/bin/false", algos,
+                    new CommunityDetectionRequestValidatorImpl());
+            RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+            engine.setRemoteTaskQueue(queue);
+
+            String id = engine.request(getRequest("foo", "a\tb\n"));
+            CommunityDetectionResult cdr = waitForResult(engine, id);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals("a\tb\n", cdr.getResult().asText());
+            assertEquals(0, queue.getPendingTasks());
+
+            try {
+                engine.requestPipeline(new PipelineRequest(Arrays.asList(
+                        getRequest("bar", "a"), getRequest("foo", "a\tb\n"))), null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("Stage 1 in pipeline is invalid: foo runs without "
+                        + "docker and can not be run in a pipeline or fan out",
+                        bre.getMessage());
+            }
+            FanOutRequest fanOut = new FanOutRequest();
+            fanOut.setAlgorithm("foo");
+            fanOut.setData(new TextNode("1,ga,c-m;"));
+            try {
+                engine.requestFanOut(fanOut, null);
+                fail("Expected CommunityDetectionBadRequestException");
+            } catch(CommunityDetectionBadRequestException bre){
+                assertEquals("foo runs without docker and can not be run in "
+                        + "a pipeline or fan out", bre.getMessage());
+            }
+        } finally {
+            es.shutdownNow();
+            // do not leave native settings for foo behind for other tests
+            writeConfiguration(tempDir);
+            Configuration.reloadConfiguration();
+            _folder.delete();
+        }
+    }
+}
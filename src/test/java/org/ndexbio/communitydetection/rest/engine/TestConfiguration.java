@@ -2,6 +2,7 @@ package org.ndexbio.communitydetection.rest.engine;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Properties;
 import static org.junit.Assert.*;
@@ -107,4 +108,65 @@ public class TestConfiguration {
             _folder.delete();
         }
     }
+    
+    @Test
+    public void testAlgorithmSettingsParsedFromAlgorithmMap() throws CommunityDetectionException, IOException {
+        File tempDir = _folder.newFolder();
+        try {
+            File configFile = new File(tempDir.getAbsolutePath() + File.separator + "conf");
+            File algoFile = new File(tempDir.getAbsolutePath() + File.separator + "algos.json");
+            try (FileWriter fw = new FileWriter(algoFile)){
+                fw.write("{\"algorithms\": {"
+                        + "\"foo\": {\"name\": \"foo\", \"dockerImage\": \"fooimage\","
+                        + "\"settings\": {\"workers\": 2, \"overflow\": true}},"
+                        + "\"bar\": {\"name\": \"bar\", \"dockerImage\": \"barimage\"}}}");
+            }
+            Properties props = new Properties();
+            props.setProperty(Configuration.ALGORITHM_MAP, algoFile.getAbsolutePath());
+            FileOutputStream fos = new FileOutputStream(configFile);
+            props.store(fos, "hello");
+            fos.flush();
+            fos.close();
+            Configuration.setAlternateConfigurationFile(configFile.getAbsolutePath());
+            Configuration config = Configuration.reloadConfiguration();
+            assertEquals(2, config.getAlgorithms().getAlgorithms().size());
+            assertEquals("fooimage", config.getAlgorithms().getAlgorithms().get("foo").getDockerImage());
+            assertEquals(1, config.getAlgorithmSettings().size());
+            AlgorithmSettings settings = config.getAlgorithmSettings().get("foo");
+            assertEquals(2, settings.getWorkers());
+            assertTrue(settings.isOverflow());
+        } finally {
+            _folder.delete();
+        }
+    }
+    
+    @Test
+    public void testInvalidRunnerInAlgorithmMap() throws IOException {
+        File tempDir = _folder.newFolder();
+        try {
+            File configFile = new File(tempDir.getAbsolutePath() + File.separator + "conf");
+            File algoFile = new File(tempDir.getAbsolutePath() + File.separator + "algos.json");
+            try (FileWriter fw = new FileWriter(algoFile)){
+                fw.write("{\"algorithms\": {"
+                        + "\"foo\": {\"name\": \"foo\", \"dockerImage\": \"fooimage\","
+                        + "\"settings\": {\"runner\": \"Native\", \"executable\": \"/bin/cat\"}}}}");
+            }
+            Properties props = new Properties();
+            props.setProperty(Configuration.ALGORITHM_MAP, algoFile.getAbsolutePath());
+            FileOutputStream fos = new FileOutputStream(configFile);
+            props.store(fos, "hello");
+            fos.flush();
+            fos.close();
+            Configuration.setAlternateConfigurationFile(configFile.getAbsolutePath());
+            try {
+                Configuration.reloadConfiguration();
+                fail("Expected CommunityDetectionException");
+            } catch(CommunityDetectionException cde){
+                assertEquals("Invalid runner Native for algorithm foo, must be one of: "
+                        + "docker, native", cde.getMessage());
+            }
+        } finally {
+            _folder.delete();
+        }
+    }
 }
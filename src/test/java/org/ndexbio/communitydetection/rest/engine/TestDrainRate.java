@@ -0,0 +1,37 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestDrainRate {
+
+    @Test
+    public void testNoTasksFinished(){
+        DrainRate dr = new DrainRate(5);
+        assertEquals(-1, dr.getEstimatedWaitMillis(1, 1000));
+    }
+
+    @Test
+    public void testEstimatedWait(){
+        DrainRate dr = new DrainRate(5);
+        dr.taskFinished(1000);
+        dr.taskFinished(2000);
+        // 2 tasks finished in 2 seconds
+        assertEquals(1000, dr.getEstimatedWaitMillis(1, 3000));
+        assertEquals(4000, dr.getEstimatedWaitMillis(4, 3000));
+    }
+
+    @Test
+    public void testOnlyMostRecentTasksUsed(){
+        DrainRate dr = new DrainRate(2);
+        dr.taskFinished(0);
+        dr.taskFinished(9000);
+        dr.taskFinished(10000);
+        // 2 tasks finished in 2 seconds
+        assertEquals(1000, dr.getEstimatedWaitMillis(1, 11000));
+    }
+}
@@ -0,0 +1,63 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestFairTaskQueue {
+
+    public static CommunityDetectionTask getTask(final String id,
+            final String clientId, long priority){
+        CommunityDetectionTask task = new CommunityDetectionTask(id, () -> (CommunityDetectionResult)null);
+        task.setClientId(clientId);
+        task.setPriority(priority);
+        return task;
+    }
+
+    @Test
+    public void testEmptyQueue(){
+        FairTaskQueue queue = new FairTaskQueue();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testRoundRobinAcrossClients(){
+        FairTaskQueue queue = new FairTaskQueue();
+        // script submits lots of work before other clients show up
+        for (int i = 0; i < 5; i++){
+            queue.add(getTask("script" + i, "10.0.0.1", i));
+        }
+        queue.add(getTask("userA", "10.0.0.2", 100));
+        queue.add(getTask("userB", null, 200));
+        assertEquals(7, queue.size());
+        assertEquals(3, queue.getNumberOfClients());
+
+        assertEquals("script0", queue.peek().getId());
+        assertEquals("script0", queue.poll().getId());
+        assertEquals("userA", queue.poll().getId());
+        assertEquals("userB", queue.poll().getId());
+        assertEquals(1, queue.getNumberOfClients());
+        assertEquals("script1", queue.poll().getId());
+        assertEquals("script2", queue.poll().getId());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testPriorityOrderWithinClient(){
+        FairTaskQueue queue = new FairTaskQueue();
+        queue.add(getTask("big", "a", 500));
+        queue.add(getTask("small", "a", 10));
+        queue.add(getTask("other", "b", 1));
+        assertEquals("small", queue.poll().getId());
+        assertEquals("other", queue.poll().getId());
+        assertEquals("big", queue.poll().getId());
+        assertTrue(queue.isEmpty());
+    }
+}
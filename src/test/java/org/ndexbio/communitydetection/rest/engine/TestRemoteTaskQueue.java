@@ -0,0 +1,146 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRemoteTaskQueue {
+
+    private RemoteTask getTask(final String id){
+        RemoteTask task = new RemoteTask();
+        task.setId(id);
+        task.setAlgorithm("foo");
+        return task;
+    }
+
+    @Test
+    public void testClaimAndComplete() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        assertNull(queue.claim("w1", 0));
+        CompletableFuture<CommunityDetectionResult> futureA = queue.submit(getTask("a"));
+        queue.submit(getTask("b"));
+        assertEquals(2, queue.getPendingTasks());
+
+        // tasks are claimed in order submitted
+        assertEquals("a", queue.claim("w1", 0).getId());
+        assertEquals("b", queue.claim("w2", 0).getId());
+        assertEquals(0, queue.getPendingTasks());
+        assertEquals(2, queue.getClaimedTasks());
+
+        assertTrue(queue.renew("a", "w1"));
+        assertFalse(queue.renew("a", "w2"));
+        assertFalse(queue.renew("c", "w1"));
+
+        CommunityDetectionResult cdr = new CommunityDetectionResult();
+        cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+        assertFalse(queue.complete("a", "w2", cdr));
+        assertTrue(queue.complete("a", "w1", cdr));
+        assertSame(cdr, futureA.get(1, TimeUnit.SECONDS));
+        assertFalse(queue.complete("a", "w1", cdr));
+        assertFalse(queue.renew("a", "w1"));
+        assertEquals(1, queue.getClaimedTasks());
+    }
+
+    @Test
+    public void testClaimWaitsForTask() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        long start = System.currentTimeMillis();
+        assertNull(queue.claim("w1", 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch(InterruptedException ie){
+                return;
+            }
+            queue.submit(getTask("a"));
+        });
+        t.start();
+        RemoteTask task = queue.claim("w1", 10000);
+        t.join();
+        assertEquals("a", task.getId());
+    }
+
+    @Test
+    public void testExpiredLeaseRequeuesThenFails() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(10);
+        CompletableFuture<CommunityDetectionResult> future = queue.submit(getTask("a"));
+        queue.submit(getTask("b"));
+        for (int i = 0; i < RemoteTaskQueue.MAX_ATTEMPTS; i++){
+            assertEquals("a", queue.claim("w" + i, 0).getId());
+            // lost task goes back in front of b
+            assertEquals(1, queue.getPendingTasks());
+            Thread.sleep(20);
+            assertFalse(queue.renew("a", "w" + i));
+        }
+        assertEquals("b", queue.claim("w1", 0).getId());
+        CommunityDetectionResult cdr = future.get(1, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+        assertEquals("Task was lost by workers 3 times", cdr.getMessage());
+        assertEquals("a", cdr.getId());
+    }
+
+    @Test
+    public void testCancelRemovesTask() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        CompletableFuture<CommunityDetectionResult> futureA = queue.submit(getTask("a"));
+        CompletableFuture<CommunityDetectionResult> futureB = queue.submit(getTask("b"));
+        assertEquals("a", queue.claim("w1", 0).getId());
+
+        // canceling claimed task tells worker to stop on next renewal
+        futureA.cancel(true);
+        assertFalse(queue.renew("a", "w1"));
+        assertFalse(queue.complete("a", "w1", new CommunityDetectionResult()));
+
+        // canceling pending task means it is never claimed
+        futureB.cancel(true);
+        assertEquals(0, queue.getPendingTasks());
+        assertNull(queue.claim("w1", 0));
+    }
+
+    @Test
+    public void testTimeoutFailsTask() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        try {
+            CompletableFuture<CommunityDetectionResult> future = queue.submit(getTask("a"),
+                    100, TimeUnit.MILLISECONDS);
+            assertEquals("a", queue.claim("w1", 0).getId());
+            CommunityDetectionResult cdr = future.get(10, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+            assertEquals(RemoteTaskQueue.TIMEOUT_MESSAGE, cdr.getMessage());
+            assertEquals("a", cdr.getId());
+
+            // worker is told to stop and its result is ignored
+            assertFalse(queue.renew("a", "w1"));
+            assertFalse(queue.complete("a", "w1", new CommunityDetectionResult()));
+            assertEquals(0, queue.getClaimedTasks());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testStartRequeuesExpiredLeasesWithoutClaims() throws Exception {
+        RemoteTaskQueue queue = new RemoteTaskQueue(10);
+        try {
+            queue.submit(getTask("a"));
+            assertEquals("a", queue.claim("w1", 0).getId());
+            queue.start(10, TimeUnit.MILLISECONDS);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (queue.getPendingTasks() == 0 && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(1, queue.getPendingTasks());
+            assertEquals(0, queue.getClaimedTasks());
+        } finally {
+            queue.shutdown();
+        }
+    }
+}
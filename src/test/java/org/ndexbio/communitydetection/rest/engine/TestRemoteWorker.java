@@ -0,0 +1,142 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.engine.util.CoordinatorClient;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRemoteWorker {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    /**
+     * Client that talks directly to a {@link RemoteTaskQueue}
+     */
+    private static class QueueCoordinatorClient implements CoordinatorClient {
+        private final RemoteTaskQueue _queue;
+
+        QueueCoordinatorClient(RemoteTaskQueue queue){
+            _queue = queue;
+        }
+
+        @Override
+        public RemoteTask claim(String workerId, long waitMillis) throws Exception {
+            return _queue.claim(workerId, waitMillis);
+        }
+
+        @Override
+        public boolean renew(String taskId, String workerId) throws Exception {
+            return _queue.renew(taskId, workerId);
+        }
+
+        @Override
+        public boolean complete(String taskId, String workerId, CommunityDetectionResult cdr) throws Exception {
+            return _queue.complete(taskId, workerId, cdr);
+        }
+    }
+
+    private RemoteTask getTask(final String id, final String data){
+        RemoteTask task = new RemoteTask();
+        task.setId(id);
+        task.setAlgorithm("foo");
+        task.setDockerImage("image");
+        task.setData(new TextNode(data));
+        task.setTimeOut(30);
+        return task;
+    }
+
+    @Test
+    public void testWorkersRunTasks() throws Exception {
+        File tempDir = _folder.newFolder();
+        File taskDir = _folder.newFolder();
+        String dockerCmd = TestCommunityDetectionEngineImpl.writeFakeDocker(tempDir).getAbsolutePath();
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        RemoteWorker workerOne = new RemoteWorker("w1", new QueueCoordinatorClient(queue),
+                2, taskDir.getAbsolutePath(), dockerCmd, 1000, 100);
+        RemoteWorker workerTwo = new RemoteWorker("w2", new QueueCoordinatorClient(queue),
+                1, taskDir.getAbsolutePath(), dockerCmd, 1000, 100);
+        Thread t1 = new Thread(workerOne);
+        Thread t2 = new Thread(workerTwo);
+        t1.start();
+        t2.start();
+        try {
+            CompletableFuture<CommunityDetectionResult> good = queue.submit(getTask("a", "ga,gb"));
+            CompletableFuture<CommunityDetectionResult> bad = queue.submit(getTask("b", "bad"));
+            CommunityDetectionResult cdr = good.get(30, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+            assertEquals("a", cdr.getId());
+            assertEquals("ga,gb\n", cdr.getResult().asText());
+
+            cdr = bad.get(30, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+            assertEquals("b", cdr.getId());
+
+            assertEquals(0, queue.getClaimedTasks());
+
+            // task directories are removed once results are reported
+            long deadline = System.currentTimeMillis() + 10000;
+            while ((new File(taskDir, "a").exists() || new File(taskDir, "b").exists())
+                    && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertFalse(new File(taskDir, "a").exists());
+            assertFalse(new File(taskDir, "b").exists());
+        } finally {
+            workerOne.shutdown();
+            workerTwo.shutdown();
+            t1.join(10000);
+            t2.join(10000);
+        }
+        assertFalse(t1.isAlive());
+        assertFalse(t2.isAlive());
+    }
+
+    @Test
+    public void testCanceledTaskIsStopped() throws Exception {
+        File tempDir = _folder.newFolder();
+        File taskDir = _folder.newFolder();
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        // docker that sleeps so task runs until it is stopped
+        File script = new File(tempDir, "slowdocker.sh");
+        try (FileWriter fw = new FileWriter(script)){
+            fw.write("#!/bin/sh\nexec sleep 60\n");
+        }
+        assertTrue(script.setExecutable(true));
+        RemoteTask task = getTask("a", "ga");
+        RemoteWorker worker = new RemoteWorker("w1", new QueueCoordinatorClient(queue),
+                1, taskDir.getAbsolutePath(), script.getAbsolutePath(), 50, 100);
+        Thread t = new Thread(worker);
+        t.start();
+        try {
+            CompletableFuture<CommunityDetectionResult> future = queue.submit(task);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (new File(taskDir, "a").exists() == false && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(1, queue.getClaimedTasks());
+            assertTrue(new File(taskDir, "a").exists());
+            future.cancel(true);
+            deadline = System.currentTimeMillis() + 10000;
+            while (new File(taskDir, "a").exists() && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertFalse(new File(taskDir, "a").exists());
+        } finally {
+            worker.shutdown();
+            t.join(10000);
+        }
+        assertFalse(t.isAlive());
+    }
+}
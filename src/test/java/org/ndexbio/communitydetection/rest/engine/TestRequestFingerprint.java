@@ -0,0 +1,100 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.LinkedHashMap;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ *
+ * @author churas
+ */
+public class TestRequestFingerprint {
+
+    private CommunityDetectionRequest getRequest(final String algorithm,
+            final String data, final String... params){
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setAlgorithm(algorithm);
+        cdr.setData(new TextNode(data));
+        if (params.length > 0){
+            LinkedHashMap<String, String> custParams = new LinkedHashMap<>();
+            for (int i = 0; i < params.length; i += 2){
+                custParams.put(params[i], params[i + 1]);
+            }
+            cdr.setCustomParameters(custParams);
+        }
+        return cdr;
+    }
+
+    @Test
+    public void testNullRequest() throws Exception {
+        try {
+            RequestFingerprint.getFingerprint(null);
+            fail("Expected CommunityDetectionException");
+        } catch(CommunityDetectionException cde){
+            assertEquals("Request is null", cde.getMessage());
+        }
+    }
+
+    @Test
+    public void testIdenticalRequestsMatch() throws Exception {
+        String fp = RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", "1", "--b", "2"));
+        assertEquals(64, fp.length());
+        assertEquals(fp, RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--b", "2", "--a", "1")));
+
+        CommunityDetectionRequest jsonReq = new CommunityDetectionRequest();
+        jsonReq.setAlgorithm("foo");
+        jsonReq.setData(new ObjectMapper().readTree("{\"x\": [1, 2]}"));
+        CommunityDetectionRequest jsonReqTwo = new CommunityDetectionRequest();
+        jsonReqTwo.setAlgorithm("foo");
+        jsonReqTwo.setData(new ObjectMapper().readTree("{ \"x\" : [1,2] }"));
+        assertEquals(RequestFingerprint.getFingerprint(jsonReq),
+                RequestFingerprint.getFingerprint(jsonReqTwo));
+    }
+
+    @Test
+    public void testDifferentRequestsDoNotMatch() throws Exception {
+        String fp = RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", "1"));
+        assertNotEquals(fp, RequestFingerprint.getFingerprint(getRequest("bar", "a\tb\n",
+                "--a", "1")));
+        assertNotEquals(fp, RequestFingerprint.getFingerprint(getRequest("foo", "a\tc\n",
+                "--a", "1")));
+        assertNotEquals(fp, RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", "2")));
+        assertNotEquals(fp, RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n")));
+        assertNotEquals(RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--ab", "")), RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", "b")));
+    }
+
+    @Test
+    public void testObjectFieldOrderDoesNotMatter() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        CommunityDetectionRequest cdr = getRequest("foo", "");
+        cdr.setData(mapper.readTree("{\"b\": 1, \"a\": {\"y\": [1, {\"d\": 1, \"c\": 2}], \"x\": null}}"));
+        CommunityDetectionRequest reordered = getRequest("foo", "");
+        reordered.setData(mapper.readTree("{\"a\": {\"x\": null, \"y\": [1, {\"c\": 2, \"d\": 1}]}, \"b\": 1}"));
+        assertEquals(RequestFingerprint.getFingerprint(cdr),
+                RequestFingerprint.getFingerprint(reordered));
+
+        // order of array elements still matters
+        reordered.setData(mapper.readTree("{\"a\": {\"x\": null, \"y\": [{\"c\": 2, \"d\": 1}, 1]}, \"b\": 1}"));
+        assertNotEquals(RequestFingerprint.getFingerprint(cdr),
+                RequestFingerprint.getFingerprint(reordered));
+    }
+
+    @Test
+    public void testNullDiffersFromEmpty() throws Exception {
+        assertNotEquals(RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", null)), RequestFingerprint.getFingerprint(getRequest("foo", "a\tb\n",
+                "--a", "")));
+        assertNotEquals(RequestFingerprint.getFingerprint(getRequest(null, "a\tb\n")),
+                RequestFingerprint.getFingerprint(getRequest("", "a\tb\n")));
+    }
+}
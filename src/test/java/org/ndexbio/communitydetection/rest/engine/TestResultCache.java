@@ -0,0 +1,117 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestResultCache {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private CommunityDetectionResult getResult(final String status, final String result){
+        CommunityDetectionResult cdr = new CommunityDetectionResult(0);
+        cdr.setStatus(status);
+        cdr.setResult(new TextNode(result));
+        return cdr;
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        File cacheDir = new File(_folder.newFolder(), "cache");
+        ResultCache cache = new ResultCache(cacheDir, 0, 0, 0);
+        cache.load();
+        assertTrue(cacheDir.isDirectory());
+        assertNull(cache.get("a", 0));
+
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "1,2"), 0);
+        assertEquals(new TextNode("1,2"), cache.get("a", 0));
+        assertEquals(1, cache.getNumberOfEntries());
+        assertEquals(5, cache.getTotalBytes());
+
+        // failed and null results are not cached
+        cache.put("b", getResult(CommunityDetectionResult.FAILED_STATUS, "error"), 0);
+        cache.put("c", null, 0);
+        assertNull(cache.get("b", 0));
+        assertEquals(1, cache.getNumberOfEntries());
+
+        // replacing entry updates size
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "1"), 0);
+        assertEquals(3, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedByCount() throws Exception {
+        File cacheDir = _folder.newFolder();
+        ResultCache cache = new ResultCache(cacheDir, 2, 0, 0);
+        cache.load();
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "a"), 0);
+        cache.put("b", getResult(CommunityDetectionResult.COMPLETE_STATUS, "b"), 0);
+        assertNotNull(cache.get("a", 0));
+        cache.put("c", getResult(CommunityDetectionResult.COMPLETE_STATUS, "c"), 0);
+        assertEquals(2, cache.getNumberOfEntries());
+        assertNull(cache.get("b", 0));
+        assertFalse(new File(cacheDir, "b" + ResultCache.ENTRY_SUFFIX).exists());
+        assertNotNull(cache.get("a", 0));
+        assertNotNull(cache.get("c", 0));
+    }
+
+    @Test
+    public void testEvictBySize() throws Exception {
+        File cacheDir = _folder.newFolder();
+        ResultCache cache = new ResultCache(cacheDir, 0, 10, 0);
+        cache.load();
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "aaaa"), 0);
+        cache.put("b", getResult(CommunityDetectionResult.COMPLETE_STATUS, "bbbb"), 0);
+        assertEquals(1, cache.getNumberOfEntries());
+        assertNull(cache.get("a", 0));
+        assertNotNull(cache.get("b", 0));
+
+        // too large to ever fit
+        cache.put("c", getResult(CommunityDetectionResult.COMPLETE_STATUS, "cccccccccccc"), 0);
+        assertNull(cache.get("c", 0));
+        assertNotNull(cache.get("b", 0));
+    }
+
+    @Test
+    public void testEvictByAge() throws Exception {
+        File cacheDir = _folder.newFolder();
+        ResultCache cache = new ResultCache(cacheDir, 0, 0, 100);
+        cache.load();
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "a"), 1000);
+        assertNotNull(cache.get("a", 1100));
+        assertNull(cache.get("a", 1101));
+        assertEquals(0, cache.getNumberOfEntries());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testLoadExistingEntries() throws Exception {
+        File cacheDir = _folder.newFolder();
+        ResultCache cache = new ResultCache(cacheDir, 0, 0, 0);
+        cache.load();
+        cache.put("a", getResult(CommunityDetectionResult.COMPLETE_STATUS, "a"), 0);
+        cache.put("b", getResult(CommunityDetectionResult.COMPLETE_STATUS, "b"), 0);
+        File tmpFile = new File(cacheDir, "c.1" + ResultCache.TMP_SUFFIX);
+        assertTrue(tmpFile.createNewFile());
+
+        ResultCache reloaded = new ResultCache(cacheDir, 0, 0, 0);
+        reloaded.load();
+        assertEquals(2, reloaded.getNumberOfEntries());
+        assertEquals(new TextNode("a"), reloaded.get("a", 0));
+        assertFalse(tmpFile.exists());
+
+        // limit is applied when loading
+        ResultCache limited = new ResultCache(cacheDir, 1, 0, 0);
+        limited.load();
+        assertEquals(1, limited.getNumberOfEntries());
+    }
+}
@@ -0,0 +1,135 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
+
+/**
+ *
+ * @author churas
+ */
+public class TestTaskIndex {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private File writeResult(File taskDir, final String id, final String status,
+            final String message) throws Exception {
+        File dir = new File(taskDir, id);
+        assertTrue(dir.mkdirs());
+        CommunityDetectionResult cdr = new CommunityDetectionResult(5);
+        cdr.setId(id);
+        cdr.setStatus(status);
+        cdr.setMessage(message);
+        cdr.setProgress(100);
+        cdr.setWallTime(10);
+        cdr.setResult(new TextNode("result of " + id));
+        File cdrFile = new File(dir, CommunityDetectionEngineImpl.CDRESULT_JSON_FILE);
+        new ObjectMapper().writeValue(cdrFile, cdr);
+        return cdrFile;
+    }
+
+    @Test
+    public void testLoadEmptyTaskDirectory() throws Exception {
+        File taskDir = _folder.newFolder();
+        TaskIndex index = new TaskIndex(taskDir, 2);
+        assertEquals(0, index.load());
+        assertTrue(new File(taskDir, TaskIndex.SNAPSHOT_FILE).isFile());
+        assertNull(index.get("foo"));
+        assertNull(index.get(null));
+    }
+
+    @Test
+    public void testLoadScansTaskDirectories() throws Exception {
+        File taskDir = _folder.newFolder();
+        File cdrFile = writeResult(taskDir, "a", CommunityDetectionResult.COMPLETE_STATUS, null);
+        for (int i = 0; i < 20; i++){
+            writeResult(taskDir, "t" + i, CommunityDetectionResult.COMPLETE_STATUS, null);
+        }
+        writeResult(taskDir, "b", CommunityDetectionResult.FAILED_STATUS, "oops");
+        // directory without result and unreadable result are skipped
+        assertTrue(new File(taskDir, "noresult").mkdirs());
+        assertTrue(new File(taskDir, "bad").mkdirs());
+        try (FileWriter fw = new FileWriter(new File(taskDir, "bad/"
+                + CommunityDetectionEngineImpl.CDRESULT_JSON_FILE))){
+            fw.write("{\"status\":");
+        }
+
+        TaskIndex index = new TaskIndex(taskDir, 3);
+        assertEquals(22, index.load());
+        assertEquals(22, index.getNumberOfFinishedTasks());
+        assertFalse(index.contains("noresult"));
+        assertFalse(index.contains("bad"));
+
+        TaskIndex.Entry entry = index.get("a");
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, entry.getStatus());
+        assertEquals(5, entry.getStartTime());
+        assertEquals(10, entry.getWallTime());
+        assertEquals(cdrFile.length(), entry.getResultSize());
+
+        CommunityDetectionResultStatus status = index.get("b").getResultStatus();
+        assertEquals("b", status.getId());
+        assertEquals(CommunityDetectionResult.FAILED_STATUS, status.getStatus());
+        assertEquals("oops", status.getMessage());
+        assertEquals(100, status.getProgress());
+    }
+
+    @Test
+    public void testLoadUsesSnapshot() throws Exception {
+        File taskDir = _folder.newFolder();
+        File cdrFile = writeResult(taskDir, "a", CommunityDetectionResult.COMPLETE_STATUS, null);
+        writeResult(taskDir, "b", CommunityDetectionResult.COMPLETE_STATUS, null);
+        TaskIndex index = new TaskIndex(taskDir, 2);
+        assertEquals(2, index.load());
+        CommunityDetectionResult cdr = new CommunityDetectionResult(7);
+        cdr.setId("c");
+        cdr.setStatus(CommunityDetectionResult.FAILED_STATUS);
+        index.update(cdr, 3);
+        assertTrue(new File(taskDir, "c").mkdirs());
+        index.remove("b");
+        index.saveSnapshot();
+
+        // entries in snapshot are not read again, removed directories are
+        // dropped, and new directories are read
+        assertTrue(cdrFile.delete());
+        FileUtils.deleteDirectory(new File(taskDir, "b"));
+        FileUtils.deleteDirectory(new File(taskDir, "c"));
+        writeResult(taskDir, "d", CommunityDetectionResult.COMPLETE_STATUS, null);
+
+        TaskIndex reloaded = new TaskIndex(taskDir, 2);
+        assertEquals(2, reloaded.load());
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, reloaded.get("a").getStatus());
+        assertFalse(reloaded.contains("b"));
+        assertFalse(reloaded.contains("c"));
+        assertTrue(reloaded.contains("d"));
+    }
+
+    @Test
+    public void testCorruptSnapshotIgnored() throws Exception {
+        File taskDir = _folder.newFolder();
+        writeResult(taskDir, "a", CommunityDetectionResult.COMPLETE_STATUS, null);
+        try (FileWriter fw = new FileWriter(new File(taskDir, TaskIndex.SNAPSHOT_FILE))){
+            fw.write("garbage");
+        }
+        TaskIndex index = new TaskIndex(taskDir, 1);
+        assertEquals(1, index.load());
+        assertTrue(index.contains("a"));
+
+        // truncated snapshot is also ignored
+        File snapshot = new File(taskDir, TaskIndex.SNAPSHOT_FILE);
+        byte[] bytes = FileUtils.readFileToByteArray(snapshot);
+        FileUtils.writeByteArrayToFile(snapshot, Arrays.copyOf(bytes, bytes.length - 4));
+        index = new TaskIndex(taskDir, 1);
+        assertEquals(1, index.load());
+        assertTrue(index.contains("a"));
+    }
+}
@@ -0,0 +1,162 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ *
+ * @author churas
+ */
+public class TestTaskJournal {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testLoadMissingJournal() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 10);
+        assertTrue(journal.load().isEmpty());
+        assertTrue(journalFile.isFile());
+        assertEquals(0, journal.getNumberOfUnfinishedTasks());
+    }
+
+    @Test
+    public void testUnfinishedTasksSurviveReload() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 100);
+        journal.load();
+        journal.submitted("a", TaskJournal.REQUEST_KIND, new TextNode("reqa"), "client1");
+        journal.submitted("b", TaskJournal.PIPELINE_KIND, new TextNode("reqb"), null);
+        journal.submitted("c", TaskJournal.FANOUT_KIND, new TextNode("reqc"), null);
+        journal.finished("b", "complete");
+        // unknown tasks are ignored
+        journal.finished("x", "complete");
+        assertEquals(2, journal.getNumberOfUnfinishedTasks());
+        journal.close();
+
+        // tasks finishing after close are resumed
+        journal.finished("c", "failed");
+
+        TaskJournal reloaded = new TaskJournal(journalFile, 100);
+        List<TaskJournal.Entry> entries = reloaded.load();
+        assertEquals(2, entries.size());
+        assertEquals("a", entries.get(0).getId());
+        assertEquals(TaskJournal.REQUEST_KIND, entries.get(0).getKind());
+        assertEquals("client1", entries.get(0).getClientId());
+        assertEquals("reqa", entries.get(0).getRequest().asText());
+        assertTrue(entries.get(0).getSubmitTime() > 0);
+        assertEquals("c", entries.get(1).getId());
+        assertEquals(TaskJournal.FANOUT_KIND, entries.get(1).getKind());
+        assertNull(entries.get(1).getClientId());
+
+        // load compacts journal down to unfinished tasks
+        assertEquals(2, Files.readAllLines(journalFile.toPath()).size());
+    }
+
+    @Test
+    public void testPartialRecordIgnored() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 100);
+        journal.load();
+        journal.submitted("a", TaskJournal.REQUEST_KIND, new TextNode("reqa"), null);
+        journal.close();
+        try (FileWriter fw = new FileWriter(journalFile, true)){
+            fw.write("{\"op\":\"submit\",\"id\":\"b\",\"kin");
+        }
+        List<TaskJournal.Entry> entries = new TaskJournal(journalFile, 100).load();
+        assertEquals(1, entries.size());
+        assertEquals("a", entries.get(0).getId());
+    }
+
+    @Test
+    public void testCompactsOnceMostTasksFinish() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 5);
+        journal.load();
+        journal.submitted("keep", TaskJournal.REQUEST_KIND, new TextNode("keep"), null);
+        for (int i = 0; i < 3; i++){
+            journal.submitted(Integer.toString(i), TaskJournal.REQUEST_KIND, new TextNode("x"), null);
+            journal.finished(Integer.toString(i), "complete");
+        }
+        // 7 records with 1 unfinished task so journal was compacted
+        List<String> lines = Files.readAllLines(journalFile.toPath());
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"keep\""));
+
+        journal.submitted("next", TaskJournal.REQUEST_KIND, new TextNode("next"), null);
+        journal.close();
+        List<TaskJournal.Entry> entries = new TaskJournal(journalFile, 5).load();
+        assertEquals(2, entries.size());
+        assertEquals("keep", entries.get(0).getId());
+        assertEquals("next", entries.get(1).getId());
+    }
+
+    @Test
+    public void testFailedCompactionKeepsWritingJournal() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 1);
+        journal.load();
+        // directory in place of temporary file makes compaction fail
+        File blocker = new File(journalFile.getAbsolutePath() + ".tmp");
+        assertTrue(blocker.mkdir());
+        assertTrue(new File(blocker, "x").createNewFile());
+        journal.submitted("a", TaskJournal.REQUEST_KIND, new TextNode("a"), null);
+        journal.submitted("b", TaskJournal.REQUEST_KIND, new TextNode("b"), null);
+        journal.finished("a", "complete");
+        journal.finished("b", "complete");
+        journal.submitted("c", TaskJournal.REQUEST_KIND, new TextNode("c"), null);
+        journal.submitted("d", TaskJournal.REQUEST_KIND, new TextNode("d"), null);
+        assertEquals(6, Files.readAllLines(journalFile.toPath()).size());
+
+        assertTrue(new File(blocker, "x").delete());
+        assertTrue(blocker.delete());
+        journal.finished("c", "complete");
+        assertEquals(1, Files.readAllLines(journalFile.toPath()).size());
+        journal.close();
+
+        List<TaskJournal.Entry> entries = new TaskJournal(journalFile, 1).load();
+        assertEquals(1, entries.size());
+        assertEquals("d", entries.get(0).getId());
+        assertEquals("d", entries.get(0).getRequest().asText());
+    }
+
+    @Test
+    public void testRecordsReadBackAcrossCompactions() throws Exception {
+        File journalFile = new File(_folder.newFolder(), TaskJournal.JOURNAL_FILE);
+        TaskJournal journal = new TaskJournal(journalFile, 2);
+        journal.load();
+        CommunityDetectionRequest request = new CommunityDetectionRequest();
+        request.setAlgorithm("foo");
+        request.setData(new TextNode("a\tb\n"));
+        journal.submitted("first", TaskJournal.REQUEST_KIND, request, null);
+        for (int round = 0; round < 3; round++){
+            for (int i = 0; i < 3; i++){
+                String id = round + "_" + i;
+                journal.submitted(id, TaskJournal.REQUEST_KIND, new TextNode(id), null);
+                if (i < 2){
+                    journal.finished(id, "complete");
+                }
+            }
+        }
+        assertEquals(4, journal.getNumberOfUnfinishedTasks());
+        journal.close();
+        List<TaskJournal.Entry> entries = new TaskJournal(journalFile, 2).load();
+        assertEquals(4, entries.size());
+        assertEquals("first", entries.get(0).getId());
+        assertEquals("foo", entries.get(0).getRequest().get("algorithm").asText());
+        assertEquals("a\tb\n", entries.get(0).getRequest().get("data").asText());
+        for (int round = 0; round < 3; round++){
+            assertEquals(round + "_2", entries.get(round + 1).getId());
+            assertEquals(round + "_2", entries.get(round + 1).getRequest().asText());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.ndexbio.communitydetection.rest.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestWorkerPool {
+
+    public static CommunityDetectionTask getBlockingTask(final String id,
+            final CountDownLatch latch){
+        return new CommunityDetectionTask(id, () -> {
+            latch.await();
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setId(id);
+            return cdr;
+        });
+    }
+
+    @Test
+    public void testTasksQueuedWhenNoWorkersAvailable() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            CommunityDetectionTask taskOne = getBlockingTask("1", latch);
+            CommunityDetectionTask taskTwo = getBlockingTask("2", latch);
+            pool.submit(taskOne);
+            pool.submit(taskTwo);
+            WorkerPoolStatus wps = pool.getWorkerPoolStatus();
+            assertEquals(1, wps.getMaxWorkers());
+            assertEquals(1, wps.getActiveWorkers());
+            assertEquals(1, wps.getQueuedTasks());
+
+            latch.countDown();
+            assertEquals("1", taskOne.getFuture().get(5, TimeUnit.SECONDS).getId());
+            assertEquals("2", taskTwo.getFuture().get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCanceledQueuedTaskIsSkipped() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            CommunityDetectionTask taskOne = getBlockingTask("1", latch);
+            CommunityDetectionTask taskTwo = getBlockingTask("2", latch);
+            CommunityDetectionTask taskThree = getBlockingTask("3", latch);
+            pool.submit(taskOne);
+            pool.submit(taskTwo);
+            pool.submit(taskThree);
+            assertTrue(taskTwo.cancel());
+            latch.countDown();
+            assertEquals("3", taskThree.getFuture().get(5, TimeUnit.SECONDS).getId());
+            assertTrue(taskTwo.isCancelled());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOverflowPoolUsedWhenBusy() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            CountDownLatch sharedLatch = new CountDownLatch(1);
+            WorkerPool sharedPool = new WorkerPool("shared", 1, es);
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            pool.setOverflowPool(sharedPool);
+
+            pool.submit(getBlockingTask("1", latch));
+            CommunityDetectionTask taskTwo = getBlockingTask("2", sharedLatch);
+            pool.submit(taskTwo);
+            CommunityDetectionTask taskThree = getBlockingTask("3", latch);
+            pool.submit(taskThree);
+
+            assertEquals(1, pool.getActiveWorkers());
+            assertEquals(1, sharedPool.getActiveWorkers());
+            assertEquals(1, pool.getQueuedTasks());
+            assertEquals(0, sharedPool.getQueuedTasks());
+
+            // once shared pool is idle it should pick up the queued task
+            sharedLatch.countDown();
+            taskTwo.getFuture().get(5, TimeUnit.SECONDS);
+            latch.countDown();
+            assertEquals("3", taskThree.getFuture().get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueuedTasksRunInPriorityOrder() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            List<String> runOrder = Collections.synchronizedList(new ArrayList<>());
+            pool.submit(getBlockingTask("blocker", latch));
+            CommunityDetectionTask lastTask = null;
+            for (long priority : new long[]{30, 10, 20, 10}){
+                final String id = Long.toString(priority);
+                CommunityDetectionTask task = new CommunityDetectionTask(id, () -> {
+                    runOrder.add(id);
+                    return new CommunityDetectionResult();
+                });
+                task.setPriority(priority);
+                pool.submit(task);
+                lastTask = task;
+            }
+            assertEquals(4, pool.getQueuedTasks());
+            latch.countDown();
+            lastTask.getFuture().get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 500 && runOrder.size() < 4; i++){
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList("10", "10", "20", "30"), runOrder);
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkerHeldUntilAsyncTaskCompletes() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            CompletableFuture<CommunityDetectionResult> runnerFuture = new CompletableFuture<>();
+            CommunityDetectionTask taskOne = new CommunityDetectionTask("1",
+                    () -> runnerFuture);
+            CountDownLatch latch = new CountDownLatch(0);
+            CommunityDetectionTask taskTwo = getBlockingTask("2", latch);
+            pool.submit(taskOne);
+            pool.submit(taskTwo);
+            assertEquals(1, pool.getActiveWorkers());
+            assertEquals(1, pool.getQueuedTasks());
+
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setId("1");
+            runnerFuture.complete(cdr);
+            assertEquals("1", taskOne.getFuture().get(5, TimeUnit.SECONDS).getId());
+            assertEquals("2", taskTwo.getFuture().get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelRunningAsyncTaskCancelsRunner() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            WorkerPool pool = new WorkerPool("foo", 1, es);
+            CompletableFuture<CommunityDetectionResult> runnerFuture = new CompletableFuture<>();
+            CountDownLatch started = new CountDownLatch(1);
+            CommunityDetectionTask task = new CommunityDetectionTask("1", () -> {
+                started.countDown();
+                return runnerFuture;
+            });
+            pool.submit(task);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(task.cancel());
+            for (int i = 0; i < 500 && runnerFuture.isCancelled() == false; i++){
+                Thread.sleep(10);
+            }
+            assertTrue(runnerFuture.isCancelled());
+            assertEquals(0, pool.getActiveWorkers());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTasksWaitForResourcesAcrossPools() throws Exception {
+        ExecutorService es = Executors.newCachedThreadPool();
+        try {
+            ResourceLedger ledger = new ResourceLedger(4, 1000);
+            WorkerPool poolOne = new WorkerPool("one", 5, es);
+            poolOne.setResourceLedger(ledger);
+            WorkerPool poolTwo = new WorkerPool("two", 5, es);
+            poolTwo.setResourceLedger(ledger);
+
+            CountDownLatch latch = new CountDownLatch(1);
+            CommunityDetectionTask taskOne = getBlockingTask("1", latch);
+            taskOne.setCpus(3);
+            taskOne.setMemory(100);
+            poolOne.submit(taskOne);
+
+            // not enough cpus left
+            CommunityDetectionTask taskTwo = getBlockingTask("2", new CountDownLatch(0));
+            taskTwo.setCpus(2);
+            poolTwo.submit(taskTwo);
+
+            // queued behind task two even though it fits
+            CommunityDetectionTask taskThree = getBlockingTask("3", new CountDownLatch(0));
+            taskThree.setMemory(100);
+            poolTwo.submit(taskThree);
+
+            // more memory then host has so is limited to what host has
+            CommunityDetectionTask taskFour = getBlockingTask("4", new CountDownLatch(0));
+            taskFour.setMemory(5000);
+            poolOne.submit(taskFour);
+
+            assertEquals(1, poolOne.getActiveWorkers());
+            assertEquals(1, poolOne.getQueuedTasks());
+            assertEquals(0, poolTwo.getActiveWorkers());
+            assertEquals(2, poolTwo.getQueuedTasks());
+            assertEquals(3, ledger.getReservedCpus(), 0.001);
+            assertEquals(100, ledger.getReservedMemory());
+
+            latch.countDown();
+            assertEquals("2", taskTwo.getFuture().get(5, TimeUnit.SECONDS).getId());
+            assertEquals("3", taskThree.getFuture().get(5, TimeUnit.SECONDS).getId());
+            assertEquals("4", taskFour.getFuture().get(5, TimeUnit.SECONDS).getId());
+            for (int i = 0; i < 500 && ledger.getReservedMemory() > 0; i++){
+                Thread.sleep(10);
+            }
+            assertEquals(0, ledger.getReservedCpus(), 0.001);
+            assertEquals(0, ledger.getReservedMemory());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+}
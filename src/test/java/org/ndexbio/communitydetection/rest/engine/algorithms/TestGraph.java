@@ -0,0 +1,64 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ *
+ * @author churas
+ */
+public class TestGraph {
+
+    @Test
+    public void testParseEdgeListUndirected() throws Exception {
+        Graph g = Graph.parseEdgeList("1\t2\n\n2 3 2.5\n", false);
+        assertEquals(3, g.getNumberOfNodes());
+        assertArrayEquals(new String[]{"1", "2", "3"}, g.getNodeNames());
+        assertEquals(7.0, g.getTotalWeight(), 0.0001);
+        // node 2 has arcs to 1 and 3
+        assertEquals(2, g.getOutOffsets()[2] - g.getOutOffsets()[1]);
+        assertEquals(3.5, g.getOutStrength()[1], 0.0001);
+        assertEquals(3.5, g.getInStrength()[1], 0.0001);
+    }
+
+    @Test
+    public void testParseEdgeListDirected() throws Exception {
+        Graph g = Graph.parseEdgeList("a b\nb c\n", true);
+        assertEquals(3, g.getNumberOfNodes());
+        assertEquals(2.0, g.getTotalWeight(), 0.0001);
+        assertEquals(1.0, g.getOutStrength()[0], 0.0001);
+        assertEquals(0.0, g.getInStrength()[0], 0.0001);
+        assertEquals(0, g.getInOffsets()[1] - g.getInOffsets()[0]);
+    }
+
+    @Test
+    public void testParseEdgeListInvalid() throws Exception {
+        for (String edgeList : new String[]{"", "1\n", "1 2 x\n", "1 2 -1\n"}){
+            try {
+                Graph.parseEdgeList(edgeList, false);
+                fail("Expected CommunityDetectionException for " + edgeList);
+            } catch(CommunityDetectionException cde){
+                assertNotNull(cde.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testAggregateAndModularity() throws Exception {
+        Graph g = Graph.parseEdgeList("0 1\n1 2\n2 0\n3 4\n4 5\n5 3\n2 3\n", false);
+        int[] community = new int[]{0, 0, 0, 1, 1, 1};
+        Graph agg = g.aggregate(community, 2);
+        assertEquals(2, agg.getNumberOfNodes());
+        assertNull(agg.getNodeNames());
+        assertEquals(g.getTotalWeight(), agg.getTotalWeight(), 0.0001);
+        // self loop of weight 6 (3 edges as 6 arcs) plus arc to other community
+        assertEquals(7.0, agg.getOutStrength()[0], 0.0001);
+        assertEquals(2, agg.getOutOffsets()[1] - agg.getOutOffsets()[0]);
+
+        // modularity is unchanged by aggregation
+        double q = g.getModularity(community, 2, 1.0);
+        assertEquals(q, agg.getModularity(new int[]{0, 1}, 2, 1.0), 0.0001);
+        assertEquals(6.0 / 7.0 - 0.5, q, 0.0001);
+    }
+}
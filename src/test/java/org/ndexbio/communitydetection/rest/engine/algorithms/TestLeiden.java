@@ -0,0 +1,120 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.engine.util.FanOutRunner;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ *
+ * @author churas
+ */
+public class TestLeiden {
+
+    /**
+     * Checks nodes of each community are connected using only arcs
+     * within the community
+     */
+    private static void checkConnected(final Graph g, final int[] community){
+        int n = g.getNumberOfNodes();
+        boolean[] visited = new boolean[n];
+        boolean[] seenCommunity = new boolean[n];
+        for (int i = 0; i < n; i++){
+            if (visited[i]){
+                continue;
+            }
+            assertFalse("community " + community[i] + " is not connected",
+                    seenCommunity[community[i]]);
+            seenCommunity[community[i]] = true;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(i);
+            visited[i] = true;
+            while (queue.isEmpty() == false){
+                int v = queue.poll();
+                for (int a = g.getOutOffsets()[v]; a < g.getOutOffsets()[v + 1]; a++){
+                    int t = g.getOutTargets()[a];
+                    if (visited[t] == false && community[t] == community[v]){
+                        visited[t] = true;
+                        queue.add(t);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRunFindsCliques() throws Exception {
+        Graph g = Graph.parseEdgeList(TestLouvain.getCliques(3, 5), false);
+        int[] community = new Leiden(1.0, new Random(1)).run(g);
+        TestLouvain.checkCliques(g, community, 5);
+        checkConnected(g, community);
+    }
+
+    @Test
+    public void testRunRefinesInParallel() throws Exception {
+        // enough nodes that refinement is split across several tasks
+        Graph g = Graph.parseEdgeList(TestLouvain.getCliques(100, 25), false);
+        assertTrue(g.getNumberOfNodes() > 2 * Leiden.MIN_NODES_PER_TASK);
+        int[] community = new Leiden(1.0, new Random(2)).run(g);
+        checkConnected(g, community);
+        TestLouvain.checkCliques(g, community, 25);
+    }
+
+    @Test
+    public void testRunRandomGraphIsConnected() throws Exception {
+        Random random = new Random(3);
+        StringBuilder sb = new StringBuilder();
+        for (int e = 0; e < 3000; e++){
+            sb.append(random.nextInt(1000)).append(' ').append(random.nextInt(1000)).append('\n');
+        }
+        Graph g = Graph.parseEdgeList(sb.toString(), false);
+        int[] community = new Leiden(1.0, new Random(4)).run(g);
+        checkConnected(g, community);
+        int numCommunities = 0;
+        for (int c : community){
+            numCommunities = Math.max(numCommunities, c + 1);
+        }
+        assertTrue(numCommunities > 1 && numCommunities < g.getNumberOfNodes());
+        double q = g.getModularity(community, numCommunities, 1.0);
+        assertTrue("modularity " + q, q > 0.3);
+    }
+
+    @Test
+    public void testRunInterrupted() throws Exception {
+        Graph g = Graph.parseEdgeList(TestLouvain.getCliques(2, 5), false);
+        Thread.currentThread().interrupt();
+        try {
+            new Leiden(1.0, new Random(1)).run(g);
+            fail("Expected InterruptedException");
+        } catch(InterruptedException ie){
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    @Test
+    public void testAlgorithmRun() throws Exception {
+        LeidenAlgorithm algo = new LeidenAlgorithm();
+        assertEquals("leiden", algo.getAlgorithm().getName());
+        assertEquals("COMMUNITYDETECTRESULT", algo.getAlgorithm().getOutputDataFormat());
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setAlgorithm("leiden");
+        cdr.setData(new TextNode(TestLouvain.getCliques(2, 4)));
+        HashMap<String, String> params = new HashMap<>();
+        params.put(LouvainAlgorithm.SEED_PARAM, "1");
+        cdr.setCustomParameters(params);
+        JsonNode res = algo.run(cdr, null);
+        assertTrue(res.isTextual());
+        assertTrue(res.asText().startsWith("8,9,c-c;8,10,c-c;"));
+        LinkedHashMap<String, List<String>> genes = FanOutRunner.getGeneLists(res.asText(), null);
+        assertEquals(3, genes.size());
+        assertEquals(8, genes.get("8").size());
+        assertEquals(4, genes.get("9").size());
+    }
+}
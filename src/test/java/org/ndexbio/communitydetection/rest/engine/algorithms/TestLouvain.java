@@ -0,0 +1,202 @@
+package org.ndexbio.communitydetection.rest.engine.algorithms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.engine.util.FanOutRunner;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CustomParameter;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionBadRequestException;
+
+/**
+ *
+ * @author churas
+ */
+public class TestLouvain {
+
+    /**
+     * Gets edge list of {@code numCliques} cliques of {@code cliqueSize}
+     * nodes with each clique joined to the next by one edge
+     */
+    static String getCliques(int numCliques, int cliqueSize){
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < numCliques; c++){
+            int first = c * cliqueSize;
+            for (int i = first; i < first + cliqueSize; i++){
+                for (int j = i + 1; j < first + cliqueSize; j++){
+                    sb.append(i).append('\t').append(j).append('\n');
+                }
+            }
+            if (c > 0){
+                sb.append(first - 1).append('\t').append(first).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static void checkCliques(final Graph g, final int[] community, int cliqueSize){
+        for (int i = 0; i < community.length; i++){
+            for (int j = 0; j < community.length; j++){
+                int cliqueI = Integer.parseInt(g.getNodeNames()[i]) / cliqueSize;
+                int cliqueJ = Integer.parseInt(g.getNodeNames()[j]) / cliqueSize;
+                assertEquals(cliqueI == cliqueJ, community[i] == community[j]);
+            }
+        }
+    }
+
+    @Test
+    public void testRenumber(){
+        int[] community = new int[]{3, 1, 3, 2};
+        assertEquals(3, Louvain.renumber(community));
+        assertArrayEquals(new int[]{0, 1, 0, 2}, community);
+    }
+
+    @Test
+    public void testRunFindsCliques() throws Exception {
+        Graph g = Graph.parseEdgeList(getCliques(2, 5), false);
+        List<Integer> progress = new ArrayList<>();
+        Louvain louvain = new Louvain(1.0, new Random(1));
+        louvain.setProgressListener((p) -> progress.add(p));
+        List<int[]> levels = louvain.run(g);
+        int[] community = HierarchyWriter.flatten(levels);
+        checkCliques(g, community, 5);
+        assertEquals(levels.size(), progress.size());
+    }
+
+    @Test
+    public void testRunParallel() throws Exception {
+        Graph g = Graph.parseEdgeList(getCliques(40, 6), false);
+        Louvain louvain = new Louvain(2.0, new Random(2), 4, 1);
+        int[] community = HierarchyWriter.flatten(louvain.run(g));
+        checkCliques(g, community, 6);
+    }
+
+    @Test
+    public void testRunDirected() throws Exception {
+        Graph g = Graph.parseEdgeList("0 1\n1 2\n2 0\n3 4\n4 5\n5 3\n2 3\n", true);
+        int[] community = HierarchyWriter.flatten(new Louvain(1.0, new Random(3)).run(g));
+        checkCliques(g, community, 3);
+    }
+
+    @Test
+    public void testRunInterrupted() throws Exception {
+        Graph g = Graph.parseEdgeList(getCliques(2, 5), false);
+        Thread.currentThread().interrupt();
+        try {
+            new Louvain(1.0, new Random(1)).run(g);
+            fail("Expected InterruptedException");
+        } catch(InterruptedException ie){
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    @Test
+    public void testWriteFlat(){
+        List<int[]> levels = Arrays.asList(new int[]{0, 0, 1, 1}, new int[]{0, 0});
+        String res = HierarchyWriter.write(new String[]{"0", "1", "2", "x"}, levels, false);
+        assertEquals("3,4,c-c;4,0,c-m;4,1,c-m;4,2,c-m;4,x,c-m;\n", res);
+    }
+
+    @Test
+    public void testWriteDeep() throws Exception {
+        List<int[]> levels = Arrays.asList(new int[]{0, 0, 1, 1}, new int[]{0, 0});
+        String res = HierarchyWriter.write(new String[]{"0", "1", "2", "3"}, levels, true);
+        assertEquals("4,5,c-c;5,6,c-c;5,7,c-c;6,0,c-m;6,1,c-m;7,2,c-m;7,3,c-m;\n", res);
+        LinkedHashMap<String, List<String>> genes = FanOutRunner.getGeneLists(res, null);
+        assertEquals(4, genes.get("4").size());
+        assertEquals(Arrays.asList("2", "3"), genes.get("7"));
+    }
+
+    @Test
+    public void testAlgorithmRun() throws Exception {
+        LouvainAlgorithm algo = new LouvainAlgorithm();
+        assertEquals("louvain", algo.getAlgorithm().getName());
+        assertEquals(6, algo.getAlgorithm().getCustomParameters().size());
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setAlgorithm("louvain");
+        cdr.setData(new TextNode(getCliques(3, 4)));
+        HashMap<String, String> params = new HashMap<>();
+        params.put(LouvainAlgorithm.RESOLUTION_PARAM, "1.0");
+        params.put(LouvainAlgorithm.SEED_PARAM, "5");
+        params.put(LouvainAlgorithm.DEEP_PARAM, null);
+        params.put(LouvainAlgorithm.CONFIGMODEL_PARAM, "RB");
+        cdr.setCustomParameters(params);
+        JsonNode res = algo.run(cdr, (p) -> {});
+        assertTrue(res.isTextual());
+        assertTrue(res.asText().endsWith(";\n"));
+        LinkedHashMap<String, List<String>> genes = FanOutRunner.getGeneLists(res.asText(), null);
+        // root holds every node
+        assertEquals(12, new HashSet<>(genes.get("12")).size());
+        int numCliques = 0;
+        for (List<String> members : genes.values()){
+            if (members.size() == 4){
+                int clique = Integer.parseInt(members.get(0)) / 4;
+                for (String m : members){
+                    assertEquals(clique, Integer.parseInt(m) / 4);
+                }
+                numCliques++;
+            }
+        }
+        assertEquals(3, numCliques);
+    }
+
+    @Test
+    public void testAlgorithmInvalidInput() throws Exception {
+        LouvainAlgorithm algo = new LouvainAlgorithm();
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setData(new IntNode(1));
+        try {
+            algo.run(cdr, null);
+            fail("Expected CommunityDetectionBadRequestException");
+        } catch(CommunityDetectionBadRequestException e){
+            assertTrue(e.getMessage().contains("string"));
+        }
+        cdr.setData(new TextNode("0 1\n"));
+        HashMap<String, String> params = new HashMap<>();
+        params.put(LouvainAlgorithm.RESOLUTION_PARAM, "-1");
+        cdr.setCustomParameters(params);
+        try {
+            algo.run(cdr, null);
+            fail("Expected CommunityDetectionBadRequestException");
+        } catch(CommunityDetectionBadRequestException e){
+            assertTrue(e.getMessage().contains(LouvainAlgorithm.RESOLUTION_PARAM));
+        }
+        params.clear();
+        params.put(LouvainAlgorithm.CONFIGMODEL_PARAM, "CPM");
+        try {
+            algo.run(cdr, null);
+            fail("Expected CommunityDetectionBadRequestException");
+        } catch(CommunityDetectionBadRequestException e){
+            assertTrue(e.getMessage().contains("CPM is not supported"));
+        }
+    }
+
+    @Test
+    public void testAlgorithmCustomParameters(){
+        CommunityDetectionAlgorithm cda = new LouvainAlgorithm().getAlgorithm();
+        CustomParameter resolution = null;
+        CustomParameter configModel = null;
+        for (CustomParameter cp : cda.getCustomParameters()){
+            if (LouvainAlgorithm.RESOLUTION_PARAM.equals(cp.getName())){
+                resolution = cp;
+            } else if (LouvainAlgorithm.CONFIGMODEL_PARAM.equals(cp.getName())){
+                configModel = cp;
+            }
+        }
+        // clients prefill parameters from catalog so it must match what run uses
+        assertEquals(Louvain.DEFAULT_RESOLUTION,
+                Double.parseDouble(resolution.getDefaultValue()), 0.0);
+        assertEquals("Default", configModel.getDefaultValue());
+        assertEquals(LouvainAlgorithm.CONFIGMODEL_REGEX, configModel.getValidationRegex());
+    }
+}
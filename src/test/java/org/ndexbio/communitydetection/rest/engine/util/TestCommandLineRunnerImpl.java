@@ -3,6 +3,7 @@ package org.ndexbio.communitydetection.rest.engine.util;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.*;
@@ -174,4 +175,24 @@ public class TestCommandLineRunnerImpl {
     }
     
     
+
+    @Test
+    public void testRunCommandLineProcessAsyncWithStandardInput() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            CommandLineRunnerImpl runner = new CommandLineRunnerImpl();
+            File stdoutfile = new File(tempDir.getAbsolutePath() + File.separator + "stdout");
+            File stderrfile = new File(tempDir.getAbsolutePath() + File.separator + "stderr");
+            int eCode = runner.runCommandLineProcessAsync(10, TimeUnit.SECONDS,
+                    (out) -> out.write("hi there\n".getBytes(StandardCharsets.UTF_8)),
+                    stdoutfile, stderrfile, "/bin/cat").get(10, TimeUnit.SECONDS);
+            assertEquals(0, eCode);
+            try (BufferedReader br = new BufferedReader(new FileReader(stdoutfile))){
+                assertEquals("hi there", br.readLine());
+            }
+        }
+        finally {
+            _folder.delete();
+        }
+    }
 }
@@ -5,6 +5,11 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import static org.junit.Assert.*;
 import org.junit.Rule;
@@ -100,4 +105,105 @@ public class TestDockerCommunityDetectionRunner {
             _folder.delete();
         } 
     }
+
+    @Test
+    public void testGetDockerCommandWithResourceLimits() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+            cdr.setAlgorithm("somealgo");
+            cdr.setData(new TextNode("blah"));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner("someid", cdr,
+                    3, tempDir.getAbsolutePath(), "docker", "hello-world", null, 1,
+                    TimeUnit.SECONDS);
+            String mapDir = tempDir.getAbsolutePath() + File.separator + "someid";
+            mapDir = mapDir + ":" + mapDir + ":ro";
+            assertArrayEquals(new String[]{"docker", "run", "--rm", "--name",
+                "cdtask-someid", "-v", mapDir, "hello-world", "input"},
+                    runner.getDockerCommand("input"));
+            
+            runner.setResourceLimits(1.5, 2048);
+            assertArrayEquals(new String[]{"docker", "run", "--rm", "--name",
+                "cdtask-someid", "--cpus", "1.5", "--memory", "2048m", "-v",
+                mapDir, "hello-world", "input"}, runner.getDockerCommand("input"));
+            
+            runner.setContainerName("cdtask-other");
+            runner.setContainerReaper(new DockerContainerReaper("docker", "owner"));
+            assertArrayEquals(new String[]{"docker", "run", "--rm", "--name",
+                "cdtask-other", "--label", DockerContainerReaper.OWNER_LABEL + "=owner",
+                "--cpus", "1.5", "--memory", "2048m", "-v", mapDir, "hello-world",
+                "input"}, runner.getDockerCommand("input"));
+        }finally {
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testCallAsyncRunsInWarmContainer() throws Exception {
+        File tempDir = _folder.newFolder();
+        ExecutorService es = Executors.newCachedThreadPool();
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
+        WarmContainerPool pool = new WarmContainerPool("somealgo",
+                Arrays.asList("/bin/sh", "-c", TestWarmContainerPool.FAKE_CONTAINER),
+                1, 10, tempDir, es, ses);
+        try {
+            pool.start();
+            CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+            cdr.setAlgorithm("somealgo");
+            cdr.setData(new TextNode("blah"));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner("someid", cdr,
+                    3, tempDir.getAbsolutePath(), "docker", "hello-world", null, 10,
+                    TimeUnit.SECONDS);
+            runner.setWarmContainerPool(pool);
+            CommunityDetectionResult res = runner.callAsync().get(10, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+            assertEquals("hi someid\n", res.getResult().asText());
+            try (BufferedReader br = new BufferedReader(new FileReader(runner.getCommandRunFile()))){
+                assertTrue(br.readLine().startsWith("warm somealgo container: "));
+            }
+            assertEquals(1, pool.getNumberOfIdleContainers());
+        } finally {
+            pool.shutdown();
+            es.shutdownNow();
+            ses.shutdownNow();
+            _folder.delete();
+        }
+    }
+
+    @Test
+    public void testCallAsyncStreamsDataOverStandardInput() throws Exception {
+        File tempDir = _folder.newFolder();
+        try {
+            // fake docker that echoes the input file passed as last argument
+            File dockerCmd = new File(tempDir, "fakedocker.sh");
+            try (FileWriter fw = new FileWriter(dockerCmd)){
+                fw.write("#!/bin/sh\n");
+                fw.write("for a in \"$@\"; do last=$a; done\n");
+                fw.write("exec cat \"$last\"\n");
+            }
+            assertTrue(dockerCmd.setExecutable(true));
+            CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+            cdr.setAlgorithm("somealgo");
+            cdr.setData(new TextNode("a\tb\nb\tc\n"));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner("someid", cdr,
+                    3, tempDir.getAbsolutePath(), dockerCmd.getAbsolutePath(), "hello-world",
+                    null, 10, TimeUnit.SECONDS, true);
+            assertFalse(runner.getInputFile().exists());
+            assertEquals(8, runner.getInputSize());
+            assertArrayEquals(new String[]{"docker", "run", "-i", "--rm", "--name",
+                "cdtask-someid", "hello-world",
+                DockerCommunityDetectionRunner.STD_IN_INPUT_FILE},
+                    new DockerCommunityDetectionRunner("someid", cdr, 3,
+                            tempDir.getAbsolutePath(), "docker", "hello-world", null,
+                            10, TimeUnit.SECONDS, true)
+                            .getDockerCommand(DockerCommunityDetectionRunner.STD_IN_INPUT_FILE));
+
+            CommunityDetectionResult res = runner.callAsync().get(10, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+            assertEquals("a\tb\nb\tc\n", res.getResult().asText());
+            assertFalse(runner.getInputFile().exists());
+        } finally {
+            _folder.delete();
+        }
+    }
 }
@@ -0,0 +1,149 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestDockerContainerReaper {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    /**
+     * Writes fake docker that logs every invocation to {@code docker.log},
+     * lists containers {@code cdtask-a} and {@code cdtask-b} for {@code ps},
+     * and sleeps for {@code run}
+     */
+    private File writeFakeDocker(File dir) throws Exception {
+        File log = new File(dir, "docker.log");
+        File script = new File(dir, "fakedocker.sh");
+        try (FileWriter fw = new FileWriter(script)){
+            fw.write("#!/bin/sh\n");
+            fw.write("echo \"$@\" >> " + log.getAbsolutePath() + "\n");
+            fw.write("if [ \"$1\" = \"ps\" ]; then echo cdtask-a; echo cdtask-b; exit 0; fi\n");
+            fw.write("if [ \"$1\" = \"run\" ]; then exec sleep 60; fi\n");
+        }
+        assertTrue(script.setExecutable(true));
+        return script;
+    }
+
+    private List<String> waitForLog(File dir, final String line) throws Exception {
+        File log = new File(dir, "docker.log");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline){
+            if (log.isFile()){
+                List<String> lines = Files.readAllLines(log.toPath());
+                if (lines.contains(line)){
+                    return lines;
+                }
+            }
+            Thread.sleep(10);
+        }
+        fail(line + " never run");
+        return null;
+    }
+
+    @Test
+    public void testGetContainerName() {
+        assertEquals("cdtask-abc", DockerContainerReaper.getContainerName("abc"));
+        assertEquals("cdtask-abc-stage_1", DockerContainerReaper.getContainerName("abc", "stage_1"));
+        assertEquals("cdtask-a_b_c", DockerContainerReaper.getContainerName("a/b c"));
+    }
+
+    @Test
+    public void testReapOrphansSkipsRunningContainers() throws Exception {
+        File tempDir = _folder.newFolder();
+        DockerContainerReaper reaper = new DockerContainerReaper(
+                writeFakeDocker(tempDir).getAbsolutePath(), "owner");
+        try {
+            reaper.register("cdtask-a");
+            assertEquals(1, reaper.reapOrphans());
+            List<String> lines = Files.readAllLines(new File(tempDir, "docker.log").toPath());
+            assertEquals(Arrays.asList("ps -a --filter label="
+                    + DockerContainerReaper.OWNER_LABEL + "=owner --format {{.Names}}",
+                    "rm -f cdtask-b"), lines);
+
+            reaper.unregister("cdtask-a");
+            assertEquals(2, (int)reaper.reapOrphansAsync().get(10, TimeUnit.SECONDS));
+        } finally {
+            reaper.shutdown();
+        }
+    }
+
+    @Test
+    public void testReapOrphansDockerFails() throws Exception {
+        DockerContainerReaper reaper = new DockerContainerReaper("/bin/false", "owner");
+        try {
+            assertEquals(0, reaper.reapOrphans());
+            assertFalse(reaper.removeContainer("cdtask-a").get(10, TimeUnit.SECONDS));
+        } finally {
+            reaper.shutdown();
+        }
+    }
+
+    @Test
+    public void testContainerRemovedWhenTaskCanceled() throws Exception {
+        File tempDir = _folder.newFolder();
+        File dockerCmd = writeFakeDocker(tempDir);
+        DockerContainerReaper reaper = new DockerContainerReaper(
+                dockerCmd.getAbsolutePath(), "owner");
+        try {
+            CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+            cdr.setData(new TextNode("blah"));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner("t1", cdr,
+                    System.currentTimeMillis(), tempDir.getAbsolutePath(),
+                    dockerCmd.getAbsolutePath(), "image", null, 60, TimeUnit.SECONDS);
+            runner.setContainerReaper(reaper);
+            CompletableFuture<CommunityDetectionResult> future = runner.callAsync();
+            assertEquals(1, reaper.getNumberOfRunningContainers());
+            future.cancel(true);
+            waitForLog(tempDir, "rm -f cdtask-t1");
+            long deadline = System.currentTimeMillis() + 10000;
+            while (reaper.getNumberOfRunningContainers() > 0 && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(0, reaper.getNumberOfRunningContainers());
+        } finally {
+            reaper.shutdown();
+        }
+    }
+
+    @Test
+    public void testContainerRemovedWhenTaskTimesOut() throws Exception {
+        File tempDir = _folder.newFolder();
+        File dockerCmd = writeFakeDocker(tempDir);
+        DockerContainerReaper reaper = new DockerContainerReaper(
+                dockerCmd.getAbsolutePath(), "owner");
+        try {
+            CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+            cdr.setData(new TextNode("blah"));
+            DockerCommunityDetectionRunner runner = new DockerCommunityDetectionRunner("t2", cdr,
+                    System.currentTimeMillis(), tempDir.getAbsolutePath(),
+                    dockerCmd.getAbsolutePath(), "image", null, 200, TimeUnit.MILLISECONDS);
+            runner.setContainerReaper(reaper);
+            CommunityDetectionResult res = runner.callAsync().get(10, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.FAILED_STATUS, res.getStatus());
+            assertEquals("Runtime limit exceeded", res.getMessage());
+            List<String> lines = waitForLog(tempDir, "rm -f cdtask-t2");
+            assertTrue(lines.get(0).startsWith("run --rm --name cdtask-t2 --label "
+                    + DockerContainerReaper.OWNER_LABEL + "=owner"));
+        } finally {
+            reaper.shutdown();
+        }
+    }
+}
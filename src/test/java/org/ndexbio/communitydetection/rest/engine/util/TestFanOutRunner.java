@@ -0,0 +1,127 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ *
+ * @author churas
+ */
+public class TestFanOutRunner {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private File writeFile(File dir, final String name, final String data) throws Exception {
+        File f = new File(dir, name);
+        try (FileWriter fw = new FileWriter(f)){
+            fw.write(data);
+        }
+        return f;
+    }
+
+    @Test
+    public void testGetGeneLists() throws Exception {
+        LinkedHashMap<String, List<String>> res = FanOutRunner.getGeneLists(
+                "0,1,c-c;0,2,c-c;1,b,c-m;1,a,c-m;\n2,c,c-m;2,a,c-m;", null);
+        assertEquals(Arrays.asList("0", "1", "2"), Arrays.asList(res.keySet().toArray()));
+        assertEquals(Arrays.asList("a", "b", "c"), res.get("0"));
+        assertEquals(Arrays.asList("a", "b"), res.get("1"));
+        assertEquals(Arrays.asList("a", "c"), res.get("2"));
+
+        res = FanOutRunner.getGeneLists("0,1,c-m;0,2,c-m;",
+                Collections.singletonMap("1", "TP53"));
+        assertEquals(Arrays.asList("2", "TP53"), res.get("0"));
+
+        assertTrue(FanOutRunner.getGeneLists("", null).isEmpty());
+    }
+
+    @Test
+    public void testGetGeneListsWithCycle() throws Exception {
+        LinkedHashMap<String, List<String>> res = FanOutRunner.getGeneLists(
+                "0,1,c-c;1,0,c-c;0,a,c-m;1,b,c-m;", null);
+        assertEquals(Arrays.asList("a", "b"), res.get("0"));
+        assertEquals(Arrays.asList("b"), res.get("1"));
+    }
+
+    @Test
+    public void testGetGeneListsInvalidEdge() throws Exception {
+        try {
+            FanOutRunner.getGeneLists("0,1,c-m;0,2;", null);
+            fail("Expected CommunityDetectionException");
+        } catch(CommunityDetectionException cde){
+            assertEquals("Invalid edge in hierarchy: 0,2", cde.getMessage());
+        }
+    }
+
+    @Test
+    public void testCallAsyncWithSomeFailures() throws Exception {
+        File tempDir = _folder.newFolder();
+        File docker = writeFile(tempDir, "docker.sh", "#!/bin/sh\n"
+                + "for last; do true; done\n"
+                + "if grep -q bad \"$last\"; then echo oops >&2; exit 1; fi\n"
+                + "cat \"$last\"\n");
+        assertTrue(docker.setExecutable(true));
+        File input = writeFile(tempDir, "hierarchy.txt",
+                "0,1,c-c;0,a,c-m;1,b,c-m;2,bad,c-m;3,c,c-m;");
+        FanOutRunner runner = new FanOutRunner("fan", input, 1L,
+                tempDir.getAbsolutePath(), docker.getAbsolutePath(), "image",
+                null, null, 2, 10, TimeUnit.SECONDS);
+        CommunityDetectionResult cdr = runner.callAsync().get(10, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+        assertEquals("fan", cdr.getId());
+        assertEquals(1L, cdr.getStartTime());
+        assertEquals(3, cdr.getResult().size());
+        assertEquals("a,b\n", cdr.getResult().get("0").asText());
+        assertEquals("b\n", cdr.getResult().get("1").asText());
+        assertEquals("c\n", cdr.getResult().get("3").asText());
+        assertNull(cdr.getResult().get("2"));
+        assertTrue(cdr.getMessage().startsWith("1 of 4 communities failed, first was community 2: "));
+        assertTrue(runner.getOutputFile().isFile());
+        for (int i = 0; i < 4; i++){
+            assertTrue(new File(tempDir, "fan" + File.separator
+                    + FanOutRunner.COMMUNITY_DIR_PREFIX + i).isDirectory());
+        }
+    }
+
+    @Test
+    public void testCallAsyncAllFail() throws Exception {
+        File tempDir = _folder.newFolder();
+        File input = writeFile(tempDir, "hierarchy.txt", "0,a,c-m;1,b,c-m;");
+        FanOutRunner runner = new FanOutRunner("fan", input, 1L,
+                tempDir.getAbsolutePath(), "/bin/false", "image",
+                null, null, 0, 10, TimeUnit.SECONDS);
+        CommunityDetectionResult cdr = runner.callAsync().get(10, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+        assertEquals(0, cdr.getResult().size());
+        assertTrue(cdr.getMessage().startsWith("2 of 2 communities failed"));
+    }
+
+    @Test
+    public void testCallAsyncManyCommunitiesFailRightAway() throws Exception {
+        File tempDir = _folder.newFolder();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++){
+            sb.append(i).append(",g").append(i).append(",c-m;");
+        }
+        File input = writeFile(tempDir, "hierarchy.txt", sb.toString());
+        // runner fails as it starts since docker command does not exist
+        FanOutRunner runner = new FanOutRunner("fan", input, 1L,
+                tempDir.getAbsolutePath(), new File(tempDir, "nodocker").getAbsolutePath(),
+                "image", null, null, 1, 10, TimeUnit.SECONDS);
+        CommunityDetectionResult cdr = runner.callAsync().get(60, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+        assertTrue(cdr.getMessage().startsWith("5000 of 5000 communities failed"));
+    }
+}
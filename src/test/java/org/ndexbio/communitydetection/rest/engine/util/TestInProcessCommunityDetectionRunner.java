@@ -0,0 +1,81 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.engine.InProcessAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestInProcessCommunityDetectionRunner {
+
+    /**
+     * Sleeps for number of milliseconds in data of request
+     */
+    static class SleepAlgorithm implements InProcessAlgorithm {
+
+        @Override
+        public CommunityDetectionAlgorithm getAlgorithm() {
+            CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+            cda.setName("sleep");
+            return cda;
+        }
+
+        @Override
+        public JsonNode run(CommunityDetectionRequest request, ProgressListener listener) throws Exception {
+            Thread.sleep(request.getData().asLong());
+            return new TextNode("done");
+        }
+    }
+
+    private static CommunityDetectionRequest getRequest(long sleepMillis){
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setAlgorithm("sleep");
+        cdr.setData(new TextNode(Long.toString(sleepMillis)));
+        return cdr;
+    }
+
+    @Test
+    public void testCallAsyncCompletes() throws Exception {
+        InProcessCommunityDetectionRunner runner = new InProcessCommunityDetectionRunner("someid",
+                getRequest(0), 1, new SleepAlgorithm(), 10, TimeUnit.SECONDS);
+        CommunityDetectionResult cdr = runner.callAsync().get();
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdr.getStatus());
+        assertEquals("done", cdr.getResult().asText());
+        assertEquals(100, cdr.getProgress());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testCallAsyncExceedsTimeout() throws Exception {
+        InProcessCommunityDetectionRunner runner = new InProcessCommunityDetectionRunner("someid",
+                getRequest(60000), 1, new SleepAlgorithm(), 100, TimeUnit.MILLISECONDS);
+        long start = System.currentTimeMillis();
+        CommunityDetectionResult cdr = runner.callAsync().get();
+        assertTrue(System.currentTimeMillis() - start < 30000);
+        assertEquals(CommunityDetectionResult.FAILED_STATUS, cdr.getStatus());
+        assertEquals(InProcessCommunityDetectionRunner.TIMEOUT_MESSAGE, cdr.getMessage());
+        assertNull(cdr.getResult());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testCallAsyncInterruptedWithoutTimeout() throws Exception {
+        InProcessCommunityDetectionRunner runner = new InProcessCommunityDetectionRunner("someid",
+                getRequest(60000), 1, new SleepAlgorithm(), 0, TimeUnit.SECONDS);
+        Thread.currentThread().interrupt();
+        try {
+            runner.callAsync();
+            fail("Expected InterruptedException");
+        } catch(InterruptedException ie){
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestNativeCommunityDetectionRunner {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testGetDockerCommandRunsExecutable() throws Exception {
+        File tempDir = _folder.newFolder();
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setData(new TextNode("blah"));
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("--flag", null);
+        params.put("--x", "1");
+        NativeCommunityDetectionRunner runner = new NativeCommunityDetectionRunner("someid",
+                cdr, 3, tempDir.getAbsolutePath(), "/usr/local/bin/louvain", params,
+                1, TimeUnit.SECONDS, false);
+        runner.setResourceLimits(2, 1024);
+        runner.setContainerReaper(new DockerContainerReaper("docker", "owner"));
+        assertEquals("/usr/local/bin/louvain", runner.getExecutable());
+        assertArrayEquals(new String[]{"/usr/local/bin/louvain", "--flag", "--x", "1",
+            "input"}, runner.getDockerCommand("input"));
+    }
+
+    @Test
+    public void testCallAsync() throws Exception {
+        File tempDir = _folder.newFolder();
+        CommunityDetectionRequest cdr = new CommunityDetectionRequest();
+        cdr.setData(new TextNode("a\tb\n"));
+        NativeCommunityDetectionRunner runner = new NativeCommunityDetectionRunner("someid",
+                cdr, 3, tempDir.getAbsolutePath(), "/bin/cat", null,
+                10, TimeUnit.SECONDS, false);
+        CommunityDetectionResult res = runner.callAsync().get(10, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+        assertEquals("a\tb\n", res.getResult().asText());
+        try (BufferedReader br = new BufferedReader(new FileReader(runner.getCommandRunFile()))){
+            assertEquals("/bin/cat " + runner.getInputFile().getAbsolutePath(), br.readLine());
+        }
+
+        // data streamed over standard input
+        runner = new NativeCommunityDetectionRunner("otherid", cdr, 3,
+                tempDir.getAbsolutePath(), "/bin/cat", null, 10, TimeUnit.SECONDS, true);
+        res = runner.callAsync().get(10, TimeUnit.SECONDS);
+        assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+        assertEquals("a\tb\n", res.getResult().asText());
+        assertFalse(runner.getInputFile().exists());
+    }
+}
@@ -0,0 +1,52 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TestProcessSupervisor {
+
+    @Test
+    public void testProcessExitCodeReturned() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(10, Runnable::run);
+        try {
+            Process proc = new ProcessBuilder(TestCommandLineRunnerImpl.getBinary("/bin/false")).start();
+            CompletableFuture<Integer> future = supervisor.supervise(proc, 10, TimeUnit.SECONDS);
+            assertEquals(1, (int)future.get(10, TimeUnit.SECONDS));
+            assertEquals(0, supervisor.getNumberOfProcesses());
+        } finally {
+            supervisor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeoutExceededKillsProcess() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(10, Runnable::run);
+        try {
+            Process proc = new ProcessBuilder("/bin/sleep", "10").start();
+            CompletableFuture<Integer> future = supervisor.supervise(proc, 1, TimeUnit.MILLISECONDS);
+            assertEquals(ProcessSupervisor.TIMEOUT_EXIT_CODE, (int)future.get(10, TimeUnit.SECONDS));
+            assertTrue(proc.waitFor(10, TimeUnit.SECONDS));
+        } finally {
+            supervisor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelKillsProcess() throws Exception {
+        ProcessSupervisor supervisor = new ProcessSupervisor(10, Runnable::run);
+        try {
+            Process proc = new ProcessBuilder("/bin/sleep", "10").start();
+            CompletableFuture<Integer> future = supervisor.supervise(proc, 10, TimeUnit.SECONDS);
+            assertTrue(future.cancel(true));
+            assertTrue(proc.waitFor(10, TimeUnit.SECONDS));
+        } finally {
+            supervisor.shutdown();
+        }
+    }
+}
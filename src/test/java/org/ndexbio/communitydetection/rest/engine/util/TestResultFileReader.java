@@ -0,0 +1,87 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.POJONode;
+import java.io.File;
+import java.io.FileWriter;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestResultFileReader {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private File writeFile(final String contents) throws Exception {
+        File f = _folder.newFile();
+        try (FileWriter fw = new FileWriter(f)){
+            fw.write(contents);
+        }
+        return f;
+    }
+
+    @Test
+    public void testReadJson() throws Exception {
+        ResultFileReader reader = new ResultFileReader();
+        JsonNode node = reader.read(writeFile("\n  {\"a\": [1, 2], \"b\": \"c\"}\n"), false);
+        assertTrue(node.isObject());
+        assertEquals(2, node.get("a").size());
+        assertEquals("c", node.get("b").asText());
+
+        node = reader.read(writeFile("[1,2,3]"), false);
+        assertTrue(node.isArray());
+        assertEquals(3, node.size());
+    }
+
+    @Test
+    public void testReadText() throws Exception {
+        ResultFileReader reader = new ResultFileReader();
+        // leading number is text, not the json number 1
+        JsonNode node = reader.read(writeFile("1,2,c-c;2,3,c-m"), false);
+        assertTrue(node.isTextual());
+        assertEquals("1,2,c-c;2,3,c-m\n", node.asText());
+
+        node = reader.read(writeFile("a\r\nb\n"), false);
+        assertEquals("a\nb\n", node.asText());
+
+        node = reader.read(writeFile(""), true);
+        assertEquals("", node.asText());
+    }
+
+    @Test
+    public void testReadMalformedJsonAsText() throws Exception {
+        ResultFileReader reader = new ResultFileReader();
+        JsonNode node = reader.read(writeFile("[INFO] oops\nsecond line"), false);
+        assertTrue(node.isTextual());
+        assertEquals("[INFO] oops\nsecond line\n", node.asText());
+
+        node = reader.read(writeFile("{\"a\": "), true);
+        assertEquals("{\"a\": \n", node.asText());
+    }
+
+    @Test
+    public void testReadFileBackedJson() throws Exception {
+        File jsonFile = writeFile("{\"communities\": [\"1,2,c-c\", \"2,3,c-m\"]}");
+        JsonNode node = new ResultFileReader().read(jsonFile, true);
+        assertTrue(node instanceof POJONode);
+        assertEquals(jsonFile, ((ResultFileReader.FileBackedJson)((POJONode)node)
+                .getPojo()).getFile());
+
+        CommunityDetectionResult cdr = new CommunityDetectionResult();
+        cdr.setId("foo");
+        cdr.setResult(node);
+        ObjectMapper mapper = new ObjectMapper();
+        CommunityDetectionResult copy = mapper.readValue(mapper.writeValueAsString(cdr),
+                CommunityDetectionResult.class);
+        assertEquals("foo", copy.getId());
+        assertEquals(mapper.readTree(jsonFile), copy.getResult());
+    }
+}
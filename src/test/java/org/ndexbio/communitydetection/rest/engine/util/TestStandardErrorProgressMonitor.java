@@ -0,0 +1,87 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author churas
+ */
+public class TestStandardErrorProgressMonitor {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private void append(File file, final String text) throws Exception {
+        try (FileWriter fw = new FileWriter(file, true)){
+            fw.write(text);
+        }
+    }
+
+    @Test
+    public void testPollParsesProgressLines() throws Exception {
+        File stdErr = new File(_folder.newFolder(), "stderr.txt");
+        List<Integer> updates = new ArrayList<>();
+        StandardErrorProgressMonitor monitor = new StandardErrorProgressMonitor(stdErr,
+                updates::add);
+        // missing file is not an error
+        assertEquals(-1, monitor.poll());
+
+        append(stdErr, "starting\nPROGRESS: 10\nsome PROGRESS: 99 noise\n");
+        assertEquals(10, monitor.poll());
+
+        // partial line is held until it is finished
+        append(stdErr, "PROGRESS: 2");
+        assertEquals(10, monitor.poll());
+        append(stdErr, "5.5%\r\n");
+        assertEquals(25, monitor.poll());
+
+        // no change means no update
+        append(stdErr, "PROGRESS: 25\n");
+        assertEquals(25, monitor.poll());
+
+        append(stdErr, "PROGRESS: 250\n");
+        assertEquals(100, monitor.poll());
+        assertEquals(Arrays.asList(10, 25, 100), updates);
+    }
+
+    @Test
+    public void testLongLinesSkipped() throws Exception {
+        File stdErr = new File(_folder.newFolder(), "stderr.txt");
+        StandardErrorProgressMonitor monitor = new StandardErrorProgressMonitor(stdErr,
+                (progress) -> {});
+        char[] pad = new char[StandardErrorProgressMonitor.MAX_LINE_LENGTH * 2];
+        Arrays.fill(pad, ' ');
+        append(stdErr, new String(pad) + "PROGRESS: 50\nPROGRESS: 60\n");
+        assertEquals(60, monitor.poll());
+        assertEquals(60, monitor.getProgress());
+    }
+
+    @Test
+    public void testStartAndStop() throws Exception {
+        File stdErr = new File(_folder.newFolder(), "stderr.txt");
+        List<Integer> updates = Collections.synchronizedList(new ArrayList<>());
+        StandardErrorProgressMonitor monitor = new StandardErrorProgressMonitor(stdErr,
+                updates::add);
+        monitor.start(10, TimeUnit.MILLISECONDS);
+        try {
+            append(stdErr, "PROGRESS: 33\n");
+            long deadline = System.currentTimeMillis() + 10000;
+            while (updates.isEmpty() && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            assertEquals(Collections.singletonList(33), updates);
+        } finally {
+            monitor.stop();
+        }
+    }
+}
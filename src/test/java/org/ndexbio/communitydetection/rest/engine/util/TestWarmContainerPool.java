@@ -0,0 +1,232 @@
+package org.ndexbio.communitydetection.rest.engine.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author churas
+ */
+public class TestWarmContainerPool {
+
+    /**
+     * Fake container that replies to each task, tasks whose
+     * arguments contain fail exit with 2 and tasks whose arguments
+     * contain sleep never get a reply
+     */
+    public static final String FAKE_CONTAINER = "while read line; do "
+            + "id=`echo \"$line\" | sed 's/.*\"id\":\"\\([^\"]*\\)\".*/\\1/'`; "
+            + "case \"$line\" in "
+            + "*sleep*) sleep 10 ;; "
+            + "*fail*) echo \"{\\\"id\\\":\\\"$id\\\",\\\"exitCode\\\":2,\\\"stdout\\\":\\\"\\\",\\\"stderr\\\":\\\"bad\\\"}\" ;; "
+            + "*) echo \"{\\\"id\\\":\\\"$id\\\",\\\"exitCode\\\":0,\\\"stdout\\\":\\\"hi $id\\\",\\\"stderr\\\":\\\"\\\"}\" ;; "
+            + "esac; done";
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private ExecutorService _executor;
+    private ScheduledExecutorService _scheduler;
+
+    @Before
+    public void setUp(){
+        _executor = Executors.newCachedThreadPool();
+        _scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown(){
+        _executor.shutdownNow();
+        _scheduler.shutdownNow();
+    }
+
+    private WarmContainerPool getPool(File workDir, int size, int tasksPerContainer){
+        List<String> command = Arrays.asList("/bin/sh", "-c", FAKE_CONTAINER);
+        return new WarmContainerPool("fake", command, size, tasksPerContainer,
+                workDir, _executor, _scheduler);
+    }
+
+    @Test
+    public void testGetDockerCommand(){
+        List<String> res = WarmContainerPool.getDockerCommand("docker", "image",
+                "/tasks", 2.0, 512, Arrays.asList("--warm"));
+        assertEquals(Arrays.asList("docker", "run", "-i", "--rm", "--cpus", "2.0",
+                "--memory", "512m", "-v", "/tasks:/tasks:ro", "image", "--warm"), res);
+
+        res = WarmContainerPool.getDockerCommand("docker", "image",
+                "/tasks", 0, 0, null);
+        assertEquals(Arrays.asList("docker", "run", "-i", "--rm",
+                "-v", "/tasks:/tasks:ro", "image"), res);
+    }
+
+    @Test
+    public void testRunTasksReusesContainer() throws Exception {
+        File tempDir = _folder.newFolder();
+        WarmContainerPool pool = getPool(tempDir, 1, 3);
+        try {
+            pool.start();
+            assertEquals(1, pool.getNumberOfContainers());
+            assertEquals(1, pool.getNumberOfIdleContainers());
+            for (int i = 0; i < 3; i++){
+                CompletableFuture<WarmContainer.Result> future = pool.runTask("task" + i,
+                        Arrays.asList("/input.txt"), 10, TimeUnit.SECONDS);
+                assertNotNull(future);
+                WarmContainer.Result res = future.get(10, TimeUnit.SECONDS);
+                assertEquals(0, res.getExitCode());
+                assertEquals("hi task" + i, res.getStandardOut());
+                assertEquals("", res.getStandardError());
+            }
+            assertEquals(1, pool.getNumberOfContainers());
+            assertTrue(new File(tempDir, WarmContainerPool.LOG_DIR + File.separator
+                    + WarmContainerPool.STD_ERR_FILE_PREFIX + "fake_0.txt").isFile());
+            assertFalse(new File(tempDir, WarmContainerPool.STD_ERR_FILE_PREFIX
+                    + "fake_0.txt").exists());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testInputFileLinkedIntoInputDirectoryWhileTaskRuns() throws Exception {
+        File tempDir = _folder.newFolder();
+        File taskDir = _folder.newFolder();
+        File inputFile = new File(taskDir, "input.txt");
+        try (FileWriter fw = new FileWriter(inputFile)){
+            fw.write("1\t2\n");
+        }
+        WarmContainerPool pool = getPool(tempDir, 1, 10);
+        File inputDir = WarmContainerPool.getInputDirectory(tempDir);
+        try {
+            pool.start();
+            CompletableFuture<WarmContainer.Result> future = pool.runTask("1",
+                    Arrays.asList("sleep"), inputFile, 10, TimeUnit.SECONDS);
+            assertNotNull(future);
+            File[] linked = inputDir.listFiles();
+            assertEquals(1, linked.length);
+            assertTrue(linked[0].getName().endsWith("_input.txt"));
+            assertEquals("1\t2\n", new String(Files.readAllBytes(linked[0].toPath())));
+            assertTrue(future.cancel(true));
+            assertEquals(0, inputDir.listFiles().length);
+            assertTrue(inputFile.isFile());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNoIdleContainerReturnsNull() throws Exception {
+        File tempDir = _folder.newFolder();
+        WarmContainerPool pool = getPool(tempDir, 1, 10);
+        try {
+            pool.start();
+            CompletableFuture<WarmContainer.Result> future = pool.runTask("1",
+                    Arrays.asList("sleep"), 10, TimeUnit.SECONDS);
+            assertNotNull(future);
+            assertNull(pool.runTask("2", Collections.emptyList(), 10, TimeUnit.SECONDS));
+            assertTrue(future.cancel(true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedTaskReplacesContainer() throws Exception {
+        File tempDir = _folder.newFolder();
+        WarmContainerPool pool = getPool(tempDir, 1, 10);
+        try {
+            pool.start();
+            WarmContainer.Result res = pool.runTask("1", Arrays.asList("fail"),
+                    10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+            assertEquals(2, res.getExitCode());
+            assertEquals("bad", res.getStandardError());
+            assertEquals(1, pool.getNumberOfContainers());
+
+            res = pool.runTask("2", Collections.emptyList(),
+                    10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+            assertEquals(0, res.getExitCode());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeoutKillsContainer() throws Exception {
+        File tempDir = _folder.newFolder();
+        WarmContainerPool pool = getPool(tempDir, 1, 10);
+        try {
+            pool.start();
+            WarmContainer.Result res = pool.runTask("1", Arrays.asList("sleep"),
+                    100, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+            assertEquals(ProcessSupervisor.TIMEOUT_EXIT_CODE, res.getExitCode());
+            assertEquals(1, pool.getNumberOfContainers());
+
+            res = pool.runTask("2", Collections.emptyList(),
+                    10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+            assertEquals(0, res.getExitCode());
+            assertEquals("hi 2", res.getStandardOut());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testContainersNamedAndRemovedWithReaper() throws Exception {
+        File tempDir = _folder.newFolder();
+        File log = new File(tempDir, "docker.log");
+        File script = new File(tempDir, "fakedocker.sh");
+        try (FileWriter fw = new FileWriter(script)){
+            fw.write("#!/bin/sh\n");
+            fw.write("echo \"$@\" >> " + log.getAbsolutePath() + "\n");
+            fw.write("if [ \"$1\" = \"run\" ]; then " + FAKE_CONTAINER + "; fi\n");
+        }
+        assertTrue(script.setExecutable(true));
+        DockerContainerReaper reaper = new DockerContainerReaper(script.getAbsolutePath(), "owner");
+        WarmContainerPool pool = new WarmContainerPool("fake",
+                Arrays.asList(script.getAbsolutePath(), "run", "image"), 1, 10,
+                tempDir, _executor, _scheduler);
+        pool.setContainerReaper(reaper);
+        try {
+            pool.start();
+            assertEquals(1, reaper.getNumberOfRunningContainers());
+            WarmContainer.Result res = pool.runTask("1", Arrays.asList("sleep"),
+                    100, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+            assertEquals(ProcessSupervisor.TIMEOUT_EXIT_CODE, res.getExitCode());
+
+            // container that timed out is removed and replaced
+            String runLine = "run --name cdtask-warm-fake-0 --label "
+                    + DockerContainerReaper.OWNER_LABEL + "=owner image";
+            String rmLine = "rm -f cdtask-warm-fake-0";
+            String replacementLine = "run --name cdtask-warm-fake-1 --label "
+                    + DockerContainerReaper.OWNER_LABEL + "=owner image";
+            long deadline = System.currentTimeMillis() + 10000;
+            List<String> lines = Collections.emptyList();
+            while (System.currentTimeMillis() < deadline && (lines.contains(rmLine) == false
+                    || lines.contains(replacementLine) == false)){
+                Thread.sleep(10);
+                lines = Files.readAllLines(log.toPath());
+            }
+            assertTrue(lines.contains(runLine));
+            assertTrue(lines.contains(rmLine));
+            assertTrue(lines.contains(replacementLine));
+            assertEquals(1, reaper.getNumberOfRunningContainers());
+        } finally {
+            pool.shutdown();
+            reaper.shutdown();
+        }
+    }
+}
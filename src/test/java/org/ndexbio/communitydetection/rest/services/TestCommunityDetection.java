@@ -9,8 +9,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.FileWriter;
 import java.net.URI;
+import java.util.Arrays;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.notNull;
@@ -24,6 +26,10 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.engine.BatchStatus;
+import org.ndexbio.communitydetection.rest.engine.BatchTask;
+import org.ndexbio.communitydetection.rest.engine.FanOutRequest;
+import org.ndexbio.communitydetection.rest.engine.PipelineRequest;
 import org.ndexbio.communitydetection.rest.engine.CommunityDetectionEngine;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
@@ -31,6 +37,7 @@ import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
 import org.ndexbio.communitydetection.rest.model.ErrorResponse;
 import org.ndexbio.communitydetection.rest.model.Task;
+import org.ndexbio.communitydetection.rest.engine.CommunityDetectionQueueFullException;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionBadRequestException;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
 
@@ -107,7 +114,7 @@ public class TestCommunityDetection {
             
             // create mock enrichment engine that returns null
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
-            expect(mockEngine.request(notNull())).andThrow(new CommunityDetectionException("some error"));
+            expect(mockEngine.request(notNull(), anyObject())).andThrow(new CommunityDetectionException("some error"));
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -152,7 +159,7 @@ public class TestCommunityDetection {
             
             // create mock enrichment engine that returns null
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
-            expect(mockEngine.request(notNull())).andThrow(new CommunityDetectionBadRequestException("some error"));
+            expect(mockEngine.request(notNull(), anyObject())).andThrow(new CommunityDetectionBadRequestException("some error"));
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -170,6 +177,50 @@ public class TestCommunityDetection {
         }
     }
     
+    @Test
+    public void testRequestWhereQueueIsFull() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH);
+            CommunityDetectionRequest query = new CommunityDetectionRequest();
+            ObjectMapper omappy = new ObjectMapper();
+            request.contentType(MediaType.APPLICATION_JSON);
+            
+            request.content(omappy.writeValueAsBytes(query));
+
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.request(notNull(), anyObject())).andThrow(new CommunityDetectionQueueFullException("queue full", 42));
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(429, response.getStatus());
+            assertEquals("42", response.getOutputHeaders().getFirst("Retry-After").toString());
+            ObjectMapper mapper = new ObjectMapper();
+            ErrorResponse er = mapper.readValue(response.getOutput(),
+                    ErrorResponse.class);
+            assertEquals("Too many tasks queued", er.getMessage());
+            assertEquals("queue full", er.getDescription());
+            verify(mockEngine);
+
+        } finally {
+            _folder.delete();
+        }
+    }
+    
     @Test
     public void testRequestWhereQueryRaisesBadRequestErrorWithErrorResponse() throws Exception {
         try {
@@ -199,7 +250,7 @@ public class TestCommunityDetection {
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
             ErrorResponse xer = new ErrorResponse();
             xer.setMessage("hello");
-            expect(mockEngine.request(notNull())).andThrow(new CommunityDetectionBadRequestException("some error", xer));
+            expect(mockEngine.request(notNull(), anyObject())).andThrow(new CommunityDetectionBadRequestException("some error", xer));
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -244,7 +295,7 @@ public class TestCommunityDetection {
             
             // create mock enrichment engine that returns null
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
-            expect(mockEngine.request(notNull())).andReturn(null);
+            expect(mockEngine.request(notNull(), anyObject())).andReturn(null);
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -289,7 +340,7 @@ public class TestCommunityDetection {
             
             // create mock enrichment engine that returns null
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
-            expect(mockEngine.request(notNull())).andReturn("12345");
+            expect(mockEngine.request(notNull(), anyObject())).andReturn("12345");
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -310,6 +361,136 @@ public class TestCommunityDetection {
     }
     
         @Test
+    public void testRequestBatchSuccess() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH
+                    + Configuration.BATCH_PATH);
+            ObjectMapper omappy = new ObjectMapper();
+            request.contentType(MediaType.APPLICATION_JSON);
+            
+            request.content(omappy.writeValueAsBytes(Arrays.asList(new CommunityDetectionRequest(),
+                    new CommunityDetectionRequest())));
+
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.requestBatch(notNull(), anyObject())).andReturn(new BatchTask("b1",
+                    Arrays.asList("1", "2")));
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(202, response.getStatus());
+            
+            MultivaluedMap<String, Object> resmap = response.getOutputHeaders();
+            assertEquals(new URI(Configuration.V_ONE_PATH + Configuration.BATCH_PATH + "/b1"),
+                    resmap.getFirst("Location"));
+            ObjectMapper mapper = new ObjectMapper();
+            BatchTask bt = mapper.readValue(response.getOutput(), BatchTask.class);
+            assertEquals("b1", bt.getId());
+            assertEquals(Arrays.asList("1", "2"), bt.getTasks());
+            verify(mockEngine);
+
+        } finally {
+            _folder.delete();
+        }
+    }
+    
+    @Test
+    public void testRequestBatchWhereQueueIsFull() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH
+                    + Configuration.BATCH_PATH);
+            ObjectMapper omappy = new ObjectMapper();
+            request.contentType(MediaType.APPLICATION_JSON);
+            request.content(omappy.writeValueAsBytes(Arrays.asList(new CommunityDetectionRequest())));
+
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.requestBatch(notNull(), anyObject())).andThrow(new CommunityDetectionQueueFullException("queue full", 7));
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(429, response.getStatus());
+            assertEquals("7", response.getOutputHeaders().getFirst("Retry-After").toString());
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+        }
+    }
+    
+    @Test
+    public void testGetBatchStatusSuccess() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.get(Configuration.V_ONE_PATH
+                    + Configuration.BATCH_PATH + "/b1");
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            BatchStatus bs = new BatchStatus();
+            bs.setId("b1");
+            bs.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+            bs.setProgress(50);
+            CommunityDetectionResultStatus taskStatus = new CommunityDetectionResultStatus();
+            taskStatus.setId("1");
+            bs.setTasks(Arrays.asList(taskStatus));
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.getBatchStatus("b1")).andReturn(bs);
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(200, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            BatchStatus res = mapper.readValue(response.getOutput(), BatchStatus.class);
+            assertEquals("b1", res.getId());
+            assertEquals(CommunityDetectionResult.PROCESSING_STATUS, res.getStatus());
+            assertEquals(50, res.getProgress());
+            assertEquals("1", res.getTasks().get(0).getId());
+            verify(mockEngine);
+        } finally {
+            _folder.delete();
+        }
+    }
+    
+    @Test
     public void testRequestWhereQuerySuccessAndHostURLSet() throws Exception {
         try {
             File tempDir = _folder.newFolder();
@@ -337,7 +518,7 @@ public class TestCommunityDetection {
             
             // create mock enrichment engine that returns null
             CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
-            expect(mockEngine.request(notNull())).andReturn("12345");
+            expect(mockEngine.request(notNull(), anyObject())).andReturn("12345");
             replay(mockEngine);
             Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
             
@@ -759,4 +940,95 @@ public class TestCommunityDetection {
             Configuration.getInstance().setCommunityDetectionEngine(null);
         }
     }
+    
+    @Test
+    public void testRequestPipelineSuccess() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH
+                    + Configuration.PIPELINE_PATH);
+            ObjectMapper omappy = new ObjectMapper();
+            request.contentType(MediaType.APPLICATION_JSON);
+            
+            request.content(omappy.writeValueAsBytes(new PipelineRequest(Arrays.asList(
+                    new CommunityDetectionRequest(), new CommunityDetectionRequest()))));
+
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.requestPipeline(notNull(), anyObject())).andReturn("p1");
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(202, response.getStatus());
+            
+            MultivaluedMap<String, Object> resmap = response.getOutputHeaders();
+            assertEquals(new URI(Configuration.V_ONE_PATH + "/p1"),
+                    resmap.getFirst("Location"));
+            ObjectMapper mapper = new ObjectMapper();
+            Task t = mapper.readValue(response.getOutput(), Task.class);
+            assertEquals("p1", t.getId());
+            verify(mockEngine);
+
+        } finally {
+            _folder.delete();
+        }
+    }
+    
+    @Test
+    public void testRequestFanOutSuccess() throws Exception {
+        try {
+            File tempDir = _folder.newFolder();
+            File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+            
+            FileWriter fw = new FileWriter(confFile);
+            
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            fw.flush();
+            fw.close();
+            Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+            dispatcher.getRegistry().addSingletonResource(new CommunityDetection());
+
+            MockHttpRequest request = MockHttpRequest.post(Configuration.V_ONE_PATH
+                    + Configuration.FANOUT_PATH);
+            ObjectMapper omappy = new ObjectMapper();
+            request.contentType(MediaType.APPLICATION_JSON);
+            
+            request.content(omappy.writeValueAsBytes(new FanOutRequest()));
+
+            MockHttpResponse response = new MockHttpResponse();
+            Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+            
+            CommunityDetectionEngine mockEngine = createMock(CommunityDetectionEngine.class);
+            expect(mockEngine.requestFanOut(notNull(), anyObject())).andReturn("f1");
+            replay(mockEngine);
+            Configuration.getInstance().setCommunityDetectionEngine(mockEngine);
+            
+            dispatcher.invoke(request, response);
+            assertEquals(202, response.getStatus());
+            
+            MultivaluedMap<String, Object> resmap = response.getOutputHeaders();
+            assertEquals(new URI(Configuration.V_ONE_PATH + "/f1"),
+                    resmap.getFirst("Location"));
+            ObjectMapper mapper = new ObjectMapper();
+            Task t = mapper.readValue(response.getOutput(), Task.class);
+            assertEquals("f1", t.getId());
+            verify(mockEngine);
+
+        } finally {
+            _folder.delete();
+        }
+    }
 }
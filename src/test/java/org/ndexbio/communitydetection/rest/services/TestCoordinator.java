@@ -0,0 +1,169 @@
+package org.ndexbio.communitydetection.rest.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.MediaType;
+import org.jboss.resteasy.core.Dispatcher;
+import org.jboss.resteasy.mock.MockDispatcherFactory;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.engine.RemoteTask;
+import org.ndexbio.communitydetection.rest.engine.RemoteTaskQueue;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class TestCoordinator {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    private static final String TASKS_PATH = Configuration.V_ONE_PATH
+            + Configuration.COORDINATOR_PATH + "/tasks";
+
+    private Dispatcher getDispatcher(File tempDir, final String token) throws Exception {
+        File confFile = new File(tempDir.getAbsolutePath() + File.separator + "foo.conf");
+        try (FileWriter fw = new FileWriter(confFile)){
+            fw.write(Configuration.TASK_DIR + " = " + tempDir.getAbsolutePath() + "\n");
+            if (token != null){
+                fw.write(Configuration.COORDINATOR_TOKEN + " = " + token + "\n");
+            }
+        }
+        Configuration.setAlternateConfigurationFile(confFile.getAbsolutePath());
+        Dispatcher dispatcher = MockDispatcherFactory.createDispatcher();
+        dispatcher.getRegistry().addSingletonResource(new Coordinator());
+        return dispatcher;
+    }
+
+    @Test
+    public void testNotACoordinator() throws Exception {
+        Dispatcher dispatcher = getDispatcher(_folder.newFolder(), null);
+        Configuration.getInstance().setRemoteTaskQueue(null);
+        MockHttpRequest request = MockHttpRequest.post(TASKS_PATH + "?worker=w1");
+        MockHttpResponse response = new MockHttpResponse();
+        dispatcher.invoke(request, response);
+        assertEquals(404, response.getStatus());
+    }
+
+    private static MockHttpRequest post(final String path) throws Exception {
+        MockHttpRequest request = MockHttpRequest.post(path);
+        request.header(Configuration.COORDINATOR_TOKEN_HEADER, "secret");
+        return request;
+    }
+
+    @Test
+    public void testClaimRenewAndComplete() throws Exception {
+        Dispatcher dispatcher = getDispatcher(_folder.newFolder(), "secret");
+        RemoteTaskQueue queue = new RemoteTaskQueue(60000);
+        try {
+            Configuration.getInstance().setRemoteTaskQueue(queue);
+
+            // no tasks
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "?worker=w1"), response);
+            assertEquals(204, response.getStatus());
+
+            // missing worker
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH), response);
+            assertEquals(500, response.getStatus());
+
+            RemoteTask task = new RemoteTask();
+            task.setId("t1");
+            task.setAlgorithm("foo");
+            task.setData(new TextNode("1\t2"));
+            CompletableFuture<CommunityDetectionResult> future = queue.submit(task);
+
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "?worker=w1&wait=10"), response);
+            assertEquals(200, response.getStatus());
+            ObjectMapper mapper = new ObjectMapper();
+            RemoteTask claimed = mapper.readValue(response.getOutput(), RemoteTask.class);
+            assertEquals("t1", claimed.getId());
+            assertEquals("foo", claimed.getAlgorithm());
+            assertEquals("1\t2", claimed.getData().asText());
+
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "/t1/lease?worker=w1"), response);
+            assertEquals(204, response.getStatus());
+
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "/t1/lease?worker=w2"), response);
+            assertEquals(410, response.getStatus());
+
+            CommunityDetectionResult cdr = new CommunityDetectionResult();
+            cdr.setId("t1");
+            cdr.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+            cdr.setResult(new TextNode("done"));
+            MockHttpRequest request = post(TASKS_PATH + "/t1/result?worker=w1");
+            request.contentType(MediaType.APPLICATION_JSON);
+            request.content(mapper.writeValueAsBytes(cdr));
+            response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(204, response.getStatus());
+
+            CommunityDetectionResult res = future.get(1, TimeUnit.SECONDS);
+            assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+            assertEquals("done", res.getResult().asText());
+
+            // lease is gone once result is reported
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "/t1/lease?worker=w1"), response);
+            assertEquals(410, response.getStatus());
+        } finally {
+            Configuration.getInstance().setRemoteTaskQueue(null);
+        }
+    }
+
+    @Test
+    public void testInvalidToken() throws Exception {
+        Dispatcher dispatcher = getDispatcher(_folder.newFolder(), "secret");
+        try {
+            Configuration.getInstance().setRemoteTaskQueue(new RemoteTaskQueue(60000));
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(MockHttpRequest.post(TASKS_PATH + "?worker=w1"), response);
+            assertEquals(403, response.getStatus());
+
+            MockHttpRequest request = MockHttpRequest.post(TASKS_PATH + "?worker=w1");
+            request.header(Configuration.COORDINATOR_TOKEN_HEADER, "wrong");
+            response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(403, response.getStatus());
+
+            request = MockHttpRequest.post(TASKS_PATH + "?worker=w1");
+            request.header(Configuration.COORDINATOR_TOKEN_HEADER, "secret");
+            response = new MockHttpResponse();
+            dispatcher.invoke(request, response);
+            assertEquals(204, response.getStatus());
+        } finally {
+            Configuration.getInstance().setRemoteTaskQueue(null);
+        }
+    }
+
+    @Test
+    public void testNoTokenConfiguredRejectsEveryRequest() throws Exception {
+        Dispatcher dispatcher = getDispatcher(_folder.newFolder(), null);
+        try {
+            Configuration.getInstance().setRemoteTaskQueue(new RemoteTaskQueue(60000));
+            MockHttpResponse response = new MockHttpResponse();
+            dispatcher.invoke(MockHttpRequest.post(TASKS_PATH + "?worker=w1"), response);
+            assertEquals(403, response.getStatus());
+
+            response = new MockHttpResponse();
+            dispatcher.invoke(post(TASKS_PATH + "?worker=w1"), response);
+            assertEquals(403, response.getStatus());
+        } finally {
+            Configuration.getInstance().setRemoteTaskQueue(null);
+        }
+    }
+}